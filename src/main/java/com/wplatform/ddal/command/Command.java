@@ -16,9 +16,12 @@
 package com.wplatform.ddal.command;
 
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.List;
 
 import com.wplatform.ddal.command.expression.ParameterInterface;
+import com.wplatform.ddal.dispatch.rule.PartitionHints;
 import com.wplatform.ddal.engine.Constants;
 import com.wplatform.ddal.engine.Database;
 import com.wplatform.ddal.engine.Session;
@@ -26,6 +29,7 @@ import com.wplatform.ddal.message.DbException;
 import com.wplatform.ddal.message.ErrorCode;
 import com.wplatform.ddal.message.Trace;
 import com.wplatform.ddal.result.ResultInterface;
+import com.wplatform.ddal.value.Value;
 
 /**
  * Represents a SQL statement. This object is only used on the server side.
@@ -50,6 +54,7 @@ public abstract class Command implements CommandInterface {
      */
     private volatile boolean cancel;
     private boolean canReuse;
+    private int fetchSize;
 
     Command(Parser parser, String sql) {
         this.session = parser.getSession();
@@ -88,6 +93,29 @@ public abstract class Command implements CommandInterface {
      */
     public abstract boolean isReadOnly();
 
+    @Override
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Get the number of rows to read from the shards in one step.
+     *
+     * @return the fetch size, 0 if the default of the driver is used
+     */
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Get the partition hints of this command.
+     *
+     * @return the hints, or null
+     */
+    public PartitionHints getPartitionHints() {
+        return null;
+    }
+
     /**
      * Get an empty result set containing the meta data.
      *
@@ -106,6 +134,34 @@ public abstract class Command implements CommandInterface {
         throw DbException.get(ErrorCode.METHOD_NOT_ALLOWED_FOR_QUERY);
     }
 
+    /**
+     * Execute an updating statement once for each set of parameter values.
+     *
+     * @param batchParameters the parameter values of each execution
+     * @param updateCounts the update count of each execution
+     * @throws DbException the exception of the last failed execution, the
+     *         exceptions of the earlier ones are chained to it
+     */
+    public void updateBatch(List<Value[]> batchParameters, int[] updateCounts) {
+        ArrayList<? extends ParameterInterface> parameters = getParameters();
+        DbException error = null;
+        for (int i = 0, size = batchParameters.size(); i < size; i++) {
+            Value[] set = batchParameters.get(i);
+            for (int j = 0; j < set.length; j++) {
+                parameters.get(j).setValue(set[j], false);
+            }
+            try {
+                updateCounts[i] = update();
+            } catch (DbException e) {
+                updateCounts[i] = Statement.EXECUTE_FAILED;
+                error = e.chain(error);
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
     /**
      * Execute a query statement, if this is possible.
      *
@@ -117,6 +173,18 @@ public abstract class Command implements CommandInterface {
         throw DbException.get(ErrorCode.METHOD_ONLY_ALLOWED_FOR_QUERY);
     }
 
+    /**
+     * Execute a query statement for a forward only result set. The rows may
+     * be read from the shards only when they are requested.
+     *
+     * @param maxrows the maximum number of rows returned
+     * @return the result set
+     * @throws DbException if the command is not a query
+     */
+    public ResultInterface queryLazy(int maxrows) {
+        return query(maxrows);
+    }
+
     @Override
     public final ResultInterface getMetaData() {
         return queryMeta();
@@ -164,7 +232,7 @@ public abstract class Command implements CommandInterface {
      * This method prepares everything and calls {@link #query(int)} finally.
      *
      * @param maxrows    the maximum number of rows to return
-     * @param scrollable if the result set must be scrollable (ignored)
+     * @param scrollable if the result set must be scrollable
      * @return the result set
      */
     @Override
@@ -178,7 +246,7 @@ public abstract class Command implements CommandInterface {
             try {
                 while (true) {
                     try {
-                        return query(maxrows);
+                        return scrollable ? query(maxrows) : queryLazy(maxrows);
                     } catch (DbException e) {
                         throw e;
                     } catch (OutOfMemoryError e) {
@@ -257,6 +325,48 @@ public abstract class Command implements CommandInterface {
         }
     }
 
+    @Override
+    public void executeBatchUpdate(List<Value[]> batchParameters, int[] updateCounts) {
+        Database database = session.getDatabase();
+        Object sync = session;
+        boolean callStop = true;
+        synchronized (sync) {
+            Session.Savepoint rollback = session.setSavepoint();
+            session.setCurrentCommand(this);
+            try {
+                try {
+                    updateBatch(batchParameters, updateCounts);
+                } catch (DbException e) {
+                    throw e;
+                } catch (OutOfMemoryError e) {
+                    callStop = false;
+                    database.shutdownImmediately();
+                    throw DbException.convert(e);
+                } catch (Throwable e) {
+                    throw DbException.convert(e);
+                }
+            } catch (DbException e) {
+                e = e.addSQL(sql);
+                SQLException s = e.getSQLException();
+                if (s.getErrorCode() == ErrorCode.OUT_OF_MEMORY) {
+                    callStop = false;
+                    database.shutdownImmediately();
+                    throw e;
+                }
+                if (s.getErrorCode() == ErrorCode.DEADLOCK_1) {
+                    session.rollback();
+                } else {
+                    session.rollbackTo(rollback, false);
+                }
+                throw e;
+            } finally {
+                if (callStop) {
+                    stop();
+                }
+            }
+        }
+    }
+
     @Override
     public void close() {
         canReuse = true;
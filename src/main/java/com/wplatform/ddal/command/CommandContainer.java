@@ -16,9 +16,12 @@
 package com.wplatform.ddal.command;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import com.wplatform.ddal.command.expression.Parameter;
 import com.wplatform.ddal.command.expression.ParameterInterface;
+import com.wplatform.ddal.dispatch.rule.PartitionHints;
+import com.wplatform.ddal.result.LazyResult;
 import com.wplatform.ddal.result.ResultInterface;
 import com.wplatform.ddal.value.Value;
 import com.wplatform.ddal.value.ValueNull;
@@ -32,6 +35,7 @@ class CommandContainer extends Command {
     private Prepared prepared;
     private boolean readOnlyKnown;
     private boolean readOnly;
+    private LazyResult lazyResult;
 
     CommandContainer(Parser parser, String sql, Prepared prepared) {
         super(parser, sql);
@@ -85,6 +89,15 @@ class CommandContainer extends Command {
         return updateCount;
     }
 
+    @Override
+    public void updateBatch(List<Value[]> batchParameters, int[] updateCounts) {
+        recompileIfRequired();
+        start();
+        session.setLastScopeIdentity(ValueNull.INSTANCE);
+        prepared.updateBatch(batchParameters, updateCounts);
+        prepared.trace(startTime, batchParameters.size());
+    }
+
     @Override
     public ResultInterface query(int maxrows) {
         recompileIfRequired();
@@ -95,6 +108,34 @@ class CommandContainer extends Command {
         return result;
     }
 
+    @Override
+    public ResultInterface queryLazy(int maxrows) {
+        recompileIfRequired();
+        start();
+        prepared.checkParameters();
+        ResultInterface result = prepared.queryLazy(maxrows);
+        if (result instanceof LazyResult) {
+            // the row count is not known yet
+            lazyResult = (LazyResult) result;
+            // the rows are read after the command returned, they need the
+            // command and the results of this execution
+            lazyResult.setStatement(session, session.detachStatement());
+            if (getFetchSize() > 0) {
+                lazyResult.setFetchSize(getFetchSize());
+            }
+            prepared.trace(startTime, -1);
+        } else {
+            prepared.trace(startTime, result.getRowCount());
+        }
+        return result;
+    }
+
+    @Override
+    public boolean canReuse() {
+        // the prepared statement is still in use by the open result
+        return super.canReuse() && (lazyResult == null || lazyResult.isClosed());
+    }
+
     @Override
     public boolean isReadOnly() {
         if (!readOnlyKnown) {
@@ -104,6 +145,11 @@ class CommandContainer extends Command {
         return readOnly;
     }
 
+    @Override
+    public PartitionHints getPartitionHints() {
+        return prepared.getPartitionHints();
+    }
+
     @Override
     public ResultInterface queryMeta() {
         return prepared.queryMeta();
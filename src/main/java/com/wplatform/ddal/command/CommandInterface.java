@@ -16,9 +16,11 @@
 package com.wplatform.ddal.command;
 
 import java.util.ArrayList;
+import java.util.List;
 
 import com.wplatform.ddal.command.expression.ParameterInterface;
 import com.wplatform.ddal.result.ResultInterface;
+import com.wplatform.ddal.value.Value;
 
 /**
  * Represents a SQL statement.
@@ -476,6 +478,13 @@ public interface CommandInterface {
      */
     ResultInterface executeQuery(int maxRows, boolean scrollable);
 
+    /**
+     * Set the number of rows to read from the shards in one step.
+     *
+     * @param fetchSize the fetch size
+     */
+    void setFetchSize(int fetchSize);
+
     /**
      * Execute the statement
      *
@@ -483,6 +492,17 @@ public interface CommandInterface {
      */
     int executeUpdate();
 
+    /**
+     * Execute the statement once for each set of parameter values. If an
+     * execution fails, the other ones are still executed and the exceptions
+     * are thrown at the end, chained as next exceptions.
+     *
+     * @param batchParameters the parameter values of each execution
+     * @param updateCounts the update count of each execution, set also if an
+     *            exception is thrown
+     */
+    void executeBatchUpdate(List<Value[]> batchParameters, int[] updateCounts);
+
     /**
      * Close the statement.
      */
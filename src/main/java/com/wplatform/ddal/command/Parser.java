@@ -33,6 +33,7 @@ import com.wplatform.ddal.dbobject.schema.Schema;
 import com.wplatform.ddal.dbobject.schema.Sequence;
 import com.wplatform.ddal.dbobject.table.*;
 import com.wplatform.ddal.dbobject.table.TableFilter.TableFilterVisitor;
+import com.wplatform.ddal.dispatch.rule.PartitionHints;
 import com.wplatform.ddal.engine.*;
 import com.wplatform.ddal.message.DbException;
 import com.wplatform.ddal.message.ErrorCode;
@@ -110,6 +111,10 @@ public class Parser {
     private boolean rightsChecked;
     private boolean recompileAlways;
     private ArrayList<Parameter> indexedParameterList;
+    /**
+     * The text of the partition hint comments of the statement.
+     */
+    private ArrayList<String> hintComments;
 
     public Parser(Session session) {
         this.database = session.getDatabase();
@@ -364,6 +369,8 @@ public class Parser {
         }
         p.setPrepareAlways(recompileAlways);
         p.setParameterList(parameters);
+        p.setPartitionHints(hintComments == null ? null :
+                PartitionHints.parse(hintComments, sql));
         return p;
     }
 
@@ -3391,6 +3398,7 @@ public class Parser {
         }
         originalSQL = sql;
         sqlCommand = sql;
+        hintComments = null;
         int len = sql.length() + 1;
         char[] command = new char[len];
         int[] types = new int[len];
@@ -3417,6 +3425,13 @@ public class Parser {
                             command[i++] = ' ';
                             checkRunOver(i, len, startLoop);
                         }
+                        String comment = sql.substring(startLoop + 2, i);
+                        if (PartitionHints.isHint(comment)) {
+                            if (hintComments == null) {
+                                hintComments = New.arrayList();
+                            }
+                            hintComments.add(comment);
+                        }
                         command[i] = ' ';
                         command[i + 1] = ' ';
                         i++;
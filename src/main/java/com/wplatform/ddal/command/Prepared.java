@@ -15,10 +15,13 @@
  */
 package com.wplatform.ddal.command;
 
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.List;
 
 import com.wplatform.ddal.command.expression.Expression;
 import com.wplatform.ddal.command.expression.Parameter;
+import com.wplatform.ddal.dispatch.rule.PartitionHints;
 import com.wplatform.ddal.engine.Session;
 import com.wplatform.ddal.excutor.PreparedExecutor;
 import com.wplatform.ddal.excutor.PreparedExecutorFactory;
@@ -62,6 +65,7 @@ public abstract class Prepared {
     protected boolean prepareAlways;
 
     private Command command;
+    private PartitionHints partitionHints;
     private int objectId;
     private int currentRowNumber;
     private int rowScanCount;
@@ -190,6 +194,24 @@ public abstract class Prepared {
         this.command = command;
     }
 
+    /**
+     * Get the partition hints of the statement.
+     *
+     * @return the hints, or null
+     */
+    public PartitionHints getPartitionHints() {
+        return partitionHints;
+    }
+
+    /**
+     * Set the partition hints of the statement.
+     *
+     * @param partitionHints the hints, or null
+     */
+    public void setPartitionHints(PartitionHints partitionHints) {
+        this.partitionHints = partitionHints;
+    }
+
     /**
      * Check if this object is a query.
      *
@@ -214,12 +236,59 @@ public abstract class Prepared {
      */
     public int update() {
         session.checkCanceled();
+        return createExecutor().executeUpdate();
+    }
+
+    /**
+     * Execute the statement once for each set of parameter values.
+     *
+     * @param batchParameters the parameter values of each execution
+     * @param updateCounts the update count of each execution
+     * @throws DbException the exception of the last failed execution, the
+     *         exceptions of the earlier ones are chained to it
+     */
+    public void updateBatch(List<Value[]> batchParameters, int[] updateCounts) {
+        DbException error = null;
+        for (int i = 0, size = batchParameters.size(); i < size; i++) {
+            try {
+                setParameterValues(batchParameters.get(i));
+                updateCounts[i] = update();
+            } catch (DbException e) {
+                updateCounts[i] = Statement.EXECUTE_FAILED;
+                error = e.chain(error);
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    /**
+     * Set the values of the parameters.
+     *
+     * @param values the values, in the order of the parameters
+     * @throws DbException if a parameter is not set
+     */
+    public void setParameterValues(Value[] values) {
+        for (int i = 0; i < values.length; i++) {
+            parameters.get(i).setValue(values[i]);
+        }
+        checkParameters();
+    }
+
+    /**
+     * Create the executor of this statement.
+     *
+     * @return the executor
+     * @throws DbException if the statement has no executor
+     */
+    protected PreparedExecutor createExecutor() {
         PreparedExecutorFactory pef = session.getPreparedExecutorFactory();
         PreparedExecutor executor = pef.newExecutor(this);
         if(executor == null) {
             throw DbException.get(ErrorCode.METHOD_NOT_ALLOWED_FOR_QUERY);
         }
-        return executor.executeUpdate();
+        return executor;
     }
 
     /**
@@ -233,6 +302,18 @@ public abstract class Prepared {
         throw DbException.get(ErrorCode.METHOD_ONLY_ALLOWED_FOR_QUERY);
     }
 
+    /**
+     * Execute the query for a forward only result set. The result is not
+     * cached and may read the rows only when they are requested.
+     *
+     * @param maxrows the maximum number of rows to return
+     * @return the result set
+     * @throws DbException if it is not a query
+     */
+    public ResultInterface queryLazy(int maxrows) {
+        return query(maxrows);
+    }
+
     /**
      * Get the SQL statement.
      *
@@ -15,6 +15,8 @@
  */
 package com.wplatform.ddal.command.dml;
 
+import java.util.List;
+
 import com.wplatform.ddal.command.CommandInterface;
 import com.wplatform.ddal.command.Prepared;
 import com.wplatform.ddal.command.expression.Expression;
@@ -23,6 +25,7 @@ import com.wplatform.ddal.dbobject.table.TableFilter;
 import com.wplatform.ddal.engine.Session;
 import com.wplatform.ddal.result.ResultInterface;
 import com.wplatform.ddal.util.StringUtils;
+import com.wplatform.ddal.value.Value;
 
 /**
  * This class represents the statement
@@ -83,6 +86,12 @@ public class Delete extends Prepared {
         return true;
     }
 
+    @Override
+    public void updateBatch(List<Value[]> batchParameters, int[] updateCounts) {
+        session.checkCanceled();
+        createExecutor().executeBatchUpdate(batchParameters, updateCounts);
+    }
+
     @Override
     public ResultInterface queryMeta() {
         return null;
@@ -17,6 +17,7 @@ package com.wplatform.ddal.command.dml;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 import com.wplatform.ddal.command.Command;
 import com.wplatform.ddal.command.CommandInterface;
@@ -31,6 +32,7 @@ import com.wplatform.ddal.message.ErrorCode;
 import com.wplatform.ddal.result.ResultInterface;
 import com.wplatform.ddal.util.New;
 import com.wplatform.ddal.util.StatementBuilder;
+import com.wplatform.ddal.value.Value;
 
 /**
  * This class represents the statement
@@ -185,6 +187,12 @@ public class Insert extends Prepared {
         return true;
     }
 
+    @Override
+    public void updateBatch(List<Value[]> batchParameters, int[] updateCounts) {
+        session.checkCanceled();
+        createExecutor().executeBatchUpdate(batchParameters, updateCounts);
+    }
+
     @Override
     public ResultInterface queryMeta() {
         return null;
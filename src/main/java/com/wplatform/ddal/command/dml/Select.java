@@ -20,6 +20,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 
 import com.wplatform.ddal.command.CommandInterface;
+import com.wplatform.ddal.command.expression.Aggregate;
 import com.wplatform.ddal.command.expression.Comparison;
 import com.wplatform.ddal.command.expression.ConditionAndOr;
 import com.wplatform.ddal.command.expression.Expression;
@@ -30,6 +31,7 @@ import com.wplatform.ddal.command.expression.Wildcard;
 import com.wplatform.ddal.dbobject.table.*;
 import com.wplatform.ddal.dispatch.rule.TableNode;
 import com.wplatform.ddal.engine.Database;
+import com.wplatform.ddal.engine.Mode;
 import com.wplatform.ddal.engine.Session;
 import com.wplatform.ddal.engine.SysProperties;
 import com.wplatform.ddal.excutor.PreparedExecutor;
@@ -43,6 +45,7 @@ import com.wplatform.ddal.result.SortOrder;
 import com.wplatform.ddal.util.New;
 import com.wplatform.ddal.util.StatementBuilder;
 import com.wplatform.ddal.util.StringUtils;
+import com.wplatform.ddal.value.DataType;
 
 /**
  * This class represents a simple SELECT statement.
@@ -79,6 +82,8 @@ public class Select extends Query {
     private SortOrder sort;
     private int currentGroupRowId;
     private boolean isAccordantQuery;
+    private boolean sortUsingMerge;
+    private ArrayList<Aggregate> partialAggregates;
     private boolean isQuickAggregateQuery;
 
     public Select(Session session) {
@@ -191,6 +196,20 @@ public class Select extends Query {
         return executor.executeQuery(maxRows);
     }
 
+    @Override
+    public ResultInterface queryLazy(int maxrows) {
+        if (!session.getDatabase().getSettings().lazyQueryExecution) {
+            return query(maxrows);
+        }
+        session.checkCanceled();
+        PreparedExecutorFactory pef = session.getPreparedExecutorFactory();
+        PreparedExecutor executor = pef.newExecutor(this);
+        if(executor == null) {
+            throw DbException.get(ErrorCode.METHOD_ONLY_ALLOWED_FOR_QUERY);
+        }
+        return executor.executeLazyQuery(maxrows);
+    }
+
 
     private void expandColumnList() {
         Database db = session.getDatabase();
@@ -376,27 +395,17 @@ public class Select extends Query {
         }
         cost = preparePlan();
 
-        TableMate last = null;
-        for (TableFilter filter : filters) {
-            if (!filter.isFromTableMate()) {
-                break;
-            }
-            if(filters.size() == 1) {
-                isAccordantQuery = true;
-                break;
-            }
-            TableMate table = (TableMate)filter.getTable();
-            if(last != null && !last.isRelationSymmetry(table)) {
-                break;
-            }last = table;
-        }
+        isAccordantQuery = isAccordantFilters();
         if (distinct && session.getDatabase().getSettings().optimizeDistinct &&
                 !isGroupQuery && filters.size() == 1 &&
                 expressions.size() == 1 && condition == null) {
             //分布式的查询不合适
         }
         if (sort != null && !isGroupQuery) {
-            
+            sortUsingMerge = prepareMergeSort();
+        }
+        if (isGroupQuery) {
+            partialAggregates = preparePartialAggregates();
         }
         if (isGroupQuery && getGroupByExpressionCount() > 0) {
             
@@ -406,6 +415,97 @@ public class Select extends Query {
         isPrepared = true;
     }
 
+    /**
+     * Check if all tables of the query are partitioned the same way, so the
+     * query can run on a single shard as a whole if it is routed to one
+     * table node.
+     *
+     * @return true if the tables are co-located
+     */
+    private boolean isAccordantFilters() {
+        TableMate last = null;
+        for (TableFilter filter : filters) {
+            if (!filter.isFromTableMate()) {
+                return false;
+            }
+            TableMate table = (TableMate) filter.getTable();
+            if (last != null && !last.isRelationSymmetry(table)) {
+                return false;
+            }
+            last = table;
+        }
+        return last != null;
+    }
+
+    /**
+     * Push the sort order down to the table nodes if all order by
+     * expressions are columns of the only table, the rows of the table nodes
+     * are then merged in order. The shards must order the rows exactly like
+     * SortOrder.compare: NULL is ordered explicitly if the database mode
+     * supports NULLS FIRST/LAST, and string columns are only merged if the
+     * collation of the shards is known to match.
+     *
+     * @return true if the rows are read in order
+     */
+    private boolean prepareMergeSort() {
+        if (filters.size() != 1 || !topTableFilter.isFromTableMate()) {
+            return false;
+        }
+        Database db = session.getDatabase();
+        Mode mode = db.getMode();
+        boolean defaultNullOrder = mode.supportNullOrdering ||
+                mode.nullsSortedLow != SysProperties.SORT_NULLS_HIGH;
+        int[] sortTypes = sort.getSortTypes();
+        int[] columnIds = new int[sortTypes.length];
+        for (int i = 0; i < sortTypes.length; i++) {
+            if ((sortTypes[i] & (SortOrder.NULLS_FIRST | SortOrder.NULLS_LAST)) != 0) {
+                if (!mode.supportNullOrdering) {
+                    return false;
+                }
+            } else if (!defaultNullOrder) {
+                return false;
+            }
+            Column col = sort.getColumn(i, topTableFilter);
+            if (col == null) {
+                return false;
+            }
+            if (DataType.isStringType(col.getType()) && !db.getSettings().mergeSortStrings) {
+                return false;
+            }
+            columnIds[i] = col.getColumnId();
+        }
+        topTableFilter.setMergeSortOrder(new SortOrder(db,
+                columnIds, sortTypes, null));
+        return true;
+    }
+
+    /**
+     * Check if the table nodes can calculate the aggregates of the groups, so
+     * only the partial aggregates of each table node are merged. This is
+     * possible for a single table query if all expressions are group by
+     * expressions or are calculated from COUNT, SUM, MIN, MAX and AVG.
+     *
+     * @return the aggregates the table nodes calculate, or null
+     */
+    private ArrayList<Aggregate> preparePartialAggregates() {
+        if (filters.size() != 1 || !topTableFilter.isFromTableMate()) {
+            return null;
+        }
+        ArrayList<Aggregate> aggregates = New.arrayList();
+        ExpressionVisitor visitor = ExpressionVisitor.getPartialAggregateVisitor(aggregates);
+        for (int i = 0, size = expressions.size(); i < size; i++) {
+            Expression expr = expressions.get(i);
+            if (groupByExpression != null && groupByExpression[i]) {
+                if (!expr.isEverything(ExpressionVisitor.DETERMINISTIC_VISITOR)) {
+                    return null;
+                }
+            } else if (!expr.isEverything(visitor)) {
+                return null;
+            }
+        }
+        return aggregates;
+    }
+
     @Override
     public double getCost() {
         return cost;
@@ -837,6 +937,14 @@ public class Select extends Query {
         return isQuickAggregateQuery;
     }
 
+    public ArrayList<Aggregate> getPartialAggregates() {
+        return partialAggregates;
+    }
+
+    public boolean isSortUsingMerge() {
+        return sortUsingMerge;
+    }
+
     public boolean isAccordantQuery() {
         return isAccordantQuery;
     }
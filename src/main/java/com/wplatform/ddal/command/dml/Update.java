@@ -17,28 +17,23 @@ package com.wplatform.ddal.command.dml;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 import com.wplatform.ddal.command.CommandInterface;
 import com.wplatform.ddal.command.Prepared;
 import com.wplatform.ddal.command.expression.Expression;
 import com.wplatform.ddal.command.expression.Parameter;
-import com.wplatform.ddal.command.expression.ValueExpression;
-import com.wplatform.ddal.dbobject.Right;
 import com.wplatform.ddal.dbobject.table.Column;
 import com.wplatform.ddal.dbobject.table.PlanItem;
-import com.wplatform.ddal.dbobject.table.Table;
 import com.wplatform.ddal.dbobject.table.TableFilter;
 import com.wplatform.ddal.engine.Session;
 import com.wplatform.ddal.message.DbException;
 import com.wplatform.ddal.message.ErrorCode;
 import com.wplatform.ddal.result.ResultInterface;
-import com.wplatform.ddal.result.Row;
-import com.wplatform.ddal.result.RowList;
 import com.wplatform.ddal.util.New;
 import com.wplatform.ddal.util.StatementBuilder;
 import com.wplatform.ddal.util.StringUtils;
 import com.wplatform.ddal.value.Value;
-import com.wplatform.ddal.value.ValueNull;
 
 /**
  * This class represents the statement
@@ -86,75 +81,6 @@ public class Update extends Prepared {
         }
     }
 
-    @Override
-    public int update() {
-        return updateRows();
-    }
-
-    protected int updateRows() {
-        tableFilter.startQuery(session);
-        tableFilter.reset();
-        RowList rows = new RowList(session);
-        try {
-            Table table = tableFilter.getTable();
-            session.getUser().checkRight(table, Right.UPDATE);
-            //table.lock(session, true, false);
-            int columnCount = table.getColumns().length;
-            // get the old rows, compute the new rows
-            setCurrentRowNumber(0);
-            int count = 0;
-            Column[] columns = table.getColumns();
-            int limitRows = -1;
-            if (limitExpr != null) {
-                Value v = limitExpr.getValue(session);
-                if (v != ValueNull.INSTANCE) {
-                    limitRows = v.getInt();
-                }
-            }
-            while (tableFilter.next()) {
-                setCurrentRowNumber(count + 1);
-                if (limitRows >= 0 && count >= limitRows) {
-                    break;
-                }
-                if (condition == null ||
-                        Boolean.TRUE.equals(condition.getBooleanValue(session))) {
-                    Row oldRow = tableFilter.get();
-                    Row newRow = table.getTemplateRow();
-                    for (int i = 0; i < columnCount; i++) {
-                        Expression newExpr = expressionMap.get(columns[i]);
-                        Value newValue;
-                        if (newExpr == null) {
-                            newValue = oldRow.getValue(i);
-                        } else if (newExpr == ValueExpression.getDefault()) {
-                            Column column = table.getColumn(i);
-                            newValue = table.getDefaultValue(session, column);
-                        } else {
-                            Column column = table.getColumn(i);
-                            newValue = column.convert(newExpr.getValue(session));
-                        }
-                        newRow.setValue(i, newValue);
-                    }
-                    table.validateConvertUpdateSequence(session, newRow);
-                    rows.add(oldRow);
-                    rows.add(newRow);
-                    count++;
-                }
-            }
-            // TODO self referencing referential integrity constraints
-            // don't work if update is multi-row and 'inversed' the condition!
-            // probably need multi-row triggers with 'deleted' and 'inserted'
-            // at the same time. anyway good for sql compatibility
-            // TODO update in-place (but if the key changes,
-            // we need to update all indexes) before row triggers
-
-            // the cached row is already updated - we need the old values
-            //table.updateRows(this, session, rows);
-            return count;
-        } finally {
-            rows.close();
-        }
-    }
-
     @Override
     public String getPlanSQL() {
         StatementBuilder buff = new StatementBuilder("UPDATE ");
@@ -194,6 +120,12 @@ public class Update extends Prepared {
         return true;
     }
 
+    @Override
+    public void updateBatch(List<Value[]> batchParameters, int[] updateCounts) {
+        session.checkCanceled();
+        createExecutor().executeBatchUpdate(batchParameters, updateCounts);
+    }
+
     @Override
     public ResultInterface queryMeta() {
         return null;
@@ -258,6 +258,123 @@ public class Aggregate extends Expression {
         data.add(session.getDatabase(), dataType, distinct, v);
     }
 
+    /**
+     * Get the SQL of the partial aggregates a table node calculates for this
+     * aggregate. AVG is split into SUM and COUNT.
+     *
+     * @param filter the table filter
+     * @param container the parameter container
+     * @return the SQL snippet
+     */
+    public String exportPartialParameters(TableFilter filter, List<Value> container) {
+        if (type == AVG) {
+            // the parameters of the argument are added for SUM and COUNT
+            String sum = StringUtils.enclose(on.exportParameters(filter, container));
+            String count = StringUtils.enclose(on.exportParameters(filter, container));
+            return "SUM" + sum + ", COUNT" + count;
+        }
+        return exportParameters(filter, container);
+    }
+
+    /**
+     * Get the data types of the partial aggregates of this aggregate.
+     *
+     * @return the data types
+     */
+    public int[] getPartialTypes() {
+        switch (type) {
+            case COUNT_ALL:
+            case COUNT:
+                return new int[] { Value.LONG };
+            case AVG:
+                return new int[] { DataType.getAddProofType(dataType), Value.LONG };
+            case SUM:
+            case MIN:
+            case MAX:
+                return new int[] { dataType };
+            default:
+                throw DbException.throwInternalError("type=" + type);
+        }
+    }
+
+    /**
+     * Merge the partial aggregates of a table node into the data of the
+     * current group.
+     *
+     * @param session the session
+     * @param row the row the table node returned
+     * @param index the index of the first partial aggregate in the row
+     */
+    public void mergeAggregate(Session session, Value[] row, int index) {
+        HashMap<Expression, Object> group = select.getCurrentGroup();
+        if (group == null) {
+            throw DbException.throwInternalError();
+        }
+        AggregateData data = (AggregateData) group.get(this);
+        if (data == null) {
+            data = AggregateData.create(type);
+            group.put(this, data);
+        }
+        Value v = row[index];
+        long count = 0;
+        if (type == AVG) {
+            Value c = row[index + 1];
+            count = c == ValueNull.INSTANCE ? 0 : c.getLong();
+        }
+        data.merge(session.getDatabase(), dataType, v, count);
+    }
+
+    /**
+     * Merge the partial aggregates of a row into the partial aggregates of
+     * another row, without creating the aggregate data.
+     *
+     * @param session the session
+     * @param target the row to merge into
+     * @param row the row the table node returned
+     * @param index the index of the first partial aggregate in the rows
+     */
+    public void mergePartial(Session session, Value[] target, Value[] row, int index) {
+        switch (type) {
+            case AVG:
+                target[index + 1] = addPartial(target[index + 1], row[index + 1]);
+                target[index] = addPartial(target[index], row[index]);
+                break;
+            case COUNT_ALL:
+            case COUNT:
+            case SUM:
+                target[index] = addPartial(target[index], row[index]);
+                break;
+            case MIN:
+            case MAX: {
+                Value a = target[index], b = row[index];
+                if (b == ValueNull.INSTANCE) {
+                    break;
+                }
+                if (a == ValueNull.INSTANCE) {
+                    target[index] = b;
+                    break;
+                }
+                int comp = session.getDatabase().compare(b, a);
+                if (type == MIN ? comp < 0 : comp > 0) {
+                    target[index] = b;
+                }
+                break;
+            }
+            default:
+                throw DbException.throwInternalError("type=" + type);
+        }
+    }
+
+    private static Value addPartial(Value a, Value b) {
+        if (b == ValueNull.INSTANCE) {
+            return a;
+        }
+        if (a == ValueNull.INSTANCE) {
+            return b;
+        }
+        return a.add(b.convertTo(a.getType()));
+    }
+
     @Override
     public Value getValue(Session session) {
         HashMap<Expression, Object> group = select.getCurrentGroup();
@@ -534,6 +651,26 @@ public class Aggregate extends Expression {
 
     @Override
     public boolean isEverything(ExpressionVisitor visitor) {
+        if (visitor.getType() == ExpressionVisitor.PARTIAL_AGGREGATE) {
+            if (visitor.getQueryLevel() > 0 || distinct) {
+                return false;
+            }
+            switch (type) {
+                case COUNT_ALL:
+                case COUNT:
+                case SUM:
+                case MIN:
+                case MAX:
+                case AVG:
+                    if (on != null && !on.isEverything(ExpressionVisitor.DETERMINISTIC_VISITOR)) {
+                        return false;
+                    }
+                    visitor.addAggregate(this);
+                    return true;
+                default:
+                    return false;
+            }
+        }
         if (visitor.getType() == ExpressionVisitor.OPTIMIZABLE_MIN_MAX_COUNT_ALL) {
             switch (type) {
                 case COUNT:
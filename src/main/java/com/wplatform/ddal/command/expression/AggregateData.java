@@ -16,6 +16,7 @@
 package com.wplatform.ddal.command.expression;
 
 import com.wplatform.ddal.engine.Database;
+import com.wplatform.ddal.message.DbException;
 import com.wplatform.ddal.value.Value;
 
 /**
@@ -64,4 +65,16 @@ abstract class AggregateData {
      * @return the value
      */
     abstract Value getValue(Database database, int dataType, boolean distinct);
+
+    /**
+     * Merge a partial aggregate a table node has calculated.
+     *
+     * @param database the database
+     * @param dataType the datatype of the computed result
+     * @param v        the partial value
+     * @param count    the number of values of the partial value (AVG only)
+     */
+    void merge(Database database, int dataType, Value v, long count) {
+        throw DbException.throwInternalError();
+    }
 }
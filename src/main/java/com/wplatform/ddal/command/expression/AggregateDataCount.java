@@ -56,4 +56,11 @@ class AggregateDataCount extends AggregateData {
         return v.convertTo(dataType);
     }
 
+    @Override
+    void merge(Database database, int dataType, Value v, long count) {
+        if (v != ValueNull.INSTANCE) {
+            this.count += v.getLong();
+        }
+    }
+
 }
@@ -44,4 +44,11 @@ class AggregateDataCountAll extends AggregateData {
         return v == null ? ValueNull.INSTANCE : v.convertTo(dataType);
     }
 
+    @Override
+    void merge(Database database, int dataType, Value v, long count) {
+        if (v != ValueNull.INSTANCE) {
+            this.count += v.getLong();
+        }
+    }
+
 }
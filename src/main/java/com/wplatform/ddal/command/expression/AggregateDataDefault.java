@@ -128,6 +128,31 @@ class AggregateDataDefault extends AggregateData {
         }
     }
 
+    @Override
+    void merge(Database database, int dataType, Value v, long count) {
+        if (v == ValueNull.INSTANCE) {
+            return;
+        }
+        switch (aggregateType) {
+            case Aggregate.SUM:
+            case Aggregate.MIN:
+            case Aggregate.MAX:
+                add(database, dataType, false, v);
+                break;
+            case Aggregate.AVG:
+                if (value == null) {
+                    value = v.convertTo(DataType.getAddProofType(dataType));
+                } else {
+                    v = v.convertTo(value.getType());
+                    value = value.add(v);
+                }
+                this.count += count;
+                break;
+            default:
+                DbException.throwInternalError("type=" + aggregateType);
+        }
+    }
+
     @Override
     Value getValue(Database database, int dataType, boolean distinct) {
         if (distinct) {
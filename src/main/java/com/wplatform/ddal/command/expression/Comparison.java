@@ -569,6 +569,15 @@ public class Comparison extends Condition {
         return getLeft ? this.left : right;
     }
 
+    /**
+     * Get the comparison type.
+     *
+     * @return the type, for example {@link #EQUAL}
+     */
+    public int getCompareType() {
+        return compareType;
+    }
+
 
     @Override
     public String exportParameters(TableFilter filter, List<Value> container) {
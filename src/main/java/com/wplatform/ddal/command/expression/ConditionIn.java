@@ -220,11 +220,34 @@ public class ConditionIn extends Condition {
     }
 
 
+    /**
+     * Get the expression before IN.
+     *
+     * @return the left expression
+     */
+    public Expression getLeft() {
+        return left;
+    }
+
+    /**
+     * Get the value list.
+     *
+     * @return the values
+     */
+    public List<Expression> getValueList() {
+        return valueList;
+    }
+
     @Override
     public String exportParameters(TableFilter filter, List<Value> container) {
+        List<Expression> values = filter == null ? valueList : filter.getNodeInList(this, valueList);
+        if (values.isEmpty()) {
+            // no value of the list is routed to the table node
+            return "1 = 0";
+        }
         StatementBuilder buff = new StatementBuilder("(");
         buff.append(left.exportParameters(filter, container)).append(" IN(");
-        for (Expression e : valueList) {
+        for (Expression e : values) {
             buff.appendExceptFirst(", ");
             buff.append(e.exportParameters(filter, container));
         }
@@ -147,6 +147,7 @@ public class ConditionInConstantSet extends Condition {
             case ExpressionVisitor.GET_DEPENDENCIES:
             case ExpressionVisitor.QUERY_COMPARABLE:
             case ExpressionVisitor.GET_COLUMNS:
+            case ExpressionVisitor.PARTIAL_AGGREGATE:
                 return true;
             default:
                 throw DbException.throwInternalError("type=" + visitor.getType());
@@ -179,11 +180,34 @@ public class ConditionInConstantSet extends Condition {
         return null;
     }
 
+    /**
+     * Get the expression before IN.
+     *
+     * @return the left expression
+     */
+    public Expression getLeft() {
+        return left;
+    }
+
+    /**
+     * Get the value list.
+     *
+     * @return the values
+     */
+    public List<Expression> getValueList() {
+        return valueList;
+    }
+
     @Override
     public String exportParameters(TableFilter filter, List<Value> container) {
+        List<Expression> values = filter == null ? valueList : filter.getNodeInList(this, valueList);
+        if (values.isEmpty()) {
+            // no value of the list is routed to the table node
+            return "1 = 0";
+        }
         StatementBuilder buff = new StatementBuilder("(");
         buff.append(left.exportParameters(filter, container)).append(" IN(");
-        for (Expression e : valueList) {
+        for (Expression e : values) {
             buff.appendExceptFirst(", ");
             buff.append(e.exportParameters(filter, container));
         }
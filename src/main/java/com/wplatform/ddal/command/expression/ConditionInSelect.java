@@ -15,6 +15,7 @@
  */
 package com.wplatform.ddal.command.expression;
 
+import java.util.Arrays;
 import java.util.List;
 
 import com.wplatform.ddal.command.dml.Query;
@@ -45,6 +46,9 @@ public class ConditionInSelect extends Condition {
     private int queryLevel;
 
     private LocalResult cachedResult;
+    private Value[] cachedParameters;
+    private Session cachedSession;
+    private int cachedStatementId;
 
     public ConditionInSelect(Database database, Expression left, Query query,
                              boolean all, int compareType) {
@@ -57,36 +61,33 @@ public class ConditionInSelect extends Condition {
 
     @Override
     public Value getValue(Session session) {
+        // not closed here, the next outer rows read the same result
         LocalResult rows = query(session);
-        try {
-            Value l = left.getValue(session);
-            if (rows.getRowCount() == 0) {
-                return ValueBoolean.get(all);
-            } else if (l == ValueNull.INSTANCE) {
-                return l;
-            }
-            if (!session.getDatabase().getSettings().optimizeInSelect) {
-                return getValueSlow(rows, l);
-            }
-            if (all || (compareType != Comparison.EQUAL &&
-                    compareType != Comparison.EQUAL_NULL_SAFE)) {
-                return getValueSlow(rows, l);
-            }
-            int dataType = rows.getColumnType(0);
-            if (dataType == Value.NULL) {
-                return ValueBoolean.get(false);
-            }
-            l = l.convertTo(dataType);
-            if (rows.containsDistinct(new Value[]{l})) {
-                return ValueBoolean.get(true);
-            }
-            if (rows.containsDistinct(new Value[]{ValueNull.INSTANCE})) {
-                return ValueNull.INSTANCE;
-            }
+        Value l = left.getValue(session);
+        if (rows.getRowCount() == 0) {
+            return ValueBoolean.get(all);
+        } else if (l == ValueNull.INSTANCE) {
+            return l;
+        }
+        if (!session.getDatabase().getSettings().optimizeInSelect) {
+            return getValueSlow(rows, l);
+        }
+        if (all || (compareType != Comparison.EQUAL &&
+                compareType != Comparison.EQUAL_NULL_SAFE)) {
+            return getValueSlow(rows, l);
+        }
+        int dataType = rows.getColumnType(0);
+        if (dataType == Value.NULL) {
             return ValueBoolean.get(false);
-        } finally {
-            rows.close();
         }
+        l = l.convertTo(dataType);
+        if (rows.containsDistinct(new Value[]{l})) {
+            return ValueBoolean.get(true);
+        }
+        if (rows.containsDistinct(new Value[]{ValueNull.INSTANCE})) {
+            return ValueNull.INSTANCE;
+        }
+        return ValueBoolean.get(false);
     }
 
     private Value getValueSlow(LocalResult rows, Value l) {
@@ -186,6 +187,10 @@ public class ConditionInSelect extends Condition {
         if (!(left instanceof ExpressionColumn)) {
             return;
         }
+        if (all || compareType != Comparison.EQUAL) {
+            // the values of the subquery do not select the rows
+            return;
+        }
         ExpressionColumn l = (ExpressionColumn) left;
         if (filter != l.getTableFilter()) {
             return;
@@ -194,12 +199,26 @@ public class ConditionInSelect extends Condition {
         if (!query.isEverything(visitor)) {
             return;
         }
-        filter.addIndexCondition(IndexCondition.getInQuery(l, query));
+        filter.addIndexCondition(IndexCondition.getInQuery(l, this));
     }
 
 
     @Override
     public String exportParameters(TableFilter filter, List<Value> container) {
+        List<Expression> values = filter.getNodeInList(this, null);
+        if (values != null) {
+            // only the keys of the subquery that are routed to the table node
+            if (values.isEmpty()) {
+                return "1 = 0";
+            }
+            StatementBuilder buff = new StatementBuilder("(");
+            buff.append(left.exportParameters(filter, container)).append(" IN(");
+            for (Expression e : values) {
+                buff.appendExceptFirst(", ");
+                buff.append(e.exportParameters(filter, container));
+            }
+            return buff.append("))").toString();
+        }
         Session session = filter.getSession();
         LocalResult rows = query(session);
         if (rows.getRowCount() > 0) {
@@ -237,15 +256,82 @@ public class ConditionInSelect extends Condition {
     }
 
 
+    /**
+     * Get the distinct rows of the subquery. The subquery is evaluated once
+     * per statement execution and parameter values, the routing, the
+     * rewriting and the export of the condition read the same result. The
+     * next execution evaluates it again, as the data may have changed. The
+     * result must not be closed by the caller, it is closed when it is
+     * replaced or at the end of the statement.
+     *
+     * @param session the session
+     * @return the result, positioned before the first row
+     */
+    public LocalResult getQueryResult(Session session) {
+        return query(session);
+    }
+
     private LocalResult query(Session session) {
-        if (cachedResult == null) {
+        Value[] params = query.getParameterValues();
+        // the rows of a forward only result are read with the command and
+        // the statement id of the execution that created it
+        int statementId = session.getStatementId();
+        if (cachedResult == null || cachedResult.isClosed()
+                || session.getCurrentCommand() == null
+                || cachedSession != session || cachedStatementId != statementId
+                || !Arrays.equals(params, cachedParameters)) {
+            if (cachedResult != null) {
+                cachedResult.close();
+            }
             query.setSession(session);
             query.setDistinct(true);
             cachedResult = query.query(0);
+            // a result that was written to disk is deleted when the
+            // statement ends
+            session.addTemporaryResult(cachedResult);
+            cachedParameters = params;
+            cachedSession = session;
+            cachedStatementId = statementId;
         } else {
             cachedResult.reset();
         }
         return cachedResult;
     }
 
+    /**
+     * Get the expression before IN.
+     *
+     * @return the left expression
+     */
+    public Expression getLeft() {
+        return left;
+    }
+
+    /**
+     * Get the subquery.
+     *
+     * @return the query
+     */
+    public Query getQuery() {
+        return query;
+    }
+
+    /**
+     * Check if this is an ALL condition.
+     *
+     * @return true if the condition is true for all rows of the subquery
+     */
+    public boolean isAll() {
+        return all;
+    }
+
+    /**
+     * Get the comparison type, {@link Comparison#EQUAL} for IN.
+     *
+     * @return the compare type
+     */
+    public int getCompareType() {
+        return compareType;
+    }
+
 }
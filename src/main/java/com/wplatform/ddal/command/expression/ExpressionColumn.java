@@ -277,6 +277,7 @@ public class ExpressionColumn extends Expression {
     public boolean isEverything(ExpressionVisitor visitor) {
         switch (visitor.getType()) {
             case ExpressionVisitor.OPTIMIZABLE_MIN_MAX_COUNT_ALL:
+            case ExpressionVisitor.PARTIAL_AGGREGATE:
                 return false;
             case ExpressionVisitor.READONLY:
             case ExpressionVisitor.DETERMINISTIC:
@@ -337,7 +338,11 @@ public class ExpressionColumn extends Expression {
 
     @Override
     public String exportParameters(TableFilter filter, List<Value> container) {
-        if (getTableFilter() == filter) {
+        TableFilter f = getTableFilter();
+        if (f == filter) {
+            return getSQL();
+        }
+        if (filter.isExportJoinColumns() && f != null && f.getSelect() == filter.getSelect()) {
             return getSQL();
         }
         Value value = this.getValue(filter.getSession());
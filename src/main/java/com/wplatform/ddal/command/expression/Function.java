@@ -2450,6 +2450,7 @@ public class Function extends Expression implements FunctionCall {
             case ExpressionVisitor.DETERMINISTIC:
             case ExpressionVisitor.QUERY_COMPARABLE:
             case ExpressionVisitor.READONLY:
+            case ExpressionVisitor.PARTIAL_AGGREGATE:
                 return info.deterministic;
             case ExpressionVisitor.EVALUATABLE:
             case ExpressionVisitor.GET_DEPENDENCIES:
@@ -91,6 +91,7 @@ public class Rownum extends Expression {
             case ExpressionVisitor.OPTIMIZABLE_MIN_MAX_COUNT_ALL:
             case ExpressionVisitor.DETERMINISTIC:
             case ExpressionVisitor.INDEPENDENT:
+            case ExpressionVisitor.PARTIAL_AGGREGATE:
                 return false;
             case ExpressionVisitor.EVALUATABLE:
             case ExpressionVisitor.READONLY:
@@ -99,6 +99,7 @@ public class SequenceValue extends Expression {
         case ExpressionVisitor.READONLY:
         case ExpressionVisitor.INDEPENDENT:
         case ExpressionVisitor.QUERY_COMPARABLE:
+        case ExpressionVisitor.PARTIAL_AGGREGATE:
             return false;
         case ExpressionVisitor.GET_DEPENDENCIES:
             visitor.addDependency(sequence);
@@ -86,6 +86,7 @@ public class Variable extends Expression {
             case ExpressionVisitor.QUERY_COMPARABLE:
             case ExpressionVisitor.GET_DEPENDENCIES:
             case ExpressionVisitor.GET_COLUMNS:
+            case ExpressionVisitor.PARTIAL_AGGREGATE:
                 return true;
             case ExpressionVisitor.DETERMINISTIC:
                 return false;
@@ -27,6 +27,9 @@ public class ShardConfig implements Serializable {
 
     private String name;
     private List<ShardItem> shardItems;
+    private int maxPoolSize;
+    private int queueSize;
+    private String rejectPolicy;
 
     /**
      * @return the name
@@ -56,6 +59,48 @@ public class ShardConfig implements Serializable {
         this.shardItems = shardItems;
     }
 
+    /**
+     * @return the maximum number of jdbc worker threads, 0 for the default
+     */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * @param maxPoolSize the maxPoolSize to set
+     */
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    /**
+     * @return the capacity of the jdbc worker queue, 0 for the default
+     */
+    public int getQueueSize() {
+        return queueSize;
+    }
+
+    /**
+     * @param queueSize the queueSize to set
+     */
+    public void setQueueSize(int queueSize) {
+        this.queueSize = queueSize;
+    }
+
+    /**
+     * @return the policy if the jdbc worker pool is saturated
+     */
+    public String getRejectPolicy() {
+        return rejectPolicy;
+    }
+
+    /**
+     * @param rejectPolicy the rejectPolicy to set
+     */
+    public void setRejectPolicy(String rejectPolicy) {
+        this.rejectPolicy = rejectPolicy;
+    }
+
     @Override
     public int hashCode() {
         final int prime = 31;
@@ -36,6 +36,7 @@ public class TableConfig {
     private boolean validation;
     private TableNode[] shards;
     private TableRouter tableRouter;
+    private int insertBatchSize;
 
     /**
      * @return the name
@@ -121,6 +122,21 @@ public class TableConfig {
         this.tableRouter = tableRouter;
     }
 
+    /**
+     * @return the insertBatchSize, 0 if the database setting is used
+     */
+    public int getInsertBatchSize() {
+        return insertBatchSize;
+    }
+
+    /**
+     * @param insertBatchSize the number of rows of an INSERT that are
+     *            written to the shards at once
+     */
+    public void setInsertBatchSize(int insertBatchSize) {
+        this.insertBatchSize = insertBatchSize;
+    }
+
     /* (non-Javadoc)
      * @see java.lang.Object#hashCode() */
     @Override
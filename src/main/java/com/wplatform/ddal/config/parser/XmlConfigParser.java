@@ -104,6 +104,19 @@ public class XmlConfigParser {
                         "Error parsing ddal-config XML . Cause: element cluster.shard's name required.");
             }
             shardConfig.setName(name);
+            int maxPoolSize, queueSize;
+            try {
+                maxPoolSize = xNode.getIntAttribute("maxPoolSize", 0);
+                queueSize = xNode.getIntAttribute("queueSize", 0);
+            } catch (Exception e) {
+                throw new ParsingException("incorrect maxPoolSize or queueSize 'value for shard " + name);
+            }
+            if (maxPoolSize < 0 || queueSize < 0) {
+                throw new ParsingException("shard 's maxPoolSize and queueSize not be less than zero.");
+            }
+            shardConfig.setMaxPoolSize(maxPoolSize);
+            shardConfig.setQueueSize(queueSize);
+            shardConfig.setRejectPolicy(xNode.getStringAttribute("rejectPolicy", "abort"));
             List<XNode> children = xNode.evalNodes("member");
             List<ShardItem> shardItems = New.arrayList(children.size());
             for (XNode child : children) {
@@ -294,11 +307,13 @@ public class XmlConfigParser {
         String router = tableNode.getStringAttribute("router");
         String validation = tableNode.getStringAttribute("validation");
         String scanLevel = tableNode.getStringAttribute("scanLevel");
+        String insertBatchSize = tableNode.getStringAttribute("insertBatchSize");
 
         attributes.put("shard", shard);
         attributes.put("router", router);
         attributes.put("validation", validation);
         attributes.put("scanLevel", scanLevel);
+        attributes.put("insertBatchSize", insertBatchSize);
         return attributes;
     }
 
@@ -315,6 +330,7 @@ public class XmlConfigParser {
         boolean validation = scConfig.isValidation();
         String scanLevel = "none";
         String shard = null;
+        String insertBatchSize = null;
         if (template != null) {
             router = template.get("router");
             String s = template.get("validation");
@@ -323,6 +339,7 @@ public class XmlConfigParser {
             }
             scanLevel = template.get("scanLevel");
             shard = template.get("shard");
+            insertBatchSize = template.get("insertBatchSize");
         }
         String tableName = tableNode.getStringAttribute("name");
 
@@ -330,6 +347,7 @@ public class XmlConfigParser {
         validation = tableNode.getBooleanAttribute("validation", validation);
         scanLevel = tableNode.getStringAttribute("scanLevel", scanLevel);
         shard = tableNode.getStringAttribute("shard", shard);
+        insertBatchSize = tableNode.getStringAttribute("insertBatchSize", insertBatchSize);
         if (StringUtils.isNullOrEmpty(shard)) {
             shard = scConfig.getShard();
         }
@@ -348,6 +366,16 @@ public class XmlConfigParser {
         config.setName(tableName);
         config.setValidation(validation);
         setTableScanLevel(config, scanLevel);
+        if (!StringUtils.isNullOrEmpty(insertBatchSize)) {
+            try {
+                config.setInsertBatchSize(Integer.parseInt(insertBatchSize.trim()));
+            } catch (NumberFormatException e) {
+                throw new ParsingException("table attribute 'insertBatchSize' must be a number.");
+            }
+            if (config.getInsertBatchSize() < 1) {
+                throw new ParsingException("table attribute 'insertBatchSize' must be positive.");
+            }
+        }
 
         
         List<String> nodes = New.arrayList();
@@ -389,6 +417,8 @@ public class XmlConfigParser {
             RuleExpression expression = new RuleExpression(tableRouter);
             expression.setExpression(rawExpression.getExpression());
             expression.setRuleColumns(rawExpression.getRuleColumns());
+            expression.setFunction(rawExpression.getFunction());
+            expression.compile();
             tableRouter.setRuleExpression(expression);
             config.setTableRouter(tableRouter);
             config.setShards(null);
@@ -455,7 +485,7 @@ public class XmlConfigParser {
      * @throws IllegalAccessException
      * @throws InvocationTargetException
      */
-    private void setPropertyWithAutomaticType(Object ruleAlgorithm, PropertyDescriptor pd,
+    static void setPropertyWithAutomaticType(Object ruleAlgorithm, PropertyDescriptor pd,
                                               String propertyValue) throws IllegalAccessException, InvocationTargetException {
         Class<?> pType = pd.getPropertyType();
         if (pType == Short.class || pType == short.class) {
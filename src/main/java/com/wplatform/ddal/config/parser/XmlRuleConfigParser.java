@@ -22,6 +22,13 @@ import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
 import com.wplatform.ddal.config.Configuration;
+import com.wplatform.ddal.dispatch.function.AbstractPartitionFunction;
+import com.wplatform.ddal.dispatch.function.BucketPartitionFunction;
+import com.wplatform.ddal.dispatch.function.DatePartitionFunction;
+import com.wplatform.ddal.dispatch.function.HashPartitionFunction;
+import com.wplatform.ddal.dispatch.function.ModPartitionFunction;
+import com.wplatform.ddal.dispatch.function.PartitionFunction;
+import com.wplatform.ddal.dispatch.function.RangePartitionFunction;
 import com.wplatform.ddal.dispatch.rule.RuleColumn;
 import com.wplatform.ddal.dispatch.rule.RuleExpression;
 import com.wplatform.ddal.dispatch.rule.TableNode;
@@ -29,12 +36,28 @@ import com.wplatform.ddal.dispatch.rule.TableRouter;
 import com.wplatform.ddal.util.New;
 import com.wplatform.ddal.util.StringUtils;
 
+import java.beans.BeanInfo;
+import java.beans.Introspector;
+import java.beans.PropertyDescriptor;
 import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
 
 public class XmlRuleConfigParser {
 
+    private static final Map<String, String> PARTITION_FUNCTIONS = New.hashMap();
+
+    static {
+        PARTITION_FUNCTIONS.put("mod", ModPartitionFunction.class.getName());
+        PARTITION_FUNCTIONS.put("hash", HashPartitionFunction.class.getName());
+        PARTITION_FUNCTIONS.put("range", RangePartitionFunction.class.getName());
+        PARTITION_FUNCTIONS.put("date", DatePartitionFunction.class.getName());
+        PARTITION_FUNCTIONS.put("bucket", BucketPartitionFunction.class.getName());
+    }
+
     private XPathParser parser;
 
     private Configuration configuration;
@@ -105,6 +128,8 @@ public class XmlRuleConfigParser {
                             + "' has no sharding column.");
                 }
                 tableRouter.setRuleExpression(ruleExpr);
+            } else if ("partitionFunction".equals(xNode.getName())) {
+                tableRouter.setRuleExpression(parsePartitionFunction(tableRouter, xNode));
             }
         }
 
@@ -166,6 +191,50 @@ public class XmlRuleConfigParser {
         return rule;
     }
 
+    // 解析<partitionFunction>标签的内容
+    private RuleExpression parsePartitionFunction(TableRouter tableRouter, XNode xNode) {
+        String column = xNode.getStringAttribute("column");
+        String type = xNode.getStringAttribute("type");
+        if (StringUtils.isNullOrEmpty(column) || StringUtils.isNullOrEmpty(type)) {
+            throw new ParsingException("The partitionFunction of table router '" + tableRouter.getId()
+                    + "' requires the column and type attributes.");
+        }
+        String clazz = PARTITION_FUNCTIONS.get(type.trim());
+        if (clazz == null) {
+            clazz = type.trim();
+        }
+        Properties properties = xNode.getChildrenAsProperties();
+        PartitionFunction function;
+        try {
+            function = (PartitionFunction) Class.forName(clazz).newInstance();
+            BeanInfo beanInfo = Introspector.getBeanInfo(function.getClass());
+            for (PropertyDescriptor pd : beanInfo.getPropertyDescriptors()) {
+                String propertyValue = properties.getProperty(pd.getName());
+                if (propertyValue != null && pd.getWriteMethod() != null) {
+                    XmlConfigParser.setPropertyWithAutomaticType(function, pd, propertyValue);
+                }
+            }
+            if (function instanceof AbstractPartitionFunction) {
+                List<TableNode> partition = tableRouter.getPartition();
+                int count = partition == null ? 0 : partition.size();
+                ((AbstractPartitionFunction) function).setPartitionCount(count);
+            }
+            function.doInit();
+        } catch (InvocationTargetException e) {
+            throw new ParsingException("There was an error to construct PartitionFunction " + clazz
+                    + " Cause: " + e.getTargetException(), e);
+        } catch (Exception e) {
+            throw new ParsingException("There was an error to construct PartitionFunction " + clazz
+                    + " Cause: " + e, e);
+        }
+        List<RuleColumn> ruleColumns = New.arrayList(1);
+        ruleColumns.add(newRuleColumn(column.trim(), "true", null));
+        RuleExpression rule = new RuleExpression(null);
+        rule.setRuleColumns(ruleColumns);
+        rule.setFunction(function);
+        return rule;
+    }
+
     private void parsePartition(TableRouter tableRouter, List<XNode> list) {
         List<TableNode> tableNodes = New.arrayList();
         for (XNode xNode : list) {
@@ -19,6 +19,9 @@ import java.util.*;
 
 import com.wplatform.ddal.command.dml.Query;
 import com.wplatform.ddal.command.expression.Comparison;
+import com.wplatform.ddal.command.expression.ConditionIn;
+import com.wplatform.ddal.command.expression.ConditionInConstantSet;
+import com.wplatform.ddal.command.expression.ConditionInSelect;
 import com.wplatform.ddal.command.expression.Expression;
 import com.wplatform.ddal.command.expression.ExpressionColumn;
 import com.wplatform.ddal.command.expression.ExpressionVisitor;
@@ -76,6 +79,7 @@ public class IndexCondition {
     private final Expression expression;
     private List<Expression> expressionList;
     private Query expressionQuery;
+    private ConditionInSelect inSelect;
 
     /**
      * @param compareType the comparison type, see constants in
@@ -122,12 +126,13 @@ public class IndexCondition {
      * given parameters.
      *
      * @param column the column
-     * @param query  the select statement
+     * @param condition the IN(SELECT ...) condition
      * @return the index condition
      */
-    public static IndexCondition getInQuery(ExpressionColumn column, Query query) {
+    public static IndexCondition getInQuery(ExpressionColumn column, ConditionInSelect condition) {
         IndexCondition cond = new IndexCondition(Comparison.IN_QUERY, column, null);
-        cond.expressionQuery = query;
+        cond.expressionQuery = condition.getQuery();
+        cond.inSelect = condition;
         return cond;
     }
 
@@ -169,12 +174,14 @@ public class IndexCondition {
 
     /**
      * Get the current result of the expression. The rows may not be of the same
-     * type, therefore the rows may not be unique.
+     * type, therefore the rows may not be unique. The subquery is evaluated
+     * once, the result is shared with the condition.
      *
+     * @param session the session
      * @return the result
      */
-    public ResultInterface getCurrentResult() {
-        return expressionQuery.query(0);
+    public ResultInterface getCurrentResult(Session session) {
+        return inSelect.getQueryResult(session);
     }
 
     /**
@@ -327,6 +334,28 @@ public class IndexCondition {
         return column;
     }
 
+    /**
+     * Check if this index condition was created by an IN condition.
+     *
+     * @param condition the IN condition
+     * @return true if it was
+     */
+    public boolean isCreatedBy(Expression condition) {
+        if (inSelect != null) {
+            return inSelect == condition;
+        }
+        if (expressionList == null) {
+            return false;
+        }
+        if (condition instanceof ConditionIn) {
+            return ((ConditionIn) condition).getValueList() == expressionList;
+        }
+        if (condition instanceof ConditionInConstantSet) {
+            return ((ConditionInConstantSet) condition).getValueList() == expressionList;
+        }
+        return false;
+    }
+
     /**
      * Check if the expression can be evaluated.
      *
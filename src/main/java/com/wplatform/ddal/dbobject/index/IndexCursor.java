@@ -15,17 +15,36 @@
  */
 package com.wplatform.ddal.dbobject.index;
 
+import java.sql.ResultSet;
 import java.util.ArrayList;
+import java.util.List;
 
+import com.wplatform.ddal.command.Parser;
+import com.wplatform.ddal.command.dml.Select;
 import com.wplatform.ddal.command.expression.Expression;
 import com.wplatform.ddal.dbobject.table.Column;
 import com.wplatform.ddal.dbobject.table.IndexColumn;
 import com.wplatform.ddal.dbobject.table.Table;
 import com.wplatform.ddal.dbobject.table.TableFilter;
+import com.wplatform.ddal.dbobject.table.TableMate;
+import com.wplatform.ddal.dispatch.InListRewriter;
+import com.wplatform.ddal.dispatch.RoutingHandler;
+import com.wplatform.ddal.dispatch.rule.PartitionHints;
+import com.wplatform.ddal.dispatch.rule.RoutingResult;
+import com.wplatform.ddal.dispatch.rule.TableNode;
+import com.wplatform.ddal.engine.Database;
+import com.wplatform.ddal.engine.Mode;
 import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.excutor.JdbcQueryWorker;
+import com.wplatform.ddal.excutor.JdbcWorker;
 import com.wplatform.ddal.message.DbException;
 import com.wplatform.ddal.result.Row;
 import com.wplatform.ddal.result.SearchRow;
+import com.wplatform.ddal.result.SortOrder;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.util.StatementBuilder;
+import com.wplatform.ddal.util.StringUtils;
+import com.wplatform.ddal.value.Value;
 
 /**
  * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
@@ -39,7 +58,7 @@ public class IndexCursor implements Cursor {
     private IndexColumn[] indexColumns;
     private boolean alwaysFalse;
     private SearchRow start, end;
-    private Cursor cursor;
+    private ScatterGatherCursor cursor;
 
     public IndexCursor(TableFilter filter) {
         this.tableFilter = filter;
@@ -68,9 +87,143 @@ public class IndexCursor implements Cursor {
      * @param indexConditions the index conditions
      */
     public void find(Session s, ArrayList<IndexCondition> indexConditions) {
+        this.session = s;
+        close();
+        alwaysFalse = false;
+        for (IndexCondition condition : indexConditions) {
+            if (condition.isAlwaysFalse()) {
+                alwaysFalse = true;
+                return;
+            }
+        }
+        if (!(table instanceof TableMate)) {
+            return;
+        }
+        TableMate tableMate = (TableMate) table;
+        RoutingHandler routingHandler = s.getDatabase().getRoutingHandler();
+        RoutingResult result = PartitionHints.route(s, tableMate);
+        boolean hinted = result != null;
+        RoutingResult routed = tableFilter.takeRoutingResult();
+        if (!hinted) {
+            result = routed != null ? routed : routingHandler.doRoute(tableMate, s,
+                    tableFilter, tableFilter.getFilterCondition());
+        }
+        TableNode[] selectNodes = result.getSelectNodes();
+        List<JdbcWorker<ResultSet>> workers = New.arrayList(selectNodes.length);
+        InListRewriter rewriter = !hinted && selectNodes.length > 1 ?
+                tableFilter.getInListRewriter() : null;
+        try {
+            for (TableNode node : selectNodes) {
+                if (rewriter != null) {
+                    rewriter.apply(tableFilter, node);
+                }
+                ArrayList<Value> params = New.arrayList();
+                String sql = doTranslate(node, params);
+                int maxRows = Math.max(0, tableFilter.getNodeLimit());
+                workers.add(new JdbcQueryWorker(s, node.getShardName(), sql, params, maxRows));
+            }
+        } finally {
+            InListRewriter.reset(tableFilter);
+        }
+        Column[] columns = table.getColumns();
+        int[] types = new int[columns.length];
+        for (int i = 0; i < columns.length; i++) {
+            types[i] = columns[i].getType();
+        }
+        SortOrder sort = tableFilter.getMergeSortOrder();
+        if (sort != null && workers.size() > 1) {
+            cursor = new MergeSortCursor(s, types, workers, sort);
+        } else {
+            cursor = new ScatterGatherCursor(s, types, workers);
+        }
+    }
+
+    /**
+     * Build the query of the given table node. All columns of the table are
+     * selected, the filter condition of the table filter is pushed down and
+     * the columns of the outer tables are bound as parameters. If the table
+     * filter has a row limit, it is written in the syntax of the database
+     * mode.
+     *
+     * @param node the table node
+     * @param params the parameter container
+     * @return the SQL statement
+     */
+    private String doTranslate(TableNode node, List<Value> params) {
+        Database database = session.getDatabase();
+        Select select = tableFilter.getSelect();
+        boolean forUpdate = select != null && select.isForUpdate();
+        int limitSyntax = database.getMode().limitSyntax;
+        int limit = tableFilter.getNodeLimit();
+        if (limitSyntax == Mode.LIMIT_ROWNUM && forUpdate) {
+            limit = -1;
+        }
+        StatementBuilder buff = new StatementBuilder("SELECT ");
+        if (limit >= 0 && limitSyntax == Mode.LIMIT_TOP) {
+            buff.append("TOP ").append(limit).append(' ');
+        }
+        for (Column c : table.getColumns()) {
+            buff.appendExceptFirst(", ");
+            buff.append(Parser.quoteIdentifier(tableFilter.getTableAlias()));
+            buff.append('.').append(c.getSQL());
+        }
+        buff.append(" FROM ");
+        buff.append(database.identifier(node.getCompositeObjectName()));
+        buff.append(' ').append(Parser.quoteIdentifier(tableFilter.getTableAlias()));
         Expression filter = tableFilter.getFilterCondition();
-        if (filter == null) {
+        if (filter != null) {
+            String condition = filter.exportParameters(tableFilter, params);
+            buff.append(" WHERE ").append(StringUtils.unEnclose(condition));
+        }
+        SortOrder sort = tableFilter.getMergeSortOrder();
+        if (sort != null) {
+            Column[] columns = table.getColumns();
+            int[] columnIds = sort.getQueryColumnIndexes();
+            int[] sortTypes = sort.getSortTypes();
+            buff.append(" ORDER BY ");
+            buff.resetCount();
+            for (int i = 0; i < columnIds.length; i++) {
+                buff.appendExceptFirst(", ");
+                buff.append(Parser.quoteIdentifier(tableFilter.getTableAlias()));
+                buff.append('.').append(columns[columnIds[i]].getSQL());
+                if ((sortTypes[i] & SortOrder.DESCENDING) != 0) {
+                    buff.append(" DESC");
+                }
+                if (database.getMode().supportNullOrdering) {
+                    // the merge needs the shards to order NULL like SortOrder
+                    boolean nullsFirst = SortOrder.compareNull(true, sortTypes[i]) < 0;
+                    buff.append(nullsFirst ? " NULLS FIRST" : " NULLS LAST");
+                }
+            }
+        }
+        if (limit >= 0) {
+            switch (limitSyntax) {
+            case Mode.LIMIT_CLAUSE:
+                buff.append(" LIMIT ").append(limit);
+                break;
+            case Mode.LIMIT_FETCH_FIRST:
+                buff.append(" FETCH FIRST ").append(limit).append(" ROWS ONLY");
+                break;
+            case Mode.LIMIT_ROWNUM:
+                return "SELECT * FROM (" + buff.toString() + ") WHERE ROWNUM <= " + limit;
+            default:
+                break;
+            }
+        }
+        if (forUpdate) {
+            buff.append(" FOR UPDATE");
+        }
+        return buff.toString();
+    }
 
+    /**
+     * Release the JDBC resources of the last search, statements still
+     * running on other table nodes are canceled.
+     */
+    public void close() {
+        if (cursor != null) {
+            cursor.close();
+            cursor = null;
         }
     }
 
@@ -84,6 +237,9 @@ public class IndexCursor implements Cursor {
 
     @Override
     public SearchRow getSearchRow() {
+        if (cursor == null) {
+            return null;
+        }
         return cursor.getSearchRow();
     }
 
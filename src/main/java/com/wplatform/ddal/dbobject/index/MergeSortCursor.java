@@ -0,0 +1,129 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dbobject.index;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.excutor.JdbcWorker;
+import com.wplatform.ddal.message.DbException;
+import com.wplatform.ddal.result.SortOrder;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.value.Value;
+
+/**
+ * A cursor that merges the ordered result sets of all routed table nodes.
+ * Every table node sorts its own rows, the cursor keeps the head row of each
+ * result set in a heap and returns the smallest one, so only one row per
+ * table node is held in memory.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public class MergeSortCursor extends ScatterGatherCursor {
+
+    private final PriorityQueue<Source> heap;
+    private final ArrayList<JdbcWorker<ResultSet>> opened;
+    private Source last;
+    private boolean merging;
+
+    /**
+     * Create a new merge cursor.
+     *
+     * @param session the session
+     * @param types the data types of the result set columns
+     * @param workers the workers of the table nodes
+     * @param sort the sort order of the rows, the column indexes are the
+     *            result set column indexes (0, 1,..)
+     */
+    public MergeSortCursor(Session session, int[] types,
+            List<JdbcWorker<ResultSet>> workers, final SortOrder sort) {
+        super(session, types, workers);
+        int size = Math.max(1, workers.size());
+        this.opened = New.arrayList(size);
+        this.heap = new PriorityQueue<Source>(size, new Comparator<Source>() {
+            @Override
+            public int compare(Source a, Source b) {
+                return sort.compare(a.current, b.current);
+            }
+        });
+    }
+
+    @Override
+    public boolean next() {
+        try {
+            if (!merging) {
+                merging = true;
+                start();
+                JdbcWorker<ResultSet> worker;
+                while ((worker = takeWorker()) != null) {
+                    opened.add(worker);
+                    Source s = new Source(worker.getRuntimeResultSet());
+                    if (s.advance()) {
+                        heap.add(s);
+                    }
+                }
+            } else if (last != null && last.advance()) {
+                heap.add(last);
+            }
+            last = heap.poll();
+            setCurrent(last == null ? null : last.current);
+            return last != null;
+        } catch (SQLException e) {
+            close();
+            throw DbException.convert(e);
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        for (JdbcWorker<ResultSet> worker : opened) {
+            worker.cancel();
+            worker.closeResource();
+        }
+        opened.clear();
+        heap.clear();
+        last = null;
+    }
+
+    /**
+     * The result set of one table node with its head row.
+     */
+    private class Source {
+
+        private final ResultSet rs;
+        private Value[] current;
+
+        Source(ResultSet rs) {
+            this.rs = rs;
+        }
+
+        boolean advance() throws SQLException {
+            if (rs.next()) {
+                current = readRow(rs);
+                return true;
+            }
+            current = null;
+            return false;
+        }
+    }
+
+}
@@ -0,0 +1,239 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dbobject.index;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.excutor.JdbcWorker;
+import com.wplatform.ddal.message.DbException;
+import com.wplatform.ddal.result.Row;
+import com.wplatform.ddal.result.SearchRow;
+import com.wplatform.ddal.shards.JdbcExecutor;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.value.DataType;
+import com.wplatform.ddal.value.Value;
+
+/**
+ * A cursor that fans a query out to all routed table nodes at once and
+ * returns the rows of each node as soon as its result set is available.
+ * A single node is queried in the calling thread.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public class ScatterGatherCursor implements Cursor {
+
+    protected final Session session;
+    protected final int[] types;
+    private final List<JdbcWorker<ResultSet>> workers;
+    private final Map<Future<ResultSet>, JdbcWorker<ResultSet>> pending;
+    private BlockingQueue<Future<ResultSet>> completed;
+    private JdbcWorker<ResultSet> currentWorker;
+    private ResultSet current;
+    private int taken;
+    private Value[] values;
+    private Row row;
+    private boolean started;
+
+    /**
+     * Create a new cursor.
+     *
+     * @param session the session
+     * @param types the data types of the result set columns
+     * @param workers the workers of the table nodes
+     */
+    public ScatterGatherCursor(Session session, int[] types, List<JdbcWorker<ResultSet>> workers) {
+        this.session = session;
+        this.types = types;
+        this.workers = workers;
+        this.pending = New.hashMap(workers.size());
+    }
+
+    /**
+     * Submit the workers of all routed table nodes to the thread pools of
+     * their shards. The futures of all pools complete into the same queue.
+     */
+    protected void start() {
+        started = true;
+        if (workers.size() <= 1) {
+            return;
+        }
+        JdbcExecutor jdbcExecutor = session.getDataSourceRepository().getJdbcExecutor();
+        completed = new LinkedBlockingQueue<Future<ResultSet>>();
+        try {
+            for (JdbcWorker<ResultSet> worker : workers) {
+                ExecutorCompletionService<ResultSet> completionService =
+                        new ExecutorCompletionService<ResultSet>(
+                                jdbcExecutor.getExecutor(worker.getShardName()), completed);
+                Future<ResultSet> future = completionService.submit(worker);
+                pending.put(future, worker);
+            }
+        } catch (RejectedExecutionException e) {
+            close();
+            throw DbException.convert(e);
+        }
+    }
+
+    /**
+     * Wait for the next table node that has answered.
+     *
+     * @return the worker of the table node, or null if all table nodes are
+     *         consumed
+     */
+    protected JdbcWorker<ResultSet> takeWorker() {
+        if (completed == null) {
+            if (taken >= workers.size()) {
+                return null;
+            }
+            JdbcWorker<ResultSet> worker = workers.get(taken++);
+            try {
+                worker.doWork();
+            } catch (RuntimeException e) {
+                worker.closeResource();
+                throw e;
+            }
+            return worker;
+        }
+        if (pending.isEmpty()) {
+            return null;
+        }
+        JdbcWorker<ResultSet> worker = null;
+        try {
+            Future<ResultSet> future = completed.take();
+            worker = pending.remove(future);
+            future.get();
+            return worker;
+        } catch (InterruptedException e) {
+            close();
+            throw DbException.convert(e);
+        } catch (ExecutionException e) {
+            if (worker != null) {
+                worker.closeResource();
+            }
+            close();
+            throw DbException.convert(e.getCause());
+        }
+    }
+
+    /**
+     * Read the current row of the result set.
+     *
+     * @param rs the result set
+     * @return the values of the row
+     */
+    protected Value[] readRow(ResultSet rs) throws SQLException {
+        int columnCount = types.length;
+        Value[] v = new Value[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            v[i] = DataType.readValue(session, rs, i + 1, types[i]);
+        }
+        return v;
+    }
+
+    /**
+     * Set the values of the current row.
+     *
+     * @param v the values, or null if there are no more rows
+     */
+    protected void setCurrent(Value[] v) {
+        values = v;
+        row = null;
+    }
+
+    private void releaseCurrent(boolean cancel) {
+        if (currentWorker != null) {
+            if (cancel) {
+                currentWorker.cancel();
+            }
+            currentWorker.closeResource();
+            currentWorker = null;
+        }
+        current = null;
+    }
+
+    /**
+     * Cancel the statements still running and release all JDBC resources.
+     * The statement of a result set that is not read to the end is canceled
+     * as well, so the driver does not read the remaining rows on close.
+     */
+    public void close() {
+        releaseCurrent(true);
+        for (Map.Entry<Future<ResultSet>, JdbcWorker<ResultSet>> entry : pending.entrySet()) {
+            JdbcWorker<ResultSet> worker = entry.getValue();
+            entry.getKey().cancel(false);
+            worker.cancel();
+            worker.closeResource();
+        }
+        pending.clear();
+        setCurrent(null);
+    }
+
+    @Override
+    public Row get() {
+        if (values == null) {
+            return null;
+        }
+        if (row == null) {
+            row = new Row(values, Row.MEMORY_CALCULATE);
+        }
+        return row;
+    }
+
+    @Override
+    public SearchRow getSearchRow() {
+        return get();
+    }
+
+    @Override
+    public boolean next() {
+        if (!started) {
+            start();
+        }
+        try {
+            while (true) {
+                if (current != null && current.next()) {
+                    setCurrent(readRow(current));
+                    return true;
+                }
+                releaseCurrent(false);
+                currentWorker = takeWorker();
+                if (currentWorker == null) {
+                    setCurrent(null);
+                    return false;
+                }
+                current = currentWorker.getRuntimeResultSet();
+            }
+        } catch (SQLException e) {
+            close();
+            throw DbException.convert(e);
+        }
+    }
+
+    @Override
+    public boolean previous() {
+        throw DbException.throwInternalError();
+    }
+
+}
@@ -16,6 +16,8 @@
 package com.wplatform.ddal.dbobject.table;
 
 import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 import com.wplatform.ddal.command.Parser;
 import com.wplatform.ddal.command.dml.Select;
@@ -27,6 +29,8 @@ import com.wplatform.ddal.dbobject.Right;
 import com.wplatform.ddal.dbobject.index.Index;
 import com.wplatform.ddal.dbobject.index.IndexCondition;
 import com.wplatform.ddal.dbobject.index.IndexCursor;
+import com.wplatform.ddal.dispatch.InListRewriter;
+import com.wplatform.ddal.dispatch.rule.RoutingResult;
 import com.wplatform.ddal.engine.Session;
 import com.wplatform.ddal.engine.SysProperties;
 import com.wplatform.ddal.message.DbException;
@@ -100,6 +104,35 @@ public class TableFilter implements ColumnResolver {
     private ArrayList<Column> naturalJoinColumns;
     private boolean foundOne;
     private Expression fullCondition;
+    /**
+     * The order the table nodes return the rows in (the column indexes are
+     * the column ids of the table), or null.
+     */
+    private SortOrder mergeSortOrder;
+    /**
+     * The maximum number of rows each table node needs to return, or -1.
+     */
+    private int nodeLimit = -1;
+    /**
+     * The routing result of the next search, if the table was already
+     * routed before the query started, or null.
+     */
+    private RoutingResult routingResult;
+    /**
+     * Whether the joined tables of the select are exported in the same
+     * statement, so their columns are not replaced by parameters.
+     */
+    private boolean exportJoinColumns;
+    /**
+     * The values of the IN lists on the sharding key that are routed to the
+     * table node the filter condition is exported for, or null.
+     */
+    private Map<Expression, List<Expression>> nodeInLists;
+    /**
+     * The values of the IN lists on the sharding key grouped by table node,
+     * as they were routed by the last routing of the table, or null.
+     */
+    private InListRewriter inListRewriter;
 
     /**
      * Create a new table filter object.
@@ -314,6 +347,20 @@ public class TableFilter implements ColumnResolver {
         foundOne = false;
     }
 
+    /**
+     * Close the cursors of this and all joined tables, the statements still
+     * running on the table nodes are canceled.
+     */
+    public void close() {
+        if (nestedJoin != null) {
+            nestedJoin.close();
+        }
+        if (join != null) {
+            join.close();
+        }
+        cursor.close();
+    }
+
     /**
      * Check if there are more rows to read.
      *
@@ -742,6 +789,109 @@ public class TableFilter implements ColumnResolver {
         cursor.setIndex(index);
     }
 
+    public SortOrder getMergeSortOrder() {
+        return mergeSortOrder;
+    }
+
+    /**
+     * Let the table nodes sort the rows and merge the sorted results.
+     *
+     * @param mergeSortOrder the sort order over the table columns
+     */
+    public void setMergeSortOrder(SortOrder mergeSortOrder) {
+        this.mergeSortOrder = mergeSortOrder;
+    }
+
+    public boolean isExportJoinColumns() {
+        return exportJoinColumns;
+    }
+
+    public void setExportJoinColumns(boolean exportJoinColumns) {
+        this.exportJoinColumns = exportJoinColumns;
+    }
+
+    public int getNodeLimit() {
+        return nodeLimit;
+    }
+
+    /**
+     * Limit the number of rows each table node returns.
+     *
+     * @param nodeLimit the row limit, or -1 for no limit
+     */
+    public void setNodeLimit(int nodeLimit) {
+        this.nodeLimit = nodeLimit;
+    }
+
+    /**
+     * Get the routing result that was calculated before the query started,
+     * and forget it, so it is only used for one search.
+     *
+     * @return the routing result, or null
+     */
+    public RoutingResult takeRoutingResult() {
+        RoutingResult result = routingResult;
+        routingResult = null;
+        return result;
+    }
+
+    /**
+     * Keep the routing result of the table, so the next search does not
+     * route the table again.
+     *
+     * @param routingResult the routing result, or null
+     */
+    public void setRoutingResult(RoutingResult routingResult) {
+        this.routingResult = routingResult;
+    }
+
+    /**
+     * Get the values of an IN condition that are exported for the current
+     * table node.
+     *
+     * @param condition the IN condition
+     * @param valueList all values of the condition
+     * @return the values routed to the table node
+     */
+    public List<Expression> getNodeInList(Expression condition, List<Expression> valueList) {
+        if (nodeInLists == null) {
+            return valueList;
+        }
+        List<Expression> list = nodeInLists.get(condition);
+        return list == null ? valueList : list;
+    }
+
+    /**
+     * Only export the values of the IN lists that are routed to a table
+     * node.
+     *
+     * @param nodeInLists the values of each IN condition, or null to export
+     *            all values
+     */
+    public void setNodeInLists(Map<Expression, List<Expression>> nodeInLists) {
+        this.nodeInLists = nodeInLists;
+    }
+
+    /**
+     * Get the IN list values grouped by table node of the last routing of
+     * the table.
+     *
+     * @return the rewriter, or null if there are no such IN lists
+     */
+    public InListRewriter getInListRewriter() {
+        return inListRewriter;
+    }
+
+    /**
+     * Keep the IN list values grouped by table node, so they are not routed
+     * again when the condition is exported for each table node.
+     *
+     * @param inListRewriter the rewriter, or null
+     */
+    public void setInListRewriter(InListRewriter inListRewriter) {
+        this.inListRewriter = inListRewriter;
+    }
+
     public boolean isUsed() {
         return used;
     }
@@ -35,6 +35,7 @@ import com.wplatform.ddal.dbobject.index.Index;
 import com.wplatform.ddal.dbobject.index.IndexMate;
 import com.wplatform.ddal.dbobject.index.IndexType;
 import com.wplatform.ddal.dbobject.schema.Schema;
+import com.wplatform.ddal.dispatch.RoutingPlan;
 import com.wplatform.ddal.dispatch.rule.RoutingResult;
 import com.wplatform.ddal.dispatch.rule.RuleColumn;
 import com.wplatform.ddal.dispatch.rule.TableNode;
@@ -66,8 +67,10 @@ public class TableMate extends Table {
     private Index scanIndex;
 
     private TableRouter tableRouter;
+    private volatile RoutingPlan routingPlan;
     private TableNode[] shards;
     private int scanLevel;
+    private int insertBatchSize;
 
     private DbException initException;
     private boolean storesLowerCase;
@@ -102,6 +105,21 @@ public class TableMate extends Table {
      */
     public void setTableRouter(TableRouter tableRouter) {
         this.tableRouter = tableRouter;
+        this.routingPlan = null;
+    }
+
+    /**
+     * @return the routing plan, or null if it is not built yet
+     */
+    public RoutingPlan getRoutingPlan() {
+        return routingPlan;
+    }
+
+    /**
+     * @param routingPlan the routing plan to set
+     */
+    public void setRoutingPlan(RoutingPlan routingPlan) {
+        this.routingPlan = routingPlan;
     }
 
     /**
@@ -118,6 +136,21 @@ public class TableMate extends Table {
         this.scanLevel = scanLevel;
     }
 
+    /**
+     * @return the number of rows of an INSERT that are written to the
+     *         shards at once, 0 if the database setting is used
+     */
+    public int getInsertBatchSize() {
+        return insertBatchSize;
+    }
+
+    /**
+     * @param insertBatchSize the insertBatchSize to set
+     */
+    public void setInsertBatchSize(int insertBatchSize) {
+        this.insertBatchSize = insertBatchSize;
+    }
+
     /**
      * @return the shards
      */
@@ -0,0 +1,322 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dispatch;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import com.wplatform.ddal.command.expression.Comparison;
+import com.wplatform.ddal.command.expression.ConditionAndOr;
+import com.wplatform.ddal.command.expression.ConditionIn;
+import com.wplatform.ddal.command.expression.ConditionInConstantSet;
+import com.wplatform.ddal.command.expression.ConditionInSelect;
+import com.wplatform.ddal.command.expression.Expression;
+import com.wplatform.ddal.command.expression.ExpressionColumn;
+import com.wplatform.ddal.command.expression.ExpressionVisitor;
+import com.wplatform.ddal.command.expression.ValueExpression;
+import com.wplatform.ddal.dbobject.index.IndexCondition;
+import com.wplatform.ddal.dbobject.table.Column;
+import com.wplatform.ddal.dbobject.table.TableFilter;
+import com.wplatform.ddal.dbobject.table.TableMate;
+import com.wplatform.ddal.dispatch.rule.RoutingResult;
+import com.wplatform.ddal.dispatch.rule.RuleEvaluateException;
+import com.wplatform.ddal.dispatch.rule.TableNode;
+import com.wplatform.ddal.dispatch.rule.TableRouter;
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.message.DbException;
+import com.wplatform.ddal.result.LocalResult;
+import com.wplatform.ddal.result.SearchRow;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.value.Value;
+import com.wplatform.ddal.value.ValueNull;
+
+/**
+ * Splits the IN lists on the sharding key of a table by table node. For a
+ * condition like <code>ORDER_ID IN(...)</code> each table node only receives
+ * the values that are routed to it, instead of the whole list. A condition
+ * like <code>ORDER_ID IN(SELECT ...)</code> is rewritten as a semi join: the
+ * keys of the subquery are read once and each table node receives an IN list
+ * of its own keys, as long as no table node has more than
+ * <code>SEMI_JOIN_MAX_NODE_KEYS</code> keys. Only the IN conditions of a table with a single rule
+ * column that are part of the top level AND conditions are rewritten.
+ * <p>
+ * The values are routed once, when the table is routed. The table nodes of
+ * the rewritten conditions are then taken from the rewriter.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public final class InListRewriter {
+
+    private final List<Expression> inConditions;
+    private final Map<TableNode, Map<Expression, List<Expression>>> nodeInLists;
+
+    private InListRewriter(List<Expression> inConditions,
+            Map<TableNode, Map<Expression, List<Expression>>> nodeInLists) {
+        this.inConditions = inConditions;
+        this.nodeInLists = nodeInLists;
+    }
+
+    /**
+     * Route the values of the IN lists on the sharding key one by one.
+     *
+     * @param handler the routing handler
+     * @param session the session
+     * @param filter the table filter
+     * @param condition the condition that is exported
+     * @return the rewriter, or null if there is nothing to rewrite
+     */
+    public static InListRewriter create(RoutingHandler handler, Session session,
+            TableFilter filter, Expression condition) {
+        if (condition == null || !(filter.getTable() instanceof TableMate)) {
+            return null;
+        }
+        TableMate table = (TableMate) filter.getTable();
+        TableRouter tr = table.getTableRouter();
+        if (tr == null || tr.getPartition().size() < 2) {
+            return null;
+        }
+        RoutingPlan plan = RoutingPlan.get(table);
+        if (plan.getRuleColumns().size() != 1 || plan.getRuleColumnId(0) < 0) {
+            return null;
+        }
+        Column column = table.getColumns()[plan.getRuleColumnId(0)];
+        ArrayList<Expression> inConditions = New.arrayList();
+        addInConditions(condition, filter, column, inConditions);
+        if (inConditions.isEmpty()) {
+            return null;
+        }
+        Map<TableNode, Map<Expression, List<Expression>>> nodeInLists = New.hashMap();
+        // unlike an IN list, the keys of a subquery are not bounded by the
+        // size of the statement
+        int maxNodeKeys = session.getDatabase().getSettings().semiJoinMaxNodeKeys;
+        try {
+            for (Expression in : inConditions) {
+                if (in instanceof ConditionInSelect) {
+                    LocalResult rows = ((ConditionInSelect) in).getQueryResult(session);
+                    try {
+                        while (rows.next()) {
+                            Value v = rows.currentRow()[0];
+                            if (!addValue(handler, table, column, nodeInLists, inConditions,
+                                    in, v, ValueExpression.get(v), maxNodeKeys)) {
+                                return null;
+                            }
+                        }
+                    } finally {
+                        rows.reset();
+                    }
+                    continue;
+                }
+                for (Expression e : getValueList(in)) {
+                    if (!addValue(handler, table, column, nodeInLists, inConditions,
+                            in, e.getValue(session), e, Integer.MAX_VALUE)) {
+                        return null;
+                    }
+                }
+            }
+        } catch (DbException e) {
+            // the value can not be routed, the shards report the error
+            return null;
+        } catch (TableRoutingException e) {
+            return null;
+        } catch (RuleEvaluateException e) {
+            return null;
+        }
+        return new InListRewriter(inConditions, nodeInLists);
+    }
+
+    private static boolean addValue(RoutingHandler handler, TableMate table, Column column,
+            Map<TableNode, Map<Expression, List<Expression>>> nodeInLists,
+            List<Expression> inConditions, Expression in, Value v, Expression e,
+            int maxNodeValues) {
+        if (v == ValueNull.INSTANCE) {
+            // NULL is never equal to the key
+            return true;
+        }
+        SearchRow row = table.getTemplateRow();
+        row.setValue(column.getColumnId(), column.convert(v));
+        RoutingResult rr = handler.doRoute(table, row);
+        if (rr.isMultipleNode()) {
+            return false;
+        }
+        List<Expression> values = getNodeInLists(nodeInLists, inConditions,
+                rr.getSingleResult()).get(in);
+        values.add(e);
+        return values.size() <= maxNodeValues;
+    }
+
+    private static void addInConditions(Expression condition, TableFilter filter,
+            Column column, List<Expression> inConditions) {
+        if (condition instanceof ConditionAndOr) {
+            ConditionAndOr and = (ConditionAndOr) condition;
+            if (and.getAndOrType() == ConditionAndOr.AND) {
+                addInConditions(and.getExpression(true), filter, column, inConditions);
+                addInConditions(and.getExpression(false), filter, column, inConditions);
+            }
+            return;
+        }
+        Expression left;
+        if (condition instanceof ConditionIn) {
+            left = ((ConditionIn) condition).getLeft();
+        } else if (condition instanceof ConditionInConstantSet) {
+            left = ((ConditionInConstantSet) condition).getLeft();
+        } else if (condition instanceof ConditionInSelect) {
+            ConditionInSelect in = (ConditionInSelect) condition;
+            if (in.isAll() || in.getCompareType() != Comparison.EQUAL) {
+                return;
+            }
+            left = in.getLeft();
+        } else {
+            return;
+        }
+        if (!(left instanceof ExpressionColumn)) {
+            return;
+        }
+        ExpressionColumn l = (ExpressionColumn) left;
+        if (l.getTableFilter() != filter || l.getColumn() != column) {
+            return;
+        }
+        ExpressionVisitor visitor = ExpressionVisitor.getNotFromResolverVisitor(filter);
+        if (condition instanceof ConditionInSelect) {
+            if (((ConditionInSelect) condition).getQuery().isEverything(visitor)) {
+                inConditions.add(condition);
+            }
+            return;
+        }
+        for (Expression e : getValueList(condition)) {
+            if (!e.isEverything(visitor)) {
+                return;
+            }
+        }
+        inConditions.add(condition);
+    }
+
+    private static List<Expression> getValueList(Expression in) {
+        if (in instanceof ConditionIn) {
+            return ((ConditionIn) in).getValueList();
+        }
+        return ((ConditionInConstantSet) in).getValueList();
+    }
+
+    private static Map<Expression, List<Expression>> getNodeInLists(
+            Map<TableNode, Map<Expression, List<Expression>>> nodeInLists,
+            List<Expression> inConditions, TableNode node) {
+        Map<Expression, List<Expression>> lists = nodeInLists.get(node);
+        if (lists == null) {
+            lists = new IdentityHashMap<Expression, List<Expression>>(inConditions.size());
+            for (Expression in : inConditions) {
+                lists.put(in, new ArrayList<Expression>());
+            }
+            nodeInLists.put(node, lists);
+        }
+        return lists;
+    }
+
+    /**
+     * Check if the values of a condition are routed by this rewriter.
+     *
+     * @param condition the condition
+     * @return true if they are
+     */
+    public boolean isRewritten(Expression condition) {
+        for (Expression in : inConditions) {
+            if (in == condition) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Check if an index condition was created by a condition whose values
+     * are routed by this rewriter.
+     *
+     * @param condition the index condition
+     * @return true if it was
+     */
+    public boolean isRewritten(IndexCondition condition) {
+        for (Expression in : inConditions) {
+            if (condition.isCreatedBy(in)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the table nodes at least one value of an IN condition is routed
+     * to.
+     *
+     * @param condition the IN condition
+     * @return the table nodes
+     */
+    public Set<TableNode> getTableNodes(Expression condition) {
+        Set<TableNode> nodes = New.hashSet();
+        for (Map.Entry<TableNode, Map<Expression, List<Expression>>> e : nodeInLists.entrySet()) {
+            if (!e.getValue().get(condition).isEmpty()) {
+                nodes.add(e.getKey());
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Get the table nodes that have values of all IN conditions, only these
+     * can have matching rows.
+     *
+     * @return the table nodes
+     */
+    public Set<TableNode> getTableNodes() {
+        Set<TableNode> nodes = New.hashSet();
+        for (Map.Entry<TableNode, Map<Expression, List<Expression>>> e : nodeInLists.entrySet()) {
+            boolean all = true;
+            for (List<Expression> list : e.getValue().values()) {
+                if (list.isEmpty()) {
+                    all = false;
+                    break;
+                }
+            }
+            if (all) {
+                nodes.add(e.getKey());
+            }
+        }
+        return nodes;
+    }
+
+    /**
+     * Let the table filter export the values of the IN lists that are
+     * routed to the table node. The values are exported again after
+     * {@link #reset(TableFilter)}.
+     *
+     * @param filter the table filter
+     * @param node the table node
+     */
+    public void apply(TableFilter filter, TableNode node) {
+        filter.setNodeInLists(getNodeInLists(nodeInLists, inConditions, node));
+    }
+
+    /**
+     * Let the table filter export all values of the IN lists.
+     *
+     * @param filter the table filter
+     */
+    public static void reset(TableFilter filter) {
+        filter.setNodeInLists(null);
+    }
+
+}
@@ -0,0 +1,285 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dispatch;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wplatform.ddal.dispatch.rule.RoutingResult;
+import com.wplatform.ddal.dispatch.rule.RuleColumn;
+import com.wplatform.ddal.dispatch.rule.TableRouter;
+import com.wplatform.ddal.value.Value;
+
+/**
+ * A bounded cache of routing results. The key is the table router and the
+ * values of its rule columns. The cache is split into segments, each
+ * segment is a LRU map with its own lock, so concurrent sessions rarely
+ * wait for each other.
+ * <p>
+ * The table router is compared by identity: the routers of a configuration
+ * that is loaded again are new objects and never hit the entries of the old
+ * configuration, which are evicted over time or by {@link #invalidate()}.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public class RoutingCache {
+
+    /**
+     * Routing arguments with more values than this are not cached.
+     */
+    static final int MAX_KEY_VALUES = 16;
+
+    private static final int SEGMENT_COUNT = 16;
+
+    private final Segment[] segments;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    /**
+     * Create a new cache.
+     *
+     * @param maxSize the maximum number of routing results
+     */
+    public RoutingCache(int maxSize) {
+        int count = Math.max(1, Math.min(SEGMENT_COUNT, maxSize / 16));
+        segments = new Segment[count];
+        int segmentSize = Math.max(1, (maxSize + count - 1) / count);
+        for (int i = 0; i < count; i++) {
+            segments[i] = new Segment(segmentSize);
+        }
+    }
+
+    /**
+     * Create the key of routing arguments.
+     *
+     * @param tableRouter the table router
+     * @param ruleColumns the rule columns of the table router
+     * @param args the values of the rule columns
+     * @return the key, or null if the arguments are too large to be cached
+     */
+    static Key createKey(TableRouter tableRouter, List<RuleColumn> ruleColumns,
+            Map<String, List<Value>> args) {
+        int size = 0;
+        for (RuleColumn ruleColumn : ruleColumns) {
+            List<Value> values = args.get(ruleColumn.getName());
+            size += values == null ? 1 : values.size() + 1;
+        }
+        if (size > MAX_KEY_VALUES + ruleColumns.size()) {
+            return null;
+        }
+        Value[] values = new Value[size];
+        int i = 0;
+        for (RuleColumn ruleColumn : ruleColumns) {
+            List<Value> list = args.get(ruleColumn.getName());
+            if (list != null) {
+                for (Value v : list) {
+                    values[i++] = v;
+                }
+            }
+            // separates the values of the rule columns
+            values[i++] = null;
+        }
+        return new Key(tableRouter, values);
+    }
+
+    /**
+     * Get a cached routing result.
+     *
+     * @param key the key
+     * @return the routing result, or null if it is not cached
+     */
+    RoutingResult get(Key key) {
+        RoutingResult result = segment(key).get(key);
+        if (result == null) {
+            misses.incrementAndGet();
+        } else {
+            hits.incrementAndGet();
+        }
+        return result;
+    }
+
+    /**
+     * Add a routing result.
+     *
+     * @param key the key
+     * @param result the routing result
+     */
+    void put(Key key, RoutingResult result) {
+        segment(key).put(key, result);
+    }
+
+    private Segment segment(Key key) {
+        int h = key.hashCode();
+        h ^= h >>> 16;
+        return segments[(h & Integer.MAX_VALUE) % segments.length];
+    }
+
+    /**
+     * Remove all routing results.
+     */
+    public void invalidate() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Remove the routing results of a table router.
+     *
+     * @param tableRouter the table router
+     */
+    public void invalidate(TableRouter tableRouter) {
+        for (Segment segment : segments) {
+            segment.remove(tableRouter);
+        }
+    }
+
+    /**
+     * @return the number of cached routing results
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * @return the number of lookups that found a routing result
+     */
+    public long getHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * @return the number of lookups that did not find a routing result
+     */
+    public long getMissCount() {
+        return misses.get();
+    }
+
+    /**
+     * @return the number of routing results removed because the cache was
+     *         full
+     */
+    public long getEvictionCount() {
+        return evictions.get();
+    }
+
+    /**
+     * @return the ratio of lookups that found a routing result
+     */
+    public double getHitRate() {
+        long h = hits.get();
+        long total = h + misses.get();
+        return total == 0 ? 0 : (double) h / total;
+    }
+
+    @Override
+    public String toString() {
+        return "routing cache size: " + size() + " hits: " + hits.get() + " misses: " +
+                misses.get() + " evictions: " + evictions.get();
+    }
+
+    /**
+     * The key of a routing result.
+     */
+    static final class Key {
+
+        private final TableRouter tableRouter;
+        private final Value[] values;
+        private final int hash;
+
+        Key(TableRouter tableRouter, Value[] values) {
+            this.tableRouter = tableRouter;
+            this.values = values;
+            this.hash = 31 * System.identityHashCode(tableRouter) + Arrays.hashCode(values);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return tableRouter == other.tableRouter && hash == other.hash &&
+                    Arrays.equals(values, other.values);
+        }
+    }
+
+    /**
+     * A segment of the cache.
+     */
+    private final class Segment {
+
+        private final LinkedHashMap<Key, RoutingResult> map;
+
+        Segment(final int maxSize) {
+            map = new LinkedHashMap<Key, RoutingResult>(16, 0.75f, true) {
+
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, RoutingResult> eldest) {
+                    if (size() > maxSize) {
+                        evictions.incrementAndGet();
+                        return true;
+                    }
+                    return false;
+                }
+            };
+        }
+
+        synchronized RoutingResult get(Key key) {
+            return map.get(key);
+        }
+
+        synchronized void put(Key key, RoutingResult result) {
+            map.put(key, result);
+        }
+
+        synchronized void remove(TableRouter tableRouter) {
+            for (Iterator<Key> it = map.keySet().iterator(); it.hasNext();) {
+                if (it.next().tableRouter == tableRouter) {
+                    it.remove();
+                }
+            }
+        }
+
+        synchronized void clear() {
+            map.clear();
+        }
+
+        synchronized int size() {
+            return map.size();
+        }
+    }
+
+}
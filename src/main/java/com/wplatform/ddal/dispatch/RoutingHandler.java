@@ -20,7 +20,9 @@ package com.wplatform.ddal.dispatch;
 
 import java.util.List;
 
+import com.wplatform.ddal.command.expression.Expression;
 import com.wplatform.ddal.dbobject.index.IndexCondition;
+import com.wplatform.ddal.dbobject.table.TableFilter;
 import com.wplatform.ddal.dbobject.table.TableMate;
 import com.wplatform.ddal.dispatch.function.PartitionFunction;
 import com.wplatform.ddal.dispatch.rule.RoutingResult;
@@ -40,4 +42,17 @@ public interface RoutingHandler {
 
     RoutingResult doRoute(TableMate table, Session session, List<IndexCondition> indexConditions);
 
+    /**
+     * Route by the index conditions of a table filter. The result is then
+     * narrowed by the conditions on the sharding key that are joined by OR,
+     * which are not index conditions.
+     *
+     * @param table the table
+     * @param session the session
+     * @param filter the table filter
+     * @param condition the condition of the statement, or null
+     * @return the routing result
+     */
+    RoutingResult doRoute(TableMate table, Session session, TableFilter filter, Expression condition);
+
 }
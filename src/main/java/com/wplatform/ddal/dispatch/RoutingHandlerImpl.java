@@ -20,10 +20,18 @@ package com.wplatform.ddal.dispatch;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.wplatform.ddal.command.expression.Comparison;
+import com.wplatform.ddal.command.expression.ConditionAndOr;
+import com.wplatform.ddal.command.expression.ConditionIn;
+import com.wplatform.ddal.command.expression.ConditionInConstantSet;
+import com.wplatform.ddal.command.expression.Expression;
+import com.wplatform.ddal.command.expression.ExpressionColumn;
+import com.wplatform.ddal.command.expression.ExpressionVisitor;
 import com.wplatform.ddal.dbobject.index.IndexCondition;
 import com.wplatform.ddal.dbobject.table.Column;
+import com.wplatform.ddal.dbobject.table.TableFilter;
 import com.wplatform.ddal.dbobject.table.TableMate;
 import com.wplatform.ddal.dispatch.function.PartitionFunction;
 import com.wplatform.ddal.dispatch.rule.*;
@@ -44,18 +52,62 @@ public class RoutingHandlerImpl implements RoutingHandler {
 
     private Database database;
     private RoutingCalculator trc;
+    private final RoutingCache routingCache;
 
     public RoutingHandlerImpl(Database database) {
         this.database = database;
-        this.trc = new RoutingCalculatorImpl();
+        RoutingCalculatorImpl calculator = new RoutingCalculatorImpl();
+        calculator.setMaxCombinations(database.getSettings().routingMaxCombinations);
+        this.trc = calculator;
+        int cacheSize = database.getSettings().routingCacheSize;
+        this.routingCache = cacheSize > 0 ? new RoutingCache(cacheSize) : null;
+    }
+
+    /**
+     * @return the routing result cache, or null if it is disabled
+     */
+    public RoutingCache getRoutingCache() {
+        return routingCache;
+    }
+
+    private RoutingResult calculate(TableMate table, Map<String, List<Value>> args) {
+        TableRouter tr = table.getTableRouter();
+        if (routingCache == null) {
+            return trc.calculate(tr, args);
+        }
+        RoutingPlan plan = RoutingPlan.get(table);
+        RoutingCache.Key key = RoutingCache.createKey(tr, plan.getRuleColumns(), args);
+        if (key == null) {
+            return trc.calculate(tr, args);
+        }
+        RoutingResult rr = routingCache.get(key);
+        if (rr == null) {
+            rr = trc.calculate(tr, args);
+            routingCache.put(key, rr);
+        }
+        return rr;
     }
 
     @Override
     public RoutingResult doRoute(TableMate table, SearchRow row) {
         TableRouter tr = table.getTableRouter();
         if (tr != null) {
-            Map<String, List<Value>> args = getRuleColumnArgs(table, row);
-            RoutingResult rr = trc.calculate(tr, args);
+            RoutingPlan plan = RoutingPlan.get(table);
+            RoutingResult single = plan.route(row);
+            if (single != null) {
+                return single;
+            }
+            PartitionFunction function = tr.getRuleExpression().getFunction();
+            if (function != null) {
+                Value v = getFunctionArg(plan, row);
+                if (v != null) {
+                    Integer index = function.apply(v);
+                    RoutingResult fixed = index == null ? null : plan.getResult(index);
+                    return fixed != null ? fixed : toRoutingResult(tr, new Integer[] { index });
+                }
+            }
+            Map<String, List<Value>> args = getRuleColumnArgs(plan, row);
+            RoutingResult rr = calculate(table, args);
             if (rr.isMultipleNode()) {
                 throw new TableRoutingException(table.getName() + " routing error.");
             }
@@ -72,9 +124,16 @@ public class RoutingHandlerImpl implements RoutingHandler {
         if (tr == null) {
             return fixedRoutingResult(table.getShards());
         } else {
+            PartitionFunction function = tr.getRuleExpression().getFunction();
+            if (function != null) {
+                RoutingPlan plan = RoutingPlan.get(table);
+                Value begin = first == null ? null : getFunctionArg(plan, first);
+                Value end = last == null ? null : getFunctionArg(plan, last);
+                return toRoutingResult(tr, function.apply(begin, end));
+            }
             Map<String, List<Value>> routingArgs = New.hashMap();
             exportRangeArg(table, first, last, routingArgs);
-            RoutingResult rr = trc.calculate(tr, routingArgs);
+            RoutingResult rr = calculate(table, routingArgs);
             return rr;
         }
 
@@ -83,6 +142,15 @@ public class RoutingHandlerImpl implements RoutingHandler {
 
     @Override
     public RoutingResult doRoute(TableMate table, Session session, List<IndexCondition> indexConditions) {
+        return doRoute(table, session, indexConditions, null);
+    }
+
+    /**
+     * Route by the index conditions. The IN conditions whose values are
+     * routed by the rewriter are skipped.
+     */
+    private RoutingResult doRoute(TableMate table, Session session,
+            List<IndexCondition> indexConditions, InListRewriter rewriter) {
         TableRouter tr = table.getTableRouter();
         if (tr == null) {
             return fixedRoutingResult(table.getShards());
@@ -90,6 +158,7 @@ public class RoutingHandlerImpl implements RoutingHandler {
             Map<String, List<Value>> routingArgs = New.hashMap();
             List<RuleColumn> ruleCols = tr.getRuleColumns();
             SearchRow start = null, end = null;
+            Set<TableNode> semiJoinNodes = null;
             for (IndexCondition condition : indexConditions) {
                 Column column = condition.getColumn();
                 String colName = column.getName();
@@ -102,6 +171,9 @@ public class RoutingHandlerImpl implements RoutingHandler {
                 if (matched == null) {
                     continue;
                 }
+                if (rewriter != null && rewriter.isRewritten(condition)) {
+                    continue;
+                }
                 List<Value> values = routingArgs.get(matched.getName());
                 if (values == null) {
                     values = New.arrayList();
@@ -113,7 +185,16 @@ public class RoutingHandlerImpl implements RoutingHandler {
                         values.add(value);
                     }
                 } else if (condition.getCompareType() == Comparison.IN_QUERY) {
-                    ResultInterface result = condition.getCurrentResult();
+                    ResultInterface result = condition.getCurrentResult(session);
+                    if (ruleCols.size() == 1) {
+                        Set<TableNode> nodes = routeSemiJoin(table, column, result);
+                        if (semiJoinNodes == null) {
+                            semiJoinNodes = nodes;
+                        } else {
+                            semiJoinNodes.retainAll(nodes);
+                        }
+                        continue;
+                    }
                     while (result.next()) {
                         Value v = result.currentRow()[0];
                         if (v != ValueNull.INSTANCE) {
@@ -134,30 +215,369 @@ public class RoutingHandlerImpl implements RoutingHandler {
                     }
                 }
             }
-            exportRangeArg(table, start, end, routingArgs);
-            RoutingResult rr = trc.calculate(tr, routingArgs);
+            PartitionFunction function = tr.getRuleExpression().getFunction();
+            RoutingResult rr;
+            if (function != null) {
+                rr = routeByFunction(table, function, routingArgs, start, end);
+            } else {
+                exportRangeArg(table, start, end, routingArgs);
+                rr = calculate(table, routingArgs);
+            }
+            return semiJoinNodes == null ? rr : retainNodes(rr, semiJoinNodes);
+        }
+
+    }
+
+    /**
+     * Route the keys of an IN(SELECT ...) condition on the single rule column
+     * one by one, while the result of the subquery is read. Only the table
+     * nodes are kept, not the keys.
+     *
+     * @return the table nodes that have at least one of the keys
+     */
+    private Set<TableNode> routeSemiJoin(TableMate table, Column column, ResultInterface result) {
+        Set<TableNode> nodes = New.hashSet();
+        int partitionSize = table.getPartitionNode().length;
+        while (nodes.size() < partitionSize && result.next()) {
+            addTableNodes(nodes, routeValue(table, column, result.currentRow()[0]));
+        }
+        result.reset();
+        return nodes;
+    }
+
+    private RoutingResult retainNodes(RoutingResult rr, Set<TableNode> nodes) {
+        TableNode[] selectNodes = rr.getSelectNodes();
+        List<TableNode> selected = New.arrayList(selectNodes.length);
+        for (TableNode node : selectNodes) {
+            if (nodes.contains(node)) {
+                selected.add(node);
+            }
+        }
+        if (selected.size() == selectNodes.length) {
             return rr;
+        } else if (selected.isEmpty()) {
+            // no row can match, one table node is enough to get the result
+            return fixedRoutingResult(selectNodes[0]);
         }
+        return RoutingResult.fixedResult(selected);
+    }
 
+    @Override
+    public RoutingResult doRoute(TableMate table, Session session, TableFilter filter, Expression condition) {
+        // the values of the IN lists on the sharding key are routed once, the
+        // table filter keeps them to export each table node only its values
+        InListRewriter rewriter = InListRewriter.create(this, session, filter, condition);
+        filter.setInListRewriter(rewriter);
+        RoutingResult rr = doRoute(table, session, filter.getIndexConditions(), rewriter);
+        if (rewriter != null) {
+            rr = retainNodes(rr, rewriter.getTableNodes());
+        }
+        if (condition == null || !rr.isMultipleNode() || table.getTableRouter() == null) {
+            return rr;
+        }
+        RoutingPlan plan = RoutingPlan.get(table);
+        if (plan.getRuleColumns().size() != 1 || plan.getRuleColumnId(0) < 0) {
+            return rr;
+        }
+        Column column = table.getColumn(plan.getRuleColumnId(0));
+        Set<TableNode> nodes;
+        try {
+            nodes = routeCondition(table, session, filter, column, condition, rewriter);
+        } catch (DbException e) {
+            // a value can not be converted, the shards report the error
+            return rr;
+        } catch (RuleEvaluateException e) {
+            // the rule can not evaluate a value, the routing of the index
+            // conditions is still valid
+            return rr;
+        } catch (TableRoutingException e) {
+            return rr;
+        }
+        if (nodes == null) {
+            return rr;
+        }
+        return retainNodes(rr, nodes);
     }
 
-    private Map<String, List<Value>> getRuleColumnArgs(TableMate table, SearchRow row) {
-        Map<String, List<Value>> args = New.hashMap();
-        TableRouter tableRouter = table.getTableRouter();
-        for (RuleColumn ruleCol : tableRouter.getRuleColumns()) {
-            Column[] columns = table.getColumns();
-            Column matched = null;
-            for (Column column : columns) {
-                String colName = column.getName();
-                if (colName.equalsIgnoreCase(ruleCol.getName())) {
-                    matched = column;
-                    break;
+    /**
+     * Get the table nodes a condition can match rows of. The table nodes of
+     * an OR condition are the union of the table nodes of its operands, the
+     * table nodes of an AND condition the intersection.
+     *
+     * @return the table nodes, or null if the condition can match rows of
+     *         all table nodes
+     */
+    private Set<TableNode> routeCondition(TableMate table, Session session, TableFilter filter,
+            Column column, Expression condition, InListRewriter rewriter) {
+        if (condition instanceof ConditionAndOr) {
+            ConditionAndOr c = (ConditionAndOr) condition;
+            if (c.getAndOrType() == ConditionAndOr.AND) {
+                List<Expression> conditions = New.arrayList();
+                addAndConditions(c, conditions);
+                return routeAnd(table, session, filter, column, conditions, rewriter);
+            }
+            Set<TableNode> left = routeCondition(table, session, filter, column,
+                    c.getExpression(true), rewriter);
+            if (left == null) {
+                return null;
+            }
+            Set<TableNode> right = routeCondition(table, session, filter, column,
+                    c.getExpression(false), rewriter);
+            if (right == null) {
+                return null;
+            }
+            left.addAll(right);
+            return left;
+        }
+        if (rewriter != null && rewriter.isRewritten(condition)) {
+            return rewriter.getTableNodes(condition);
+        }
+        List<Expression> values = getKeyValues(filter, column, condition);
+        if (values != null) {
+            Set<TableNode> nodes = New.hashSet();
+            for (Expression e : values) {
+                addTableNodes(nodes, routeValue(table, column, e.getValue(session)));
+            }
+            return nodes;
+        }
+        int type = getKeyCompareType(filter, column, condition);
+        if (type >= 0) {
+            Value v = ((Comparison) condition).getExpression(false).getValue(session);
+            SearchRow row = getKeyRow(table, column, v);
+            if (row == null) {
+                return New.hashSet();
+            }
+            boolean start = type == Comparison.BIGGER || type == Comparison.BIGGER_EQUAL;
+            return routeRange(table, start ? row : null, start ? null : row);
+        }
+        return null;
+    }
+
+    private Set<TableNode> routeAnd(TableMate table, Session session, TableFilter filter,
+            Column column, List<Expression> conditions, InListRewriter rewriter) {
+        Set<TableNode> result = null;
+        SearchRow start = null, end = null;
+        boolean range = false;
+        for (Expression condition : conditions) {
+            int type = getKeyCompareType(filter, column, condition);
+            if (type >= 0) {
+                Value v = ((Comparison) condition).getExpression(false).getValue(session);
+                if (v == ValueNull.INSTANCE) {
+                    return New.hashSet();
+                }
+                v = column.convert(v);
+                int columnId = column.getColumnId();
+                if (type == Comparison.BIGGER || type == Comparison.BIGGER_EQUAL) {
+                    start = getSearchRow(table, session, start, columnId, v, true);
+                } else {
+                    end = getSearchRow(table, session, end, columnId, v, false);
+                }
+                range = true;
+                continue;
+            }
+            Set<TableNode> nodes = routeCondition(table, session, filter, column, condition, rewriter);
+            if (nodes != null) {
+                if (result == null) {
+                    result = nodes;
+                } else {
+                    result.retainAll(nodes);
                 }
             }
-            if (matched == null) {
+        }
+        if (range) {
+            Set<TableNode> nodes = routeRange(table, start, end);
+            if (nodes != null) {
+                if (result == null) {
+                    result = nodes;
+                } else {
+                    result.retainAll(nodes);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static void addAndConditions(Expression condition, List<Expression> conditions) {
+        if (condition instanceof ConditionAndOr &&
+                ((ConditionAndOr) condition).getAndOrType() == ConditionAndOr.AND) {
+            ConditionAndOr c = (ConditionAndOr) condition;
+            addAndConditions(c.getExpression(true), conditions);
+            addAndConditions(c.getExpression(false), conditions);
+        } else {
+            conditions.add(condition);
+        }
+    }
+
+    /**
+     * Get the values of an equality or IN condition on the sharding key.
+     *
+     * @return the values, or null if it is not such a condition
+     */
+    private static List<Expression> getKeyValues(TableFilter filter, Column column,
+            Expression condition) {
+        List<Expression> values;
+        Expression left;
+        if (condition instanceof Comparison) {
+            Comparison c = (Comparison) condition;
+            if (c.getCompareType() != Comparison.EQUAL) {
+                return null;
+            }
+            left = c.getExpression(true);
+            values = New.arrayList(1);
+            values.add(c.getExpression(false));
+        } else if (condition instanceof ConditionIn) {
+            left = ((ConditionIn) condition).getLeft();
+            values = ((ConditionIn) condition).getValueList();
+        } else if (condition instanceof ConditionInConstantSet) {
+            left = ((ConditionInConstantSet) condition).getLeft();
+            values = ((ConditionInConstantSet) condition).getValueList();
+        } else {
+            return null;
+        }
+        if (!isKeyColumn(filter, column, left)) {
+            return null;
+        }
+        ExpressionVisitor visitor = ExpressionVisitor.getNotFromResolverVisitor(filter);
+        for (Expression e : values) {
+            if (e == null || !e.isEverything(visitor)) {
+                return null;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Get the type of a range condition on the sharding key.
+     *
+     * @return the compare type, or -1 if it is not such a condition
+     */
+    private static int getKeyCompareType(TableFilter filter, Column column, Expression condition) {
+        if (!(condition instanceof Comparison)) {
+            return -1;
+        }
+        Comparison c = (Comparison) condition;
+        switch (c.getCompareType()) {
+        case Comparison.BIGGER:
+        case Comparison.BIGGER_EQUAL:
+        case Comparison.SMALLER:
+        case Comparison.SMALLER_EQUAL:
+            break;
+        default:
+            return -1;
+        }
+        Expression right = c.getExpression(false);
+        if (!isKeyColumn(filter, column, c.getExpression(true)) || right == null ||
+                !right.isEverything(ExpressionVisitor.getNotFromResolverVisitor(filter))) {
+            return -1;
+        }
+        return c.getCompareType();
+    }
+
+    private static boolean isKeyColumn(TableFilter filter, Column column, Expression e) {
+        if (!(e instanceof ExpressionColumn)) {
+            return false;
+        }
+        ExpressionColumn c = (ExpressionColumn) e;
+        return c.getTableFilter() == filter && c.getColumn() == column;
+    }
+
+    private static SearchRow getKeyRow(TableMate table, Column column, Value v) {
+        if (v == null || v == ValueNull.INSTANCE) {
+            // NULL is never equal, smaller or bigger than the key
+            return null;
+        }
+        SearchRow row = table.getTemplateRow();
+        row.setValue(column.getColumnId(), column.convert(v));
+        return row;
+    }
+
+    private TableNode[] routeValue(TableMate table, Column column, Value v) {
+        SearchRow row = getKeyRow(table, column, v);
+        return row == null ? null : doRoute(table, row).getSelectNodes();
+    }
+
+    private Set<TableNode> routeRange(TableMate table, SearchRow start, SearchRow end) {
+        Set<TableNode> nodes = New.hashSet();
+        try {
+            addTableNodes(nodes, doRoute(table, start, end).getSelectNodes());
+        } catch (TableRoutingException e) {
+            // the range is empty
+        }
+        return nodes;
+    }
+
+    private static void addTableNodes(Set<TableNode> nodes, TableNode[] add) {
+        if (add != null) {
+            for (TableNode node : add) {
+                nodes.add(node);
+            }
+        }
+    }
+
+    /**
+     * Route by the partition function of the table. The values of equality
+     * and IN conditions are routed one by one, a range is pruned by the
+     * function.
+     */
+    private RoutingResult routeByFunction(TableMate table, PartitionFunction function,
+            Map<String, List<Value>> routingArgs, SearchRow start, SearchRow end) {
+        TableRouter tr = table.getTableRouter();
+        RoutingPlan plan = RoutingPlan.get(table);
+        List<Value> values = routingArgs.get(plan.getRuleColumns().get(0).getName());
+        if (values != null && !values.isEmpty()) {
+            return toRoutingResult(tr, function.apply(values.toArray(new Value[values.size()])));
+        }
+        Value begin = start == null ? null : getFunctionArg(plan, start);
+        Value last = end == null ? null : getFunctionArg(plan, end);
+        if (begin == null && last == null) {
+            return RoutingResult.fixedResult(tr.getPartition());
+        }
+        Integer[] indexes = function.apply(begin, last);
+        if (indexes != null && indexes.length == 0) {
+            throw new TableRoutingException(table.getName() + " routing error. The conidition "
+                    + plan.getRuleColumns().get(0).getName() + " is alwarys false.");
+        }
+        return toRoutingResult(tr, indexes);
+    }
+
+    private static Value getFunctionArg(RoutingPlan plan, SearchRow row) {
+        int columnId = plan.getRuleColumnId(0);
+        if (columnId < 0) {
+            throw DbException.getInvalidValueException("RuleColumn", plan.getRuleColumns().get(0));
+        }
+        Value v = row.getValue(columnId);
+        return v == null || v == ValueNull.INSTANCE ? null : v;
+    }
+
+    private static RoutingResult toRoutingResult(TableRouter tr, Integer[] indexes) {
+        List<TableNode> partition = tr.getPartition();
+        if (indexes == null) {
+            return RoutingResult.fixedResult(partition);
+        }
+        List<TableNode> nodes = New.arrayList(indexes.length);
+        for (Integer index : indexes) {
+            if (index == null || index < 0 || index >= partition.size()) {
+                throw new RuleEvaluateException("The partition function of " + tr.getId()
+                        + " evaluated " + index + " is out of range partition list.");
+            }
+            TableNode node = partition.get(index);
+            if (!nodes.contains(node)) {
+                nodes.add(node);
+            }
+        }
+        return RoutingResult.fixedResult(nodes);
+    }
+
+    private Map<String, List<Value>> getRuleColumnArgs(RoutingPlan plan, SearchRow row) {
+        List<RuleColumn> ruleColumns = plan.getRuleColumns();
+        Map<String, List<Value>> args = New.hashMap(ruleColumns.size());
+        for (int i = 0, size = ruleColumns.size(); i < size; i++) {
+            RuleColumn ruleCol = ruleColumns.get(i);
+            int columnId = plan.getRuleColumnId(i);
+            if (columnId < 0) {
                 throw DbException.getInvalidValueException("RuleColumn", ruleCol);
             }
-            Value value = row.getValue(matched.getColumnId());
+            Value value = row.getValue(columnId);
             if (value != null && value != ValueNull.INSTANCE) {
                 List<Value> values = New.arrayList(1);
                 values.add(value);
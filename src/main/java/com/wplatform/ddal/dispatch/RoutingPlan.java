@@ -0,0 +1,167 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dispatch;
+
+import java.util.List;
+
+import com.wplatform.ddal.dbobject.table.Column;
+import com.wplatform.ddal.dbobject.table.TableMate;
+import com.wplatform.ddal.dispatch.rule.CompiledRule;
+import com.wplatform.ddal.dispatch.rule.RoutingResult;
+import com.wplatform.ddal.dispatch.rule.RuleColumn;
+import com.wplatform.ddal.dispatch.rule.TableNode;
+import com.wplatform.ddal.dispatch.rule.TableRouter;
+import com.wplatform.ddal.result.SearchRow;
+import com.wplatform.ddal.value.Value;
+
+/**
+ * The routing plan of a table. The rule columns are resolved to column ids
+ * once, and there is a routing result for each table node of the partition.
+ * A row of a table with a single column rule that is compiled is routed
+ * without any allocation.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public final class RoutingPlan {
+
+    private final Column[] columns;
+    private final TableRouter tableRouter;
+    private final List<RuleColumn> ruleColumns;
+    private final int[] ruleColumnIds;
+    private final CompiledRule rule;
+    private final int keyColumnId;
+    private final RoutingResult[] results;
+
+    private RoutingPlan(TableMate table) {
+        this.columns = table.getColumns();
+        this.tableRouter = table.getTableRouter();
+        this.ruleColumns = tableRouter.getRuleColumns();
+        this.ruleColumnIds = new int[ruleColumns.size()];
+        for (int i = 0; i < ruleColumnIds.length; i++) {
+            ruleColumnIds[i] = findColumnId(ruleColumns.get(i).getName());
+        }
+        CompiledRule compiled = tableRouter.getRuleExpression().getCompiledRule();
+        if (compiled != null && compiled.isSingleColumn()) {
+            this.rule = compiled;
+            this.keyColumnId = findColumnId(compiled.getColumns()[0]);
+        } else {
+            this.rule = null;
+            this.keyColumnId = -1;
+        }
+        List<TableNode> partition = tableRouter.getPartition();
+        this.results = new RoutingResult[partition.size()];
+        for (int i = 0; i < results.length; i++) {
+            results[i] = RoutingResult.fixedResult(partition.get(i));
+        }
+    }
+
+    /**
+     * Get the routing plan of a table, the plan is built again if the
+     * columns or the router of the table have changed.
+     *
+     * @param table the table
+     * @return the routing plan
+     */
+    public static RoutingPlan get(TableMate table) {
+        RoutingPlan plan = table.getRoutingPlan();
+        if (plan == null || plan.columns != table.getColumns() ||
+                plan.tableRouter != table.getTableRouter()) {
+            plan = new RoutingPlan(table);
+            table.setRoutingPlan(plan);
+        }
+        return plan;
+    }
+
+    private int findColumnId(String name) {
+        for (Column column : columns) {
+            if (column.getName().equalsIgnoreCase(name)) {
+                return column.getColumnId();
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Route a row by the value of its sharding key.
+     *
+     * @param row the row
+     * @return the routing result, or null if the rule is not a compiled
+     *         single column rule, the key is not an int or long value or the
+     *         result is not a table node of the partition
+     */
+    public RoutingResult route(SearchRow row) {
+        if (rule == null || keyColumnId < 0) {
+            return null;
+        }
+        Value v = row.getValue(keyColumnId);
+        if (v == null) {
+            return null;
+        }
+        long arg;
+        boolean wide;
+        switch (v.getType()) {
+        case Value.INT:
+            arg = v.getInt();
+            wide = false;
+            break;
+        case Value.LONG:
+            arg = v.getLong();
+            wide = true;
+            break;
+        default:
+            return null;
+        }
+        long index;
+        try {
+            index = rule.evaluate(arg, wide);
+        } catch (ArithmeticException e) {
+            // the error is reported by the evaluator
+            return null;
+        }
+        if (index < 0 || index >= results.length) {
+            return null;
+        }
+        return results[(int) index];
+    }
+
+    /**
+     * Get the routing result of a table node of the partition.
+     *
+     * @param index the index of the table node in the partition
+     * @return the routing result, or null if the index is out of range
+     */
+    public RoutingResult getResult(int index) {
+        return index < 0 || index >= results.length ? null : results[index];
+    }
+
+    /**
+     * @return the distinct rule columns of the table router
+     */
+    public List<RuleColumn> getRuleColumns() {
+        return ruleColumns;
+    }
+
+    /**
+     * Get the column id of a rule column.
+     *
+     * @param i the index in the list of rule columns
+     * @return the column id, or -1 if the table has no such column
+     */
+    public int getRuleColumnId(int i) {
+        return ruleColumnIds[i];
+    }
+
+}
@@ -0,0 +1,112 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dispatch.function;
+
+import java.util.Set;
+
+import com.wplatform.ddal.dispatch.rule.RuleEvaluateException;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.value.Value;
+import com.wplatform.ddal.value.ValueNull;
+
+/**
+ * The base class of the partition functions. A partition function returns
+ * the indexes of the table nodes in the partition list of the table router,
+ * a range function that can not prune the partitions returns null.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public abstract class AbstractPartitionFunction implements PartitionFunction {
+
+    /**
+     * The number of table nodes of the partition.
+     */
+    protected int partitionCount;
+
+    /**
+     * @return the partitionCount
+     */
+    public int getPartitionCount() {
+        return partitionCount;
+    }
+
+    /**
+     * @param partitionCount the partitionCount to set
+     */
+    public void setPartitionCount(int partitionCount) {
+        this.partitionCount = partitionCount;
+    }
+
+    @Override
+    public void doInit() {
+        if (partitionCount <= 0) {
+            throw new IllegalArgumentException("The partition of " + getClass().getSimpleName()
+                    + " is empty.");
+        }
+    }
+
+    @Override
+    public Integer[] apply(Value... values) {
+        Set<Integer> result = New.linkedHashSet();
+        for (Value v : values) {
+            result.add(apply(v));
+        }
+        return result.toArray(new Integer[result.size()]);
+    }
+
+    /**
+     * Get the partition indexes from one to another.
+     *
+     * @param from the first index
+     * @param to the last index
+     * @return the indexes
+     */
+    protected static Integer[] between(int from, int to) {
+        if (from > to) {
+            return new Integer[0];
+        }
+        Integer[] result = new Integer[to - from + 1];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = from + i;
+        }
+        return result;
+    }
+
+    /**
+     * Check whether a value is null.
+     *
+     * @param v the value
+     * @return true if it is
+     */
+    protected static boolean isNull(Value v) {
+        return v == null || v == ValueNull.INSTANCE;
+    }
+
+    /**
+     * Check that a sharding value is not null.
+     *
+     * @param v the value
+     * @return the value
+     */
+    protected Value checkNotNull(Value v) {
+        if (isNull(v)) {
+            throw new RuleEvaluateException(getClass().getSimpleName()
+                    + " can not evaluate a null value.");
+        }
+        return v;
+    }
+
+}
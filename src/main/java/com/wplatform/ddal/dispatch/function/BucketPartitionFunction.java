@@ -0,0 +1,199 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dispatch.function;
+
+import java.util.Arrays;
+
+import com.wplatform.ddal.dispatch.rule.MurmurHash;
+import com.wplatform.ddal.util.StringUtils;
+import com.wplatform.ddal.value.Value;
+
+/**
+ * A partition function with a fixed number of virtual buckets. A key
+ * belongs to the bucket <code>key mod buckets</code> (the hash of the key if
+ * it is not an integer), and the slot table maps each bucket to a
+ * partition. The <code>slots</code> property lists the buckets of each
+ * partition, for example <code>0-511:0,512-1023:1</code>. Without a slot
+ * table the buckets are split into equal ranges in partition order. Moving
+ * buckets to a new partition only moves the keys of these buckets, the
+ * number of buckets must never change.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public class BucketPartitionFunction extends AbstractPartitionFunction {
+
+    private final MurmurHash hash = new MurmurHash();
+    private int buckets = 1024;
+    private String slots;
+    private int[] slotTable;
+
+    /**
+     * @return the buckets
+     */
+    public int getBuckets() {
+        return buckets;
+    }
+
+    /**
+     * @param buckets the number of virtual buckets
+     */
+    public void setBuckets(int buckets) {
+        this.buckets = buckets;
+    }
+
+    /**
+     * @return the slots
+     */
+    public String getSlots() {
+        return slots;
+    }
+
+    /**
+     * @param slots the comma separated bucket ranges of the partitions, as
+     *            <code>from-to:partition</code> or <code>bucket:partition</code>
+     */
+    public void setSlots(String slots) {
+        this.slots = slots;
+    }
+
+    @Override
+    public void doInit() {
+        super.doInit();
+        if (buckets < partitionCount) {
+            throw new IllegalArgumentException("BucketPartitionFunction needs at least "
+                    + partitionCount + " buckets, but buckets is " + buckets);
+        }
+        int[] table = new int[buckets];
+        if (StringUtils.isNullOrEmpty(slots)) {
+            for (int i = 0; i < buckets; i++) {
+                table[i] = (int) ((long) i * partitionCount / buckets);
+            }
+        } else {
+            Arrays.fill(table, -1);
+            for (String item : StringUtils.arraySplit(slots, ',', true)) {
+                int idx = item.indexOf(':');
+                if (idx < 0) {
+                    throw new IllegalArgumentException("The slot " + item
+                            + " is not like from-to:partition.");
+                }
+                String range = item.substring(0, idx).trim();
+                int partition = Integer.parseInt(item.substring(idx + 1).trim());
+                int dash = range.indexOf('-');
+                int from = Integer.parseInt((dash < 0 ? range : range.substring(0, dash)).trim());
+                int to = dash < 0 ? from : Integer.parseInt(range.substring(dash + 1).trim());
+                if (partition < 0 || partition >= partitionCount) {
+                    throw new IllegalArgumentException("The slot " + item
+                            + " is out of range partition list.");
+                }
+                if (from < 0 || to >= buckets || from > to) {
+                    throw new IllegalArgumentException("The slot " + item + " is not in 0-"
+                            + (buckets - 1) + ".");
+                }
+                for (int b = from; b <= to; b++) {
+                    if (table[b] >= 0) {
+                        throw new IllegalArgumentException("The bucket " + b
+                                + " is in more than one slot.");
+                    }
+                    table[b] = partition;
+                }
+            }
+            for (int b = 0; b < buckets; b++) {
+                if (table[b] < 0) {
+                    throw new IllegalArgumentException("The bucket " + b + " is not in a slot.");
+                }
+            }
+        }
+        slotTable = table;
+    }
+
+    @Override
+    public Integer apply(Value value) {
+        return slotTable[bucket(checkNotNull(value))];
+    }
+
+    @Override
+    public Integer[] apply(Value beginValue, Value endValue) {
+        if (isNull(beginValue) || isNull(endValue) || !isInteger(beginValue)) {
+            return null;
+        }
+        long begin = beginValue.getLong();
+        long end = endValue.getLong();
+        if (begin > end) {
+            return new Integer[0];
+        }
+        if (end - begin + 1 >= buckets || end - begin < 0) {
+            return null;
+        }
+        boolean[] used = new boolean[partitionCount];
+        int count = 0;
+        for (long key = begin; key <= end && count < partitionCount; key++) {
+            int index = slotTable[bucket(key)];
+            if (!used[index]) {
+                used[index] = true;
+                count++;
+            }
+        }
+        Integer[] result = new Integer[count];
+        for (int i = 0, j = 0; i < used.length; i++) {
+            if (used[i]) {
+                result[j++] = i;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the bucket of a key.
+     *
+     * @param value the key
+     * @return the bucket
+     */
+    public int bucket(Value value) {
+        if (isInteger(value)) {
+            return bucket(value.getLong());
+        }
+        // the hash may be negative
+        return bucket(hash.calculate(value.getString()));
+    }
+
+    private int bucket(long key) {
+        long bucket = key % buckets;
+        return (int) (bucket < 0 ? bucket + buckets : bucket);
+    }
+
+    /**
+     * Get the partition of a bucket.
+     *
+     * @param bucket the bucket
+     * @return the partition index
+     */
+    public int getPartition(int bucket) {
+        return slotTable[bucket];
+    }
+
+    private static boolean isInteger(Value v) {
+        switch (v.getType()) {
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+}
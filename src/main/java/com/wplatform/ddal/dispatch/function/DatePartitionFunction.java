@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dispatch.function;
+
+import com.wplatform.ddal.dispatch.rule.RuleEvaluateException;
+import com.wplatform.ddal.util.DateTimeUtils;
+import com.wplatform.ddal.value.Value;
+import com.wplatform.ddal.value.ValueDate;
+
+/**
+ * A partition function of date ranges. Partition 0 starts at the
+ * <code>start</code> date (yyyy-MM-dd), every partition covers
+ * <code>interval</code> units of <code>unit</code> (day, month or year,
+ * default: 1 month). A date range is pruned to the partitions it overlaps,
+ * a range that reaches before the first or after the last partition is cut
+ * at the first or last partition.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public class DatePartitionFunction extends AbstractPartitionFunction {
+
+    private static final int DAY = 0, MONTH = 1, YEAR = 2;
+
+    private String start;
+    private String unit = "month";
+    private int interval = 1;
+    private int unitType;
+    private long startUnit;
+
+    /**
+     * @return the start
+     */
+    public String getStart() {
+        return start;
+    }
+
+    /**
+     * @param start the first date of the first partition
+     */
+    public void setStart(String start) {
+        this.start = start;
+    }
+
+    /**
+     * @return the unit
+     */
+    public String getUnit() {
+        return unit;
+    }
+
+    /**
+     * @param unit the unit of the interval, day, month or year
+     */
+    public void setUnit(String unit) {
+        this.unit = unit;
+    }
+
+    /**
+     * @return the interval
+     */
+    public int getInterval() {
+        return interval;
+    }
+
+    /**
+     * @param interval the number of units of a partition
+     */
+    public void setInterval(int interval) {
+        this.interval = interval;
+    }
+
+    @Override
+    public void doInit() {
+        super.doInit();
+        if ("day".equalsIgnoreCase(unit)) {
+            unitType = DAY;
+        } else if ("month".equalsIgnoreCase(unit)) {
+            unitType = MONTH;
+        } else if ("year".equalsIgnoreCase(unit)) {
+            unitType = YEAR;
+        } else {
+            throw new IllegalArgumentException("Unsupported date unit " + unit);
+        }
+        if (interval <= 0) {
+            throw new IllegalArgumentException("interval must be positive.");
+        }
+        if (start == null) {
+            throw new IllegalArgumentException("The start date of DatePartitionFunction is required.");
+        }
+        startUnit = toUnit(ValueDate.parse(start.trim()).getDateValue());
+    }
+
+    @Override
+    public Integer apply(Value value) {
+        long index = index(checkNotNull(value));
+        if (index < 0 || index >= partitionCount) {
+            throw new RuleEvaluateException("The date " + value.getString()
+                    + " is out of the partition range.");
+        }
+        return (int) index;
+    }
+
+    @Override
+    public Integer[] apply(Value beginValue, Value endValue) {
+        long from = isNull(beginValue) ? 0 : index(beginValue);
+        long to = isNull(endValue) ? partitionCount - 1 : index(endValue);
+        if (from > to) {
+            return new Integer[0];
+        }
+        int last = partitionCount - 1;
+        return between((int) Math.max(0, Math.min(from, last)),
+                (int) Math.max(0, Math.min(to, last)));
+    }
+
+    private long index(Value value) {
+        long dateValue = ((ValueDate) value.convertTo(Value.DATE)).getDateValue();
+        long units = toUnit(dateValue) - startUnit;
+        return units >= 0 ? units / interval : (units - interval + 1) / interval;
+    }
+
+    private long toUnit(long dateValue) {
+        switch (unitType) {
+        case DAY:
+            return DateTimeUtils.absoluteDayFromDateValue(dateValue);
+        case MONTH:
+            return DateTimeUtils.yearFromDateValue(dateValue) * 12L
+                    + DateTimeUtils.monthFromDateValue(dateValue) - 1;
+        default:
+            return DateTimeUtils.yearFromDateValue(dateValue);
+        }
+    }
+
+}
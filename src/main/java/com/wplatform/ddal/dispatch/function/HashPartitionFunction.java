@@ -0,0 +1,137 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dispatch.function;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import com.wplatform.ddal.dispatch.rule.KetamaHash;
+import com.wplatform.ddal.value.Value;
+
+/**
+ * A partition function that uses a consistent hash ring (ketama). Every
+ * partition has a number of virtual nodes on the ring, a key belongs to
+ * the partition of the first virtual node at or after its hash. Adding a
+ * partition only moves the keys of its virtual nodes. A range of integer
+ * keys is pruned if it has at most <code>maxRangeValues</code> keys, other
+ * ranges are not pruned.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public class HashPartitionFunction extends AbstractPartitionFunction {
+
+    private final KetamaHash hash = new KetamaHash();
+    private final TreeMap<Long, Integer> ring = new TreeMap<Long, Integer>();
+    private int virtualNodes = 160;
+    private int maxRangeValues = 64;
+
+    /**
+     * @return the virtualNodes
+     */
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    /**
+     * @param virtualNodes the number of virtual nodes of each partition
+     */
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+
+    /**
+     * @return the maxRangeValues
+     */
+    public int getMaxRangeValues() {
+        return maxRangeValues;
+    }
+
+    /**
+     * @param maxRangeValues the maximum number of keys of a range that is
+     *            pruned
+     */
+    public void setMaxRangeValues(int maxRangeValues) {
+        this.maxRangeValues = maxRangeValues;
+    }
+
+    @Override
+    public void doInit() {
+        super.doInit();
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtualNodes must be positive.");
+        }
+        ring.clear();
+        for (int i = 0; i < partitionCount; i++) {
+            for (int n = 0; n < virtualNodes; n++) {
+                ring.put(hash.calculate("PARTITION-" + i + "-NODE-" + n), i);
+            }
+        }
+    }
+
+    @Override
+    public Integer apply(Value value) {
+        return index(checkNotNull(value).getString());
+    }
+
+    @Override
+    public Integer[] apply(Value beginValue, Value endValue) {
+        if (isNull(beginValue) || isNull(endValue)) {
+            return null;
+        }
+        switch (beginValue.getType()) {
+        case Value.BYTE:
+        case Value.SHORT:
+        case Value.INT:
+        case Value.LONG:
+            break;
+        default:
+            return null;
+        }
+        long begin = beginValue.getLong();
+        long end = endValue.getLong();
+        if (begin > end) {
+            return new Integer[0];
+        }
+        if (end - begin >= maxRangeValues || end - begin < 0) {
+            return null;
+        }
+        boolean[] used = new boolean[partitionCount];
+        int count = 0;
+        for (long key = begin; key <= end && count < partitionCount; key++) {
+            int index = index(Long.toString(key));
+            if (!used[index]) {
+                used[index] = true;
+                count++;
+            }
+        }
+        Integer[] result = new Integer[count];
+        for (int i = 0, j = 0; i < used.length; i++) {
+            if (used[i]) {
+                result[j++] = i;
+            }
+        }
+        return result;
+    }
+
+    private int index(String key) {
+        Map.Entry<Long, Integer> entry = ring.ceilingEntry(hash.calculate(key));
+        if (entry == null) {
+            entry = ring.firstEntry();
+        }
+        return entry.getValue();
+    }
+
+}
@@ -0,0 +1,63 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dispatch.function;
+
+import java.util.Set;
+
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.value.Value;
+
+/**
+ * A partition function that maps an integer key to the partition
+ * <code>key mod partitionCount</code>. Negative keys are mapped to the
+ * non negative remainder. A range of keys is pruned if it is shorter than
+ * the partition count.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public class ModPartitionFunction extends AbstractPartitionFunction {
+
+    @Override
+    public Integer apply(Value value) {
+        return index(checkNotNull(value).getLong());
+    }
+
+    @Override
+    public Integer[] apply(Value beginValue, Value endValue) {
+        if (isNull(beginValue) || isNull(endValue)) {
+            return null;
+        }
+        long begin = beginValue.getLong();
+        long end = endValue.getLong();
+        if (begin > end) {
+            return new Integer[0];
+        }
+        if (end - begin + 1 >= partitionCount || end - begin < 0) {
+            return null;
+        }
+        Set<Integer> result = New.linkedHashSet();
+        for (long key = begin; key <= end; key++) {
+            result.add(index(key));
+        }
+        return result.toArray(new Integer[result.size()]);
+    }
+
+    private int index(long key) {
+        long index = key % partitionCount;
+        return (int) (index < 0 ? index + partitionCount : index);
+    }
+
+}
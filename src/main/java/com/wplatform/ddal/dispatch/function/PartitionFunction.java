@@ -32,9 +32,9 @@ public interface PartitionFunction {
     public Integer apply(Value value);
     /**
      * represent the sql condition: column >= xx and column <= xx
-     * @param beginValue
-     * @param endValue
-     * @return
+     * @param beginValue the lower bound, or null if there is none
+     * @param endValue the upper bound, or null if there is none
+     * @return the partition indexes, or null if the range can not be pruned
      */
     public Integer[] apply(Value beginValue,Value endValue);
     /**
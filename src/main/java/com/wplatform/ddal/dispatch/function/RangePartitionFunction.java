@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dispatch.function;
+
+import java.util.Arrays;
+
+import com.wplatform.ddal.util.StringUtils;
+import com.wplatform.ddal.value.Value;
+
+/**
+ * A partition function of numeric ranges. The <code>boundaries</code>
+ * property lists the ascending lower bounds of the partitions after the
+ * first one, for example <code>1000000,2000000,3000000</code> for four
+ * partitions. A key below the first boundary belongs to the first
+ * partition, a key at or above the last boundary to the last partition. A
+ * range of keys is pruned to the partitions it overlaps.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public class RangePartitionFunction extends AbstractPartitionFunction {
+
+    private String boundaries;
+    private long[] bounds;
+
+    /**
+     * @return the boundaries
+     */
+    public String getBoundaries() {
+        return boundaries;
+    }
+
+    /**
+     * @param boundaries the comma separated lower bounds of the partitions
+     *            after the first one
+     */
+    public void setBoundaries(String boundaries) {
+        this.boundaries = boundaries;
+    }
+
+    @Override
+    public void doInit() {
+        super.doInit();
+        String[] items = StringUtils.arraySplit(boundaries == null ? "" : boundaries, ',', true);
+        if (items.length != partitionCount - 1) {
+            throw new IllegalArgumentException("RangePartitionFunction needs "
+                    + (partitionCount - 1) + " boundaries for " + partitionCount
+                    + " partitions, but boundaries is " + boundaries);
+        }
+        bounds = new long[items.length];
+        for (int i = 0; i < items.length; i++) {
+            bounds[i] = Long.parseLong(items[i]);
+            if (i > 0 && bounds[i] <= bounds[i - 1]) {
+                throw new IllegalArgumentException("The boundaries " + boundaries
+                        + " are not ascending.");
+            }
+        }
+    }
+
+    @Override
+    public Integer apply(Value value) {
+        return index(checkNotNull(value).getLong());
+    }
+
+    @Override
+    public Integer[] apply(Value beginValue, Value endValue) {
+        int from = isNull(beginValue) ? 0 : index(beginValue.getLong());
+        int to = isNull(endValue) ? partitionCount - 1 : index(endValue.getLong());
+        if (!isNull(beginValue) && !isNull(endValue) &&
+                beginValue.getLong() > endValue.getLong()) {
+            return new Integer[0];
+        }
+        return between(from, to);
+    }
+
+    private int index(long key) {
+        int pos = Arrays.binarySearch(bounds, key);
+        return pos >= 0 ? pos + 1 : -pos - 1;
+    }
+
+}
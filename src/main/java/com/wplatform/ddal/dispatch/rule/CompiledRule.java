@@ -0,0 +1,541 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dispatch.rule;
+
+import java.util.List;
+
+import com.wplatform.ddal.value.Value;
+
+/**
+ * A rule expression compiled to a tree of integer operations. Only the
+ * arithmetic subset of the OGNL syntax is supported: integer constants, the
+ * rule columns, parentheses, the unary operators <code>- + ~</code> and the
+ * binary operators <code>* / % + - &lt;&lt; &gt;&gt; &gt;&gt;&gt; &amp; ^ |</code>.
+ * A rule like <code>${order_id} % 16</code> is then evaluated without any
+ * map, reflection or boxing of the arguments. The OGNL type promotion is
+ * kept for each operation: it is done with int values, unless one of its
+ * operands is a long value (for a shift, the left operand). Byte and short
+ * arguments are left to OGNL, which keeps their type.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public final class CompiledRule {
+
+    private final String expression;
+    private final String[] columns;
+    private final Node root;
+
+    private CompiledRule(String expression, String[] columns, Node root) {
+        this.expression = expression;
+        this.columns = columns;
+        this.root = root;
+    }
+
+    /**
+     * Compile a rule expression.
+     *
+     * @param rule the rule expression
+     * @return the compiled rule, or null if the expression uses a syntax
+     *         that is not supported
+     */
+    public static CompiledRule compile(RuleExpression rule) {
+        String expression = rule.getExpression();
+        List<RuleColumn> ruleColumns = rule.getRuleColumns();
+        if (expression == null || ruleColumns == null || ruleColumns.size() > 64) {
+            return null;
+        }
+        String[] columns = new String[ruleColumns.size()];
+        for (int i = 0; i < columns.length; i++) {
+            columns[i] = ruleColumns.get(i).getName();
+        }
+        Parser parser = new Parser(expression, columns);
+        Node root = parser.parse();
+        if (root == null) {
+            return null;
+        }
+        return new CompiledRule(expression, columns, root);
+    }
+
+    /**
+     * Get the names of the rule columns, the arguments are passed in this
+     * order.
+     *
+     * @return the column names
+     */
+    public String[] getColumns() {
+        return columns;
+    }
+
+    /**
+     * Evaluate the rule.
+     *
+     * @param args the values of the rule columns, in the order of
+     *            {@link #getColumns()}
+     * @return the result, an Integer or a Long, or null if an argument is
+     *         not an int or long value and the rule has to be evaluated by
+     *         OGNL
+     */
+    public Object evaluate(Value[] args) {
+        long[] values = new long[args.length];
+        long longColumns = 0;
+        for (int i = 0; i < args.length; i++) {
+            Value v = args[i];
+            if (v == null) {
+                return null;
+            }
+            switch (v.getType()) {
+            case Value.INT:
+                values[i] = v.getInt();
+                break;
+            case Value.LONG:
+                values[i] = v.getLong();
+                longColumns |= 1L << i;
+                break;
+            default:
+                return null;
+            }
+        }
+        try {
+            long result = root.eval(values.length == 0 ? 0 : values[0], values, longColumns);
+            if (root.isWide(longColumns)) {
+                return Long.valueOf(result);
+            }
+            return Integer.valueOf((int) result);
+        } catch (ArithmeticException e) {
+            throw new RuleEvaluateException("Evaluate rule " + expression + " error", e);
+        }
+    }
+
+    /**
+     * Check if the rule has exactly one rule column.
+     *
+     * @return true if it has
+     */
+    public boolean isSingleColumn() {
+        return columns.length == 1;
+    }
+
+    /**
+     * Evaluate a rule that has a single rule column. Nothing is allocated,
+     * a division by zero throws an ArithmeticException.
+     *
+     * @param arg the value of the rule column
+     * @param wide whether the value is a long value
+     * @return the result
+     */
+    public long evaluate(long arg, boolean wide) {
+        return root.eval(arg, null, wide ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return expression;
+    }
+
+    /**
+     * A node of the expression tree. The type of a node is long if it uses a
+     * long constant or a rule column with a long value, as far as the type
+     * of its operands is promoted.
+     */
+    private abstract static class Node {
+
+        /**
+         * Whether the type of the node is long because of a long constant.
+         */
+        final boolean longConstant;
+
+        /**
+         * The bit mask of the rule columns that make the type of the node
+         * long if their value is a long value.
+         */
+        final long columnMask;
+
+        Node(boolean longConstant, long columnMask) {
+            this.longConstant = longConstant;
+            this.columnMask = columnMask;
+        }
+
+        /**
+         * Check if the node is calculated with long values.
+         *
+         * @param longColumns the bit mask of the rule columns with a long
+         *            value
+         * @return true if it is
+         */
+        final boolean isWide(long longColumns) {
+            return longConstant || (columnMask & longColumns) != 0;
+        }
+
+        /**
+         * Evaluate the node.
+         *
+         * @param arg0 the value of the first argument
+         * @param args the argument values, or null if there is only one
+         * @param longColumns the bit mask of the rule columns with a long
+         *            value
+         * @return the result, in the int range if the node is not wide
+         */
+        abstract long eval(long arg0, long[] args, long longColumns);
+    }
+
+    /**
+     * A constant.
+     */
+    private static final class Constant extends Node {
+
+        private final long value;
+
+        Constant(long value, boolean longConstant) {
+            super(longConstant, 0);
+            this.value = value;
+        }
+
+        @Override
+        long eval(long arg0, long[] args, long longColumns) {
+            return value;
+        }
+    }
+
+    /**
+     * A rule column.
+     */
+    private static final class Column extends Node {
+
+        private final int index;
+
+        Column(int index) {
+            super(false, 1L << index);
+            this.index = index;
+        }
+
+        @Override
+        long eval(long arg0, long[] args, long longColumns) {
+            return index == 0 ? arg0 : args[index];
+        }
+    }
+
+    /**
+     * A unary operation.
+     */
+    private static final class Unary extends Node {
+
+        private final char op;
+        private final Node node;
+
+        Unary(char op, Node node) {
+            super(node.longConstant, node.columnMask);
+            this.op = op;
+            this.node = node;
+        }
+
+        @Override
+        long eval(long arg0, long[] args, long longColumns) {
+            long v = node.eval(arg0, args, longColumns);
+            long r = op == '-' ? -v : ~v;
+            return isWide(longColumns) ? r : (int) r;
+        }
+    }
+
+    /**
+     * A binary operation.
+     */
+    private static final class Binary extends Node {
+
+        static final int MUL = 0, DIV = 1, MOD = 2, ADD = 3, SUB = 4, SHL = 5,
+                SHR = 6, USHR = 7, AND = 8, XOR = 9, OR = 10;
+
+        private final int op;
+        private final Node left, right;
+
+        Binary(int op, Node left, Node right) {
+            // the type of a shift is the type of the left operand
+            super(left.longConstant || !isShift(op) && right.longConstant,
+                    isShift(op) ? left.columnMask : left.columnMask | right.columnMask);
+            this.op = op;
+            this.left = left;
+            this.right = right;
+        }
+
+        private static boolean isShift(int op) {
+            return op == SHL || op == SHR || op == USHR;
+        }
+
+        @Override
+        long eval(long arg0, long[] args, long longColumns) {
+            long a = left.eval(arg0, args, longColumns);
+            long b = right.eval(arg0, args, longColumns);
+            boolean wide = isWide(longColumns);
+            long r;
+            switch (op) {
+            case MUL:
+                r = a * b;
+                break;
+            case DIV:
+                r = a / b;
+                break;
+            case MOD:
+                r = a % b;
+                break;
+            case ADD:
+                r = a + b;
+                break;
+            case SUB:
+                r = a - b;
+                break;
+            case SHL:
+                // like OGNL, also an int value is shifted as a long value
+                r = a << (int) b;
+                break;
+            case SHR:
+                r = a >> (int) b;
+                break;
+            case USHR:
+                // except for the unsigned shift, that OGNL does with int
+                // values
+                r = wide ? a >>> (int) b : (int) a >>> (int) b;
+                break;
+            case AND:
+                r = a & b;
+                break;
+            case XOR:
+                r = a ^ b;
+                break;
+            default:
+                r = a | b;
+            }
+            return wide ? r : (int) r;
+        }
+    }
+
+    /**
+     * Thrown by the parser if the expression uses a syntax that is not
+     * supported, the rule is then evaluated by OGNL. It is caught within the
+     * parser, so the stack trace is not filled in.
+     */
+    private static final class UnsupportedSyntaxException extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public synchronized Throwable fillInStackTrace() {
+            return this;
+        }
+    }
+
+    /**
+     * A recursive descent parser of the supported syntax, with the operator
+     * precedence of OGNL (and Java). A syntax that is not supported throws
+     * an {@link UnsupportedSyntaxException}.
+     */
+    private static final class Parser {
+
+        private final String s;
+        private final String[] columns;
+        private int pos;
+
+        Parser(String s, String[] columns) {
+            this.s = s;
+            this.columns = columns;
+        }
+
+        Node parse() {
+            try {
+                Node n = readOr();
+                skipSpace();
+                return pos == s.length() ? n : null;
+            } catch (UnsupportedSyntaxException e) {
+                return null;
+            }
+        }
+
+        private Node readOr() {
+            Node n = readXor();
+            while (readOperator("|")) {
+                n = new Binary(Binary.OR, n, readXor());
+            }
+            return n;
+        }
+
+        private Node readXor() {
+            Node n = readAnd();
+            while (readOperator("^")) {
+                n = new Binary(Binary.XOR, n, readAnd());
+            }
+            return n;
+        }
+
+        private Node readAnd() {
+            Node n = readShift();
+            while (readOperator("&")) {
+                n = new Binary(Binary.AND, n, readShift());
+            }
+            return n;
+        }
+
+        private Node readShift() {
+            Node n = readSum();
+            while (true) {
+                if (readOperator(">>>")) {
+                    n = new Binary(Binary.USHR, n, readSum());
+                } else if (readOperator(">>")) {
+                    n = new Binary(Binary.SHR, n, readSum());
+                } else if (readOperator("<<")) {
+                    n = new Binary(Binary.SHL, n, readSum());
+                } else {
+                    return n;
+                }
+            }
+        }
+
+        private Node readSum() {
+            Node n = readFactor();
+            while (true) {
+                if (readOperator("+")) {
+                    n = new Binary(Binary.ADD, n, readFactor());
+                } else if (readOperator("-")) {
+                    n = new Binary(Binary.SUB, n, readFactor());
+                } else {
+                    return n;
+                }
+            }
+        }
+
+        private Node readFactor() {
+            Node n = readUnary();
+            while (true) {
+                if (readOperator("*")) {
+                    n = new Binary(Binary.MUL, n, readUnary());
+                } else if (readOperator("/")) {
+                    n = new Binary(Binary.DIV, n, readUnary());
+                } else if (readOperator("%")) {
+                    n = new Binary(Binary.MOD, n, readUnary());
+                } else {
+                    return n;
+                }
+            }
+        }
+
+        private Node readUnary() {
+            if (readOperator("-")) {
+                return new Unary('-', readUnary());
+            } else if (readOperator("~")) {
+                return new Unary('~', readUnary());
+            } else if (readOperator("+")) {
+                return readUnary();
+            }
+            return readTerm();
+        }
+
+        private Node readTerm() {
+            skipSpace();
+            if (pos >= s.length()) {
+                throw new UnsupportedSyntaxException();
+            }
+            char c = s.charAt(pos);
+            if (c == '(') {
+                pos++;
+                Node n = readOr();
+                if (!readOperator(")")) {
+                    throw new UnsupportedSyntaxException();
+                }
+                return n;
+            } else if (c >= '0' && c <= '9') {
+                return readNumber();
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = pos;
+                while (pos < s.length() && Character.isJavaIdentifierPart(s.charAt(pos))) {
+                    pos++;
+                }
+                String name = s.substring(start, pos);
+                skipSpace();
+                if (pos < s.length() && (s.charAt(pos) == '.' || s.charAt(pos) == '(' ||
+                        s.charAt(pos) == '[')) {
+                    // a method call or property access, left to OGNL
+                    throw new UnsupportedSyntaxException();
+                }
+                for (int i = 0; i < columns.length; i++) {
+                    if (columns[i].equals(name)) {
+                        return new Column(i);
+                    }
+                }
+            }
+            throw new UnsupportedSyntaxException();
+        }
+
+        private Node readNumber() {
+            int start = pos;
+            while (pos < s.length() && Character.isDigit(s.charAt(pos))) {
+                pos++;
+            }
+            if (pos < s.length()) {
+                char c = s.charAt(pos);
+                if (c == 'L' || c == 'l') {
+                    return new Constant(parseLong(s.substring(start, pos++)), true);
+                } else if (c == '.' || Character.isJavaIdentifierPart(c)) {
+                    // a decimal, a hex or an octal number
+                    throw new UnsupportedSyntaxException();
+                }
+            }
+            String text = s.substring(start, pos);
+            if (text.length() > 1 && text.charAt(0) == '0') {
+                throw new UnsupportedSyntaxException();
+            }
+            long value = parseLong(text);
+            if (value > Integer.MAX_VALUE) {
+                throw new UnsupportedSyntaxException();
+            }
+            return new Constant(value, false);
+        }
+
+        private static long parseLong(String text) {
+            try {
+                return Long.parseLong(text);
+            } catch (NumberFormatException e) {
+                throw new UnsupportedSyntaxException();
+            }
+        }
+
+        private boolean readOperator(String op) {
+            skipSpace();
+            if (!s.startsWith(op, pos)) {
+                return false;
+            }
+            int end = pos + op.length();
+            if (end < s.length()) {
+                char next = s.charAt(end);
+                // do not read a part of "||", "&&", "<<", ">>" or ">>>"; nor
+                // of every operator followed by "=", such as "+=", "|=" or
+                // ">>=": these are assignments, which are not compiled
+                if ((op.equals("|") || op.equals("&")) && next == op.charAt(0)) {
+                    return false;
+                }
+                if (((op.equals(">>") || op.equals("<<")) && next == op.charAt(0))
+                        || next == '=') {
+                    return false;
+                }
+            }
+            pos = end;
+            return true;
+        }
+
+        private void skipSpace() {
+            while (pos < s.length() && Character.isWhitespace(s.charAt(pos))) {
+                pos++;
+            }
+        }
+    }
+
+}
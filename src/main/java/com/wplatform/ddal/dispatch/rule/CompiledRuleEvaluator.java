@@ -0,0 +1,51 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dispatch.rule;
+
+import java.util.Map;
+
+import com.wplatform.ddal.value.Value;
+
+/**
+ * A rule evaluator that uses the compiled form of a rule expression if
+ * there is one and the arguments are integer values. Otherwise the rule is
+ * evaluated by OGNL.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public class CompiledRuleEvaluator implements RuleEvaluator {
+
+    private final RuleEvaluator ognl = new OgnlRuleEvaluator();
+
+    @Override
+    public Object evaluate(RuleExpression expression, Map<String, Value> parameters)
+            throws RuleEvaluateException {
+        CompiledRule rule = expression.getCompiledRule();
+        if (rule != null) {
+            String[] columns = rule.getColumns();
+            Value[] args = new Value[columns.length];
+            for (int i = 0; i < columns.length; i++) {
+                args[i] = parameters.get(columns[i]);
+            }
+            Object result = rule.evaluate(args);
+            if (result != null) {
+                return result;
+            }
+        }
+        return ognl.evaluate(expression, parameters);
+    }
+
+}
@@ -32,23 +32,22 @@ public class OgnlRuleEvaluator implements RuleEvaluator {
 
     @Override
     public Object evaluate(RuleExpression expression, Map<String, Value> parameters) throws RuleEvaluateException {
-        Map<String, Object> evaluateContext = New.hashMap();
+        Map<String, Object> evaluateContext = null;
         String ognlExpr = expression.getExpression();
         try {
             List<RuleColumn> ruleCols = expression.getRuleColumns();
-            Map<String, Object> args = New.hashMap(ruleCols.size(), 1L);
+            Configuration configuration = expression.getTableRouter().getConfiguration();
+            Map<String, Object> algorithms = configuration.getRuleAlgorithms();
+            evaluateContext = New.hashMap(algorithms.size() + ruleCols.size());
+            evaluateContext.putAll(algorithms);
             for (RuleColumn ruleColumn : ruleCols) {
                 Value argValue = parameters.get(ruleColumn.getName());
                 if (argValue == null) {
-                    args.put(ruleColumn.getName(), null);
+                    evaluateContext.put(ruleColumn.getName(), null);
                 } else {
-                    args.put(ruleColumn.getName(), argValue.getObject());
+                    evaluateContext.put(ruleColumn.getName(), argValue.getObject());
                 }
             }
-            Configuration configuration = expression.getTableRouter().getConfiguration();
-            Map<String, Object> algorithms = configuration.getRuleAlgorithms();
-            evaluateContext.putAll(algorithms);
-            evaluateContext.putAll(args);
             Object result = OgnlCache.getValue(ognlExpr, evaluateContext);
             if (result == null) {
                 throw new RuleEvaluateException("The rule expression " + ognlExpr
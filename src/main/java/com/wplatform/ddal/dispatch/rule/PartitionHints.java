@@ -15,29 +15,146 @@
  */
 package com.wplatform.ddal.dispatch.rule;
 
-import com.wplatform.ddal.config.parser.GenericTokenParser;
-import com.wplatform.ddal.config.parser.TokenHandler;
+import java.util.List;
+
+import com.wplatform.ddal.dbobject.table.TableMate;
+import com.wplatform.ddal.dispatch.TableRoutingException;
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.message.DbException;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.util.StringUtils;
 
 /**
- * 
+ * The partition hints of a statement, written as a comment like
+ * <code>/*ddal: shard=shard2 table=orders_03 readonly *&#47;</code>.
+ * <ul>
+ * <li><code>shard</code> routes the statement to the table nodes on the
+ * shard</li>
+ * <li><code>table</code> routes the statement to the table node with the
+ * object name (or the composite object name)</li>
+ * <li><code>readonly</code> lets the queries read from a read only data
+ * source of the shard</li>
+ * </ul>
+ * A table that has no node with the hinted object name is routed by the
+ * shard hint, or by its rule if there is no shard hint. The hints are
+ * parsed once, when the statement is prepared. The parser passes the block
+ * comments it skips, so a hint inside a string literal is no hint.
+ *
  * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
  */
 public class PartitionHints {
-    
-    
-    
-    public static PartitionHints parse(String sql) {
-        /* ddal()*/
-        GenericTokenParser parser = new GenericTokenParser("/*", "*/", new TokenHandler() {
-            
-            @Override
-            public String handleToken(String content) {
-                // TODO Auto-generated method stub
-                return null;
+
+    private static final String PREFIX = "ddal:";
+
+    private String shard;
+    private String table;
+    private boolean readOnly;
+
+    /**
+     * Check if the text of a block comment is a partition hint.
+     *
+     * @param comment the text between <code>/*</code> and
+     *            <code>*&#47;</code>
+     * @return true if it is
+     */
+    public static boolean isHint(String comment) {
+        String c = comment.trim();
+        return c.regionMatches(true, 0, PREFIX, 0, PREFIX.length());
+    }
+
+    /**
+     * Parse the partition hint comments of a statement.
+     *
+     * @param comments the text of the hint comments
+     * @param sql the SQL statement
+     * @return the hints, or null if there is no hint comment
+     */
+    public static PartitionHints parse(List<String> comments, String sql) {
+        if (comments == null || comments.isEmpty()) {
+            return null;
+        }
+        PartitionHints hints = new PartitionHints();
+        for (String comment : comments) {
+            String c = comment.trim().substring(PREFIX.length());
+            for (String item : StringUtils.arraySplit(c.replace(',', ' '), ' ', true)) {
+                if (item.length() == 0) {
+                    continue;
+                }
+                int idx = item.indexOf('=');
+                String key = idx < 0 ? item : item.substring(0, idx).trim();
+                String value = idx < 0 ? null : item.substring(idx + 1).trim();
+                if ("readonly".equalsIgnoreCase(key) && value == null) {
+                    hints.readOnly = true;
+                } else if ("shard".equalsIgnoreCase(key) && !StringUtils.isNullOrEmpty(value)) {
+                    hints.shard = value;
+                } else if ("table".equalsIgnoreCase(key) && !StringUtils.isNullOrEmpty(value)) {
+                    hints.table = value;
+                } else {
+                    throw DbException.getSyntaxError(sql, sql.indexOf(item),
+                            "shard=..., table=... or readonly");
+                }
             }
-        });
-        parser.parse(sql);
-        return null;
+        }
+        return hints;
+    }
+
+    /**
+     * Route a table of the current statement of a session by its hints.
+     *
+     * @param session the session
+     * @param table the table
+     * @return the routing result, or null if the table is routed by its rule
+     */
+    public static RoutingResult route(Session session, TableMate table) {
+        PartitionHints hints = session.getPartitionHints();
+        return hints == null ? null : hints.route(table);
+    }
+
+    /**
+     * Route a table by the hints.
+     *
+     * @param t the table
+     * @return the routing result, or null if the table is routed by its rule
+     */
+    public RoutingResult route(TableMate t) {
+        if (table == null && shard == null) {
+            return null;
+        }
+        TableNode[] partition = t.getPartitionNode();
+        if (table != null) {
+            for (TableNode node : partition) {
+                if ((shard == null || shard.equals(node.getShardName())) &&
+                        (table.equalsIgnoreCase(node.getObjectName()) ||
+                        table.equalsIgnoreCase(node.getCompositeObjectName()))) {
+                    return RoutingResult.fixedResult(node);
+                }
+            }
+        }
+        if (shard == null) {
+            return null;
+        }
+        List<TableNode> nodes = New.arrayList();
+        for (TableNode node : partition) {
+            if (shard.equals(node.getShardName())) {
+                nodes.add(node);
+            }
+        }
+        if (nodes.isEmpty()) {
+            throw new TableRoutingException(t.getName() + " has no table node on the hinted shard " + shard);
+        }
+        return RoutingResult.fixedResult(nodes);
+    }
+
+    public String getShard() {
+        return shard;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public boolean isReadOnly() {
+        return readOnly;
     }
 
 }
@@ -18,10 +18,9 @@
 
 package com.wplatform.ddal.dispatch.rule;
 
-import java.util.ArrayList;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
 import com.wplatform.ddal.util.New;
 import com.wplatform.ddal.value.Value;
@@ -31,7 +30,15 @@ import com.wplatform.ddal.value.Value;
  */
 public class RoutingCalculatorImpl implements RoutingCalculator {
 
-    private RuleEvaluator evaluator = new OgnlRuleEvaluator();
+    /**
+     * The default maximum number of rule column value combinations that are
+     * evaluated for one routing.
+     */
+    public static final int DEFAULT_MAX_COMBINATIONS = 10000;
+
+    private RuleEvaluator evaluator = new CompiledRuleEvaluator();
+
+    private int maxCombinations = DEFAULT_MAX_COMBINATIONS;
 
     public RuleEvaluator getEvaluator() {
         return evaluator;
@@ -41,6 +48,21 @@ public class RoutingCalculatorImpl implements RoutingCalculator {
         this.evaluator = evaluator;
     }
 
+    public int getMaxCombinations() {
+        return maxCombinations;
+    }
+
+    /**
+     * Set the maximum number of combinations of the rule column values that
+     * are evaluated. If there are more, all table nodes of the partition are
+     * selected.
+     *
+     * @param maxCombinations the maximum, or 0 for no limit
+     */
+    public void setMaxCombinations(int maxCombinations) {
+        this.maxCombinations = maxCombinations;
+    }
+
     @Override
     public RoutingResult calculate(TableRouter tableRouter, Map<String, List<Value>> columnValue) {
         if (tableRouter == null) {
@@ -63,55 +85,98 @@ public class RoutingCalculatorImpl implements RoutingCalculator {
     }
 
     /**
-     * @param ruleToUse
-     * @param columnValue
-     * @param tableRule
+     * Evaluate the rule for the combinations of the distinct values of the
+     * rule columns. The combinations are enumerated one by one and the
+     * enumeration stops as soon as every table node of the partition is
+     * selected. If there are more combinations than the configured maximum,
+     * all table nodes are selected without evaluating the rule.
      */
     private List<TableNode> evaluateTableRule(TableRouter tr, Map<String, List<Value>> args) {
-        List<TableNode> result = New.arrayList();
         RuleExpression rule = tr.getRuleExpression();
         List<TableNode> partion = tr.getPartition();
         List<RuleColumn> ruleColumns = rule.getRuleColumns();
-        Map<String, List<Value>> paramCollections = New.hashMap(ruleColumns.size(), 1L);
-        for (RuleColumn ruleColumn : ruleColumns) {
-            String name = ruleColumn.getName();
-            paramCollections.put(name, args.get(name));
+        int columnCount = ruleColumns.size();
+        String[] names = new String[columnCount];
+        Value[][] values = new Value[columnCount][];
+        long combinations = 1;
+        for (int i = 0; i < columnCount; i++) {
+            names[i] = ruleColumns.get(i).getName();
+            values[i] = distinct(args.get(names[i]));
+            combinations *= values[i].length;
+            if (maxCombinations > 0 && combinations > maxCombinations) {
+                return partion;
+            }
         }
-        // 一个规则存在多个RuleColumn，多个RuleColumn对应的取值集合做笛卡尔积后的所有集
-        for (Map<String, Value> parameters : new CrossedCollection(paramCollections)) {
-            TableNode tableNode = null;
-            Object evlValue = evaluator.evaluate(rule, parameters);
-            if (evlValue == null) {
-                throw new RuleEvaluateException("The rule expression " + rule.getExpression()
-                        + " evaluate a null value.");
+        boolean[] selected = new boolean[partion.size()];
+        int selectedCount = 0;
+        Map<String, Value> parameters = New.hashMap(columnCount);
+        // 笛卡尔积索引记录
+        int[] record = new int[columnCount];
+        for (long i = 0; i < combinations && selectedCount < selected.length; i++) {
+            for (int c = 0; c < columnCount; c++) {
+                parameters.put(names[c], values[c][record[c]]);
             }
-            if (evlValue instanceof TableNode) {
-                if (!partion.contains(evlValue)) {
-                    throw new RuleEvaluateException("The rule expression " + rule.getExpression() + " evaluated "
-                            + evlValue + " is not in partition list.");
-                }
-                tableNode = (TableNode) evlValue;
-            } else if (evlValue.getClass() == int.class || evlValue.getClass() == Integer.class
-                    || evlValue.getClass() == long.class || evlValue.getClass() == Long.class
-                    || evlValue.getClass() == short.class || evlValue.getClass() == Short.class
-                    || evlValue.getClass() == byte.class || evlValue.getClass() == Byte.class) {
-                try {
-                    int index = Integer.parseInt(evlValue.toString());
-                    tableNode = partion.get(index);
-                } catch (IndexOutOfBoundsException e) {
-                    throw new RuleEvaluateException("The rule expression " + rule.getExpression() + " evaluated "
-                            + evlValue + " is out of range partition list.");
+            int index = evaluate(rule, partion, parameters);
+            if (!selected[index]) {
+                selected[index] = true;
+                selectedCount++;
+            }
+            for (int c = columnCount - 1; c >= 0; c--) {
+                if (++record[c] < values[c].length) {
+                    break;
                 }
-
-            } else {
-                throw new RuleEvaluateException("The group rule expression " + rule.getExpression()
-                        + " return a value " + evlValue.getClass() + " which type is unsupported.");
+                record[c] = 0;
+            }
+        }
+        List<TableNode> result = New.arrayList(selectedCount);
+        for (int i = 0; i < selected.length; i++) {
+            if (selected[i]) {
+                result.add(partion.get(i));
             }
-            result.add(tableNode);
         }
         return result;
     }
 
+    private static Value[] distinct(List<Value> values) {
+        Set<Value> set = New.linkedHashSet();
+        set.addAll(values);
+        return set.toArray(new Value[set.size()]);
+    }
+
+    /**
+     * Evaluate the rule for one combination of the rule column values.
+     *
+     * @return the index of the table node in the partition
+     */
+    private int evaluate(RuleExpression rule, List<TableNode> partion, Map<String, Value> parameters) {
+        Object evlValue = evaluator.evaluate(rule, parameters);
+        if (evlValue == null) {
+            throw new RuleEvaluateException("The rule expression " + rule.getExpression()
+                    + " evaluate a null value.");
+        }
+        if (evlValue instanceof TableNode) {
+            int index = partion.indexOf(evlValue);
+            if (index < 0) {
+                throw new RuleEvaluateException("The rule expression " + rule.getExpression() + " evaluated "
+                        + evlValue + " is not in partition list.");
+            }
+            return index;
+        } else if (evlValue.getClass() == int.class || evlValue.getClass() == Integer.class
+                || evlValue.getClass() == long.class || evlValue.getClass() == Long.class
+                || evlValue.getClass() == short.class || evlValue.getClass() == Short.class
+                || evlValue.getClass() == byte.class || evlValue.getClass() == Byte.class) {
+            long index = ((Number) evlValue).longValue();
+            if (index < 0 || index >= partion.size()) {
+                throw new RuleEvaluateException("The rule expression " + rule.getExpression() + " evaluated "
+                        + evlValue + " is out of range partition list.");
+            }
+            return (int) index;
+        } else {
+            throw new RuleEvaluateException("The group rule expression " + rule.getExpression()
+                    + " return a value " + evlValue.getClass() + " which type is unsupported.");
+        }
+    }
+
     /**
      * 对于分库分表存在多个Rule的情况下，choiceRule负责根据表的字段值选取一个符合条件的Rule做为sharding规则，
      * 先择的规则按优先顺序，优先最大匹配，先匹配所有列，找不到再去除可选列之后匹配
@@ -135,96 +200,4 @@ public class RoutingCalculatorImpl implements RoutingCalculator {
         return true;
     }
 
-    /**
-     * 将列的值域通过笛卡尔积运算，转化为参数一一对应的值域
-     * <p>
-     * <p>
-     * <pre>
-     * 如输入参数： {
-     *        column1:{ 1, 2, 3 },
-     *        column2:{ a, b, c, d }
-     * }
-     * </pre>
-     * <p>
-     * <p>
-     * <pre>
-     * 输出结果：{
-     *      {column1=1, column2=a}
-     *      {column1=1, column2=b}
-     *      {column1=1, column2=c}
-     *      {column1=2, column2=a}
-     *      {column1=2, column2=b}
-     *      {column1=2, column2=c}
-     * }
-     * </pre>
-     *
-     * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
-     */
-    private static class CrossedCollection implements Iterable<Map<String, Value>> {
-
-        private Map<String, List<Value>> collection;
-
-        private List<Map<String, Value>> crossedResult;
-
-        /**
-         * @param collection
-         */
-        private CrossedCollection(Map<String, List<Value>> collection) {
-            this.collection = collection;
-        }
-
-        /* (non-Javadoc)
-         * @see java.lang.Iterable#iterator() */
-        @Override
-        public Iterator<Map<String, Value>> iterator() {
-            crossedResult = cross(this.collection);
-            return crossedResult.iterator();
-        }
-
-        private List<Map<String, Value>> cross(Map<String, List<Value>> crossArgs) {
-            // Set是无顺的且不能按顺号迭代，先将Set转为List
-            Map<String, List<Value>> crossSource = New.hashMap(crossArgs.size(), 1L);
-            List<String> columnNames = new ArrayList<String>(crossArgs.keySet());
-            // 计算出笛卡尔积行数
-            int rows = columnNames.size() > 0 ? 1 : 0;
-            for (String column : columnNames) {
-                crossSource.put(column, new ArrayList<Value>(crossArgs.get(column)));
-                rows *= crossArgs.get(column).size();
-            }
-            // 笛卡尔积索引记录
-            int[] record = new int[columnNames.size()];
-            List<Map<String, Value>> results = new ArrayList<Map<String, Value>>();
-            // 产生笛卡尔积
-            for (int i = 0; i < rows; i++) {
-                // List<String> row = new ArrayList<String>();
-                Map<String, Value> row = New.linkedHashMap(record.length, 1L);
-                // 生成笛卡尔积的每组数据
-                for (int index = 0; index < record.length; index++) {
-                    String columnName = columnNames.get(index);
-                    List<Value> columnValues = crossSource.get(columnName);
-                    row.put(columnName, columnValues.get(record[index]));
-                }
-                results.add(row);
-                crossRecord(columnNames, crossSource, record, crossArgs.size() - 1);
-            }
-            return results;
-        }
-
-        /**
-         * 产生笛卡尔积当前行索引记录.
-         *
-         * @param sourceArgs 要产生笛卡尔积的源数据
-         * @param record     每行笛卡尔积的索引组合
-         * @param level      索引组合的当前计算层级
-         */
-        private void crossRecord(List<String> columnNames, Map<String, List<Value>> crossSource, int[] record, int level) {
-            record[level] = record[level] + 1;
-            if (record[level] >= crossSource.get(columnNames.get(level)).size() && level > 0) {
-                record[level] = 0;
-                crossRecord(columnNames, crossSource, record, level - 1);
-            }
-        }
-
-    }
-
 }
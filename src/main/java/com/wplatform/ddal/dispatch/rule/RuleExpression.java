@@ -33,6 +33,8 @@ public class RuleExpression implements Serializable {
     private List<RuleColumn> ruleColumns;
     private String expression;
     private PartitionFunction function;
+    private transient volatile CompiledRule compiledRule;
+    private transient volatile boolean compiled;
 
     /**
      * @param tableRouter
@@ -54,6 +56,7 @@ public class RuleExpression implements Serializable {
      */
     public void setRuleColumns(List<RuleColumn> ruleColumns) {
         this.ruleColumns = ruleColumns;
+        this.compiled = false;
     }
 
     /**
@@ -68,6 +71,27 @@ public class RuleExpression implements Serializable {
      */
     public void setExpression(String expression) {
         this.expression = expression;
+        this.compiled = false;
+    }
+
+    /**
+     * Compile the expression, this is done once when the configuration is
+     * loaded.
+     */
+    public void compile() {
+        compiledRule = CompiledRule.compile(this);
+        compiled = true;
+    }
+
+    /**
+     * @return the compiled expression, or null if the expression can only
+     *         be evaluated by OGNL
+     */
+    public CompiledRule getCompiledRule() {
+        if (!compiled) {
+            compile();
+        }
+        return compiledRule;
     }
 
     /**
@@ -83,6 +107,13 @@ public class RuleExpression implements Serializable {
         return function;
     }
 
+    /**
+     * @param function the function to set
+     */
+    public void setFunction(PartitionFunction function) {
+        this.function = function;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -128,6 +128,7 @@ public class Database {
                 tableMate.setTableRouter(tableConfig.getTableRouter());
                 tableMate.setShards(tableConfig.getShards());
                 tableMate.setScanLevel(tableConfig.getScanLevel());
+                tableMate.setInsertBatchSize(tableConfig.getInsertBatchSize());
                 tableMate.loadMataData(sysSession);
                 if (tableConfig.isValidation()) {
                     tableMate.check();
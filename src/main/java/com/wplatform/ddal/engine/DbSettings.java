@@ -125,6 +125,23 @@ public class DbSettings extends SettingsBase {
      * Support very large transactions
      */
     public final boolean largeTransactions = get("LARGE_TRANSACTIONS", true);
+    /**
+     * Database setting <code>LAZY_QUERY_EXECUTION</code> (default: false).<br />
+     * If set, the rows of a forward only result set are read from the shards
+     * only when they are requested. The select list is evaluated when a row
+     * is read, so the parameters must not be changed while such a result
+     * set is open.
+     */
+    public final boolean lazyQueryExecution = get("LAZY_QUERY_EXECUTION", false);
+    /**
+     * Database setting <code>STREAM_SHARD_RESULTS</code> (default: false).<br />
+     * If set, the JDBC driver of the shards is asked to stream the rows of a
+     * query if the mode has a streaming fetch size, for MySQL
+     * Integer.MIN_VALUE. A streamed result blocks its connection until it is
+     * read. Otherwise the fetch size of the statement is passed to the
+     * driver; MySQL only honors it with useCursorFetch=true.
+     */
+    public final boolean streamShardResults = get("STREAM_SHARD_RESULTS", false);
     /**
      * Database setting <code>MAX_COMPACT_COUNT</code>
      * (default: Integer.MAX_VALUE).<br />
@@ -260,6 +277,15 @@ public class DbSettings extends SettingsBase {
      * using MVCC.
      */
     public final boolean selectForUpdateMvcc = get("SELECT_FOR_UPDATE_MVCC", true);
+    /**
+     * Database setting <code>SPILL_OFF_HEAP</code> (default: false).<br />
+     * If set, DISTINCT results and GROUP BY groups that do not fit in
+     * MAX_MEMORY_ROWS are kept in direct memory buffers outside of the java
+     * heap. Otherwise they are written to a temporary file. The direct
+     * memory is not bounded by this setting, only by
+     * -XX:MaxDirectMemorySize.
+     */
+    public final boolean spillOffHeap = get("SPILL_OFF_HEAP", false);
     /**
      * Database setting <code>SHARE_LINKED_CONNECTIONS</code>
      * (default: true).<br />
@@ -275,6 +301,84 @@ public class DbSettings extends SettingsBase {
      * Compress data when storing.
      */
     public final boolean compressData = get("COMPRESS", false);
+    /**
+     * Database setting <code>ROUTING_CACHE_SIZE</code> (default: 0).<br />
+     * The maximum number of routing results that are cached per database,
+     * keyed by the table router and the values of the rule columns. 0
+     * disables the cache.
+     */
+    public final int routingCacheSize = get("ROUTING_CACHE_SIZE", 0);
+    /**
+     * Database setting <code>ROUTING_MAX_COMBINATIONS</code>
+     * (default: 10000).<br />
+     * The maximum number of combinations of the rule column values that
+     * are evaluated to route a statement on a table with a multi-column
+     * rule. If the values of the conditions have more combinations, the
+     * statement is routed to all table nodes. 0 means no limit.
+     */
+    public final int routingMaxCombinations = get("ROUTING_MAX_COMBINATIONS", 10000);
+    /**
+     * Database setting <code>SEMI_JOIN_MAX_NODE_KEYS</code>
+     * (default: 10000).<br />
+     * The maximum number of keys of an IN(SELECT ...) condition on the
+     * sharding key that are kept for one table node. Up to this number, each
+     * table node receives an IN list of its own keys. Above it, the
+     * condition is routed as a whole and each routed table node receives all
+     * keys.
+     */
+    public final int semiJoinMaxNodeKeys = get("SEMI_JOIN_MAX_NODE_KEYS", 10000);
+    /**
+     * Database setting <code>MERGE_SORT_STRINGS</code> (default: false).<br />
+     * If set, the ordered results of the table nodes are merged also when
+     * the query is ordered by a string column. This is only correct if the
+     * shards compare strings the same way as this database, for example
+     * with a binary collation. Otherwise such results are sorted locally.
+     */
+    public final boolean mergeSortStrings = get("MERGE_SORT_STRINGS", false);
+    /**
+     * Database setting <code>INSERT_VALUES_MAX_ROWS</code> (default: 0).<br />
+     * The maximum number of rows of a multi-row INSERT statement. If it is
+     * larger than 1, the rows of an INSERT that are sent to the same table
+     * node are written as one <code>INSERT INTO ... VALUES(...), (...)</code>
+     * statement for each chunk of rows, instead of a JDBC batch with one
+     * statement for each row. 0 disables the rewriting.
+     */
+    public final int insertValuesMaxRows = get("INSERT_VALUES_MAX_ROWS", 0);
+    /**
+     * Database setting <code>INSERT_BATCH_SIZE</code> (default: 200).<br />
+     * The number of rows of an INSERT statement that are collected before
+     * they are written to the shards. A table can override it with the
+     * <code>insertBatchSize</code> attribute.
+     */
+    public final int insertBatchSize = get("INSERT_BATCH_SIZE", 200);
+    /**
+     * Database setting <code>INSERT_PIPELINED_BATCHES</code>
+     * (default: 1).<br />
+     * The maximum number of batches of rows of an INSERT statement that are
+     * handled at the same time, including the batch that is collected, for
+     * example while the rows of an INSERT ... SELECT are read. 1 writes each
+     * batch before the next row is collected. The batches of a shard are
+     * always written one after the other.
+     */
+    public final int insertPipelinedBatches = get("INSERT_PIPELINED_BATCHES", 1);
+    /**
+     * Database setting <code>INSERT_VALUES_MAX_SIZE</code>
+     * (default: 1048576).<br />
+     * The estimated maximum size in bytes of a multi-row INSERT statement
+     * and its parameters. It should be below the maximum packet size of the
+     * shards.
+     */
+    public final int insertValuesMaxSize = get("INSERT_VALUES_MAX_SIZE", 1048576);
+    /**
+     * Database setting <code>VIRTUAL_THREAD_WORKERS</code>
+     * (default: false).<br />
+     * Run every JDBC worker in its own virtual thread instead of the thread
+     * pool of its shard, so a worker that waits for a shard does not hold a
+     * platform thread. The pool sizes of the shards still limit the number
+     * of concurrent statements. This requires a java runtime with virtual
+     * threads, otherwise the thread pools are used.
+     */
+    public final boolean virtualThreadWorkers = get("VIRTUAL_THREAD_WORKERS", false);
     /**
      * Database setting <code>DEFAULT_CONNECTION</code> (default: false).<br />
      * Whether Java functions can use
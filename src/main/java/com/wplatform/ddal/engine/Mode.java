@@ -66,6 +66,26 @@ public class Mode {
      */
     public static final String REGULAR = "REGULAR";
 
+    /**
+     * A row limit is sent as LIMIT n.
+     */
+    public static final int LIMIT_CLAUSE = 0;
+
+    /**
+     * A row limit is sent as FETCH FIRST n ROWS ONLY.
+     */
+    public static final int LIMIT_FETCH_FIRST = 1;
+
+    /**
+     * A row limit is sent as SELECT TOP n.
+     */
+    public static final int LIMIT_TOP = 2;
+
+    /**
+     * A row limit is sent as a ROWNUM condition around the query.
+     */
+    public static final int LIMIT_ROWNUM = 3;
+
 
     private static final HashMap<String, Mode> MODES = New.hashMap();
 
@@ -74,6 +94,8 @@ public class Mode {
     static {
         Mode mode = new Mode(REGULAR);
         mode.nullConcatIsNull = true;
+        mode.supportNullOrdering = true;
+        mode.nullsSortedLow = true;
         add(mode);
 
         mode = new Mode(DB2);
@@ -81,6 +103,7 @@ public class Mode {
         mode.supportOffsetFetch = true;
         mode.sysDummy1 = true;
         mode.isolationLevelInSelectOrInsertStatement = true;
+        mode.limitSyntax = LIMIT_FETCH_FIRST;
         add(mode);
 
         mode = new Mode(DERBY);
@@ -89,6 +112,8 @@ public class Mode {
         mode.supportOffsetFetch = true;
         mode.sysDummy1 = true;
         mode.isolationLevelInSelectOrInsertStatement = true;
+        mode.limitSyntax = LIMIT_FETCH_FIRST;
+        mode.supportNullOrdering = true;
         add(mode);
 
         mode = new Mode(HSQLDB);
@@ -97,6 +122,8 @@ public class Mode {
         mode.nullConcatIsNull = true;
         mode.uniqueIndexSingleNull = true;
         mode.allowPlusForStringConcat = true;
+        mode.supportNullOrdering = true;
+        mode.nullsSortedLow = true;
         add(mode);
 
         mode = new Mode(MSSQL_SERVER);
@@ -105,6 +132,9 @@ public class Mode {
         mode.uniqueIndexSingleNull = true;
         mode.allowPlusForStringConcat = true;
         mode.swapConvertFunctionParameters = true;
+        mode.limitSyntax = LIMIT_TOP;
+        mode.nullsSortedLow = true;
+        mode.maxParameters = 2100;
         add(mode);
 
         mode = new Mode(MY_SQL);
@@ -112,6 +142,9 @@ public class Mode {
         mode.indexDefinitionInCreateTable = true;
         mode.lowerCaseIdentifiers = true;
         mode.onDuplicateKeyUpdate = true;
+        mode.nullsSortedLow = true;
+        mode.streamingFetchSize = Integer.MIN_VALUE;
+        mode.maxParameters = 65535;
         add(mode);
 
         mode = new Mode(ORACLE);
@@ -119,6 +152,8 @@ public class Mode {
         mode.convertOnlyToSmallerScale = true;
         mode.uniqueIndexSingleNullExceptAllColumnsAreNull = true;
         mode.treatEmptyStringsAsNull = true;
+        mode.limitSyntax = LIMIT_ROWNUM;
+        mode.supportNullOrdering = true;
         add(mode);
 
         mode = new Mode(POSTGRE_SQL);
@@ -128,6 +163,7 @@ public class Mode {
         mode.systemColumns = true;
         mode.logIsLogBase10 = true;
         mode.serialColumnIsNotPK = true;
+        mode.supportNullOrdering = true;
         add(mode);
     }
 
@@ -226,6 +262,34 @@ public class Mode {
      * MySQL style INSERT ... ON DUPLICATE KEY UPDATE ...
      */
     public boolean onDuplicateKeyUpdate;
+    /**
+     * How a row limit is written in the statements sent to the shards
+     * (LIMIT_CLAUSE, LIMIT_FETCH_FIRST, LIMIT_TOP or LIMIT_ROWNUM).
+     */
+    public int limitSyntax = LIMIT_CLAUSE;
+
+    /**
+     * NULLS FIRST and NULLS LAST can be written in the ORDER BY of the
+     * statements sent to the shards.
+     */
+    public boolean supportNullOrdering;
+
+    /**
+     * The shards sort NULL before all other values in ascending order if the
+     * ORDER BY has no NULLS FIRST or NULLS LAST.
+     */
+    public boolean nullsSortedLow;
+
+    /**
+     * The fetch size that asks the JDBC driver of the shards to stream the
+     * rows one by one, or 0 if the driver has no such fetch size.
+     */
+    public int streamingFetchSize;
+
+    /**
+     * The maximum number of parameters of a statement sent to the shards.
+     */
+    public int maxParameters = Short.MAX_VALUE;
 
     private Mode(String name) {
         this.name = name;
@@ -36,6 +36,7 @@ import com.wplatform.ddal.dbobject.User;
 import com.wplatform.ddal.dbobject.index.Index;
 import com.wplatform.ddal.dbobject.schema.Schema;
 import com.wplatform.ddal.dbobject.table.Table;
+import com.wplatform.ddal.dispatch.rule.PartitionHints;
 import com.wplatform.ddal.excutor.Optional;
 import com.wplatform.ddal.excutor.PreparedExecutorFactory;
 import com.wplatform.ddal.jdbc.JdbcConnection;
@@ -105,6 +106,7 @@ public class Session implements SessionInterface {
     private boolean closed;
     private long transactionStart;
     private long currentCommandStart;
+    private int statementId;
     private HashMap<String, Value> variables;
     private HashSet<LocalResult> temporaryResults;
     private int queryTimeout;
@@ -314,7 +316,9 @@ public class Session implements SessionInterface {
 
     @Override
     public synchronized CommandInterface prepareCommand(String sql, int fetchSize) {
-        return prepareLocal(sql);
+        Command command = prepareLocal(sql);
+        command.setFetchSize(fetchSize);
+        return command;
     }
 
     /**
@@ -754,6 +758,16 @@ public class Session implements SessionInterface {
         return currentCommand;
     }
 
+    /**
+     * Get the partition hints of the current command.
+     *
+     * @return the hints, or null
+     */
+    public PartitionHints getPartitionHints() {
+        Command c = currentCommand;
+        return c == null ? null : c.getPartitionHints();
+    }
+
     /**
      * Set the current command of this session. This is done just before
      * executing the statement.
@@ -762,6 +776,9 @@ public class Session implements SessionInterface {
      */
     public void setCurrentCommand(Command command) {
         this.currentCommand = command;
+        if (command != null) {
+            statementId++;
+        }
         if (queryTimeout > 0 && command != null) {
             long now = System.currentTimeMillis();
             currentCommandStart = now;
@@ -773,6 +790,16 @@ public class Session implements SessionInterface {
         return currentCommandStart;
     }
 
+    /**
+     * Get the id of the current statement execution. The id changes each
+     * time a command is executed in this session.
+     *
+     * @return the statement id
+     */
+    public int getStatementId() {
+        return statementId;
+    }
+
     public boolean getAllowLiterals() {
         return allowLiterals;
     }
@@ -1003,6 +1030,60 @@ public class Session implements SessionInterface {
         closeTemporaryResults();
     }
 
+    /**
+     * Detach the current statement execution from this session, for a
+     * forward only result that reads its rows after the command returned.
+     * The temporary results of the statement are not closed by
+     * {@link #endStatement()} any more, but by
+     * {@link #endStatement(StatementContext)}.
+     *
+     * @return the context of the statement
+     */
+    public StatementContext detachStatement() {
+        StatementContext context = new StatementContext();
+        context.command = currentCommand;
+        context.statementId = statementId;
+        context.temporaryResults = temporaryResults;
+        temporaryResults = null;
+        return context;
+    }
+
+    /**
+     * Make a detached statement the current statement of this session while
+     * the rows of its result are read, so that the command, its partition
+     * hints and fetch size, and the statement id are the ones of the
+     * statement that created the result.
+     *
+     * @param context the context of the statement to attach
+     * @return the context that was replaced, it must be attached again
+     *         afterwards
+     */
+    public StatementContext attachStatement(StatementContext context) {
+        StatementContext old = new StatementContext();
+        old.command = currentCommand;
+        old.statementId = statementId;
+        old.temporaryResults = temporaryResults;
+        currentCommand = context.command;
+        statementId = context.statementId;
+        temporaryResults = context.temporaryResults;
+        return old;
+    }
+
+    /**
+     * Mark a detached statement as completed, and close its temporary result
+     * sets.
+     *
+     * @param context the context of the statement
+     */
+    public void endStatement(StatementContext context) {
+        if (context.temporaryResults != null) {
+            for (LocalResult result : context.temporaryResults) {
+                result.close();
+            }
+            context.temporaryResults = null;
+        }
+    }
+
     @Override
     public void addTemporaryLob(Value v) {
         if (temporaryLobs == null) {
@@ -1047,8 +1128,9 @@ public class Session implements SessionInterface {
                 conn.setTransactionIsolation(getTransactionIsolation());
             }
         }
-        if (conn.isReadOnly() != isReadOnly()) {
-            conn.setReadOnly(isReadOnly());
+        boolean readOnly = isReadOnly() || optional.readOnly;
+        if (conn.isReadOnly() != readOnly) {
+            conn.setReadOnly(readOnly);
         }
 
         return conn;
@@ -1079,4 +1161,25 @@ public class Session implements SessionInterface {
         long transactionSavepoint;
     }
 
+    /**
+     * The state of a statement execution that is kept by a forward only
+     * result until it is closed.
+     */
+    public static class StatementContext {
+        /**
+         * The command.
+         */
+        Command command;
+
+        /**
+         * The statement id.
+         */
+        int statementId;
+
+        /**
+         * The temporary results of the statement.
+         */
+        HashSet<LocalResult> temporaryResults;
+    }
+
 }
@@ -27,13 +27,15 @@ import com.wplatform.ddal.engine.Session;
 import com.wplatform.ddal.message.DbException;
 import com.wplatform.ddal.message.ErrorCode;
 import com.wplatform.ddal.result.LocalResult;
+import com.wplatform.ddal.result.ResultInterface;
 import com.wplatform.ddal.result.ResultTarget;
+import com.wplatform.ddal.shards.JdbcExecutor;
 import com.wplatform.ddal.util.New;
 import com.wplatform.ddal.value.Value;
 
 import java.sql.ResultSet;
+import java.sql.Statement;
 import java.util.List;
-import java.util.concurrent.ThreadPoolExecutor;
 
 /**
  * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
@@ -43,7 +45,7 @@ public abstract class CommonPreparedExecutor<T extends Prepared> implements Prep
     protected final T prepared;
     protected final Session session;
     protected final Database database;
-    protected final ThreadPoolExecutor jdbcExecutor;
+    protected final JdbcExecutor jdbcExecutor;
     protected final List<JdbcWorker<?>> runingWorkers;
     /**
      * @param prepared
@@ -76,6 +78,11 @@ public abstract class CommonPreparedExecutor<T extends Prepared> implements Prep
      * @param target the target result (null will return the result)
      * @return the result set (if the target is not set).
      */
+    @Override
+    public ResultInterface executeLazyQuery(int maxRows) {
+        return executeQuery(maxRows);
+    }
+
     @Override
     public LocalResult executeQuery(int maxRows, ResultTarget target) {
         throw DbException.get(ErrorCode.METHOD_ONLY_ALLOWED_FOR_QUERY);
@@ -92,6 +99,23 @@ public abstract class CommonPreparedExecutor<T extends Prepared> implements Prep
         throw DbException.get(ErrorCode.METHOD_NOT_ALLOWED_FOR_QUERY);
     }
 
+    @Override
+    public void executeBatchUpdate(List<Value[]> batchParameters, int[] updateCounts) {
+        DbException error = null;
+        for (int i = 0, size = batchParameters.size(); i < size; i++) {
+            try {
+                prepared.setParameterValues(batchParameters.get(i));
+                updateCounts[i] = executeUpdate();
+            } catch (DbException e) {
+                updateCounts[i] = Statement.EXECUTE_FAILED;
+                error = e.chain(error);
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
     protected T getPrepared() {
         return prepared;
     }
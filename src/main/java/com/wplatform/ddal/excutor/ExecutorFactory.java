@@ -23,20 +23,30 @@ import com.wplatform.ddal.command.ddl.CreateTable;
 import com.wplatform.ddal.command.ddl.DropTable;
 import com.wplatform.ddal.command.ddl.TruncateTable;
 import com.wplatform.ddal.command.dml.Call;
+import com.wplatform.ddal.command.dml.Delete;
+import com.wplatform.ddal.command.dml.Insert;
+import com.wplatform.ddal.command.dml.Merge;
+import com.wplatform.ddal.command.dml.Replace;
 import com.wplatform.ddal.command.dml.Select;
 import com.wplatform.ddal.command.dml.SelectUnion;
 import com.wplatform.ddal.command.dml.Set;
 import com.wplatform.ddal.command.dml.TransactionCommand;
+import com.wplatform.ddal.command.dml.Update;
 import com.wplatform.ddal.excutor.ddl.AlterTableAddConstraintExecutor;
 import com.wplatform.ddal.excutor.ddl.AlterTableAlterColumnExecutor;
 import com.wplatform.ddal.excutor.ddl.CreateTableExecutor;
 import com.wplatform.ddal.excutor.ddl.DropTableExecutor;
 import com.wplatform.ddal.excutor.ddl.TruncateTableExecutor;
 import com.wplatform.ddal.excutor.dml.CallExecutor;
+import com.wplatform.ddal.excutor.dml.DeleteExecutor;
+import com.wplatform.ddal.excutor.dml.InsertExecutor;
+import com.wplatform.ddal.excutor.dml.MergeExecutor;
+import com.wplatform.ddal.excutor.dml.ReplaceExecutor;
 import com.wplatform.ddal.excutor.dml.SelectExecutor;
 import com.wplatform.ddal.excutor.dml.SelectUnionExecutor;
 import com.wplatform.ddal.excutor.dml.SetExecutor;
 import com.wplatform.ddal.excutor.dml.TransactionExecutor;
+import com.wplatform.ddal.excutor.dml.UpdateExecutor;
 import com.wplatform.ddal.message.DbException;
 
 /**
@@ -75,15 +85,15 @@ public class ExecutorFactory implements PreparedExecutorFactory {
             return new TruncateTableExecutor((TruncateTable) prepared);
         //ddl    
         case CommandInterface.INSERT:
-            return new CreateTableExecutor((CreateTable) prepared);
+            return new InsertExecutor((Insert) prepared);
         case CommandInterface.DELETE:
-            return new DropTableExecutor((DropTable) prepared);
+            return new DeleteExecutor((Delete) prepared);
         case CommandInterface.UPDATE:
-            return new CreateTableExecutor((CreateTable) prepared);
+            return new UpdateExecutor((Update) prepared);
         case CommandInterface.REPLACE:
-            return new DropTableExecutor((DropTable) prepared);
+            return new ReplaceExecutor((Replace) prepared);
         case CommandInterface.MERGE:
-            return new CreateTableExecutor((CreateTable) prepared);
+            return new MergeExecutor((Merge) prepared);
         case CommandInterface.SELECT: {
             if(prepared instanceof SelectUnion) {
                 return new SelectUnionExecutor((SelectUnion) prepared);
@@ -0,0 +1,190 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.excutor;
+
+import java.sql.BatchUpdateException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Arrays;
+import java.util.List;
+
+import javax.sql.DataSource;
+
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.message.DbException;
+import com.wplatform.ddal.util.StatementBuilder;
+import com.wplatform.ddal.value.Value;
+
+/**
+ * Executes the rows of an INSERT batch as multi-row INSERT statements,
+ * <code>INSERT INTO t(...) VALUES(...), (...), ...</code>. This saves a
+ * round trip for each row if the driver does not rewrite the batch itself.
+ * A statement has at most the given number of rows and parameters, and its
+ * estimated size is below the given size. If a statement fails, the rows of
+ * the statements before it are reported as executed, in the update counts of
+ * a {@link BatchUpdateException}.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public class InsertValuesWorker extends BatchUpdateWorker {
+
+    private final String prefix;
+    private final String values;
+    private final int maxRows;
+    private final int maxSize;
+    private final int maxParameters;
+
+    /**
+     * @param session the session
+     * @param shardName the shard
+     * @param sql the INSERT statement of a single row
+     * @param array the parameter values of the rows
+     * @param maxRows the maximum number of rows of a statement
+     * @param maxSize the estimated maximum size of a statement
+     * @param maxParameters the maximum number of parameters of a statement
+     */
+    public InsertValuesWorker(Session session, String shardName, String sql,
+            List<List<Value>> array, int maxRows, int maxSize, int maxParameters) {
+        super(session, shardName, sql, array);
+        int idx = getValuesIndex(sql);
+        if (idx < 0) {
+            throw new IllegalArgumentException(sql);
+        }
+        this.prefix = sql.substring(0, idx);
+        this.values = sql.substring(idx + " VALUES".length()).trim();
+        this.maxRows = maxRows;
+        this.maxSize = maxSize;
+        this.maxParameters = maxParameters;
+    }
+
+    /**
+     * Get the position of the VALUES clause of an INSERT statement.
+     *
+     * @param sql the INSERT statement
+     * @return the index of " VALUES", or -1 if there is no VALUES clause
+     */
+    public static int getValuesIndex(String sql) {
+        return sql.lastIndexOf(" VALUES(");
+    }
+
+    @Override
+    public Integer[] doWork() {
+        Connection conn = null;
+        PreparedStatement stmt = null;
+        try {
+            if (array == null || array.size() < 1) {
+                throw new IllegalArgumentException();
+            }
+            DataSource dataSource = getDataSource();
+            Optional optional = Optional.build().shardName(shardName).readOnly(false);
+            if (trace.isDebugEnabled()) {
+                trace.debug("{0} Fetching connection from DataSource.", shardName);
+            }
+            conn = session.applyConnection(dataSource, optional);
+            attach(conn);
+            Integer[] rows = new Integer[array.size()];
+            for (int start = 0, end; start < rows.length; start = end) {
+                end = nextChunk(start);
+                String chunkSql = getChunkSQL(end - start);
+                if (trace.isDebugEnabled()) {
+                    trace.debug("{0} Preparing: {1};", shardName, chunkSql);
+                }
+                int affected;
+                try {
+                    stmt = conn.prepareStatement(chunkSql);
+                    attach(stmt);
+                    applyQueryTimeout(stmt);
+                    int index = 1;
+                    for (int i = start; i < end; i++) {
+                        List<Value> params = array.get(i);
+                        if (params != null) {
+                            for (Value v : params) {
+                                v.set(stmt, index++);
+                            }
+                        }
+                    }
+                    affected = stmt.executeUpdate();
+                } catch (SQLException e) {
+                    // the rows of the statements before are executed
+                    int[] counts = new int[start];
+                    for (int i = 0; i < start; i++) {
+                        counts[i] = rows[i];
+                    }
+                    BatchUpdateException b = new BatchUpdateException(e.getMessage(),
+                            e.getSQLState(), e.getErrorCode(), counts);
+                    b.initCause(e);
+                    throw b;
+                }
+                closeStatement();
+                // the rows of a statement are not counted one by one
+                int count = affected == end - start ? 1 : Statement.SUCCESS_NO_INFO;
+                Arrays.fill(rows, start, end, count);
+                if (trace.isDebugEnabled()) {
+                    trace.debug("{0} executeUpdate: {1} rows, {2} affected.", shardName,
+                            end - start, affected);
+                }
+            }
+            return rows;
+        } catch (SQLException e) {
+            error(e);
+            throw wrapException(sql, e);
+        } catch (Throwable e) {
+            error(e);
+            throw DbException.convert(e);
+        }
+    }
+
+    /**
+     * Get the multi-row INSERT statement of the given number of rows.
+     */
+    String getChunkSQL(int rowCount) {
+        StatementBuilder buff = new StatementBuilder(prefix);
+        buff.append(" VALUES");
+        for (int i = 0; i < rowCount; i++) {
+            buff.appendExceptFirst(",");
+            buff.append(' ').append(values);
+        }
+        return buff.toString();
+    }
+
+    /**
+     * Get the end of the chunk of rows that starts at the given row. A
+     * chunk has at least one row.
+     */
+    int nextChunk(int start) {
+        long size = prefix.length() + " VALUES".length();
+        int parameters = 0;
+        int end = start;
+        while (end < array.size() && end - start < maxRows) {
+            List<Value> params = array.get(end);
+            long rowSize = values.length() + 2;
+            int count = params == null ? 0 : params.size();
+            for (int i = 0; i < count; i++) {
+                rowSize += params.get(i).getMemory();
+            }
+            if (end > start && (size + rowSize > maxSize || parameters + count > maxParameters)) {
+                break;
+            }
+            size += rowSize;
+            parameters += count;
+            end++;
+        }
+        return end;
+    }
+
+}
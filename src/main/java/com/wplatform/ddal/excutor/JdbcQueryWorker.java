@@ -24,6 +24,9 @@ import java.util.List;
 
 import javax.sql.DataSource;
 
+import com.wplatform.ddal.command.Command;
+import com.wplatform.ddal.dispatch.rule.PartitionHints;
+import com.wplatform.ddal.engine.Database;
 import com.wplatform.ddal.engine.Session;
 import com.wplatform.ddal.util.StatementBuilder;
 import com.wplatform.ddal.value.Value;
@@ -35,6 +38,8 @@ import com.wplatform.ddal.value.Value;
 public class JdbcQueryWorker extends JdbcWorker<ResultSet> {
 
     private final int maxrows;
+    private final int fetchSize;
+    private final boolean readOnly;
     /**
      * @param session
      * @param shardName
@@ -44,6 +49,9 @@ public class JdbcQueryWorker extends JdbcWorker<ResultSet> {
     public JdbcQueryWorker(Session session, String shardName, String sql, List<Value> params,int maxrows) {
         super(session, shardName, sql, params);
         this.maxrows = maxrows;
+        this.fetchSize = getFetchSize(session);
+        PartitionHints hints = session.getPartitionHints();
+        this.readOnly = hints != null && hints.isReadOnly();
     }
 
     @Override
@@ -52,7 +60,7 @@ public class JdbcQueryWorker extends JdbcWorker<ResultSet> {
         PreparedStatement stmt = null;
         try {
             DataSource dataSource = getDataSource();
-            Optional optional = Optional.build().shardName(shardName).readOnly(true);
+            Optional optional = Optional.build().shardName(shardName).readOnly(readOnly);
             if (trace.isDebugEnabled()) {
                 trace.debug("{0} Fetching connection from DataSource.", shardName);
             }
@@ -65,6 +73,7 @@ public class JdbcQueryWorker extends JdbcWorker<ResultSet> {
             attach(stmt);
             applyQueryTimeout(stmt);
             applyMaxRows(stmt);
+            applyFetchSize(stmt);
             
             if (params != null) {
                 for (int i = 0, size = params.size(); i < size; i++) {
@@ -98,8 +107,27 @@ public class JdbcQueryWorker extends JdbcWorker<ResultSet> {
     
     
     protected void applyMaxRows(Statement stmt) throws SQLException {
-        int maxRows = maxrows > 0 ? maxrows : session.getDatabase().getMaxMemoryRows();
-        stmt.setMaxRows(maxRows);
+        if (maxrows > 0) {
+            stmt.setMaxRows(maxrows);
+        }
+    }
+
+    protected void applyFetchSize(Statement stmt) throws SQLException {
+        if (fetchSize < 0) {
+            stmt.setFetchSize(fetchSize);
+        } else if (fetchSize > 0) {
+            stmt.setFetchSize(maxrows > 0 ? Math.min(fetchSize, maxrows) : fetchSize);
+        }
+    }
+
+    private static int getFetchSize(Session session) {
+        Database database = session.getDatabase();
+        int streamingFetchSize = database.getMode().streamingFetchSize;
+        if (streamingFetchSize != 0 && database.getSettings().streamShardResults) {
+            return streamingFetchSize;
+        }
+        Command command = session.getCurrentCommand();
+        return command == null ? 0 : command.getFetchSize();
     }
 
 }
@@ -45,8 +45,9 @@ public abstract class JdbcWorker<T> implements Callable<T> {
     protected final List<Value> params;
     
     private Connection rtConn;
-    private Statement rtStmt;
+    private volatile Statement rtStmt;
     private ResultSet rtRs;
+    private volatile boolean canceled;
 
     public JdbcWorker(Session session, String shardName, String sql, List<Value> params) {
         super();
@@ -64,25 +65,46 @@ public abstract class JdbcWorker<T> implements Callable<T> {
         return doWork();
     }
 
-    public void attach(Connection conn) {
+    public synchronized void attach(Connection conn) {
         if(this.rtConn != null) {
             throw new IllegalStateException();
         }
         this.rtConn = conn;
+        checkCanceled();
     }
 
-    public void attach(Statement stmt) {
+    public synchronized void attach(Statement stmt) {
         if(this.rtStmt != null) {
             throw new IllegalStateException();
         }
         this.rtStmt = stmt;
+        checkCanceled();
     }
 
-    public void attach(ResultSet rs) {
+    public synchronized void attach(ResultSet rs) {
         if(this.rtRs != null) {
             throw new IllegalStateException();
         }
         this.rtRs = rs;
+        checkCanceled();
+    }
+
+    /**
+     * The worker may be canceled by another thread before its resources are
+     * attached, in this case they are released at once and the work stops.
+     */
+    private void checkCanceled() {
+        if (canceled) {
+            closeResource();
+            throw DbException.get(ErrorCode.STATEMENT_WAS_CANCELED);
+        }
+    }
+
+    /**
+     * @return true if the worker was canceled or its resources are released
+     */
+    public boolean isCanceled() {
+        return canceled;
     }
     
     
@@ -131,22 +153,34 @@ public abstract class JdbcWorker<T> implements Callable<T> {
     }
 
     public void cancel() {
+        canceled = true;
         try {
-            if(rtStmt == null) {
+            Statement stmt = rtStmt;
+            if(stmt == null) {
                 return;
             }
-            rtStmt.cancel();
+            stmt.cancel();
         } catch (Exception e) {
             
         }
     }
 
-    public void closeResource() {
+    public synchronized void closeResource() {
+        canceled = true;
         JdbcUtils.closeSilently(rtRs);
         JdbcUtils.closeSilently(rtStmt);
         JdbcUtils.closeSilently(rtConn);
     }
     
+    /**
+     * Close the attached statement, so that the next statement can be
+     * attached.
+     */
+    public synchronized void closeStatement() {
+        JdbcUtils.closeSilently(rtStmt);
+        rtStmt = null;
+    }
+
     protected void applyQueryTimeout(Statement stmt) throws SQLException {
         //The session timeout of a query in milliseconds
         int queryTimeout = session.getQueryTimeout();
@@ -18,9 +18,13 @@
 
 package com.wplatform.ddal.excutor;
 
+import java.util.List;
+
 import com.wplatform.ddal.message.DbException;
 import com.wplatform.ddal.result.LocalResult;
+import com.wplatform.ddal.result.ResultInterface;
 import com.wplatform.ddal.result.ResultTarget;
+import com.wplatform.ddal.value.Value;
 
 /**
  * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
@@ -43,6 +47,16 @@ public interface PreparedExecutor {
      * @return the result set (if the target is not set).
      */
     LocalResult executeQuery(int maxRows, ResultTarget target);
+
+    /**
+     * Execute the query for a forward only result set, the rows may be read
+     * only when they are requested.
+     *
+     * @param maxRows the maximum number of rows to return
+     * @return the result set
+     * @throws DbException if it is not a query
+     */
+    ResultInterface executeLazyQuery(int maxRows);
     /**
      * Execute the statement.
      *
@@ -50,6 +64,16 @@ public interface PreparedExecutor {
      * @throws DbException if it is a query
      */
     int executeUpdate();
+    /**
+     * Execute the statement once for each set of parameter values.
+     *
+     * @param batchParameters the parameter values of each execution
+     * @param updateCounts the update count of each execution, set also if an
+     *            exception is thrown
+     * @throws DbException the exception of the last failed execution, the
+     *         exceptions of the earlier ones are chained to it
+     */
+    void executeBatchUpdate(List<Value[]> batchParameters, int[] updateCounts);
     /**
      * kill a currently running PreparedExecutor.
      * This operation will cancel all opened JDBC statements 
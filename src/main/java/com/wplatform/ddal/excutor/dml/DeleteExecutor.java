@@ -49,7 +49,7 @@ public class DeleteExecutor extends PreparedRoutingExecutor<Delete> {
         TableMate table = castTableMate(tableFilter.getTable());
         table.check();
         session.getUser().checkRight(table, Right.DELETE);
-        return updateRow(table, null, tableFilter.getIndexConditions());
+        return updateRow(table, null, tableFilter, prepared.getCondition());
     }
 
     @Override
@@ -63,8 +63,8 @@ public class DeleteExecutor extends PreparedRoutingExecutor<Delete> {
         buff.append("DELETE FROM ");
         buff.append(identifier(forTable));
         if (condition != null) {
-            condition.exportParameters(tableFilter, params);
-            buff.append(" WHERE ").append(StringUtils.unEnclose(condition.getSQL()));
+            String where = condition.exportParameters(tableFilter, params);
+            buff.append(" WHERE ").append(StringUtils.unEnclose(where));
         }
         if (limitExpr != null) {
             limitExpr.exportParameters(tableFilter, params);
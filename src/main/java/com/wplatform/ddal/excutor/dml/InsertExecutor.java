@@ -26,6 +26,9 @@ import com.wplatform.ddal.dbobject.Right;
 import com.wplatform.ddal.dbobject.table.Column;
 import com.wplatform.ddal.dbobject.table.TableMate;
 import com.wplatform.ddal.dispatch.rule.TableNode;
+import com.wplatform.ddal.engine.DbSettings;
+import com.wplatform.ddal.excutor.InsertValuesWorker;
+import com.wplatform.ddal.excutor.JdbcWorker;
 import com.wplatform.ddal.message.DbException;
 import com.wplatform.ddal.result.ResultInterface;
 import com.wplatform.ddal.result.ResultTarget;
@@ -44,6 +47,8 @@ public class InsertExecutor extends PreparedRoutingExecutor<Insert> implements R
     private int rowNumber;
     private int affectRows;
     private List<Row> newRows = New.arrayList(10);
+    private int flushSize;
+    private int pipelinedBatches;
 
     /**
      * @param prepared
@@ -60,6 +65,22 @@ public class InsertExecutor extends PreparedRoutingExecutor<Insert> implements R
         prepared.setCurrentRowNumber(0);
         rowNumber = 0;
         affectRows = 0;
+        newRows.clear();
+        DbSettings settings = database.getSettings();
+        int batchSize = table.getInsertBatchSize();
+        flushSize = batchSize > 0 ? batchSize : settings.insertBatchSize;
+        pipelinedBatches = settings.insertPipelinedBatches;
+        try {
+            addRows(table);
+            flushNewRows();
+            affectRows += awaitPendingRows();
+        } finally {
+            cancelPendingRows();
+        }
+        return affectRows;
+    }
+
+    private void addRows(TableMate table) {
         ArrayList<Expression[]> list = prepared.getList();
         Column[] columns = prepared.getColumns();
         int listSize = list.size();
@@ -102,9 +123,6 @@ public class InsertExecutor extends PreparedRoutingExecutor<Insert> implements R
                 rows.close();
             }
         }
-        flushNewRows();
-        return affectRows;
-
     }
 
     @Override
@@ -134,7 +152,7 @@ public class InsertExecutor extends PreparedRoutingExecutor<Insert> implements R
 
     private void addNewRow(Row newRow) {
         newRows.add(newRow);
-        if (newRows.size() >= 200) {
+        if (newRows.size() >= flushSize) {
             flushNewRows();
         }
     }
@@ -146,6 +164,9 @@ public class InsertExecutor extends PreparedRoutingExecutor<Insert> implements R
                 return;
             } else if (newRows.size() == 1) {
                 affectRows += updateRow(table, newRows.get(0));
+            } else if (pipelinedBatches > 1) {
+                // the next rows are collected while the shards write these
+                affectRows += submitRows(table, newRows, pipelinedBatches - 1);
             } else {
                 affectRows += updateRows(table, newRows);
             }
@@ -155,6 +176,23 @@ public class InsertExecutor extends PreparedRoutingExecutor<Insert> implements R
 
     }
 
+    /**
+     * The rows of a table node are written as multi-row INSERT statements if
+     * the setting <code>INSERT_VALUES_MAX_ROWS</code> is larger than 1.
+     */
+    @Override
+    protected JdbcWorker<Integer[]> createBatchUpdateWorker(String shardName, String sql,
+            List<List<Value>> array) {
+        DbSettings settings = database.getSettings();
+        if (settings.insertValuesMaxRows > 1 && array.size() > 1 &&
+                InsertValuesWorker.getValuesIndex(sql) >= 0) {
+            return new InsertValuesWorker(session, shardName, sql, array,
+                    settings.insertValuesMaxRows, settings.insertValuesMaxSize,
+                    database.getMode().maxParameters);
+        }
+        return super.createBatchUpdateWorker(shardName, sql, array);
+    }
+
     @Override
     protected List<Value> doTranslate(TableNode node, SearchRow row, StatementBuilder buff) {
         String forTable = node.getCompositeObjectName();
@@ -16,25 +16,36 @@
 package com.wplatform.ddal.excutor.dml;
 
 import java.io.Serializable;
+import java.sql.BatchUpdateException;
+import java.sql.Statement;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 import com.wplatform.ddal.command.Prepared;
-import com.wplatform.ddal.dbobject.index.IndexCondition;
+import com.wplatform.ddal.command.expression.Expression;
 import com.wplatform.ddal.dbobject.table.Column;
+import com.wplatform.ddal.dbobject.table.TableFilter;
 import com.wplatform.ddal.dbobject.table.TableMate;
+import com.wplatform.ddal.dispatch.InListRewriter;
 import com.wplatform.ddal.dispatch.RoutingHandler;
+import com.wplatform.ddal.dispatch.rule.PartitionHints;
 import com.wplatform.ddal.dispatch.rule.RoutingResult;
 import com.wplatform.ddal.dispatch.rule.TableNode;
 import com.wplatform.ddal.excutor.CommonPreparedExecutor;
 import com.wplatform.ddal.excutor.JdbcWorker;
 import com.wplatform.ddal.message.DbException;
+import com.wplatform.ddal.message.ErrorCode;
 import com.wplatform.ddal.result.Row;
 import com.wplatform.ddal.result.SearchRow;
+import com.wplatform.ddal.util.IntArray;
 import com.wplatform.ddal.util.New;
 import com.wplatform.ddal.util.StatementBuilder;
 import com.wplatform.ddal.value.Value;
@@ -47,6 +58,9 @@ import com.wplatform.ddal.value.ValueNull;
 public abstract class PreparedRoutingExecutor<T extends Prepared> extends CommonPreparedExecutor<T> {
 
     protected final RoutingHandler routingHandler;
+    private Map<BatchKey, PendingBatch> pendingBatches;
+    private int batchIndex;
+    private final LinkedList<PendingRows> pendingRows = New.linkedList();
 
     /**
      * @param prepared
@@ -56,27 +70,237 @@ public abstract class PreparedRoutingExecutor<T extends Prepared> extends Common
         this.routingHandler = database.getRoutingHandler();
     }
 
+    /**
+     * Route and translate the statement for each set of parameter values
+     * first, then execute one JDBC batch for each shard and translated SQL
+     * statement. The batches of the shards run in parallel. The update count
+     * of a set of parameter values is the sum of the update counts on the
+     * table nodes it is routed to. This is only correct for statements that
+     * do not read the update counts of their own updates. The exceptions of
+     * all failures are chained, the last one first.
+     */
+    @Override
+    public void executeBatchUpdate(List<Value[]> batchParameters, int[] updateCounts) {
+        Map<BatchKey, PendingBatch> batches = New.linkedHashMap();
+        DbException error = null;
+        pendingBatches = batches;
+        try {
+            for (int i = 0, size = batchParameters.size(); i < size; i++) {
+                batchIndex = i;
+                try {
+                    prepared.setParameterValues(batchParameters.get(i));
+                    executeUpdate();
+                } catch (DbException e) {
+                    updateCounts[i] = Statement.EXECUTE_FAILED;
+                    for (PendingBatch batch : batches.values()) {
+                        batch.removeRow(i);
+                    }
+                    error = e.chain(error);
+                }
+            }
+        } finally {
+            pendingBatches = null;
+        }
+        DbException e = executeBatches(batches, updateCounts);
+        if (e != null) {
+            error = e.chain(error);
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    private DbException executeBatches(Map<BatchKey, PendingBatch> batches, int[] updateCounts) {
+        List<PendingBatch> list = New.arrayList(batches.size());
+        List<JdbcWorker<Integer[]>> workers = New.arrayList(batches.size());
+        for (Map.Entry<BatchKey, PendingBatch> entry : batches.entrySet()) {
+            PendingBatch batch = entry.getValue();
+            if (!batch.array.isEmpty()) {
+                list.add(batch);
+                workers.add(createBatchUpdateWorker(entry.getKey().shardName,
+                        entry.getKey().sql, batch.array));
+            }
+        }
+        DbException error = null;
+        try {
+            addRuningJdbcWorkers(workers);
+            if (workers.size() > 1) {
+                int queryTimeout = getQueryTimeout();//MILLISECONDS
+                List<Future<Integer[]>> invokeAll;
+                if(queryTimeout > 0) {
+                    invokeAll = jdbcExecutor.invokeAll(workers,queryTimeout,TimeUnit.MILLISECONDS);
+                } else {
+                    invokeAll = jdbcExecutor.invokeAll(workers);
+                }
+                for (int i = 0; i < invokeAll.size(); i++) {
+                    try {
+                        list.get(i).addUpdateCounts(invokeAll.get(i).get(), updateCounts);
+                    } catch (ExecutionException e) {
+                        list.get(i).setFailed(getUpdateCounts(e.getCause()), updateCounts);
+                        error = DbException.convert(e.getCause()).chain(error);
+                    } catch (CancellationException e) {
+                        // not completed within the query timeout
+                        workers.get(i).cancel();
+                        list.get(i).setFailed(null, updateCounts);
+                        error = DbException.get(ErrorCode.STATEMENT_WAS_CANCELED).chain(error);
+                    }
+                }
+            } else if (workers.size() == 1) {
+                try {
+                    list.get(0).addUpdateCounts(workers.get(0).doWork(), updateCounts);
+                } catch (DbException e) {
+                    list.get(0).setFailed(getUpdateCounts(e), updateCounts);
+                    error = e;
+                }
+            }
+            return error;
+        } catch (InterruptedException e) {
+            throw DbException.convert(e);
+        } finally {
+            removeRuningJdbcWorkers(workers);
+            for (JdbcWorker<Integer[]> jdbcWorker : workers) {
+                jdbcWorker.closeResource();
+            }
+        }
+    }
+
+    /**
+     * Get the update counts of the statements of a JDBC batch that were
+     * executed before it failed.
+     *
+     * @param e the exception
+     * @return the update counts, or null if they are not known
+     */
+    private static int[] getUpdateCounts(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof BatchUpdateException) {
+                return ((BatchUpdateException) t).getUpdateCounts();
+            }
+        }
+        return null;
+    }
+
+    private void addPendingBatch(String shardName, String sql, List<Value> params) {
+        addPendingBatch(pendingBatches, shardName, sql, params, batchIndex);
+    }
+
+    /**
+     * Add the parameter values of a translated statement to the batch of the
+     * shard and SQL statement.
+     *
+     * @param batches the batches
+     * @param shardName the shard
+     * @param sql the translated SQL statement
+     * @param params the parameter values
+     * @param row the index of the set of parameter values of the statement
+     */
+    static void addPendingBatch(Map<BatchKey, PendingBatch> batches, String shardName,
+            String sql, List<Value> params, int row) {
+        BatchKey batchKey = new BatchKey(shardName, sql);
+        PendingBatch batch = batches.get(batchKey);
+        if (batch == null) {
+            batch = new PendingBatch();
+            batches.put(batchKey, batch);
+        }
+        batch.array.add(params);
+        batch.rows.add(row);
+    }
+
     protected int updateRow(TableMate table, Row row) {
         session.checkCanceled();
-        RoutingResult result = routingHandler.doRoute(table, row);
-        return invokeUpdateRow(result, row);
+        RoutingResult result = PartitionHints.route(session, table);
+        if (result == null) {
+            result = routingHandler.doRoute(table, row);
+        }
+        return invokeUpdateRow(result, row, null, null);
     }
 
-    protected int updateRow(TableMate table, Row row, List<IndexCondition> where) {
+    /**
+     * Update the rows that match the condition of a table filter. The IN
+     * lists on the sharding key are split by the table nodes.
+     *
+     * @param table the table
+     * @param row the updated values, or null
+     * @param filter the table filter
+     * @param condition the condition, or null
+     * @return the number of affected rows
+     */
+    protected int updateRow(TableMate table, Row row, TableFilter filter, Expression condition) {
         session.checkCanceled();
-        RoutingResult result = routingHandler.doRoute(table, session, where);
-        return invokeUpdateRow(result, row);
+        RoutingResult result = PartitionHints.route(session, table);
+        boolean hinted = result != null;
+        if (!hinted) {
+            result = routingHandler.doRoute(table, session, filter, condition);
+        }
+        InListRewriter rewriter = null;
+        if (!hinted && result.isMultipleNode()) {
+            rewriter = filter.getInListRewriter();
+        }
+        return invokeUpdateRow(result, row, filter, rewriter);
     }
 
     protected int updateRows(TableMate table, List<Row> rows) {
+        List<JdbcWorker<Integer[]>> workers = createBatchUpdateWorkers(table, rows);
+        if (workers == null) {
+            return 0;
+        }
+        try {
+            addRuningJdbcWorkers(workers);
+            int affectRows = 0;
+            if (workers.size() > 1) {
+                int queryTimeout = getQueryTimeout();//MILLISECONDS
+                List<Future<Integer[]>> invokeAll;
+                if(queryTimeout > 0) {
+                    invokeAll = jdbcExecutor.invokeAll(workers,queryTimeout,TimeUnit.MILLISECONDS);
+                } else {
+                    invokeAll = jdbcExecutor.invokeAll(workers);
+                }
+                for (Future<Integer[]> future : invokeAll) {
+                    Integer[] integers = future.get();
+                    for (Integer integer : integers) {
+                        affectRows += integer;
+                    }
+                }
+            } else if (workers.size() == 1) {
+                Integer[] integers = workers.get(0).doWork();
+                for (Integer integer : integers) {
+                    affectRows += integer;
+                }
+            }
+            return affectRows;
+        } catch (InterruptedException e) {
+            throw DbException.convert(e);
+        } catch (ExecutionException e) {
+            throw DbException.convert(e.getCause());
+        } finally {
+            removeRuningJdbcWorkers(workers);
+            for (JdbcWorker<Integer[]> jdbcWorker : workers) {
+                jdbcWorker.closeResource();
+            }
+        }
+    }
+
+    /**
+     * Route and translate the rows, and create a batch update worker for
+     * each shard and translated SQL statement.
+     *
+     * @return the workers, or null if the rows are added to the pending
+     *         batches of {@link #executeBatchUpdate(List, int[])}
+     */
+    private List<JdbcWorker<Integer[]>> createBatchUpdateWorkers(TableMate table, List<Row> rows) {
         Map<BatchKey, List<List<Value>>> batches = New.hashMap();
         session.checkCanceled();
+        RoutingResult hinted = PartitionHints.route(session, table);
         for (Row row : rows) {
-            RoutingResult result = routingHandler.doRoute(table, row);
+            RoutingResult result = hinted != null ? hinted : routingHandler.doRoute(table, row);
             TableNode[] selectNodes = result.getSelectNodes();
             for (TableNode node : selectNodes) {
                 StatementBuilder sqlBuff = new StatementBuilder();
                 List<Value> params = doTranslate(node, row, sqlBuff);
+                if (pendingBatches != null) {
+                    addPendingBatch(node.getShardName(), sqlBuff.toString(), params);
+                    continue;
+                }
                 BatchKey batchKey = new BatchKey(node.getShardName(), sqlBuff.toString());
                 List<List<Value>> batchArgs = batches.get(batchKey);
                 if (batchArgs == null) {
@@ -86,6 +310,9 @@ public abstract class PreparedRoutingExecutor<T extends Prepared> extends Common
                 batchArgs.add(params);
             }
         }
+        if (pendingBatches != null) {
+            return null;
+        }
         List<JdbcWorker<Integer[]>> workers = New.arrayList(batches.size());
         for (Map.Entry<BatchKey, List<List<Value>>> entry : batches.entrySet()) {
             String shardName = entry.getKey().shardName;
@@ -93,25 +320,105 @@ public abstract class PreparedRoutingExecutor<T extends Prepared> extends Common
             List<List<Value>> array = entry.getValue();
             workers.add(createBatchUpdateWorker(shardName, sql, array));
         }
+        return workers;
+    }
+
+    /**
+     * Start the batch updates of the rows without waiting for them. At most
+     * the given number of started batch updates keep running. The batch
+     * updates of a shard are written one after the other: before the new
+     * ones are started, the oldest ones are awaited until there is room and
+     * none of the running ones writes to the same shard.
+     *
+     * @param table the table
+     * @param rows the rows
+     * @param maxPending the maximum number of running batch updates
+     * @return the number of affected rows of the batch updates that were
+     *         awaited
+     */
+    protected int submitRows(TableMate table, List<Row> rows, int maxPending) {
+        List<JdbcWorker<Integer[]>> workers = createBatchUpdateWorkers(table, rows);
+        if (workers == null) {
+            return 0;
+        }
+        return submitWorkers(workers, maxPending);
+    }
+
+    /**
+     * Start the batch update workers of a flush of rows, see
+     * {@link #submitRows(TableMate, List, int)}.
+     *
+     * @param workers the workers, one for each shard and translated SQL
+     *            statement
+     * @param maxPending the maximum number of running batch updates
+     * @return the number of affected rows of the batch updates that were
+     *         awaited
+     */
+    int submitWorkers(List<JdbcWorker<Integer[]>> workers, int maxPending) {
+        Set<String> shards = New.hashSet();
+        for (JdbcWorker<Integer[]> worker : workers) {
+            shards.add(worker.getShardName());
+        }
+        int await = pendingRows.size() - maxPending + 1;
+        int i = 0;
+        for (PendingRows pending : pendingRows) {
+            i++;
+            if (pending.writesTo(shards)) {
+                await = Math.max(await, i);
+            }
+        }
+        int affectRows = 0;
+        for (; await > 0; await--) {
+            affectRows += awaitRows(pendingRows.removeFirst());
+        }
+        PendingRows pending = new PendingRows(workers);
+        pendingRows.add(pending);
+        addRuningJdbcWorkers(workers);
+        for (JdbcWorker<Integer[]> worker : workers) {
+            pending.futures.add(jdbcExecutor.submit(worker));
+        }
+        return affectRows;
+    }
+
+    /**
+     * Wait for all batch updates started by
+     * {@link #submitRows(TableMate, List, int)}.
+     *
+     * @return the number of affected rows
+     */
+    protected int awaitPendingRows() {
+        int affectRows = 0;
+        while (!pendingRows.isEmpty()) {
+            affectRows += awaitRows(pendingRows.removeFirst());
+        }
+        return affectRows;
+    }
+
+    /**
+     * Cancel the batch updates that are not awaited yet, after an error.
+     */
+    protected void cancelPendingRows() {
+        while (!pendingRows.isEmpty()) {
+            PendingRows pending = pendingRows.removeFirst();
+            removeRuningJdbcWorkers(pending.workers);
+            for (JdbcWorker<Integer[]> jdbcWorker : pending.workers) {
+                jdbcWorker.cancel();
+                jdbcWorker.closeResource();
+            }
+        }
+    }
+
+    private int awaitRows(PendingRows pending) {
         try {
-            addRuningJdbcWorkers(workers);
             int affectRows = 0;
-            if (workers.size() > 1) {
-                int queryTimeout = getQueryTimeout();//MILLISECONDS
-                List<Future<Integer[]>> invokeAll;
-                if(queryTimeout > 0) {
-                    invokeAll = jdbcExecutor.invokeAll(workers,queryTimeout,TimeUnit.MILLISECONDS);
+            int queryTimeout = getQueryTimeout();//MILLISECONDS
+            for (Future<Integer[]> future : pending.futures) {
+                Integer[] integers;
+                if (queryTimeout > 0) {
+                    integers = future.get(queryTimeout, TimeUnit.MILLISECONDS);
                 } else {
-                    invokeAll = jdbcExecutor.invokeAll(workers);
+                    integers = future.get();
                 }
-                for (Future<Integer[]> future : invokeAll) {
-                    Integer[] integers = future.get();
-                    for (Integer integer : integers) {
-                        affectRows += integer;
-                    }
-                }
-            } else if (workers.size() == 1) {
-                Integer[] integers = workers.get(0).doWork();
                 for (Integer integer : integers) {
                     affectRows += integer;
                 }
@@ -121,9 +428,14 @@ public abstract class PreparedRoutingExecutor<T extends Prepared> extends Common
             throw DbException.convert(e);
         } catch (ExecutionException e) {
             throw DbException.convert(e.getCause());
+        } catch (TimeoutException e) {
+            for (JdbcWorker<Integer[]> jdbcWorker : pending.workers) {
+                jdbcWorker.cancel();
+            }
+            throw DbException.get(ErrorCode.STATEMENT_WAS_CANCELED);
         } finally {
-            removeRuningJdbcWorkers(workers);
-            for (JdbcWorker<Integer[]> jdbcWorker : workers) {
+            removeRuningJdbcWorkers(pending.workers);
+            for (JdbcWorker<Integer[]> jdbcWorker : pending.workers) {
                 jdbcWorker.closeResource();
             }
         }
@@ -138,15 +450,34 @@ public abstract class PreparedRoutingExecutor<T extends Prepared> extends Common
     /**
      * @param result
      * @param row
+     * @param filter
+     * @param rewriter
      * @return
      */
-    private int invokeUpdateRow(RoutingResult result, Row row) {
+    private int invokeUpdateRow(RoutingResult result, Row row, TableFilter filter,
+            InListRewriter rewriter) {
         List<JdbcWorker<Integer>> workers = New.arrayList(result.tableNodeCount());
         TableNode[] selectNodes = result.getSelectNodes();
-        for (TableNode node : selectNodes) {
-            StatementBuilder sqlBuff = new StatementBuilder();
-            List<Value> params = doTranslate(node, row, sqlBuff);
-            workers.add(createUpdateWorker(node.getShardName(), sqlBuff.toString(), params));
+        try {
+            for (TableNode node : selectNodes) {
+                if (rewriter != null) {
+                    rewriter.apply(filter, node);
+                }
+                StatementBuilder sqlBuff = new StatementBuilder();
+                List<Value> params = doTranslate(node, row, sqlBuff);
+                if (pendingBatches != null) {
+                    addPendingBatch(node.getShardName(), sqlBuff.toString(), params);
+                } else {
+                    workers.add(createUpdateWorker(node.getShardName(), sqlBuff.toString(), params));
+                }
+            }
+        } finally {
+            if (rewriter != null) {
+                InListRewriter.reset(filter);
+            }
+        }
+        if (pendingBatches != null) {
+            return 0;
         }
         try {
             addRuningJdbcWorkers(workers);
@@ -212,7 +543,86 @@ public abstract class PreparedRoutingExecutor<T extends Prepared> extends Common
         return params;
     }
 
-    private static class BatchKey implements Serializable {
+    /**
+     * The batch update workers of a flush of rows that are still running.
+     */
+    private static class PendingRows {
+
+        private final List<JdbcWorker<Integer[]>> workers;
+        private final List<Future<Integer[]>> futures;
+
+        PendingRows(List<JdbcWorker<Integer[]>> workers) {
+            this.workers = workers;
+            this.futures = New.arrayList(workers.size());
+        }
+
+        boolean writesTo(Set<String> shards) {
+            for (JdbcWorker<Integer[]> worker : workers) {
+                if (shards.contains(worker.getShardName())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    /**
+     * The parameter values of a JDBC batch, and the index of the set of
+     * parameter values of the statement each one belongs to.
+     */
+    static class PendingBatch {
+
+        final List<List<Value>> array = New.arrayList();
+        final IntArray rows = new IntArray();
+
+        /**
+         * Remove the parameter values of a set of parameter values that
+         * failed, they are the last ones.
+         */
+        void removeRow(int row) {
+            while (rows.size() > 0 && rows.get(rows.size() - 1) == row) {
+                rows.remove(rows.size() - 1);
+                array.remove(array.size() - 1);
+            }
+        }
+
+        void addUpdateCounts(Integer[] counts, int[] updateCounts) {
+            for (int i = 0; i < counts.length && i < rows.size(); i++) {
+                int row = rows.get(i);
+                int count = counts[i];
+                if (count == Statement.EXECUTE_FAILED || updateCounts[row] == Statement.EXECUTE_FAILED) {
+                    updateCounts[row] = Statement.EXECUTE_FAILED;
+                } else if (count < 0 || updateCounts[row] < 0) {
+                    updateCounts[row] = Statement.SUCCESS_NO_INFO;
+                } else {
+                    updateCounts[row] += count;
+                }
+            }
+        }
+
+        /**
+         * Set the update counts after the JDBC batch failed. The statements
+         * after the given update counts are not executed.
+         *
+         * @param counts the update counts of the executed statements, or
+         *            null if they are not known
+         * @param updateCounts the update counts of the sets of parameter
+         *            values
+         */
+        void setFailed(int[] counts, int[] updateCounts) {
+            Integer[] rowCounts = new Integer[rows.size()];
+            for (int i = 0; i < rowCounts.length; i++) {
+                if (counts != null && i < counts.length) {
+                    rowCounts[i] = counts[i];
+                } else {
+                    rowCounts[i] = Statement.EXECUTE_FAILED;
+                }
+            }
+            addUpdateCounts(rowCounts, updateCounts);
+        }
+    }
+
+    static class BatchKey implements Serializable {
         private static final long serialVersionUID = 1L;
 
         private final String shardName;
@@ -222,7 +632,7 @@ public abstract class PreparedRoutingExecutor<T extends Prepared> extends Common
          * @param shardName
          * @param sql
          */
-        private BatchKey(String shardName, String sql) {
+        BatchKey(String shardName, String sql) {
             super();
             this.shardName = shardName;
             this.sql = sql;
@@ -15,33 +15,49 @@
  */
 package com.wplatform.ddal.excutor.dml;
 
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 
+import com.wplatform.ddal.command.Parser;
 import com.wplatform.ddal.command.dml.Select;
+import com.wplatform.ddal.command.expression.Aggregate;
 import com.wplatform.ddal.command.expression.Expression;
 import com.wplatform.ddal.command.expression.ExpressionColumn;
 import com.wplatform.ddal.config.TableConfig;
+import com.wplatform.ddal.dbobject.index.Cursor;
 import com.wplatform.ddal.dbobject.index.Index;
+import com.wplatform.ddal.dbobject.index.IndexCondition;
+import com.wplatform.ddal.dbobject.index.ScatterGatherCursor;
 import com.wplatform.ddal.dbobject.table.Column;
 import com.wplatform.ddal.dbobject.table.Table;
 import com.wplatform.ddal.dbobject.table.TableFilter;
 import com.wplatform.ddal.dbobject.table.TableMate;
+import com.wplatform.ddal.dispatch.InListRewriter;
+import com.wplatform.ddal.dispatch.rule.PartitionHints;
+import com.wplatform.ddal.dispatch.rule.RoutingResult;
 import com.wplatform.ddal.dispatch.rule.TableNode;
+import com.wplatform.ddal.engine.Mode;
 import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.excutor.JdbcWorker;
 import com.wplatform.ddal.message.DbException;
 import com.wplatform.ddal.message.ErrorCode;
+import com.wplatform.ddal.result.LazyResult;
 import com.wplatform.ddal.result.LocalResult;
 import com.wplatform.ddal.result.ResultInterface;
 import com.wplatform.ddal.result.ResultTarget;
 import com.wplatform.ddal.result.SearchRow;
 import com.wplatform.ddal.result.SortOrder;
+import com.wplatform.ddal.util.ExternalValueMap;
 import com.wplatform.ddal.util.New;
 import com.wplatform.ddal.util.StatementBuilder;
 import com.wplatform.ddal.util.StringUtils;
 import com.wplatform.ddal.util.ValueHashMap;
+import com.wplatform.ddal.value.DataType;
 import com.wplatform.ddal.value.Value;
 import com.wplatform.ddal.value.ValueArray;
 import com.wplatform.ddal.value.ValueNull;
@@ -72,6 +88,8 @@ public class SelectExecutor extends PreparedRoutingExecutor<Select> {
     private boolean isForUpdate;
     private boolean isQuickAggregateQuery;
     private boolean isAccordantQuery;
+    private boolean sortUsingMerge;
+    private ArrayList<Aggregate> partialAggregates;
     private SortOrder sort;
 
     /**
@@ -86,6 +104,8 @@ public class SelectExecutor extends PreparedRoutingExecutor<Select> {
         randomAccessResult = prepared.isRandomAccessResult();
         isGroupQuery = prepared.isGroupQuery();
         isAccordantQuery = prepared.isAccordantQuery();
+        sortUsingMerge = prepared.isSortUsingMerge();
+        partialAggregates = prepared.getPartialAggregates();
         isQuickAggregateQuery = prepared.isQuickAggregateQuery();
         isForUpdate = prepared.isForUpdate();
         offsetExpr = prepared.getOffset();
@@ -106,14 +126,11 @@ public class SelectExecutor extends PreparedRoutingExecutor<Select> {
 
     @Override
     public LocalResult executeQuery(int maxRows, ResultTarget target) {
-        int limitRows = maxRows == 0 ? -1 : maxRows;
-        if (limitExpr != null) {
-            Value v = limitExpr.getValue(session);
-            int l = v == ValueNull.INSTANCE ? -1 : v.getInt();
-            if (limitRows < 0) {
-                limitRows = l;
-            } else if (l >= 0) {
-                limitRows = Math.min(l, limitRows);
+        int limitRows = getLimitRows(maxRows);
+        if (isAccordantQuery && limitRows != 0) {
+            TableNode[] nodes = getAccordantNodes(limitRows);
+            if (nodes != null) {
+                return queryAccordant(nodes, limitRows, target);
             }
         }
         int columnCount = expressions.size();
@@ -122,7 +139,7 @@ public class SelectExecutor extends PreparedRoutingExecutor<Select> {
                 !session.getDatabase().getSettings().optimizeInsertFromSelect) {
             result = createLocalResult(result);
         }
-        if (sort != null) {
+        if (sort != null && (!sortUsingMerge || distinct)) {
             result = createLocalResult(result);
             result.setSortOrder(sort);
         }
@@ -139,24 +156,27 @@ public class SelectExecutor extends PreparedRoutingExecutor<Select> {
         if (limitRows >= 0 || offsetExpr != null) {
             result = createLocalResult(result);
         }
+        topTableFilter.setNodeLimit(getNodeLimit(limitRows));
         topTableFilter.startQuery(session);
         topTableFilter.reset();
         topTableFilter.lock(session, isForUpdate, isForUpdate);
         ResultTarget to = result != null ? result : target;
-        if (limitRows != 0) {
-            if(isAccordantQuery) {
-                if (isGroupQuery) {
-                    queryGroupAccordant(columnCount, to);
-                } else {
-                    queryFlatAccordant(columnCount, to, limitRows);
-                }
-            } else {
+        try {
+            if (limitRows != 0) {
                 if (isGroupQuery) {
-                    queryGroup(columnCount, result);
+                    // a sample is taken from the rows, the table nodes
+                    // would aggregate all of their rows
+                    if (partialAggregates != null && getSampleSizeValue(session) <= 0) {
+                        queryGroupPartial(columnCount, result);
+                    } else {
+                        queryGroup(columnCount, result);
+                    }
                 } else {
                     queryFlat(columnCount, to, limitRows);
                 }
             }
+        } finally {
+            topTableFilter.close();
         }
         if (offsetExpr != null) {
             result.setOffset(offsetExpr.getValue(session).getInt());
@@ -175,6 +195,121 @@ public class SelectExecutor extends PreparedRoutingExecutor<Select> {
         return null;
     }
 
+    /**
+     * Execute the query without reading the rows in advance. The rows of an
+     * accordant query are read from the shard result set, the rows of a flat
+     * query that is neither sorted again nor made distinct are read from the
+     * table node cursors while the result set is iterated. Other queries are
+     * executed as usual.
+     *
+     * @param maxRows the maximum number of rows to return
+     * @return the result
+     */
+    @Override
+    public ResultInterface executeLazyQuery(int maxRows) {
+        final int limitRows = getLimitRows(maxRows);
+        if (limitRows == 0) {
+            return executeQuery(maxRows, null);
+        }
+        if (isAccordantQuery) {
+            TableNode[] nodes = getAccordantNodes(limitRows);
+            if (nodes != null) {
+                return queryAccordantLazy(nodes, limitRows);
+            }
+        }
+        if (isGroupQuery || distinct || randomAccessResult ||
+                (sort != null && !sortUsingMerge)) {
+            return executeQuery(maxRows, null);
+        }
+        final int columnCount = expressions.size();
+        final int offset = offsetExpr == null ? 0 :
+                Math.max(0, offsetExpr.getValue(session).getInt());
+        final int sampleSize = getSampleSizeValue(session);
+        topTableFilter.setNodeLimit(getNodeLimit(limitRows));
+        topTableFilter.startQuery(session);
+        topTableFilter.reset();
+        topTableFilter.lock(session, isForUpdate, isForUpdate);
+        prepared.setCurrentRowNumber(0);
+        return new LazyResult(expressionArray, visibleColumnCount) {
+
+            private int rowNumber;
+            private int returned;
+
+            @Override
+            protected Value[] fetchNextRow() {
+                if ((limitRows > 0 && returned >= limitRows) ||
+                        (sampleSize > 0 && rowNumber >= sampleSize)) {
+                    // cancel the table nodes still running at once, the
+                    // rows read ahead may be consumed much later
+                    topTableFilter.close();
+                    return null;
+                }
+                while (topTableFilter.next()) {
+                    prepared.setCurrentRowNumber(rowNumber + 1);
+                    if (condition == null ||
+                            Boolean.TRUE.equals(condition.getBooleanValue(session))) {
+                        rowNumber++;
+                        if (rowNumber <= offset) {
+                            continue;
+                        }
+                        Value[] row = new Value[columnCount];
+                        for (int i = 0; i < columnCount; i++) {
+                            Expression expr = expressions.get(i);
+                            row[i] = expr.getValue(session);
+                        }
+                        returned++;
+                        return row;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            protected void closeSource() {
+                topTableFilter.close();
+            }
+        };
+    }
+
+    private int getLimitRows(int maxRows) {
+        int limitRows = maxRows == 0 ? -1 : maxRows;
+        if (limitExpr != null) {
+            Value v = limitExpr.getValue(session);
+            int l = v == ValueNull.INSTANCE ? -1 : v.getInt();
+            if (limitRows < 0) {
+                limitRows = l;
+            } else if (l >= 0) {
+                limitRows = Math.min(l, limitRows);
+            }
+        }
+        return limitRows;
+    }
+
+    /**
+     * Get the number of rows each table node needs to return. The rows of a
+     * single table query that are neither aggregated nor sorted again by
+     * this node can be limited to offset + limit on every table node, the
+     * offset is applied to the merged rows.
+     *
+     * @param limitRows the row limit of the query, or -1
+     * @return the row limit of the table nodes, or -1
+     */
+    private int getNodeLimit(int limitRows) {
+        if (limitRows < 0 || isGroupQuery || distinct || filters.size() != 1) {
+            return -1;
+        }
+        if (sort != null && !sortUsingMerge) {
+            return -1;
+        }
+        long nodeLimit = limitRows;
+        if (offsetExpr != null) {
+            int offset = offsetExpr.getValue(session).getInt();
+            if (offset > 0) {
+                nodeLimit += offset;
+            }
+        }
+        return nodeLimit > Integer.MAX_VALUE ? -1 : (int) nodeLimit;
+    }
 
     private void scanLevelValidation(TableFilter filter) {
         Table test = filter.getTable();
@@ -417,35 +552,243 @@ public class SelectExecutor extends PreparedRoutingExecutor<Select> {
         if (groupIndex == null && groups.size() == 0) {
             groups.put(defaultGroup, new HashMap<Expression, Object>());
         }
-        ArrayList<Value> keys = groups.keys();
-        for (Value v : keys) {
-            ValueArray key = (ValueArray) v;
-            prepared.setCurrentGroup(groups.get(key));
-            Value[] keyValues = key.getList();
-            Value[] row = new Value[columnCount];
-            for (int j = 0; groupIndex != null && j < groupIndex.length; j++) {
-                row[groupIndex[j]] = keyValues[j];
+        addGroupRows(groups, columnCount, result);
+    }
+
+    /**
+     * Query the partial aggregates of every group from the table nodes and
+     * merge them. The table nodes run the aggregates with the same group by
+     * expressions, AVG is calculated as SUM and COUNT. Once there are more
+     * groups than max memory rows, the partial aggregates of the new groups
+     * are merged row by row in an external map outside of the java heap.
+     *
+     * @param columnCount the number of columns
+     * @param result the result
+     */
+    private void queryGroupPartial(int columnCount, LocalResult result) {
+        int[] partialIndexes = new int[partialAggregates.size()];
+        int[] columnTypes = getPartialColumnTypes(partialIndexes);
+        ScatterGatherCursor cursor = openPartialCursor(columnTypes);
+        try {
+            mergePartialGroups(cursor, partialIndexes, columnCount, result);
+        } finally {
+            if (cursor != null) {
+                cursor.close();
             }
-            for (int j = 0; j < columnCount; j++) {
-                if (groupByExpression != null && groupByExpression[j]) {
-                    continue;
+        }
+    }
+
+    /**
+     * Merge the partial aggregates of the rows of the table nodes by group
+     * and add the groups to the result.
+     *
+     * @param cursor the rows of the table nodes, or null if there are none
+     * @param partialIndexes the index of the first partial aggregate of each
+     *            aggregate in the rows
+     * @param columnCount the number of columns
+     * @param result the result
+     */
+    void mergePartialGroups(Cursor cursor, int[] partialIndexes, int columnCount,
+            LocalResult result) {
+        ValueHashMap<HashMap<Expression, Object>> groups =
+                ValueHashMap.newInstance();
+        prepared.setCurrentRowNumber(0);
+        prepared.setCurrentGroup(null);
+        ValueArray defaultGroup = ValueArray.get(new Value[0]);
+        int groupSize = groupIndex == null ? 0 : groupIndex.length;
+        int maxMemoryRows = database.getMaxMemoryRows();
+        ExternalValueMap external = null;
+        try {
+            while (cursor != null && cursor.next()) {
+                Value[] partial = cursor.get().getValueList();
+                Value key;
+                if (groupIndex == null) {
+                    key = defaultGroup;
+                } else {
+                    key = ValueArray.get(Arrays.copyOf(partial, groupSize));
+                }
+                HashMap<Expression, Object> values = groups.get(key);
+                if (values == null) {
+                    if (groups.size() >= maxMemoryRows) {
+                        if (external == null) {
+                            external = new ExternalValueMap(session, groupSize, partial.length);
+                        }
+                        Value[] keyValues = ((ValueArray) key).getList();
+                        Value[] merged = external.get(keyValues);
+                        if (merged != null) {
+                            for (int i = 0; i < partialIndexes.length; i++) {
+                                partialAggregates.get(i).mergePartial(session,
+                                        merged, partial, partialIndexes[i]);
+                            }
+                            partial = merged;
+                        }
+                        external.put(keyValues, partial);
+                        continue;
+                    }
+                    values = new HashMap<Expression, Object>();
+                    groups.put(key, values);
+                }
+                prepared.setCurrentGroup(values);
+                for (int i = 0; i < partialIndexes.length; i++) {
+                    partialAggregates.get(i).mergeAggregate(session, partial, partialIndexes[i]);
                 }
-                Expression expr = expressions.get(j);
-                row[j] = expr.getValue(session);
             }
-            if (isHavingNullOrFalse(row)) {
-                continue;
+            if (groupIndex == null && groups.size() == 0) {
+                groups.put(defaultGroup, new HashMap<Expression, Object>());
+            }
+            addGroupRows(groups, columnCount, result);
+            if (external != null) {
+                Iterator<Value[]> it = external.keyIterator();
+                while (it.hasNext()) {
+                    Value[] keyValues = it.next();
+                    Value[] partial = external.get(keyValues);
+                    prepared.setCurrentGroup(new HashMap<Expression, Object>());
+                    for (int i = 0; i < partialIndexes.length; i++) {
+                        partialAggregates.get(i).mergeAggregate(session, partial, partialIndexes[i]);
+                    }
+                    addGroupRow(keyValues, columnCount, result);
+                }
+            }
+        } finally {
+            if (external != null) {
+                external.close();
+            }
+        }
+    }
+
+    /**
+     * Get the data types of the rows of the partial aggregate query: the
+     * group by expressions, then the partial aggregates.
+     *
+     * @param partialIndexes the container for the index of the first partial
+     *            aggregate of each aggregate in the rows
+     * @return the data types
+     */
+    int[] getPartialColumnTypes(int[] partialIndexes) {
+        ArrayList<Integer> types = New.arrayList();
+        if (groupIndex != null) {
+            for (int idx : groupIndex) {
+                types.add(expressions.get(idx).getType());
+            }
+        }
+        for (int i = 0; i < partialIndexes.length; i++) {
+            partialIndexes[i] = types.size();
+            for (int type : partialAggregates.get(i).getPartialTypes()) {
+                types.add(type);
+            }
+        }
+        int[] columnTypes = new int[types.size()];
+        for (int i = 0; i < columnTypes.length; i++) {
+            columnTypes[i] = types.get(i);
+        }
+        return columnTypes;
+    }
+
+    /**
+     * Send the partial aggregate query to all routed table nodes.
+     *
+     * @param columnTypes the data types of the rows
+     * @return the cursor over the rows of all table nodes, or null if the
+     *         result is empty for sure
+     */
+    private ScatterGatherCursor openPartialCursor(int[] columnTypes) {
+        ArrayList<IndexCondition> indexConditions = topTableFilter.getIndexConditions();
+        for (IndexCondition condition : indexConditions) {
+            if (condition.isAlwaysFalse()) {
+                return null;
+            }
+        }
+        TableMate table = castTableMate(topTableFilter.getTable());
+        RoutingResult routingResult = PartitionHints.route(session, table);
+        boolean hinted = routingResult != null;
+        RoutingResult routed = topTableFilter.takeRoutingResult();
+        if (!hinted) {
+            routingResult = routed != null ? routed : routingHandler.doRoute(table, session,
+                    topTableFilter, topTableFilter.getFilterCondition());
+        }
+        TableNode[] selectNodes = routingResult.getSelectNodes();
+        List<JdbcWorker<ResultSet>> workers = New.arrayList(selectNodes.length);
+        InListRewriter rewriter = !hinted && selectNodes.length > 1 ?
+                topTableFilter.getInListRewriter() : null;
+        try {
+            for (TableNode node : selectNodes) {
+                if (rewriter != null) {
+                    rewriter.apply(topTableFilter, node);
+                }
+                ArrayList<Value> params = New.arrayList();
+                String sql = getPartialSQL(node, params);
+                workers.add(createQueryWorker(node.getShardName(), sql, params, 0));
             }
-            row = keepOnlyDistinct(row, columnCount);
-            result.addRow(row);
+        } finally {
+            InListRewriter.reset(topTableFilter);
         }
+        return new ScatterGatherCursor(session, columnTypes, workers);
     }
 
+    private String getPartialSQL(TableNode node, List<Value> params) {
+        String alias = Parser.quoteIdentifier(topTableFilter.getTableAlias());
+        StatementBuilder buff = new StatementBuilder("SELECT ");
+        if (groupIndex != null) {
+            for (int idx : groupIndex) {
+                buff.appendExceptFirst(", ");
+                Expression expr = expressions.get(idx).getNonAliasExpression();
+                buff.append(StringUtils.unEnclose(expr.exportParameters(topTableFilter, params)));
+            }
+        }
+        for (Aggregate aggregate : partialAggregates) {
+            buff.appendExceptFirst(", ");
+            buff.append(aggregate.exportPartialParameters(topTableFilter, params));
+        }
+        buff.append(" FROM ");
+        buff.append(database.identifier(node.getCompositeObjectName()));
+        buff.append(' ').append(alias);
+        Expression filter = topTableFilter.getFilterCondition();
+        if (filter != null) {
+            String condition = filter.exportParameters(topTableFilter, params);
+            buff.append(" WHERE ").append(StringUtils.unEnclose(condition));
+        }
+        if (groupIndex != null) {
+            buff.append(" GROUP BY ");
+            buff.resetCount();
+            for (int idx : groupIndex) {
+                buff.appendExceptFirst(", ");
+                Expression expr = expressions.get(idx).getNonAliasExpression();
+                buff.append(StringUtils.unEnclose(expr.exportParameters(topTableFilter, params)));
+            }
+        }
+        return buff.toString();
+    }
 
-    private void queryFlatAccordant(int columnCount, ResultTarget result, long limitRows) {
-        
+    private void addGroupRows(ValueHashMap<HashMap<Expression, Object>> groups,
+            int columnCount, LocalResult result) {
+        ArrayList<Value> keys = groups.keys();
+        for (Value v : keys) {
+            ValueArray key = (ValueArray) v;
+            prepared.setCurrentGroup(groups.get(key));
+            addGroupRow(key.getList(), columnCount, result);
+        }
     }
 
+    private void addGroupRow(Value[] keyValues, int columnCount, LocalResult result) {
+        Value[] row = new Value[columnCount];
+        for (int j = 0; groupIndex != null && j < groupIndex.length; j++) {
+            row[groupIndex[j]] = keyValues[j];
+        }
+        for (int j = 0; j < columnCount; j++) {
+            if (groupByExpression != null && groupByExpression[j]) {
+                continue;
+            }
+            Expression expr = expressions.get(j);
+            row[j] = expr.getValue(session);
+        }
+        if (isHavingNullOrFalse(row)) {
+            return;
+        }
+        row = keepOnlyDistinct(row, columnCount);
+        result.addRow(row);
+    }
+
+
     private void queryFlat(int columnCount, ResultTarget result, long limitRows) {
         // limitRows must be long, otherwise we get an int overflow
         // if limitRows is at or near Integer.MAX_VALUE
@@ -470,7 +813,7 @@ public class SelectExecutor extends PreparedRoutingExecutor<Select> {
                 }
                 result.addRow(row);
                 rowNumber++;
-                if ((sort == null) && limitRows > 0 &&
+                if ((sort == null || sortUsingMerge) && limitRows > 0 &&
                         result.getRowCount() >= limitRows) {
                     break;
                 }
@@ -481,13 +824,263 @@ public class SelectExecutor extends PreparedRoutingExecutor<Select> {
         }
     }
 
-    private void queryGroupAccordant(int columnCount, ResultTarget result) {
+    /**
+     * Get the table nodes of an accordant query if the whole query is routed
+     * to a single shard and can be sent there as it is.
+     *
+     * @param limitRows the row limit of the query, or -1
+     * @return the table node of each table filter, or null
+     */
+    private TableNode[] getAccordantNodes(int limitRows) {
+        topTableFilter.setRoutingResult(null);
+        if (getSampleSizeValue(session) > 0) {
+            return null;
+        }
+        if (sort != null) {
+            for (int sortType : sort.getSortTypes()) {
+                if ((sortType & (SortOrder.NULLS_FIRST | SortOrder.NULLS_LAST)) != 0) {
+                    return null;
+                }
+            }
+        }
+        if (limitRows >= 0 || offsetExpr != null) {
+            int limitSyntax = database.getMode().limitSyntax;
+            if (limitRows < 0 || (limitSyntax != Mode.LIMIT_CLAUSE
+                    && limitSyntax != Mode.LIMIT_FETCH_FIRST)) {
+                return null;
+            }
+        }
+        for (TableFilter f : filters) {
+            if (f.getNestedJoin() != null) {
+                return null;
+            }
+        }
+        ArrayList<IndexCondition> indexConditions = topTableFilter.getIndexConditions();
+        for (IndexCondition condition : indexConditions) {
+            if (condition.isAlwaysFalse()) {
+                return null;
+            }
+        }
+        TableMate table = castTableMate(topTableFilter.getTable());
+        RoutingResult routingResult = PartitionHints.route(session, table);
+        if (routingResult == null) {
+            routingResult = routingHandler.doRoute(table, session, topTableFilter,
+                    topTableFilter.getFilterCondition());
+        }
+        // if the query is not sent as it is, the table is not routed again
+        topTableFilter.setRoutingResult(routingResult);
+        if (routingResult.isMultipleNode()) {
+            return null;
+        }
+        TableNode node = routingResult.getSingleResult();
+        int partitionIndex = Arrays.asList(table.getPartitionNode()).indexOf(node);
+        TableNode[] nodes = new TableNode[filters.size()];
+        for (int i = 0; i < nodes.length; i++) {
+            TableMate joined = castTableMate(filters.get(i).getTable());
+            if (joined == table) {
+                nodes[i] = node;
+                continue;
+            }
+            TableNode[] partition = joined.getPartitionNode();
+            if (partitionIndex >= 0 && joined.getTableRouter() != null &&
+                    joined.getTableRouter().equals(table.getTableRouter())) {
+                nodes[i] = partition[partitionIndex];
+            } else if (joined.getTableRouter() == null || partition.length == 1) {
+                // only a table that has all rows in each of its table nodes,
+                // the table node of another partitioned table on the shard
+                // has a part of the rows
+                for (TableNode n : partition) {
+                    if (n.getShardName().equals(node.getShardName())) {
+                        nodes[i] = n;
+                        break;
+                    }
+                }
+            }
+            if (nodes[i] == null || !nodes[i].getShardName().equals(node.getShardName())) {
+                return null;
+            }
+        }
+        topTableFilter.setRoutingResult(null);
+        return nodes;
+    }
+
+    /**
+     * Send the whole query to the shard of the table nodes and read its
+     * result as it is, nothing is evaluated again.
+     *
+     * @param nodes the table node of each table filter
+     * @param limitRows the row limit of the query, or -1
+     * @param target the result target, or null
+     * @return the result, or null if the rows are added to the target
+     */
+    private LocalResult queryAccordant(TableNode[] nodes, int limitRows, ResultTarget target) {
+        topTableFilter.startQuery(session);
+        ArrayList<Value> params = New.arrayList();
+        String sql = getAccordantSQL(nodes, limitRows, params);
+        JdbcWorker<ResultSet> worker = createQueryWorker(nodes[0].getShardName(),
+                sql, params, Math.max(limitRows, 0));
+        LocalResult result = target == null ? new LocalResult(session,
+                expressionArray, visibleColumnCount) : null;
+        try {
+            addRuningJdbcWorker(worker);
+            ResultSet rs = worker.doWork();
+            while (rs.next()) {
+                Value[] row = readAccordantRow(rs);
+                if (result != null) {
+                    result.addRow(row);
+                } else {
+                    target.addRow(row);
+                }
+            }
+        } catch (SQLException e) {
+            throw DbException.convert(e);
+        } finally {
+            removeRuningJdbcWorker(worker);
+            worker.closeResource();
+        }
+        if (result != null) {
+            result.done();
+        }
+        return result;
+    }
+
+    private ResultInterface queryAccordantLazy(TableNode[] nodes, int limitRows) {
+        topTableFilter.startQuery(session);
+        ArrayList<Value> params = New.arrayList();
+        String sql = getAccordantSQL(nodes, limitRows, params);
+        final JdbcWorker<ResultSet> worker = createQueryWorker(nodes[0].getShardName(),
+                sql, params, Math.max(limitRows, 0));
+        final ResultSet rs;
+        addRuningJdbcWorker(worker);
+        try {
+            rs = worker.doWork();
+        } catch (RuntimeException e) {
+            removeRuningJdbcWorker(worker);
+            worker.closeResource();
+            throw e;
+        }
+        return new LazyResult(expressionArray, visibleColumnCount) {
+
+            @Override
+            protected Value[] fetchNextRow() {
+                try {
+                    return rs.next() ? readAccordantRow(rs) : null;
+                } catch (SQLException e) {
+                    throw DbException.convert(e);
+                }
+            }
+
+            @Override
+            protected void closeSource() {
+                removeRuningJdbcWorker(worker);
+                worker.closeResource();
+            }
+        };
+    }
+
+    private Value[] readAccordantRow(ResultSet rs) throws SQLException {
+        int columnCount = expressions.size();
         Value[] row = new Value[columnCount];
         for (int i = 0; i < columnCount; i++) {
-            Expression expr = expressions.get(i);
-            row[i] = expr.getValue(session);
+            if (i < visibleColumnCount) {
+                int type = expressionArray[i].getType();
+                row[i] = DataType.readValue(session, rs, i + 1, type);
+            } else {
+                row[i] = ValueNull.INSTANCE;
+            }
+        }
+        return row;
+    }
+
+    private String getAccordantSQL(TableNode[] nodes, int limitRows, List<Value> params) {
+        topTableFilter.setExportJoinColumns(true);
+        try {
+            StatementBuilder buff = new StatementBuilder("SELECT ");
+            if (distinct) {
+                buff.append("DISTINCT ");
+            }
+            for (int i = 0; i < visibleColumnCount; i++) {
+                buff.appendExceptFirst(", ");
+                buff.append(expressionArray[i].exportParameters(topTableFilter, params));
+            }
+            buff.append(" FROM ");
+            TableFilter f = topTableFilter;
+            do {
+                if (f != topTableFilter) {
+                    buff.append(f.isJoinOuter() ? " LEFT OUTER JOIN " : " INNER JOIN ");
+                }
+                TableNode node = nodes[filters.indexOf(f)];
+                buff.append(identifier(node.getCompositeObjectName()));
+                buff.append(' ').append(Parser.quoteIdentifier(f.getTableAlias()));
+                if (f != topTableFilter) {
+                    Expression on = f.getJoinCondition();
+                    buff.append(" ON ");
+                    if (on == null) {
+                        buff.append("1=1");
+                    } else {
+                        buff.append(StringUtils.unEnclose(on.exportParameters(topTableFilter, params)));
+                    }
+                }
+                f = f.getJoin();
+            } while (f != null);
+            if (condition != null) {
+                buff.append(" WHERE ").append(
+                        StringUtils.unEnclose(condition.exportParameters(topTableFilter, params)));
+            }
+            if (groupIndex != null) {
+                buff.append(" GROUP BY ");
+                buff.resetCount();
+                for (int idx : groupIndex) {
+                    buff.appendExceptFirst(", ");
+                    Expression g = expressionArray[idx].getNonAliasExpression();
+                    buff.append(StringUtils.unEnclose(g.exportParameters(topTableFilter, params)));
+                }
+            }
+            if (havingIndex >= 0) {
+                Expression h = expressionArray[havingIndex];
+                buff.append(" HAVING ").append(
+                        StringUtils.unEnclose(h.exportParameters(topTableFilter, params)));
+            }
+            if (sort != null) {
+                buff.append(" ORDER BY ");
+                buff.resetCount();
+                int[] indexes = sort.getQueryColumnIndexes();
+                int[] sortTypes = sort.getSortTypes();
+                for (int i = 0; i < indexes.length; i++) {
+                    buff.appendExceptFirst(", ");
+                    int idx = indexes[i];
+                    if (idx < visibleColumnCount) {
+                        buff.append(idx + 1);
+                    } else {
+                        Expression o = expressionArray[idx].getNonAliasExpression();
+                        buff.append(StringUtils.unEnclose(o.exportParameters(topTableFilter, params)));
+                    }
+                    if ((sortTypes[i] & SortOrder.DESCENDING) != 0) {
+                        buff.append(" DESC");
+                    }
+                }
+            }
+            if (limitRows >= 0) {
+                int offset = offsetExpr == null ? 0 : offsetExpr.getValue(session).getInt();
+                if (database.getMode().limitSyntax == Mode.LIMIT_FETCH_FIRST) {
+                    if (offset > 0) {
+                        buff.append(" OFFSET ").append(offset).append(" ROWS");
+                    }
+                    buff.append(" FETCH FIRST ").append(limitRows).append(" ROWS ONLY");
+                } else {
+                    buff.append(" LIMIT ").append(limitRows);
+                    if (offset > 0) {
+                        buff.append(" OFFSET ").append(offset);
+                    }
+                }
+            }
+            if (isForUpdate) {
+                buff.append(" FOR UPDATE");
+            }
+            return buff.toString();
+        } finally {
+            topTableFilter.setExportJoinColumns(false);
         }
-        result.addRow(row);
     }
 
     public ResultInterface queryMeta() {
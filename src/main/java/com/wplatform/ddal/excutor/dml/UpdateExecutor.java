@@ -26,8 +26,6 @@ import com.wplatform.ddal.dbobject.table.Column;
 import com.wplatform.ddal.dbobject.table.TableFilter;
 import com.wplatform.ddal.dbobject.table.TableMate;
 import com.wplatform.ddal.dispatch.rule.TableNode;
-import com.wplatform.ddal.message.DbException;
-import com.wplatform.ddal.result.Row;
 import com.wplatform.ddal.result.SearchRow;
 import com.wplatform.ddal.util.New;
 import com.wplatform.ddal.util.StatementBuilder;
@@ -48,43 +46,27 @@ public class UpdateExecutor extends PreparedRoutingExecutor<Update> {
     }
     
     
+    /**
+     * Send the UPDATE statement to the routed table nodes. The new values are
+     * exported like the condition, so they may refer to the old values of
+     * the row.
+     */
     @Override
     public int executeUpdate() {
         TableFilter tableFilter = prepared.getTableFilter();
         TableMate table = castTableMate(tableFilter.getTable());
-        List<Column> columns = prepared.getColumns();
-        Map<Column, Expression> valueMap = prepared.getExpressionMap();
         table.check();
         session.getUser().checkRight(table, Right.UPDATE);
-        
-        Row updateRow = table.getTemplateRow();
-        for (int i = 0, size = columns.size(); i < size; i++) {
-            Column c = columns.get(i);
-            Expression e = valueMap.get(c);
-            int index = c.getColumnId();
-            if (e != null) {
-                // e can be null (DEFAULT)
-                e = e.optimize(session);
-                try {
-                    Value v = c.convert(e.getValue(session));
-                    updateRow.setValue(index, v);
-                } catch (DbException ex) {
-                    ex.addSQL("evaluate expression " + e.getSQL());
-                    throw ex;
-                }
-            }
-        }
-        return updateRow(table, updateRow, tableFilter.getIndexConditions());
-        
+        return updateRow(table, null, tableFilter, prepared.getCondition());
     }
 
-
     @Override
     protected List<Value> doTranslate(TableNode node, SearchRow row, StatementBuilder buff) {
         ArrayList<Value> params = New.arrayList();
         TableFilter tableFilter = prepared.getTableFilter();
         String forTable = node.getCompositeObjectName();
         List<Column> columns = prepared.getColumns();
+        Map<Column, Expression> valueMap = prepared.getExpressionMap();
         Expression condition = prepared.getCondition();
         Expression limitExpr = prepared.getLimitExpr();
 
@@ -92,23 +74,14 @@ public class UpdateExecutor extends PreparedRoutingExecutor<Update> {
         buff.append(identifier(forTable)).append(" SET ");
         for (int i = 0, size = columns.size(); i < size; i++) {
             Column c = columns.get(i);
+            Expression e = valueMap.get(c);
             buff.appendExceptFirst(", ");
             buff.append(c.getSQL()).append(" = ");
-            
-            Value v = row.getValue(i);
-            buff.appendExceptFirst(", ");
-            if (v == null) {
-                buff.append("DEFAULT");
-            } else if (isNull(v)) {
-                buff.append("NULL");
-            } else {
-                buff.append('?');
-                params.add(v);
-            }
+            buff.append(StringUtils.unEnclose(e.exportParameters(tableFilter, params)));
         }
         if (condition != null) {
-            condition.exportParameters(tableFilter, params);
-            buff.append(" WHERE ").append(StringUtils.unEnclose(condition.getSQL()));
+            String where = condition.exportParameters(tableFilter, params);
+            buff.append(" WHERE ").append(StringUtils.unEnclose(where));
         }
         if (limitExpr != null) {
             limitExpr.exportParameters(tableFilter, params);
@@ -88,6 +88,7 @@ public class JdbcPreparedStatement extends JdbcStatement implements
                 boolean updatable = resultSetConcurrency == ResultSet.CONCUR_UPDATABLE;
                 try {
                     setExecutingStatement(command);
+                    command.setFetchSize(fetchSize);
                     result = command.executeQuery(maxRows, scrollable);
                 } finally {
                     setExecutingStatement(null);
@@ -172,6 +173,7 @@ public class JdbcPreparedStatement extends JdbcStatement implements
                             returnsResultSet = true;
                             boolean scrollable = resultSetType != ResultSet.TYPE_FORWARD_ONLY;
                             boolean updatable = resultSetConcurrency == ResultSet.CONCUR_UPDATABLE;
+                            command.setFetchSize(fetchSize);
                             ResultInterface result = command.executeQuery(maxRows, scrollable);
                             resultSet = new JdbcResultSet(conn, this, result,
                                     id, closedByResultSet, scrollable,
@@ -1135,6 +1137,9 @@ public class JdbcPreparedStatement extends JdbcStatement implements
     /**
      * Executes the batch.
      * If one of the batched statements fails, this database will continue.
+     * The sets of parameter values are routed first, and the statements of
+     * each table node are sent as one JDBC batch. The exceptions of all
+     * failed statements are chained as next exceptions.
      *
      * @return the array of update counts
      */
@@ -1149,35 +1154,22 @@ public class JdbcPreparedStatement extends JdbcStatement implements
             }
             int size = batchParameters.size();
             int[] result = new int[size];
-            boolean error = false;
             SQLException next = null;
             checkClosedForWrite();
             try {
-                for (int i = 0; i < size; i++) {
-                    Value[] set = batchParameters.get(i);
-                    ArrayList<? extends ParameterInterface> parameters =
-                            command.getParameters();
-                    for (int j = 0; j < set.length; j++) {
-                        Value value = set[j];
-                        ParameterInterface param = parameters.get(j);
-                        param.setValue(value, false);
-                    }
+                closeOldResultSet();
+                synchronized (session) {
                     try {
-                        result[i] = executeUpdateInternal();
+                        setExecutingStatement(command);
+                        command.executeBatchUpdate(batchParameters, result);
                     } catch (Exception re) {
-                        SQLException e = logAndConvert(re);
-                        if (next == null) {
-                            next = e;
-                        } else {
-                            e.setNextException(next);
-                            next = e;
-                        }
-                        result[i] = Statement.EXECUTE_FAILED;
-                        error = true;
+                        next = logAndConvert(re);
+                    } finally {
+                        setExecutingStatement(null);
                     }
                 }
                 batchParameters = null;
-                if (error) {
+                if (next != null) {
                     JdbcBatchUpdateException e = new JdbcBatchUpdateException(next, result);
                     throw e;
                 }
@@ -1191,30 +1183,27 @@ public class JdbcPreparedStatement extends JdbcStatement implements
     }
 
     /**
-     * Adds the current settings to the batch.
+     * Adds the current settings to the batch. Only the parameter values are
+     * copied, the statement is parsed once and the batch is executed by the
+     * same command.
      */
     @Override
     public void addBatch() throws SQLException {
         try {
             debugCodeCall("addBatch");
-            checkClosedForWrite();
-            try {
-                ArrayList<? extends ParameterInterface> parameters =
-                        command.getParameters();
-                int size = parameters.size();
-                Value[] set = new Value[size];
-                for (int i = 0; i < size; i++) {
-                    ParameterInterface param = parameters.get(i);
-                    Value value = param.getParamValue();
-                    set[i] = value;
-                }
-                if (batchParameters == null) {
-                    batchParameters = New.arrayList();
-                }
-                batchParameters.add(set);
-            } finally {
-                afterWriting();
+            // nothing is written until the batch is executed
+            checkClosed();
+            ArrayList<? extends ParameterInterface> parameters =
+                    command.getParameters();
+            int size = parameters.size();
+            Value[] set = new Value[size];
+            for (int i = 0; i < size; i++) {
+                set[i] = parameters.get(i).getParamValue();
+            }
+            if (batchParameters == null) {
+                batchParameters = New.arrayList();
             }
+            batchParameters.add(set);
         } catch (Exception e) {
             throw logAndConvert(e);
         }
@@ -383,11 +383,29 @@ public class DbException extends RuntimeException {
             }
             return this;
         }
+        SQLException next = e.getNextException();
         e = new JdbcSQLException(e.getMessage(), sql, e.getSQLState(),
                 e.getErrorCode(), e, null);
+        if (next != null) {
+            e.setNextException(next);
+        }
         return new DbException(e);
     }
 
+    /**
+     * Chain an earlier exception to this exception, as the next exception of
+     * the SQL exception. This is used to report all failures of a batch.
+     *
+     * @param earlier the earlier exception, or null
+     * @return this
+     */
+    public DbException chain(DbException earlier) {
+        if (earlier != null && earlier != this) {
+            getSQLException().setNextException(earlier.getSQLException());
+        }
+        return this;
+    }
+
     public Object getSource() {
         return source;
     }
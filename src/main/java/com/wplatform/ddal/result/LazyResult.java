@@ -0,0 +1,266 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.result;
+
+import java.util.ArrayList;
+
+import com.wplatform.ddal.command.expression.Expression;
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.engine.SysProperties;
+import com.wplatform.ddal.message.DbException;
+import com.wplatform.ddal.message.ErrorCode;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.value.Value;
+
+/**
+ * A forward only result that reads the rows from its source only when they
+ * are requested. At most fetch size rows are read ahead, the source stays
+ * open until the last row was read or the result is closed.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public abstract class LazyResult implements ResultInterface {
+
+    private final Expression[] expressions;
+    private final int visibleColumnCount;
+    private final ArrayList<Value[]> buffer = New.arrayList();
+    private int bufferPos;
+    private Value[] currentRow;
+    private int rowId = -1;
+    private boolean afterLast;
+    private boolean exhausted;
+    private boolean closed;
+    private int fetchSize = SysProperties.SERVER_RESULT_SET_FETCH_SIZE;
+    private Session session;
+    private Session.StatementContext statement;
+
+    /**
+     * Create a new lazy result.
+     *
+     * @param expressions the expression array
+     * @param visibleColumnCount the number of visible columns
+     */
+    public LazyResult(Expression[] expressions, int visibleColumnCount) {
+        this.expressions = expressions;
+        this.visibleColumnCount = visibleColumnCount;
+    }
+
+    /**
+     * Keep the statement that created this result. The statement is
+     * attached to the session while rows are read, and it is ended when this
+     * result is closed.
+     *
+     * @param session the session
+     * @param statement the detached statement
+     */
+    public void setStatement(Session session, Session.StatementContext statement) {
+        this.session = session;
+        this.statement = statement;
+    }
+
+    /**
+     * Read the next row from the source.
+     *
+     * @return the row, or null if there are no more rows
+     */
+    protected abstract Value[] fetchNextRow();
+
+    /**
+     * Release the source of the rows.
+     */
+    protected abstract void closeSource();
+
+    @Override
+    public void reset() {
+        throw DbException.get(ErrorCode.RESULT_SET_NOT_SCROLLABLE);
+    }
+
+    @Override
+    public Value[] currentRow() {
+        return currentRow;
+    }
+
+    @Override
+    public boolean next() {
+        if (closed || afterLast) {
+            return false;
+        }
+        if (bufferPos >= buffer.size()) {
+            fill();
+        }
+        rowId++;
+        if (bufferPos < buffer.size()) {
+            currentRow = buffer.get(bufferPos);
+            buffer.set(bufferPos++, null);
+            return true;
+        }
+        currentRow = null;
+        afterLast = true;
+        close();
+        return false;
+    }
+
+    private void fill() {
+        buffer.clear();
+        bufferPos = 0;
+        try {
+            readRows();
+        } catch (RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private void readRows() {
+        Session.StatementContext outer = null;
+        if (statement != null) {
+            outer = session.attachStatement(statement);
+        }
+        try {
+            while (!exhausted && buffer.size() < fetchSize) {
+                Value[] row = fetchNextRow();
+                if (row == null) {
+                    exhausted = true;
+                } else {
+                    buffer.add(row);
+                }
+            }
+        } finally {
+            if (outer != null) {
+                statement = session.attachStatement(outer);
+            }
+        }
+    }
+
+    @Override
+    public int getRowId() {
+        return rowId;
+    }
+
+    @Override
+    public int getVisibleColumnCount() {
+        return visibleColumnCount;
+    }
+
+    /**
+     * Get the number of rows. As long as the last row was not read, the row
+     * count is unknown and Integer.MAX_VALUE is returned, except if the
+     * result has no rows at all.
+     *
+     * @return the row count
+     */
+    @Override
+    public int getRowCount() {
+        if (afterLast) {
+            return rowId;
+        }
+        if (rowId < 0 && !closed && buffer.isEmpty()) {
+            // read ahead to know if there is a first row
+            fill();
+        }
+        return rowId < 0 && exhausted && buffer.isEmpty() ? 0 : Integer.MAX_VALUE;
+    }
+
+    @Override
+    public boolean needToClose() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+        if (!closed) {
+            closed = true;
+            buffer.clear();
+            try {
+                closeSource();
+            } finally {
+                if (statement != null) {
+                    session.endStatement(statement);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check if this result is closed.
+     *
+     * @return true if it is
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public String getAlias(int i) {
+        return expressions[i].getAlias();
+    }
+
+    @Override
+    public String getSchemaName(int i) {
+        return expressions[i].getSchemaName();
+    }
+
+    @Override
+    public String getTableName(int i) {
+        return expressions[i].getTableName();
+    }
+
+    @Override
+    public String getColumnName(int i) {
+        return expressions[i].getColumnName();
+    }
+
+    @Override
+    public int getColumnType(int i) {
+        return expressions[i].getType();
+    }
+
+    @Override
+    public long getColumnPrecision(int i) {
+        return expressions[i].getPrecision();
+    }
+
+    @Override
+    public int getColumnScale(int i) {
+        return expressions[i].getScale();
+    }
+
+    @Override
+    public int getDisplaySize(int i) {
+        return expressions[i].getDisplaySize();
+    }
+
+    @Override
+    public boolean isAutoIncrement(int i) {
+        return expressions[i].isAutoIncrement();
+    }
+
+    @Override
+    public int getNullable(int i) {
+        return expressions[i].getNullable();
+    }
+
+    @Override
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    @Override
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = Math.max(1, fetchSize);
+    }
+
+}
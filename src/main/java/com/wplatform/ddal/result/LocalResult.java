@@ -170,7 +170,8 @@ public class LocalResult implements ResultInterface, ResultTarget {
     }
 
     /**
-     * Random access is required (containsDistinct).
+     * Random access is required (containsDistinct). If the result is not
+     * distinct, it is kept in memory and not written to a temporary file.
      */
     public void setRandomAccess() {
         this.randomAccess = true;
@@ -273,10 +274,9 @@ public class LocalResult implements ResultInterface, ResultTarget {
                 distinctRows.put(array, values);
                 rowCount = distinctRows.size();
                 if (rowCount > maxMemoryRows) {
-                    throw DbException.getUnsupportedException("too big result row " + maxMemoryRows);
-                    //external = new ResultTempTable(session, expressions, true, sort);
-                    //rowCount = external.addRows(distinctRows.values());
-                    //distinctRows = null;
+                    external = new ResultHashBuffer(session, expressions.length);
+                    rowCount = external.addRows(distinctRows.values());
+                    distinctRows = null;
                 }
             } else {
                 rowCount = external.addRow(values);
@@ -285,9 +285,9 @@ public class LocalResult implements ResultInterface, ResultTarget {
         }
         rows.add(values);
         rowCount++;
-        if (rows.size() > maxMemoryRows) {
+        if (rows.size() > maxMemoryRows && !randomAccess) {
             if (external == null) {
-                //external = new ResultTempTable(session, expressions, false, sort);
+                external = new ResultDiskBuffer(session, sort, expressions.length);
             }
             addRowsToDisk();
         }
@@ -310,32 +310,30 @@ public class LocalResult implements ResultInterface, ResultTarget {
         if (distinct) {
             if (distinctRows != null) {
                 rows = distinctRows.values();
-            } else {
-                if (external != null && sort != null) {
-                    // external sort
-                    ResultExternal temp = external;
-                    external = null;
-                    temp.reset();
-                    rows = New.arrayList();
-                    // TODO use offset directly if possible
-                    while (true) {
-                        Value[] list = temp.next();
-                        if (list == null) {
-                            break;
-                        }
+            } else if (sort != null) {
+                // read the distinct rows and write them again as sorted tapes
+                ResultExternal temp = external;
+                external = null;
+                temp.reset();
+                rows = New.arrayList();
+                rowCount = 0;
+                while (true) {
+                    Value[] list = temp.next();
+                    if (list == null) {
+                        break;
+                    }
+                    rows.add(list);
+                    rowCount++;
+                    if (rows.size() > maxMemoryRows) {
                         if (external == null) {
-                            //external = new ResultTempTable(session, expressions, true, sort);
-                        }
-                        rows.add(list);
-                        if (rows.size() > maxMemoryRows) {
-                            rowCount = external.addRows(rows);
-                            rows.clear();
+                            external = new ResultDiskBuffer(session, sort, expressions.length);
                         }
+                        addRowsToDisk();
                     }
-                    temp.close();
-                    // the remaining data in rows is written in the following
-                    // lines
                 }
+                temp.close();
+                // the remaining data in rows is written in the following
+                // lines
             }
         }
         if (external != null) {
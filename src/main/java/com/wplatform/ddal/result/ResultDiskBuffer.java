@@ -20,6 +20,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.PriorityQueue;
 
 import com.wplatform.ddal.engine.Constants;
 import com.wplatform.ddal.engine.Session;
@@ -49,6 +51,7 @@ class ResultDiskBuffer implements ResultExternal {
     private int rowCount;
     private boolean closed;
     private int childCount;
+    private PriorityQueue<ResultDiskTape> mergeQueue;
 
     private String fileName;
 
@@ -167,6 +170,7 @@ class ResultDiskBuffer implements ResultExternal {
 
     public void reset() {
         if (sort != null) {
+            mergeQueue = null;
             for (ResultDiskTape tape : tapes) {
                 tape.pos = tape.start;
                 tape.buffer = New.arrayList();
@@ -212,29 +216,44 @@ class ResultDiskBuffer implements ResultExternal {
     }
 
     private Value[] nextSorted() {
-        int next = -1;
-        for (int i = 0, size = tapes.size(); i < size; i++) {
-            ResultDiskTape tape = tapes.get(i);
-            if (tape.buffer.size() == 0 && tape.pos < tape.end) {
-                seek(tape.pos);
-                for (int j = 0; tape.pos < tape.end && j < READ_AHEAD; j++) {
-                    readRow(tape);
+        if (mergeQueue == null) {
+            // the tapes are ordered by their current head row, so only the
+            // tape that returned the last row needs to be compared again
+            mergeQueue = new PriorityQueue<ResultDiskTape>(
+                    Math.max(1, tapes.size()), new Comparator<ResultDiskTape>() {
+                @Override
+                public int compare(ResultDiskTape a, ResultDiskTape b) {
+                    return compareTapes(a, b);
                 }
-            }
-            if (tape.buffer.size() > 0) {
-                if (next == -1) {
-                    next = i;
-                } else if (compareTapes(tape, tapes.get(next)) < 0) {
-                    next = i;
+            });
+            for (ResultDiskTape tape : tapes) {
+                fillBuffer(tape);
+                if (tape.buffer.size() > 0) {
+                    mergeQueue.add(tape);
                 }
             }
         }
-        ResultDiskTape t = tapes.get(next);
-        Value[] row = t.buffer.get(0);
-        t.buffer.remove(0);
+        ResultDiskTape t = mergeQueue.poll();
+        if (t == null) {
+            return null;
+        }
+        Value[] row = t.buffer.remove(0);
+        fillBuffer(t);
+        if (t.buffer.size() > 0) {
+            mergeQueue.add(t);
+        }
         return row;
     }
 
+    private void fillBuffer(ResultDiskTape tape) {
+        if (tape.buffer.size() == 0 && tape.pos < tape.end) {
+            seek(tape.pos);
+            for (int j = 0; tape.pos < tape.end && j < READ_AHEAD; j++) {
+                readRow(tape);
+            }
+        }
+    }
+
     private int compareTapes(ResultDiskTape a, ResultDiskTape b) {
         Value[] va = a.buffer.get(0);
         Value[] vb = b.buffer.get(0);
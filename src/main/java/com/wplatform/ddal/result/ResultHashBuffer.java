@@ -0,0 +1,92 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.result;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.util.ExternalValueMap;
+import com.wplatform.ddal.value.Value;
+
+/**
+ * This class implements the distinct buffer for the LocalResult class. The
+ * rows are kept in a hash set outside of the java heap, so duplicates are
+ * removed as the rows are added.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+class ResultHashBuffer implements ResultExternal {
+
+    private final ExternalValueMap rows;
+    private Iterator<Value[]> iterator;
+
+    ResultHashBuffer(Session session, int columnCount) {
+        rows = new ExternalValueMap(session, columnCount, 0);
+    }
+
+    @Override
+    public void reset() {
+        iterator = rows.keyIterator();
+    }
+
+    @Override
+    public Value[] next() {
+        return iterator.hasNext() ? iterator.next() : null;
+    }
+
+    @Override
+    public int addRow(Value[] values) {
+        rows.put(values, null);
+        return rows.size();
+    }
+
+    @Override
+    public int addRows(ArrayList<Value[]> list) {
+        for (Value[] values : list) {
+            rows.put(values, null);
+        }
+        return rows.size();
+    }
+
+    @Override
+    public void done() {
+        // nothing to do
+    }
+
+    @Override
+    public void close() {
+        iterator = null;
+        rows.close();
+    }
+
+    @Override
+    public int removeRow(Value[] values) {
+        rows.remove(values);
+        return rows.size();
+    }
+
+    @Override
+    public boolean contains(Value[] values) {
+        return rows.containsKey(values);
+    }
+
+    @Override
+    public ResultExternal createShallowCopy() {
+        return null;
+    }
+
+}
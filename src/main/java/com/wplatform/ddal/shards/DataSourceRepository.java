@@ -23,7 +23,6 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.*;
-import java.util.concurrent.ThreadPoolExecutor.AbortPolicy;
 
 import javax.sql.DataSource;
 
@@ -57,7 +56,7 @@ public class DataSourceRepository {
     protected ScheduledExecutorService monitorScheduler;
     private String validationQuery;
     private int validationQueryTimeout;
-    private ThreadPoolExecutor jdbcExecutor;
+    private JdbcExecutor jdbcExecutor;
     private ScheduledExecutorService scheduledExecutor;
 
     public DataSourceRepository(Database database) {
@@ -167,25 +166,36 @@ public class DataSourceRepository {
     }
     
     /**
-     * TODO configurable
+     * Get the executor of the jdbc workers. Each shard has its own thread
+     * pool, sized by the maxPoolSize, queueSize and rejectPolicy attributes
+     * of the shard.
+     *
      * @return the jdbcExecutor
      */
-    public ThreadPoolExecutor getJdbcExecutor() {
+    public synchronized JdbcExecutor getJdbcExecutor() {
         if (jdbcExecutor == null) {
-            int corePoolSize = Runtime.getRuntime().availableProcessors();
-            int maximumPoolSize = 200;// TODO configurable
-            int capacity = maximumPoolSize * 1;
             int keepAliveTime = database.getSettings().maxQueryTimeout;
             if (keepAliveTime <= 0) {
                 keepAliveTime = 15 * 60000; // 15 MINUTES
             }
-            BlockingQueue<Runnable> workQueue = new LinkedBlockingQueue<Runnable>(capacity);
-            jdbcExecutor = new ThreadPoolExecutor(corePoolSize, maximumPoolSize, keepAliveTime, TimeUnit.MILLISECONDS,
-                    workQueue, New.customThreadFactory("jdbc-worker"), new AbortPolicy());
-            jdbcExecutor.allowCoreThreadTimeOut(true);
+            Map<String, ShardConfig> shards = database.getConfiguration().getCluster();
+            jdbcExecutor = new JdbcExecutor(shards, keepAliveTime, trace,
+                    database.getSettings().virtualThreadWorkers);
         }
         return jdbcExecutor;
     }
+
+    /**
+     * Get the saturation statistics of the thread pools of the shards.
+     *
+     * @return the statistics of each pool that was started
+     */
+    public synchronized List<JdbcExecutor.Statistics> getJdbcExecutorStatistics() {
+        if (jdbcExecutor == null) {
+            return New.arrayList();
+        }
+        return jdbcExecutor.getStatistics();
+    }
     
     public void close() {
         try {
@@ -195,6 +205,7 @@ public class DataSourceRepository {
         }
         try {
             if (jdbcExecutor != null) {
+                jdbcExecutor.shutdown();
                 jdbcExecutor.awaitTermination(1, TimeUnit.SECONDS);
             }
         } catch (InterruptedException e) {
@@ -0,0 +1,477 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.shards;
+
+import java.lang.reflect.Method;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.RunnableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.wplatform.ddal.config.ShardConfig;
+import com.wplatform.ddal.excutor.JdbcWorker;
+import com.wplatform.ddal.message.Trace;
+import com.wplatform.ddal.util.New;
+
+/**
+ * The executor of the JDBC workers. Every shard has its own bounded thread
+ * pool, so a slow shard can only exhaust the threads and the queue of its
+ * own pool. Workers are dispatched to the pool of their shard, other tasks
+ * run in a shared pool.
+ * <p>
+ * If virtual threads are enabled and the java runtime supports them, every
+ * worker runs in its own virtual thread instead. The bounds of a shard then
+ * limit the number of workers that run at the same time and that wait for
+ * a permit, a waiting worker does not hold a platform thread.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public class JdbcExecutor extends AbstractExecutorService {
+
+    /**
+     * The default maximum number of threads of a shard.
+     */
+    public static final int DEFAULT_MAX_POOL_SIZE = 50;
+
+    /**
+     * Reject a task if the pool and the queue are full.
+     */
+    public static final String REJECT_ABORT = "abort";
+
+    /**
+     * Run a task in the calling thread if the pool and the queue are full.
+     */
+    public static final String REJECT_CALLER_RUNS = "callerRuns";
+
+    private static final String SHARED = "";
+
+    private final Map<String, ShardConfig> shards;
+    private final int keepAliveTime;
+    private final Trace trace;
+    private final Map<String, Pool> pools = New.hashMap();
+    private final ExecutorService virtualThreads;
+    private volatile boolean shutdown;
+
+    /**
+     * Create a new executor.
+     *
+     * @param shards the shard configurations
+     * @param keepAliveTime the keep alive time of idle threads in
+     *            milliseconds
+     * @param trace the trace
+     * @param useVirtualThreads whether to run the workers in virtual threads
+     */
+    public JdbcExecutor(Map<String, ShardConfig> shards, int keepAliveTime, Trace trace,
+            boolean useVirtualThreads) {
+        this.shards = shards;
+        this.keepAliveTime = keepAliveTime;
+        this.trace = trace;
+        ExecutorService executor = null;
+        if (useVirtualThreads) {
+            executor = newVirtualThreadExecutor();
+            if (executor == null) {
+                trace.info("virtual threads are not supported by this java runtime, use thread pools.");
+            }
+        }
+        this.virtualThreads = executor;
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            Method m = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) m.invoke(null);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * Check whether the workers run in virtual threads.
+     *
+     * @return true if they do
+     */
+    public boolean isVirtualThreads() {
+        return virtualThreads != null;
+    }
+
+    /**
+     * Get the executor of a shard.
+     *
+     * @param shardName the shard name, or null for the shared pool
+     * @return the executor
+     */
+    public Executor getExecutor(String shardName) {
+        return getPool(shardName);
+    }
+
+    private synchronized Pool getPool(String shardName) {
+        String key = shardName == null || !shards.containsKey(shardName) ? SHARED : shardName;
+        Pool pool = pools.get(key);
+        if (pool == null) {
+            if (shutdown) {
+                throw new RejectedExecutionException("jdbc executor is shut down");
+            }
+            pool = new Pool(key, shards.get(key));
+            pools.put(key, pool);
+        }
+        return pool;
+    }
+
+    @Override
+    protected <T> RunnableFuture<T> newTaskFor(Callable<T> callable) {
+        return new ShardTask<T>(callable);
+    }
+
+    @Override
+    public void execute(Runnable command) {
+        String shardName = null;
+        if (command instanceof ShardTask) {
+            shardName = ((ShardTask<?>) command).shardName;
+        }
+        getPool(shardName).execute(command);
+    }
+
+    /**
+     * Get the saturation statistics of the pool of a shard.
+     *
+     * @param shardName the shard name
+     * @return the statistics
+     */
+    public Statistics getStatistics(String shardName) {
+        return getPool(shardName).getStatistics();
+    }
+
+    /**
+     * Get the saturation statistics of all pools that were started.
+     *
+     * @return the statistics
+     */
+    public synchronized List<Statistics> getStatistics() {
+        List<Statistics> list = New.arrayList(pools.size());
+        for (Pool pool : pools.values()) {
+            list.add(pool.getStatistics());
+        }
+        return list;
+    }
+
+    @Override
+    public synchronized void shutdown() {
+        shutdown = true;
+        for (Pool pool : pools.values()) {
+            if (pool.executor != null) {
+                pool.executor.shutdown();
+            }
+        }
+        if (virtualThreads != null) {
+            virtualThreads.shutdown();
+        }
+    }
+
+    @Override
+    public synchronized List<Runnable> shutdownNow() {
+        shutdown = true;
+        List<Runnable> list = New.arrayList();
+        for (Pool pool : pools.values()) {
+            if (pool.executor != null) {
+                list.addAll(pool.executor.shutdownNow());
+            }
+        }
+        if (virtualThreads != null) {
+            list.addAll(virtualThreads.shutdownNow());
+        }
+        return list;
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return shutdown;
+    }
+
+    @Override
+    public synchronized boolean isTerminated() {
+        for (Pool pool : pools.values()) {
+            if (pool.executor != null && !pool.executor.isTerminated()) {
+                return false;
+            }
+        }
+        if (virtualThreads != null && !virtualThreads.isTerminated()) {
+            return false;
+        }
+        return shutdown;
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        List<Pool> list;
+        synchronized (this) {
+            list = New.arrayList(pools.values());
+        }
+        for (Pool pool : list) {
+            long remaining = deadline - System.nanoTime();
+            if (pool.executor != null &&
+                    !pool.executor.awaitTermination(remaining, TimeUnit.NANOSECONDS)) {
+                return false;
+            }
+        }
+        if (virtualThreads != null) {
+            long remaining = deadline - System.nanoTime();
+            return virtualThreads.awaitTermination(remaining, TimeUnit.NANOSECONDS);
+        }
+        return true;
+    }
+
+    /**
+     * A task that remembers the shard of its worker.
+     */
+    private static class ShardTask<T> extends FutureTask<T> {
+
+        final String shardName;
+
+        ShardTask(Callable<T> callable) {
+            super(callable);
+            shardName = callable instanceof JdbcWorker ?
+                    ((JdbcWorker<?>) callable).getShardName() : null;
+        }
+    }
+
+    /**
+     * The bounded thread pool of a shard, or the bounds of a shard if the
+     * workers run in virtual threads.
+     */
+    private class Pool implements Executor, RejectedExecutionHandler {
+
+        final String shardName;
+        final ThreadPoolExecutor executor;
+        final int maxPoolSize;
+        final int queueSize;
+        final boolean callerRuns;
+        final AtomicLong rejected = new AtomicLong();
+        final AtomicLong completed = new AtomicLong();
+        final AtomicInteger admitted = new AtomicInteger();
+        final Semaphore permits;
+
+        Pool(String shardName, ShardConfig config) {
+            this.shardName = shardName;
+            int maxPoolSize = DEFAULT_MAX_POOL_SIZE;
+            int queue = 0;
+            String policy = null;
+            if (config != null) {
+                if (config.getMaxPoolSize() > 0) {
+                    maxPoolSize = config.getMaxPoolSize();
+                }
+                queue = config.getQueueSize();
+                policy = config.getRejectPolicy();
+            }
+            this.maxPoolSize = maxPoolSize;
+            this.queueSize = queue > 0 ? queue : maxPoolSize;
+            this.callerRuns = REJECT_CALLER_RUNS.equals(policy);
+            if (virtualThreads != null) {
+                executor = null;
+                permits = new Semaphore(maxPoolSize);
+                return;
+            }
+            permits = null;
+            // the pool only grows beyond the core threads once the queue is
+            // full, so all threads are core threads that time out when idle
+            String threadName = shardName.length() == 0 ? "jdbc-worker" : "jdbc-worker-" + shardName;
+            executor = new ThreadPoolExecutor(maxPoolSize, maxPoolSize, keepAliveTime,
+                    TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(queueSize),
+                    New.customThreadFactory(threadName), this);
+            executor.allowCoreThreadTimeOut(true);
+        }
+
+        @Override
+        public void execute(final Runnable command) {
+            if (executor != null) {
+                executor.execute(command);
+                return;
+            }
+            if (admitted.incrementAndGet() > maxPoolSize + queueSize) {
+                admitted.decrementAndGet();
+                rejectedExecution(command, null);
+                return;
+            }
+            try {
+                virtualThreads.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            permits.acquireUninterruptibly();
+                            try {
+                                command.run();
+                            } finally {
+                                permits.release();
+                                completed.incrementAndGet();
+                            }
+                        } finally {
+                            admitted.decrementAndGet();
+                        }
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                admitted.decrementAndGet();
+                throw e;
+            }
+        }
+
+        @Override
+        public void rejectedExecution(Runnable r, ThreadPoolExecutor e) {
+            long count = rejected.incrementAndGet();
+            if (callerRuns && !shutdown) {
+                trace.debug("jdbc executor of shard {0} is saturated, run the worker in the caller thread.",
+                        shardName);
+                r.run();
+                return;
+            }
+            trace.error(null, "jdbc executor of shard {0} is saturated, {1} workers rejected.",
+                    shardName, count);
+            throw new RejectedExecutionException("jdbc executor of shard " + shardName + " is saturated");
+        }
+
+        Statistics getStatistics() {
+            Statistics s = new Statistics();
+            s.shardName = shardName;
+            s.maxPoolSize = maxPoolSize;
+            s.queueSize = queueSize;
+            s.rejectedCount = rejected.get();
+            if (executor != null) {
+                s.poolSize = executor.getPoolSize();
+                s.largestPoolSize = executor.getLargestPoolSize();
+                s.activeCount = executor.getActiveCount();
+                s.queuedCount = executor.getQueue().size();
+                s.completedCount = executor.getCompletedTaskCount();
+            } else {
+                s.activeCount = maxPoolSize - permits.availablePermits();
+                s.poolSize = s.activeCount;
+                s.largestPoolSize = maxPoolSize;
+                s.queuedCount = Math.max(0, admitted.get() - s.activeCount);
+                s.completedCount = completed.get();
+            }
+            return s;
+        }
+    }
+
+    /**
+     * A snapshot of the saturation of the thread pool of a shard.
+     */
+    public static class Statistics {
+
+        String shardName;
+        int poolSize;
+        int maxPoolSize;
+        int largestPoolSize;
+        int activeCount;
+        int queuedCount;
+        int queueSize;
+        long completedCount;
+        long rejectedCount;
+
+        /**
+         * @return the shard name, an empty string for the shared pool
+         */
+        public String getShardName() {
+            return shardName;
+        }
+
+        /**
+         * @return the current number of threads
+         */
+        public int getPoolSize() {
+            return poolSize;
+        }
+
+        /**
+         * @return the maximum number of threads
+         */
+        public int getMaxPoolSize() {
+            return maxPoolSize;
+        }
+
+        /**
+         * @return the largest number of threads that were in the pool
+         */
+        public int getLargestPoolSize() {
+            return largestPoolSize;
+        }
+
+        /**
+         * @return the number of threads that are running a worker
+         */
+        public int getActiveCount() {
+            return activeCount;
+        }
+
+        /**
+         * @return the number of workers waiting in the queue
+         */
+        public int getQueuedCount() {
+            return queuedCount;
+        }
+
+        /**
+         * @return the capacity of the queue
+         */
+        public int getQueueSize() {
+            return queueSize;
+        }
+
+        /**
+         * @return the number of completed workers
+         */
+        public long getCompletedCount() {
+            return completedCount;
+        }
+
+        /**
+         * @return the number of workers that found the pool saturated
+         */
+        public long getRejectedCount() {
+            return rejectedCount;
+        }
+
+        /**
+         * Get the saturation of the pool, that is the part of the threads
+         * and queue slots that are in use.
+         *
+         * @return the saturation, between 0 and 1
+         */
+        public double getSaturation() {
+            int capacity = maxPoolSize + queueSize;
+            return capacity == 0 ? 0 : (double) (activeCount + queuedCount) / capacity;
+        }
+
+        @Override
+        public String toString() {
+            return "shard: " + shardName + " active: " + activeCount + "/" + maxPoolSize +
+                    " queued: " + queuedCount + "/" + queueSize + " rejected: " + rejectedCount;
+        }
+    }
+
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.util;
+
+import java.util.Iterator;
+
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.HTreeMap;
+import org.mapdb.Hasher;
+import org.mapdb.Serializer;
+
+import com.wplatform.ddal.engine.Constants;
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.value.Value;
+import com.wplatform.ddal.value.ValueStringIgnoreCase;
+
+/**
+ * A hash map of value rows that is stored outside of the java heap, either
+ * in direct memory buffers or in a temporary file. The rows are encoded
+ * with the {@link Data} format, two rows are the same key if their encoded
+ * form is the same. Case insensitive strings are encoded in upper case, so
+ * the keys are equal like in a {@link ValueHashMap}, and the original key is
+ * stored in front of the value.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public class ExternalValueMap {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final int keyColumnCount;
+    private final int valueColumnCount;
+    private final Data buff;
+    private DB db;
+    private HTreeMap<byte[], byte[]> map;
+
+    /**
+     * Create a new map.
+     *
+     * @param session the session
+     * @param keyColumnCount the number of columns of the keys
+     * @param valueColumnCount the number of columns of the values
+     */
+    public ExternalValueMap(Session session, int keyColumnCount, int valueColumnCount) {
+        this.keyColumnCount = keyColumnCount;
+        this.valueColumnCount = valueColumnCount;
+        this.buff = Data.create(Constants.DEFAULT_PAGE_SIZE);
+        DBMaker<?> maker;
+        if (session.getDatabase().getSettings().spillOffHeap) {
+            maker = DBMaker.newMemoryDirectDB();
+        } else {
+            maker = DBMaker.newTempFileDB().deleteFilesAfterClose().mmapFileEnableIfSupported();
+        }
+        db = maker.transactionDisable().cacheDisable().make();
+        map = db.createHashMap("rows")
+                .keySerializer(Serializer.BYTE_ARRAY)
+                .valueSerializer(Serializer.BYTE_ARRAY)
+                .hasher(Hasher.BYTE_ARRAY)
+                .counterEnable()
+                .make();
+    }
+
+    /**
+     * Add or replace a row.
+     *
+     * @param key the key
+     * @param value the value, or null if the map is used as a set
+     */
+    public void put(Value[] key, Value[] value) {
+        byte[] k = encodeKey(key);
+        if (ignoresCase(key)) {
+            map.put(k, encode(key, value));
+        } else {
+            map.put(k, value == null ? EMPTY : encode(value, null));
+        }
+    }
+
+    /**
+     * Get the value of a key.
+     *
+     * @param key the key
+     * @return the value, or null if the key is not in the map
+     */
+    public Value[] get(Value[] key) {
+        byte[] v = map.get(encodeKey(key));
+        if (v == null) {
+            return null;
+        }
+        return decode(v, ignoresCase(key) ? keyColumnCount : 0, valueColumnCount);
+    }
+
+    /**
+     * Check if the map contains the given key.
+     *
+     * @param key the key
+     * @return true if it does
+     */
+    public boolean containsKey(Value[] key) {
+        return map.containsKey(encodeKey(key));
+    }
+
+    /**
+     * Remove a key.
+     *
+     * @param key the key
+     */
+    public void remove(Value[] key) {
+        map.remove(encodeKey(key));
+    }
+
+    /**
+     * Get the number of keys.
+     *
+     * @return the size
+     */
+    public int size() {
+        return map.size();
+    }
+
+    /**
+     * Iterate over all keys.
+     *
+     * @return the iterator
+     */
+    public Iterator<Value[]> keyIterator() {
+        final Iterator<byte[]> it = map.keySet().iterator();
+        return new Iterator<Value[]>() {
+
+            @Override
+            public boolean hasNext() {
+                return it.hasNext();
+            }
+
+            @Override
+            public Value[] next() {
+                byte[] k = it.next();
+                Value[] key = decode(k, 0, keyColumnCount);
+                if (ignoresCase(key)) {
+                    key = decode(map.get(k), 0, keyColumnCount);
+                }
+                return key;
+            }
+
+            @Override
+            public void remove() {
+                it.remove();
+            }
+        };
+    }
+
+    /**
+     * Close the map and release the memory or the temporary file.
+     */
+    public void close() {
+        if (db != null) {
+            db.close();
+            db = null;
+            map = null;
+        }
+    }
+
+    private byte[] encodeKey(Value[] key) {
+        if (!ignoresCase(key)) {
+            return encode(key, null);
+        }
+        Value[] row = new Value[key.length];
+        for (int i = 0; i < row.length; i++) {
+            Value v = key[i];
+            if (v.getType() == Value.STRING_IGNORECASE) {
+                v = ValueStringIgnoreCase.get(v.getString().toUpperCase());
+            }
+            row[i] = v;
+        }
+        return encode(row, null);
+    }
+
+    private static boolean ignoresCase(Value[] key) {
+        for (Value v : key) {
+            if (v.getType() == Value.STRING_IGNORECASE) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private byte[] encode(Value[] row, Value[] next) {
+        buff.reset();
+        for (Value v : row) {
+            buff.checkCapacity(Data.getValueLen(v));
+            buff.writeValue(v);
+        }
+        if (next != null) {
+            for (Value v : next) {
+                buff.checkCapacity(Data.getValueLen(v));
+                buff.writeValue(v);
+            }
+        }
+        byte[] bytes = new byte[buff.length()];
+        System.arraycopy(buff.getBytes(), 0, bytes, 0, bytes.length);
+        return bytes;
+    }
+
+    private static Value[] decode(byte[] bytes, int skip, int columnCount) {
+        Data data = Data.create(bytes);
+        for (int i = 0; i < skip; i++) {
+            data.readValue();
+        }
+        Value[] row = new Value[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            row[i] = data.readValue();
+        }
+        return row;
+    }
+
+}
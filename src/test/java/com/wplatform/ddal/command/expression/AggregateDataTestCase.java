@@ -0,0 +1,165 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.command.expression;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wplatform.ddal.engine.Database;
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.test.utils.LocalDatabase;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.value.Value;
+import com.wplatform.ddal.value.ValueDouble;
+import com.wplatform.ddal.value.ValueInt;
+import com.wplatform.ddal.value.ValueLong;
+import com.wplatform.ddal.value.ValueNull;
+
+/**
+ * Tests the merge of the partial aggregates of the table nodes.
+ */
+public class AggregateDataTestCase {
+
+    private Database database;
+    private Session session;
+
+    @Before
+    public void setUp() {
+        database = LocalDatabase.open();
+        session = LocalDatabase.createSession(database);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void testCount() {
+        AggregateData data = AggregateData.create(Aggregate.COUNT);
+        data.merge(database, Value.LONG, ValueLong.get(3), 0);
+        data.merge(database, Value.LONG, ValueNull.INSTANCE, 0);
+        data.merge(database, Value.LONG, ValueLong.get(4), 0);
+        assertEquals(ValueLong.get(7), data.getValue(database, Value.LONG, false));
+
+        data = AggregateData.create(Aggregate.COUNT_ALL);
+        data.merge(database, Value.LONG, ValueLong.get(2), 0);
+        data.merge(database, Value.LONG, ValueLong.get(0), 0);
+        assertEquals(ValueLong.get(2), data.getValue(database, Value.LONG, false));
+    }
+
+    @Test
+    public void testSumMinMax() {
+        assertEquals(ValueLong.get(12), merge(Aggregate.SUM, Value.LONG,
+                ValueLong.get(5), ValueNull.INSTANCE, ValueLong.get(7)));
+        assertEquals(ValueInt.get(-2), merge(Aggregate.MIN, Value.INT,
+                ValueInt.get(3), ValueInt.get(-2), ValueNull.INSTANCE));
+        assertEquals(ValueInt.get(3), merge(Aggregate.MAX, Value.INT,
+                ValueInt.get(3), ValueInt.get(-2), ValueNull.INSTANCE));
+        // no table node has a row of the group
+        assertSame(ValueNull.INSTANCE, merge(Aggregate.SUM, Value.LONG,
+                ValueNull.INSTANCE, ValueNull.INSTANCE));
+    }
+
+    @Test
+    public void testAvg() {
+        // the table nodes return SUM and COUNT
+        AggregateData data = AggregateData.create(Aggregate.AVG);
+        data.merge(database, Value.DOUBLE, ValueDouble.get(7), 2);
+        data.merge(database, Value.DOUBLE, ValueNull.INSTANCE, 0);
+        data.merge(database, Value.DOUBLE, ValueDouble.get(2), 2);
+        assertEquals(ValueDouble.get(2.25), data.getValue(database, Value.DOUBLE, false));
+
+        // the same as the average of all values
+        AggregateData all = AggregateData.create(Aggregate.AVG);
+        for (int v : new int[] { 3, 7, 1, 2, 2 }) {
+            all.add(database, Value.INT, false, ValueInt.get(v));
+        }
+        data = AggregateData.create(Aggregate.AVG);
+        data.merge(database, Value.INT, ValueLong.get(10), 2);
+        data.merge(database, Value.INT, ValueLong.get(5), 3);
+        assertEquals(all.getValue(database, Value.INT, false),
+                data.getValue(database, Value.INT, false));
+
+        data = AggregateData.create(Aggregate.AVG);
+        data.merge(database, Value.INT, ValueNull.INSTANCE, 0);
+        assertSame(ValueNull.INSTANCE, data.getValue(database, Value.INT, false));
+    }
+
+    @Test
+    public void testPartialSQL() {
+        List<Value> params = New.arrayList();
+        Aggregate avg = aggregate(Aggregate.AVG, ValueInt.get(5));
+        assertEquals("SUM(?), COUNT(?)", avg.exportPartialParameters(null, params));
+        assertEquals(2, params.size());
+        assertArrayEquals(new int[] { Value.LONG, Value.LONG }, avg.getPartialTypes());
+
+        params.clear();
+        Aggregate sum = aggregate(Aggregate.SUM, ValueInt.get(5));
+        assertEquals("SUM(?)", sum.exportPartialParameters(null, params));
+        assertArrayEquals(new int[] { Value.LONG }, sum.getPartialTypes());
+        Aggregate max = aggregate(Aggregate.MAX, ValueDouble.get(1));
+        assertEquals("MAX(?)", max.exportPartialParameters(null, params));
+        assertArrayEquals(new int[] { Value.DOUBLE }, max.getPartialTypes());
+        Aggregate count = aggregate(Aggregate.COUNT_ALL, null);
+        assertEquals("COUNT(*)", count.exportPartialParameters(null, params));
+        assertArrayEquals(new int[] { Value.LONG }, count.getPartialTypes());
+        assertEquals(2, params.size());
+    }
+
+    @Test
+    public void testPartialAggregateVisitor() {
+        ArrayList<Aggregate> aggregates = New.arrayList();
+        Aggregate sum = aggregate(Aggregate.SUM, ValueInt.get(5));
+        assertTrue(sum.isEverything(ExpressionVisitor.getPartialAggregateVisitor(aggregates)));
+        assertEquals(1, aggregates.size());
+        Aggregate distinct = new Aggregate(Aggregate.COUNT,
+                ValueExpression.get(ValueInt.get(5)), null, true);
+        assertFalse(distinct.isEverything(
+                ExpressionVisitor.getPartialAggregateVisitor(aggregates)));
+        Aggregate concat = new Aggregate(Aggregate.GROUP_CONCAT,
+                ValueExpression.get(ValueInt.get(5)), null, false);
+        assertFalse(concat.isEverything(
+                ExpressionVisitor.getPartialAggregateVisitor(aggregates)));
+        assertEquals(1, aggregates.size());
+    }
+
+    private Value merge(int type, int dataType, Value... partials) {
+        AggregateData data = AggregateData.create(type);
+        for (Value v : partials) {
+            data.merge(database, dataType, v, 0);
+        }
+        return data.getValue(database, dataType, false);
+    }
+
+    private Aggregate aggregate(int type, Value on) {
+        Expression e = on == null ? null : ValueExpression.get(on);
+        Aggregate aggregate = new Aggregate(type, e, null, false);
+        aggregate.optimize(session);
+        return aggregate;
+    }
+
+}
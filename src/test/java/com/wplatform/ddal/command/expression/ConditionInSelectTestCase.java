@@ -0,0 +1,169 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.command.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wplatform.ddal.command.Command;
+import com.wplatform.ddal.engine.Database;
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.result.LazyResult;
+import com.wplatform.ddal.result.LocalResult;
+import com.wplatform.ddal.test.utils.LocalDatabase;
+import com.wplatform.ddal.test.utils.RowsQuery;
+import com.wplatform.ddal.value.Value;
+import com.wplatform.ddal.value.ValueBoolean;
+import com.wplatform.ddal.value.ValueInt;
+
+/**
+ * Tests the result of an IN subquery that is read once per statement.
+ */
+public class ConditionInSelectTestCase {
+
+    private Database database;
+    private Session session;
+    private Command command;
+
+    @Before
+    public void setUp() {
+        database = LocalDatabase.open();
+        session = LocalDatabase.createSession(database);
+        session.prepareLocal("SET MAX_MEMORY_ROWS 10").executeUpdate();
+        command = session.prepareLocal("SET MAX_MEMORY_ROWS 10");
+    }
+
+    @After
+    public void tearDown() {
+        session.setCurrentCommand(null);
+        database.close();
+    }
+
+    @Test
+    public void testResultOnDisk() {
+        RowsQuery query = new RowsQuery(session, 100);
+        Parameter left = new Parameter(0);
+        ConditionInSelect condition = new ConditionInSelect(database, left, query, false,
+                Comparison.EQUAL);
+        session.setCurrentCommand(command);
+        // two outer rows read the result written to disk
+        left.setValue(ValueInt.get(5));
+        assertEquals(ValueBoolean.get(true), condition.getValue(session));
+        left.setValue(ValueInt.get(99));
+        assertEquals(ValueBoolean.get(true), condition.getValue(session));
+        left.setValue(ValueInt.get(100));
+        assertEquals(ValueBoolean.get(false), condition.getValue(session));
+        assertEquals(1, query.getExecutions());
+        LocalResult rows = condition.getQueryResult(session);
+        assertTrue(rows.needToClose());
+        assertFalse(rows.isClosed());
+
+        // deleted at the end of the statement
+        session.endStatement();
+        session.setCurrentCommand(null);
+        assertTrue(rows.isClosed());
+    }
+
+    @Test
+    public void testNextStatement() {
+        RowsQuery query = new RowsQuery(session, 100);
+        Parameter left = new Parameter(0);
+        left.setValue(ValueInt.get(7));
+        ConditionInSelect condition = new ConditionInSelect(database, left, query, false,
+                Comparison.EQUAL);
+        session.setCurrentCommand(command);
+        assertEquals(ValueBoolean.get(true), condition.getValue(session));
+        LocalResult rows = condition.getQueryResult(session);
+        assertSame(rows, condition.getQueryResult(session));
+        assertEquals(1, query.getExecutions());
+
+        // the next statement reads the subquery again and closes the old result
+        session.setCurrentCommand(command);
+        assertEquals(ValueBoolean.get(true), condition.getValue(session));
+        assertEquals(2, query.getExecutions());
+        assertTrue(rows.isClosed());
+        assertFalse(condition.getQueryResult(session).isClosed());
+    }
+
+    @Test
+    public void testForwardOnlyResult() {
+        final RowsQuery query = new RowsQuery(session, 100);
+        final Parameter left = new Parameter(0);
+        final ConditionInSelect condition = new ConditionInSelect(database, left, query,
+                false, Comparison.EQUAL);
+        final LocalResult[] rows = new LocalResult[1];
+        command.setFetchSize(2);
+        // the rows of the outer query with X IN(SELECT ...)
+        LazyResult result = new LazyResult(new Expression[] { left }, 1) {
+            int x = 95;
+
+            @Override
+            protected Value[] fetchNextRow() {
+                assertSame(command, session.getCurrentCommand());
+                assertEquals(2, session.getCurrentCommand().getFetchSize());
+                while (x < 105) {
+                    left.setValue(ValueInt.get(x++));
+                    boolean found = condition.getBooleanValue(session);
+                    rows[0] = condition.getQueryResult(session);
+                    if (found) {
+                        return new Value[] { left.getParamValue() };
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            protected void closeSource() {
+                // nothing to do
+            }
+        };
+        result.setFetchSize(command.getFetchSize());
+
+        // the command returns before the rows are read
+        session.setCurrentCommand(command);
+        result.setStatement(session, session.detachStatement());
+        session.endStatement();
+        session.setCurrentCommand(null);
+
+        assertTrue(result.next());
+        assertEquals(95, result.currentRow()[0].getInt());
+        assertTrue(result.next());
+        assertTrue(result.next());
+        assertNull(session.getCurrentCommand());
+        // another statement in between
+        session.prepareLocal("SET MAX_MEMORY_ROWS 10").executeUpdate();
+        assertTrue(rows[0].needToClose());
+        assertFalse(rows[0].isClosed());
+        int count = 3;
+        while (result.next()) {
+            count++;
+        }
+        assertEquals(5, count);
+        assertEquals(1, query.getExecutions());
+
+        // the subquery result is closed with the outer result
+        assertTrue(result.isClosed());
+        assertTrue(rows[0].isClosed());
+    }
+
+}
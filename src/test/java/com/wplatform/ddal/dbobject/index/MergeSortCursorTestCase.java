@@ -0,0 +1,113 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dbobject.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wplatform.ddal.engine.Database;
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.excutor.JdbcWorker;
+import com.wplatform.ddal.result.SortOrder;
+import com.wplatform.ddal.test.utils.LocalDatabase;
+import com.wplatform.ddal.test.utils.RowsWorker;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.value.Value;
+import com.wplatform.ddal.value.ValueNull;
+
+/**
+ * Tests the merge of the ordered results of several table nodes.
+ */
+public class MergeSortCursorTestCase {
+
+    private static final int[] TYPES = { Value.INT, Value.INT };
+
+    private Database database;
+    private Session session;
+
+    @Before
+    public void setUp() {
+        database = LocalDatabase.open();
+        session = LocalDatabase.createSession(database);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void testAscending() {
+        List<JdbcWorker<ResultSet>> workers = New.arrayList();
+        workers.add(new RowsWorker(session, "s0", null, 1, 4, 7));
+        workers.add(new RowsWorker(session, "s1", 2, 2, 8));
+        workers.add(new RowsWorker(session, "s2"));
+        workers.add(new RowsWorker(session, "s3", null, 3, 5, 6, 9));
+        Cursor cursor = new MergeSortCursor(session, TYPES, workers, sort(0));
+        assertEquals("[null, null, 1, 2, 2, 3, 4, 5, 6, 7, 8, 9]", read(cursor, -1));
+    }
+
+    @Test
+    public void testDescending() {
+        List<JdbcWorker<ResultSet>> workers = New.arrayList();
+        workers.add(new RowsWorker(session, "s0", 7, 4, 1, null));
+        workers.add(new RowsWorker(session, "s1", 8, 2));
+        workers.add(new RowsWorker(session, "s2", 9, 6, 5, 3));
+        Cursor cursor = new MergeSortCursor(session, TYPES, workers,
+                sort(SortOrder.DESCENDING));
+        assertEquals("[9, 8, 7, 6, 5, 4, 3, 2, 1, null]", read(cursor, -1));
+    }
+
+    @Test
+    public void testPushedDownLimit() {
+        // every table node returns at most offset + limit rows, the first
+        // rows of the merged result are still the first rows of the table
+        List<JdbcWorker<ResultSet>> workers = New.arrayList();
+        workers.add(new RowsWorker(session, "s0", 1, 4, 7));
+        workers.add(new RowsWorker(session, "s1", 2, 3, 8));
+        workers.add(new RowsWorker(session, "s2", 5, 6, 9));
+        Cursor cursor = new MergeSortCursor(session, TYPES, workers, sort(0));
+        assertEquals("[1, 2, 3]", read(cursor, 3));
+    }
+
+    private SortOrder sort(int sortType) {
+        return new SortOrder(database, new int[] { 0 }, new int[] { sortType }, null);
+    }
+
+    private static String read(Cursor cursor, int limit) {
+        ArrayList<String> list = New.arrayList();
+        try {
+            while ((limit < 0 || list.size() < limit) && cursor.next()) {
+                Value v = cursor.get().getValue(0);
+                list.add(v == ValueNull.INSTANCE ? "null" : v.getString());
+                // the second column tells the table node of the row
+                assertFalse(cursor.get().getValue(1) == ValueNull.INSTANCE);
+            }
+        } finally {
+            ((ScatterGatherCursor) cursor).close();
+        }
+        return list.toString();
+    }
+
+}
@@ -0,0 +1,207 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dbobject.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.sql.ResultSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wplatform.ddal.engine.Database;
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.excutor.JdbcWorker;
+import com.wplatform.ddal.message.DbException;
+import com.wplatform.ddal.message.ErrorCode;
+import com.wplatform.ddal.test.utils.LocalDatabase;
+import com.wplatform.ddal.test.utils.RowsWorker;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.value.Value;
+
+/**
+ * Tests the fan out of a query to the table nodes.
+ */
+public class ScatterGatherCursorTestCase {
+
+    private static final int[] TYPES = { Value.INT };
+
+    private Database database;
+    private Session session;
+
+    @Before
+    public void setUp() {
+        database = LocalDatabase.open();
+        session = LocalDatabase.createSession(database);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void testSingleNode() {
+        RowsWorker worker = new RowsWorker(session, "s0", 1, 2, 3);
+        List<JdbcWorker<ResultSet>> workers = New.arrayList();
+        workers.add(worker);
+        ScatterGatherCursor cursor = new ScatterGatherCursor(session, TYPES, workers);
+        assertEquals("[1, 2, 3]", read(cursor).toString());
+        // a single table node is queried in the calling thread
+        assertSame(Thread.currentThread(), worker.getThread());
+        assertTrue(worker.isCanceled());
+        assertFalse(worker.getStatement().isCanceled());
+        assertTrue(worker.getStatement().isClosed());
+    }
+
+    @Test
+    public void testFanOut() {
+        List<JdbcWorker<ResultSet>> workers = New.arrayList();
+        workers.add(new RowsWorker(session, "s0", 1, 4));
+        workers.add(new RowsWorker(session, "s1"));
+        workers.add(new RowsWorker(session, "s2", 2, 3, 5));
+        workers.add(new RowsWorker(session, "s3", 6));
+        ScatterGatherCursor cursor = new ScatterGatherCursor(session, TYPES, workers);
+        List<Integer> rows = read(cursor);
+        Collections.sort(rows);
+        assertEquals("[1, 2, 3, 4, 5, 6]", rows.toString());
+        for (JdbcWorker<ResultSet> worker : workers) {
+            RowsWorker w = (RowsWorker) worker;
+            assertTrue(w.getThread() != Thread.currentThread());
+            assertTrue(w.getStatement().isClosed());
+            // the result sets read to the end are not canceled
+            assertFalse(w.getStatement().isCanceled());
+        }
+    }
+
+    @Test
+    public void testNodeError() {
+        List<JdbcWorker<ResultSet>> workers = New.arrayList();
+        workers.add(new RowsWorker(session, "s0", 1, 2));
+        workers.add(new RowsWorker(session, "s1", (Integer[]) null));
+        workers.add(new RowsWorker(session, "s2", 3));
+        ScatterGatherCursor cursor = new ScatterGatherCursor(session, TYPES, workers);
+        try {
+            read(cursor);
+            fail();
+        } catch (DbException e) {
+            assertEquals(ErrorCode.ERROR_ACCESSING_DATABASE_TABLE_2, e.getErrorCode());
+        }
+        assertFalse(cursor.next());
+        for (JdbcWorker<ResultSet> worker : workers) {
+            assertTrue(worker.isCanceled());
+        }
+    }
+
+    @Test
+    public void testCloseCancelsPendingWorkers() throws InterruptedException {
+        RowsWorker first = new RowsWorker(session, "s0", 1, 2, 3);
+        BlockingWorker waiting = new BlockingWorker(session, "s1", false, 4);
+        BlockingWorker running = new BlockingWorker(session, "s2", true, 5);
+        List<JdbcWorker<ResultSet>> workers = New.arrayList();
+        workers.add(first);
+        workers.add(waiting);
+        workers.add(running);
+        ScatterGatherCursor cursor = new ScatterGatherCursor(session, TYPES, workers);
+        assertTrue(cursor.next());
+        assertEquals(1, cursor.get().getValue(0).getInt());
+        assertTrue(waiting.started.await(10, TimeUnit.SECONDS));
+        assertTrue(running.started.await(10, TimeUnit.SECONDS));
+
+        // the limit is reached, the table filter closes the cursor
+        cursor.close();
+        // the result set that is read partially
+        assertTrue(first.getStatement().isCanceled());
+        assertTrue(first.getStatement().isClosed());
+        // the query a shard is still running
+        assertTrue(running.isCanceled());
+        assertTrue(running.getStatement().isCanceled());
+        assertTrue(running.getStatement().isClosed());
+        assertTrue(waiting.isCanceled());
+
+        waiting.release.countDown();
+        running.release.countDown();
+        assertTrue(waiting.done.await(10, TimeUnit.SECONDS));
+        assertTrue(running.done.await(10, TimeUnit.SECONDS));
+        // the worker that had not started its query does not start it
+        assertEquals(ErrorCode.STATEMENT_WAS_CANCELED, waiting.error.getErrorCode());
+        assertTrue(waiting.getStatement().isClosed());
+        assertFalse(waiting.getStatement().isCanceled());
+        assertEquals(ErrorCode.STATEMENT_WAS_CANCELED, running.error.getErrorCode());
+        assertFalse(cursor.next());
+    }
+
+    private static List<Integer> read(Cursor cursor) {
+        List<Integer> list = New.arrayList();
+        while (cursor.next()) {
+            list.add(cursor.get().getValue(0).getInt());
+        }
+        return list;
+    }
+
+    /**
+     * A worker that waits until it is released, with its statement attached
+     * if the shard is running the query, or before the statement is attached.
+     */
+    static class BlockingWorker extends RowsWorker {
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        private final boolean running;
+        volatile DbException error;
+
+        BlockingWorker(Session session, String shardName, boolean running, Integer... values) {
+            super(session, shardName, values);
+            this.running = running;
+        }
+
+        @Override
+        public ResultSet doWork() {
+            thread = Thread.currentThread();
+            try {
+                if (running) {
+                    attach(statement.getStatement());
+                }
+                started.countDown();
+                release.await();
+                if (!running) {
+                    attach(statement.getStatement());
+                }
+                ResultSet rs = resultSet(shardName, values);
+                attach(rs);
+                return rs;
+            } catch (InterruptedException e) {
+                throw DbException.convert(e);
+            } catch (DbException e) {
+                error = e;
+                throw e;
+            } finally {
+                done.countDown();
+            }
+        }
+    }
+
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dispatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wplatform.ddal.command.dml.Select;
+import com.wplatform.ddal.command.expression.Comparison;
+import com.wplatform.ddal.command.expression.ConditionInSelect;
+import com.wplatform.ddal.command.expression.ExpressionColumn;
+import com.wplatform.ddal.dbobject.table.TableFilter;
+import com.wplatform.ddal.dbobject.table.TableMate;
+import com.wplatform.ddal.engine.Constants;
+import com.wplatform.ddal.engine.Database;
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.test.utils.LocalDatabase;
+import com.wplatform.ddal.test.utils.RowsQuery;
+import com.wplatform.ddal.test.utils.ShardedTable;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.value.Value;
+
+/**
+ * Tests the split of the keys of an IN(SELECT ...) condition by table node.
+ */
+public class InListRewriterTestCase {
+
+    private Database database;
+    private Session session;
+    private TableMate table;
+    private RoutingHandlerImpl routingHandler;
+
+    @Before
+    public void setUp() {
+        database = LocalDatabase.open("SEMI_JOIN_MAX_NODE_KEYS", "5");
+        session = LocalDatabase.createSession(database);
+        table = ShardedTable.create(database, "id % 4", 4);
+        database.getSchema(Constants.SCHEMA_MAIN).add(table);
+        routingHandler = new RoutingHandlerImpl(database);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void testKeysByNode() {
+        TableFilter filter = createFilter();
+        // 5 keys for each table node
+        ConditionInSelect in = createInSelect(filter, 20);
+        InListRewriter rewriter = InListRewriter.create(routingHandler, session, filter, in);
+        assertNotNull(rewriter);
+        assertEquals(4, rewriter.getTableNodes().size());
+        List<Value> params = New.arrayList();
+        rewriter.apply(filter, table.getPartitionNode()[1]);
+        in.exportParameters(filter, params);
+        assertEquals("[1, 5, 9, 13, 17]", params.toString());
+        InListRewriter.reset(filter);
+    }
+
+    @Test
+    public void testTooManyKeys() {
+        TableFilter filter = createFilter();
+        // 6 keys for each table node, routed as a whole
+        ConditionInSelect in = createInSelect(filter, 24);
+        assertNull(InListRewriter.create(routingHandler, session, filter, in));
+        List<Value> params = New.arrayList();
+        in.exportParameters(filter, params);
+        assertEquals(24, params.size());
+    }
+
+    private TableFilter createFilter() {
+        Select select = (Select) session.prepare("SELECT * FROM CUSTOMER");
+        return select.getTopTableFilter();
+    }
+
+    private ConditionInSelect createInSelect(TableFilter filter, int keys) {
+        ExpressionColumn id = new ExpressionColumn(database, null, null, "ID");
+        id.mapColumns(filter, 0);
+        return new ConditionInSelect(database, id, new RowsQuery(session, keys), false,
+                Comparison.EQUAL);
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dispatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.wplatform.ddal.config.Configuration;
+import com.wplatform.ddal.dispatch.rule.RoutingResult;
+import com.wplatform.ddal.dispatch.rule.RuleColumn;
+import com.wplatform.ddal.dispatch.rule.TableNode;
+import com.wplatform.ddal.dispatch.rule.TableRouter;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.value.Value;
+import com.wplatform.ddal.value.ValueInt;
+
+/**
+ * Tests the cache of routing results.
+ */
+public class RoutingCacheTestCase {
+
+    private final List<RuleColumn> ruleColumns = createRuleColumns("id");
+    private final TableRouter router = new TableRouter(new Configuration());
+
+    @Test
+    public void testLeastRecentlyUsedIsEvicted() {
+        RoutingCache cache = new RoutingCache(8);
+        for (int i = 0; i < 8; i++) {
+            cache.put(key(router, i), result(i));
+        }
+        assertEquals(8, cache.size());
+        // key 0 is used again, key 1 is now the eldest
+        assertNotNull(cache.get(key(router, 0)));
+        cache.put(key(router, 8), result(8));
+        assertEquals(8, cache.size());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get(key(router, 1)));
+        assertEquals(result(0), cache.get(key(router, 0)));
+        assertEquals(result(8), cache.get(key(router, 8)));
+        assertEquals(3, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.75, cache.getHitRate(), 0.0001);
+    }
+
+    @Test
+    public void testSegmentsAreBounded() {
+        RoutingCache cache = new RoutingCache(256);
+        for (int i = 0; i < 10000; i++) {
+            cache.put(key(router, i), result(i));
+        }
+        int size = cache.size();
+        assertTrue(size <= 256 && size > 128);
+        assertEquals(10000 - size, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testKey() {
+        RoutingCache cache = new RoutingCache(8);
+        RoutingResult r = result(1);
+        cache.put(key(router, 1), r);
+        assertSame(r, cache.get(key(router, 1)));
+        // the routers are compared by identity
+        TableRouter other = new TableRouter(new Configuration());
+        assertNull(cache.get(key(other, 1)));
+        cache.put(key(other, 1), result(2));
+        cache.invalidate(router);
+        assertNull(cache.get(key(router, 1)));
+        assertNotNull(cache.get(key(other, 1)));
+        cache.invalidate();
+        assertEquals(0, cache.size());
+
+        Map<String, List<Value>> args = New.hashMap();
+        List<Value> values = New.arrayList();
+        for (int i = 0; i <= RoutingCache.MAX_KEY_VALUES; i++) {
+            values.add(ValueInt.get(i));
+        }
+        args.put("id", values);
+        assertNull(RoutingCache.createKey(router, ruleColumns, args));
+        values.remove(0);
+        assertNotNull(RoutingCache.createKey(router, ruleColumns, args));
+    }
+
+    @Test
+    public void testValuesOfColumnsAreSeparated() {
+        List<RuleColumn> columns = createRuleColumns("a", "b");
+        Map<String, List<Value>> args1 = New.hashMap();
+        args1.put("a", values(1, 2));
+        args1.put("b", values(3));
+        Map<String, List<Value>> args2 = New.hashMap();
+        args2.put("a", values(1));
+        args2.put("b", values(2, 3));
+        RoutingCache cache = new RoutingCache(8);
+        cache.put(RoutingCache.createKey(router, columns, args1), result(1));
+        assertNull(cache.get(RoutingCache.createKey(router, columns, args2)));
+    }
+
+    private RoutingCache.Key key(TableRouter tableRouter, int id) {
+        Map<String, List<Value>> args = New.hashMap();
+        args.put("id", values(id));
+        return RoutingCache.createKey(tableRouter, ruleColumns, args);
+    }
+
+    private static List<Value> values(int... ids) {
+        List<Value> values = New.arrayList();
+        for (int id : ids) {
+            values.add(ValueInt.get(id));
+        }
+        return values;
+    }
+
+    private static RoutingResult result(int i) {
+        return RoutingResult.fixedResult(new TableNode("shard" + i, "customer"));
+    }
+
+    private static List<RuleColumn> createRuleColumns(String... names) {
+        List<RuleColumn> columns = New.arrayList();
+        for (String name : names) {
+            RuleColumn column = new RuleColumn();
+            column.setName(name);
+            columns.add(column);
+        }
+        return columns;
+    }
+
+}
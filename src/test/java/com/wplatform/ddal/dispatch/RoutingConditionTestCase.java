@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dispatch;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wplatform.ddal.command.dml.Select;
+import com.wplatform.ddal.dbobject.table.TableFilter;
+import com.wplatform.ddal.dbobject.table.TableMate;
+import com.wplatform.ddal.dispatch.rule.RoutingResult;
+import com.wplatform.ddal.dispatch.rule.TableNode;
+import com.wplatform.ddal.engine.Constants;
+import com.wplatform.ddal.engine.Database;
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.test.utils.LocalDatabase;
+import com.wplatform.ddal.test.utils.ShardedTable;
+import com.wplatform.ddal.util.New;
+
+/**
+ * Tests the routing of the AND and OR conditions on the sharding key.
+ */
+public class RoutingConditionTestCase {
+
+    private static final String ALL = "[shard0, shard1, shard2, shard3]";
+
+    private Database database;
+    private Session session;
+    private TableMate table;
+    private RoutingHandlerImpl routingHandler;
+
+    @Before
+    public void setUp() {
+        database = LocalDatabase.open();
+        session = LocalDatabase.createSession(database);
+        table = ShardedTable.create(database, "id % 4", 4);
+        database.getSchema(Constants.SCHEMA_MAIN).add(table);
+        routingHandler = new RoutingHandlerImpl(database);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void testOr() {
+        // the union of the table nodes of the operands
+        assertEquals("[shard1, shard2]", route("ID = 1 OR ID = 6"));
+        assertEquals("[shard1, shard2]", route("ID IN(1, 5) OR ID = 2"));
+        assertEquals("[shard0, shard1, shard3]", route("ID = 4 OR ID = 5 OR ID = 7"));
+        // an operand that does not select the table nodes
+        assertEquals(ALL, route("ID = 1 OR NAME = 'a'"));
+        assertEquals(ALL, route("ID > 5 OR ID = 2"));
+    }
+
+    @Test
+    public void testAnd() {
+        // the intersection of the table nodes of the operands
+        assertEquals("[shard2]", route("(ID = 1 OR ID = 2) AND (ID = 2 OR ID = 3)"));
+        assertEquals("[shard1]", route("ID = 1 AND NAME = 'a'"));
+        assertEquals("[shard3]", route("NAME = 'a' AND (ID = 3 OR ID = 7)"));
+        // the range of the operands is routed once
+        assertEquals("[shard1, shard2]", route("ID >= 5 AND ID <= 6"));
+    }
+
+    @Test
+    public void testAndInOr() {
+        assertEquals("[shard0, shard1, shard2]", route("(ID >= 5 AND ID <= 6) OR ID = 0"));
+        assertEquals("[shard3]", route("(ID = 1 AND ID = 2) OR ID = 3"));
+        assertEquals("[shard1, shard3]", route("(ID = 1 AND NAME = 'a') OR (NAME = 'b' AND ID = 3)"));
+        assertEquals(ALL, route("(ID = 1 AND NAME = 'a') OR NAME = 'b'"));
+    }
+
+    @Test
+    public void testNoRowMatches() {
+        // one table node is enough to get the empty result
+        assertEquals("[shard0]", route("(ID = 1 AND ID = 2) OR (ID = 3 AND ID = 4)"));
+    }
+
+    private String route(String condition) {
+        Select select = (Select) session.prepare("SELECT * FROM CUSTOMER WHERE " + condition);
+        TableFilter filter = select.getTopTableFilter();
+        RoutingResult result = routingHandler.doRoute(table, session, filter,
+                filter.getFilterCondition());
+        List<String> names = New.arrayList();
+        for (TableNode node : result.getSelectNodes()) {
+            names.add(node.getShardName());
+        }
+        String[] array = names.toArray(new String[names.size()]);
+        Arrays.sort(array);
+        return Arrays.toString(array);
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dispatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wplatform.ddal.dbobject.table.TableMate;
+import com.wplatform.ddal.dispatch.rule.OgnlRuleEvaluator;
+import com.wplatform.ddal.dispatch.rule.RoutingCalculatorImpl;
+import com.wplatform.ddal.dispatch.rule.RoutingResult;
+import com.wplatform.ddal.engine.Database;
+import com.wplatform.ddal.result.SimpleRow;
+import com.wplatform.ddal.test.utils.LocalDatabase;
+import com.wplatform.ddal.test.utils.ShardedTable;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.value.Value;
+import com.wplatform.ddal.value.ValueInt;
+import com.wplatform.ddal.value.ValueLong;
+import com.wplatform.ddal.value.ValueString;
+
+/**
+ * Tests that the routing plan of a table routes a row to the same table
+ * node as the rule evaluated by OGNL.
+ */
+public class RoutingPlanTestCase {
+
+    private Database database;
+    private RoutingCalculatorImpl ognl;
+
+    @Before
+    public void setUp() {
+        database = LocalDatabase.open();
+        ognl = new RoutingCalculatorImpl();
+        ognl.setEvaluator(new OgnlRuleEvaluator());
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void testSameAsOgnl() {
+        String[] rules = { "id % 4", "(id >> 3) % 4", "id * 100000 % 4", "(id + 7L) % 4" };
+        Value[] keys = {
+            ValueInt.get(0), ValueInt.get(5), ValueInt.get(1234567),
+            ValueInt.get(Integer.MAX_VALUE), ValueLong.get(6), ValueLong.get(1L << 40),
+            ValueLong.get(Long.MAX_VALUE)
+        };
+        for (String rule : rules) {
+            TableMate table = ShardedTable.create(database, rule, 4);
+            RoutingPlan plan = RoutingPlan.get(table);
+            for (Value key : keys) {
+                String message = rule + " with id=" + key.getSQL();
+                RoutingResult fast = plan.route(createRow(key));
+                Map<String, List<Value>> args = New.hashMap();
+                List<Value> values = New.arrayList();
+                values.add(key);
+                args.put("id", values);
+                Number index = (Number) new OgnlRuleEvaluator().evaluate(
+                        table.getTableRouter().getRuleExpression(), toMap(key));
+                if (index.intValue() < 0) {
+                    // left to the rule engine, that reports the error
+                    assertNull(message, fast);
+                    continue;
+                }
+                assertNotNull(message, fast);
+                RoutingResult expected = ognl.calculate(table.getTableRouter(), args);
+                assertEquals(message, expected.getSingleResult(), fast.getSingleResult());
+            }
+            assertSame(plan, RoutingPlan.get(table));
+        }
+    }
+
+    @Test
+    public void testNotRoutedByPlan() {
+        TableMate table = ShardedTable.create(database, "id % 4", 4);
+        RoutingPlan plan = RoutingPlan.get(table);
+        assertNull(plan.route(createRow(ValueString.get("1"))));
+        table = ShardedTable.create(database, "id % 8", 4);
+        plan = RoutingPlan.get(table);
+        // out of the partition
+        assertNull(plan.route(createRow(ValueInt.get(5))));
+        assertNotNull(plan.route(createRow(ValueInt.get(3))));
+        table = ShardedTable.create(database, "id.hashCode() % 4", 4);
+        assertNull(RoutingPlan.get(table).route(createRow(ValueInt.get(3))));
+    }
+
+    private static Map<String, Value> toMap(Value key) {
+        Map<String, Value> map = New.hashMap();
+        map.put("id", key);
+        return map;
+    }
+
+    private static SimpleRow createRow(Value key) {
+        return new SimpleRow(new Value[] { ValueString.get("name"), key });
+    }
+
+}
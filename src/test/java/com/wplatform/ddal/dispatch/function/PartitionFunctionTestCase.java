@@ -0,0 +1,222 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dispatch.function;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Set;
+
+import org.junit.Test;
+
+import com.wplatform.ddal.dispatch.rule.RuleEvaluateException;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.value.Value;
+import com.wplatform.ddal.value.ValueDate;
+import com.wplatform.ddal.value.ValueInt;
+import com.wplatform.ddal.value.ValueLong;
+import com.wplatform.ddal.value.ValueNull;
+import com.wplatform.ddal.value.ValueString;
+
+/**
+ * Tests the built-in partition functions.
+ */
+public class PartitionFunctionTestCase {
+
+    @Test
+    public void testMod() {
+        ModPartitionFunction f = new ModPartitionFunction();
+        f.setPartitionCount(4);
+        f.doInit();
+        assertEquals(Integer.valueOf(2), f.apply(ValueLong.get(10)));
+        assertEquals(Integer.valueOf(3), f.apply(ValueInt.get(-1)));
+        assertEquals(Integer.valueOf(0), f.apply(ValueLong.get(Long.MIN_VALUE)));
+        assertArrayEquals(new Integer[] { 1, 2 }, f.apply(ValueInt.get(5), ValueInt.get(6)));
+        assertArrayEquals(new Integer[] { 3, 0, 1 }, f.apply(ValueInt.get(-1), ValueInt.get(1)));
+        // the range covers all partitions
+        assertNull(f.apply(ValueInt.get(3), ValueInt.get(6)));
+        assertNull(f.apply(ValueLong.get(Long.MIN_VALUE), ValueLong.get(Long.MAX_VALUE)));
+        assertNull(f.apply(null, ValueInt.get(6)));
+        assertArrayEquals(new Integer[0], f.apply(ValueInt.get(6), ValueInt.get(5)));
+        assertArrayEquals(new Integer[] { 1, 2 },
+                f.apply(ValueInt.get(1), ValueInt.get(5), ValueInt.get(6)));
+        try {
+            f.apply(ValueNull.INSTANCE);
+            fail();
+        } catch (RuleEvaluateException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testHash() {
+        HashPartitionFunction f = new HashPartitionFunction();
+        f.setPartitionCount(5);
+        f.setMaxRangeValues(16);
+        f.doInit();
+        Set<Integer> used = New.hashSet();
+        for (int i = 0; i < 1000; i++) {
+            int index = f.apply(ValueInt.get(i));
+            assertTrue(index >= 0 && index < 5);
+            assertEquals(Integer.valueOf(index), f.apply(ValueString.get(Integer.toString(i))));
+            used.add(index);
+        }
+        assertEquals(5, used.size());
+        Set<Integer> expected = New.hashSet();
+        for (int i = 20; i <= 25; i++) {
+            expected.add(f.apply(ValueInt.get(i)));
+        }
+        Set<Integer> range = New.hashSet();
+        range.addAll(Arrays.asList(f.apply(ValueInt.get(20), ValueInt.get(25))));
+        assertEquals(expected, range);
+        assertNull(f.apply(ValueInt.get(0), ValueInt.get(16)));
+        assertNull(f.apply(ValueString.get("a"), ValueString.get("b")));
+        assertArrayEquals(new Integer[0], f.apply(ValueInt.get(2), ValueInt.get(1)));
+    }
+
+    @Test
+    public void testRange() {
+        RangePartitionFunction f = new RangePartitionFunction();
+        f.setPartitionCount(4);
+        f.setBoundaries("100, 200, 300");
+        f.doInit();
+        assertEquals(Integer.valueOf(0), f.apply(ValueInt.get(-5)));
+        assertEquals(Integer.valueOf(0), f.apply(ValueInt.get(99)));
+        assertEquals(Integer.valueOf(1), f.apply(ValueInt.get(100)));
+        assertEquals(Integer.valueOf(2), f.apply(ValueInt.get(299)));
+        assertEquals(Integer.valueOf(3), f.apply(ValueLong.get(Long.MAX_VALUE)));
+        assertArrayEquals(new Integer[] { 1, 2 }, f.apply(ValueInt.get(150), ValueInt.get(250)));
+        assertArrayEquals(new Integer[] { 1 }, f.apply(ValueInt.get(100), ValueInt.get(199)));
+        assertArrayEquals(new Integer[] { 0, 1 }, f.apply(null, ValueInt.get(150)));
+        assertArrayEquals(new Integer[] { 2, 3 }, f.apply(ValueInt.get(250), ValueNull.INSTANCE));
+        // a range beyond the boundaries is clamped to the first and the last
+        // partition
+        assertArrayEquals(new Integer[] { 0, 1, 2, 3 },
+                f.apply(ValueInt.get(-1000), ValueInt.get(100000)));
+        assertArrayEquals(new Integer[] { 3 }, f.apply(ValueInt.get(5000), ValueInt.get(6000)));
+        assertArrayEquals(new Integer[0], f.apply(ValueInt.get(250), ValueInt.get(150)));
+        assertArrayEquals(new Integer[] { 0, 3 },
+                f.apply(ValueInt.get(1), ValueInt.get(300), ValueInt.get(2)));
+        f = new RangePartitionFunction();
+        f.setPartitionCount(3);
+        f.setBoundaries("200,100");
+        try {
+            f.doInit();
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        f.setBoundaries("100");
+        try {
+            f.doInit();
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDate() {
+        DatePartitionFunction f = new DatePartitionFunction();
+        f.setPartitionCount(12);
+        f.setStart("2015-01-01");
+        f.doInit();
+        assertEquals(Integer.valueOf(0), f.apply(date("2015-01-01")));
+        assertEquals(Integer.valueOf(2), f.apply(date("2015-03-31")));
+        assertEquals(Integer.valueOf(11), f.apply(ValueString.get("2015-12-31")));
+        assertOutOfRange(f, date("2014-12-31"));
+        assertOutOfRange(f, date("2016-01-01"));
+        assertArrayEquals(new Integer[] { 1, 2, 3 }, f.apply(date("2015-02-10"), date("2015-04-01")));
+        // the bounds are clamped to the partition
+        assertArrayEquals(new Integer[] { 0, 1 }, f.apply(date("2014-06-01"), date("2015-02-10")));
+        assertArrayEquals(new Integer[] { 10, 11 }, f.apply(date("2015-11-01"), date("2017-01-01")));
+        assertArrayEquals(new Integer[] { 11 }, f.apply(date("2016-02-01"), date("2016-05-01")));
+        assertArrayEquals(new Integer[] { 0 }, f.apply(date("2013-02-01"), date("2013-05-01")));
+        assertArrayEquals(new Integer[] { 9, 10, 11 }, f.apply(date("2015-10-15"), null));
+        assertArrayEquals(new Integer[] { 0, 1 }, f.apply(null, date("2015-02-01")));
+        assertArrayEquals(new Integer[0], f.apply(date("2015-05-01"), date("2015-04-01")));
+
+        f = new DatePartitionFunction();
+        f.setPartitionCount(4);
+        f.setStart("2015-01-01");
+        f.setInterval(3);
+        f.doInit();
+        assertEquals(Integer.valueOf(0), f.apply(date("2015-03-31")));
+        assertEquals(Integer.valueOf(2), f.apply(date("2015-07-01")));
+        assertOutOfRange(f, date("2014-12-31"));
+
+        f = new DatePartitionFunction();
+        f.setPartitionCount(10);
+        f.setStart("2015-01-01");
+        f.setUnit("day");
+        f.doInit();
+        assertEquals(Integer.valueOf(9), f.apply(date("2015-01-10")));
+        assertOutOfRange(f, date("2015-01-11"));
+    }
+
+    @Test
+    public void testBucket() {
+        BucketPartitionFunction f = new BucketPartitionFunction();
+        f.setPartitionCount(4);
+        f.setBuckets(16);
+        f.doInit();
+        assertEquals(0, f.bucket(ValueLong.get(16)));
+        assertEquals(15, f.bucket(ValueInt.get(-1)));
+        assertEquals(Integer.valueOf(3), f.apply(ValueInt.get(-1)));
+        assertEquals(Integer.valueOf(1), f.apply(ValueInt.get(5)));
+        for (int i = 0; i < 1000; i++) {
+            int bucket = f.bucket(ValueString.get("key" + i));
+            assertTrue(bucket >= 0 && bucket < 16);
+            assertEquals(Integer.valueOf(f.getPartition(bucket)),
+                    f.apply(ValueString.get("key" + i)));
+        }
+        assertArrayEquals(new Integer[] { 0, 1 }, f.apply(ValueInt.get(2), ValueInt.get(5)));
+        assertNull(f.apply(ValueInt.get(0), ValueInt.get(15)));
+
+        f = new BucketPartitionFunction();
+        f.setPartitionCount(2);
+        f.setBuckets(4);
+        f.setSlots("0:1, 1-2:0, 3:1");
+        f.doInit();
+        assertEquals(Integer.valueOf(1), f.apply(ValueInt.get(4)));
+        assertEquals(Integer.valueOf(0), f.apply(ValueInt.get(6)));
+        f.setSlots("0-2:1");
+        try {
+            f.doInit();
+            fail();
+        } catch (IllegalArgumentException e) {
+            // expected, bucket 3 is not in a slot
+        }
+    }
+
+    private static Value date(String s) {
+        return ValueDate.parse(s);
+    }
+
+    private static void assertOutOfRange(PartitionFunction f, Value v) {
+        try {
+            f.apply(v);
+            fail(v.getString());
+        } catch (RuleEvaluateException e) {
+            // expected
+        }
+    }
+
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dispatch.rule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.wplatform.ddal.config.Configuration;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.value.Value;
+import com.wplatform.ddal.value.ValueInt;
+import com.wplatform.ddal.value.ValueLong;
+import com.wplatform.ddal.value.ValueShort;
+import com.wplatform.ddal.value.ValueString;
+
+/**
+ * Tests that a compiled rule calculates the same value, of the same type,
+ * as OGNL.
+ */
+public class CompiledRuleTestCase {
+
+    private static final String[] EXPRESSIONS = {
+        "a % 16",
+        "(a >> 3) % 8",
+        "a << 33",
+        "b << 33",
+        "a << 40L",
+        "b >> a",
+        "-a >>> 28",
+        "b >>> 60",
+        "~a & 15",
+        "(a ^ b) | 7",
+        "a * 100000 + b",
+        "a * 100000L + b",
+        "(a + b) * 31 - a / 7",
+        "a / b",
+        "a % b",
+        "-(a * a) % 1024",
+    };
+
+    private static final Value[] VALUES = {
+        ValueInt.get(0), ValueInt.get(7), ValueInt.get(-13),
+        ValueInt.get(123456789), ValueInt.get(Integer.MAX_VALUE),
+        ValueInt.get(Integer.MIN_VALUE),
+        ValueLong.get(3), ValueLong.get(-5), ValueLong.get(1L << 40),
+        ValueLong.get(Long.MAX_VALUE), ValueLong.get(Long.MIN_VALUE),
+    };
+
+    private final OgnlRuleEvaluator ognl = new OgnlRuleEvaluator();
+
+    @Test
+    public void testSameAsOgnl() {
+        for (String e : EXPRESSIONS) {
+            RuleExpression expression = createRule(e, "a", "b");
+            CompiledRule rule = expression.getCompiledRule();
+            assertNotNull(e, rule);
+            for (Value a : VALUES) {
+                for (Value b : VALUES) {
+                    Map<String, Value> parameters = New.hashMap();
+                    parameters.put("a", a);
+                    parameters.put("b", b);
+                    String message = e + " with a=" + a.getSQL() + ", b=" + b.getSQL();
+                    Object expected;
+                    try {
+                        expected = ognl.evaluate(expression, parameters);
+                    } catch (RuleEvaluateException ex) {
+                        expected = null;
+                    }
+                    Object actual;
+                    try {
+                        actual = rule.evaluate(new Value[] { a, b });
+                        assertNotNull(message, actual);
+                    } catch (RuleEvaluateException ex) {
+                        actual = null;
+                    }
+                    assertEquals(message, expected, actual);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSingleColumn() {
+        String[] expressions = { "a % 16", "a << 33", "-a >>> 28", "a * 100000 % 1024" };
+        for (String e : expressions) {
+            RuleExpression expression = createRule(e, "a");
+            CompiledRule rule = expression.getCompiledRule();
+            for (Value a : VALUES) {
+                Map<String, Value> parameters = New.hashMap();
+                parameters.put("a", a);
+                Number expected = (Number) ognl.evaluate(expression, parameters);
+                boolean wide = a.getType() == Value.LONG;
+                assertEquals(e + " with a=" + a.getSQL(), expected.longValue(),
+                        rule.evaluate(a.getLong(), wide));
+            }
+        }
+    }
+
+    @Test
+    public void testNotCompiled() {
+        assertNull(createRule("a.hashCode() % 16", "a").getCompiledRule());
+        assertNull(createRule("a % 1.5", "a").getCompiledRule());
+        assertNull(createRule("a % 0x10", "a").getCompiledRule());
+        assertNull(createRule("a > 1 ? 1 : 0", "a").getCompiledRule());
+        // an operator followed by "=" is not read as the operator
+        assertNull(createRule("a += 1", "a").getCompiledRule());
+        assertNull(createRule("a >>= 1", "a").getCompiledRule());
+        CompiledRule rule = createRule("a % 16", "a").getCompiledRule();
+        assertNull(rule.evaluate(new Value[] { ValueString.get("1") }));
+        assertNull(rule.evaluate(new Value[] { ValueShort.get((short) 1) }));
+    }
+
+    private static RuleExpression createRule(String expression, String... columnNames) {
+        TableRouter tableRouter = new TableRouter(new Configuration());
+        RuleExpression rule = new RuleExpression(tableRouter);
+        List<RuleColumn> columns = New.arrayList();
+        for (String name : columnNames) {
+            RuleColumn column = new RuleColumn();
+            column.setName(name);
+            columns.add(column);
+        }
+        rule.setRuleColumns(columns);
+        rule.setExpression(expression);
+        return rule;
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dispatch.rule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wplatform.ddal.engine.Database;
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.message.DbException;
+import com.wplatform.ddal.message.ErrorCode;
+import com.wplatform.ddal.test.utils.LocalDatabase;
+
+/**
+ * Tests the parsing of the partition hint comments.
+ */
+public class PartitionHintsTestCase {
+
+    private Database database;
+    private Session session;
+
+    @Before
+    public void setUp() {
+        database = LocalDatabase.open();
+        session = LocalDatabase.createSession(database);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void testParse() {
+        assertTrue(PartitionHints.isHint(" DDAL: shard=s1 "));
+        assertFalse(PartitionHints.isHint(" ddal shard=s1 "));
+        assertNull(PartitionHints.parse(null, "SELECT 1"));
+        assertNull(PartitionHints.parse(Collections.<String>emptyList(), "SELECT 1"));
+        PartitionHints hints = PartitionHints.parse(
+                Arrays.asList(" ddal: shard=shard2, table=orders_03 ", "ddal:readonly"), "SELECT 1");
+        assertEquals("shard2", hints.getShard());
+        assertEquals("orders_03", hints.getTable());
+        assertTrue(hints.isReadOnly());
+        hints = PartitionHints.parse(Arrays.asList("ddal: table=orders_01"), "SELECT 1");
+        assertNull(hints.getShard());
+        assertFalse(hints.isReadOnly());
+        try {
+            PartitionHints.parse(Arrays.asList("ddal: node=1"), "SELECT 1 /*ddal: node=1*/");
+            fail();
+        } catch (DbException e) {
+            assertEquals(ErrorCode.SYNTAX_ERROR_2, e.getErrorCode());
+        }
+        try {
+            PartitionHints.parse(Arrays.asList("ddal: shard="), "SELECT 1 /*ddal: shard=*/");
+            fail();
+        } catch (DbException e) {
+            assertEquals(ErrorCode.SYNTAX_ERROR_2, e.getErrorCode());
+        }
+    }
+
+    @Test
+    public void testHintComments() {
+        PartitionHints hints = session.prepare(
+                "SELECT 1 /*ddal: shard=shard1 */ /* other comment */").getPartitionHints();
+        assertEquals("shard1", hints.getShard());
+        hints = session.prepare("/*ddal:readonly*/ SELECT 1").getPartitionHints();
+        assertTrue(hints.isReadOnly());
+        assertNull(hints.getShard());
+        assertNull(session.prepare("SELECT 1 /* ddal */").getPartitionHints());
+        assertNull(session.prepare("SELECT 1 -- /*ddal: shard=shard1 */").getPartitionHints());
+    }
+
+    @Test
+    public void testHintInStringLiteral() {
+        assertNull(session.prepare("SELECT '/*ddal: shard=shard1 */'").getPartitionHints());
+        PartitionHints hints = session.prepare(
+                "SELECT '/*ddal: shard=shard1 */' /*ddal: shard=shard2 */").getPartitionHints();
+        assertEquals("shard2", hints.getShard());
+    }
+
+}
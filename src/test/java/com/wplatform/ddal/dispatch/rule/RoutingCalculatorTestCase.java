@@ -0,0 +1,140 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.dispatch.rule;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wplatform.ddal.config.Configuration;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.value.Value;
+import com.wplatform.ddal.value.ValueInt;
+
+/**
+ * Tests the bounded enumeration of the rule column value combinations.
+ */
+public class RoutingCalculatorTestCase {
+
+    private TableRouter router;
+    private List<TableNode> partition;
+    private CountingEvaluator evaluator;
+    private RoutingCalculatorImpl calculator;
+
+    @Before
+    public void setUp() {
+        router = new TableRouter(new Configuration());
+        partition = New.arrayList();
+        for (int i = 0; i < 4; i++) {
+            partition.add(new TableNode("shard" + i, "orders_" + i));
+        }
+        router.setPartition(partition);
+        RuleExpression rule = new RuleExpression(router);
+        List<RuleColumn> columns = New.arrayList();
+        for (String name : new String[] { "a", "b" }) {
+            RuleColumn column = new RuleColumn();
+            column.setName(name);
+            columns.add(column);
+        }
+        rule.setRuleColumns(columns);
+        rule.setExpression("(a + b) % 4");
+        router.setRuleExpression(rule);
+        evaluator = new CountingEvaluator();
+        calculator = new RoutingCalculatorImpl();
+        calculator.setEvaluator(evaluator);
+    }
+
+    @Test
+    public void testTooManyCombinations() {
+        calculator.setMaxCombinations(10);
+        RoutingResult rr = calculator.calculate(router, args(values(0, 1, 2), values(0, 4, 8, 12)));
+        assertEquals(4, rr.tableNodeCount());
+        assertEquals(0, evaluator.count);
+        // the duplicates are not counted
+        rr = calculator.calculate(router, args(values(1, 1, 2, 2), values(0, 4, 8, 8, 12)));
+        assertArrayEquals(nodes(1, 2), rr.getSelectNodes());
+        assertEquals(8, evaluator.count);
+    }
+
+    @Test
+    public void testStopWhenAllNodesSelected() {
+        calculator.setMaxCombinations(100);
+        RoutingResult rr = calculator.calculate(router, args(values(0, 1, 2), values(0, 1, 2, 3)));
+        assertEquals(4, rr.tableNodeCount());
+        assertEquals(4, evaluator.count);
+    }
+
+    @Test
+    public void testNoLimit() {
+        calculator.setMaxCombinations(0);
+        RoutingResult rr = calculator.calculate(router, args(values(0, 4, 8, 12, 16, 20),
+                values(1, 5, 9, 13, 17, 21)));
+        assertArrayEquals(nodes(1), rr.getSelectNodes());
+        assertEquals(36, evaluator.count);
+    }
+
+    @Test
+    public void testMissingColumn() {
+        Map<String, List<Value>> args = New.hashMap();
+        args.put("a", values(1));
+        RoutingResult rr = calculator.calculate(router, args);
+        assertEquals(4, rr.tableNodeCount());
+        assertEquals(0, evaluator.count);
+    }
+
+    private TableNode[] nodes(int... indexes) {
+        TableNode[] nodes = new TableNode[indexes.length];
+        for (int i = 0; i < indexes.length; i++) {
+            nodes[i] = partition.get(indexes[i]);
+        }
+        return nodes;
+    }
+
+    private static Map<String, List<Value>> args(List<Value> a, List<Value> b) {
+        Map<String, List<Value>> args = New.hashMap();
+        args.put("a", a);
+        args.put("b", b);
+        return args;
+    }
+
+    private static List<Value> values(int... values) {
+        List<Value> list = New.arrayList();
+        for (int v : values) {
+            list.add(ValueInt.get(v));
+        }
+        return list;
+    }
+
+    /**
+     * A rule evaluator that counts the evaluations.
+     */
+    static class CountingEvaluator extends CompiledRuleEvaluator {
+
+        int count;
+
+        @Override
+        public Object evaluate(RuleExpression expression, Map<String, Value> parameters) {
+            count++;
+            return super.evaluate(expression, parameters);
+        }
+    }
+
+}
@@ -0,0 +1,122 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.excutor;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wplatform.ddal.engine.Database;
+import com.wplatform.ddal.engine.Mode;
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.test.utils.LocalDatabase;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.value.Value;
+import com.wplatform.ddal.value.ValueInt;
+import com.wplatform.ddal.value.ValueString;
+
+/**
+ * Tests the split of the rows of an INSERT batch into multi-row statements.
+ */
+public class InsertValuesWorkerTestCase {
+
+    private static final String SQL = "INSERT INTO T_0(ID, NAME, AGE) VALUES( ?, ?, ?)";
+
+    private Database database;
+    private Session session;
+
+    @Before
+    public void setUp() {
+        database = LocalDatabase.open();
+        session = LocalDatabase.createSession(database);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void testChunkSQL() {
+        InsertValuesWorker worker = createWorker(rows(2, "a"), 10, 1 << 20, 100);
+        assertEquals("INSERT INTO T_0(ID, NAME, AGE) VALUES ( ?, ?, ?), ( ?, ?, ?)",
+                worker.getChunkSQL(2));
+        assertEquals(-1, InsertValuesWorker.getValuesIndex("INSERT INTO T_0 SELECT * FROM T_1"));
+    }
+
+    @Test
+    public void testMaxRows() {
+        InsertValuesWorker worker = createWorker(rows(10, "a"), 4, 1 << 20, 100);
+        assertEquals(4, worker.nextChunk(0));
+        assertEquals(8, worker.nextChunk(4));
+        assertEquals(10, worker.nextChunk(8));
+    }
+
+    @Test
+    public void testMaxParameters() {
+        // 3 parameters for each row
+        InsertValuesWorker worker = createWorker(rows(10, "a"), 100, 1 << 20, 7);
+        assertEquals(2, worker.nextChunk(0));
+        assertEquals(4, worker.nextChunk(2));
+        worker = createWorker(rows(10, "a"), 100, 1 << 20, 2);
+        // a chunk has at least one row
+        assertEquals(1, worker.nextChunk(0));
+        assertEquals(10, worker.nextChunk(9));
+    }
+
+    @Test
+    public void testMaxSize() {
+        StringBuilder buff = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            buff.append('x');
+        }
+        InsertValuesWorker worker = createWorker(rows(10, buff.toString()), 100, 10000, 100);
+        int end = worker.nextChunk(0);
+        assertEquals(true, end > 1 && end < 10);
+        worker = createWorker(rows(10, buff.toString()), 100, 10, 100);
+        assertEquals(1, worker.nextChunk(0));
+    }
+
+    @Test
+    public void testModeMaxParameters() {
+        assertEquals(65535, Mode.getInstance(Mode.MY_SQL).maxParameters);
+        assertEquals(2100, Mode.getInstance(Mode.MSSQL_SERVER).maxParameters);
+        assertEquals(Short.MAX_VALUE, Mode.getInstance(Mode.REGULAR).maxParameters);
+    }
+
+    private InsertValuesWorker createWorker(List<List<Value>> array, int maxRows,
+            int maxSize, int maxParameters) {
+        return new InsertValuesWorker(session, "shard0", SQL, array, maxRows, maxSize,
+                maxParameters);
+    }
+
+    private static List<List<Value>> rows(int count, String name) {
+        List<List<Value>> array = New.arrayList();
+        for (int i = 0; i < count; i++) {
+            List<Value> params = New.arrayList();
+            params.add(ValueInt.get(i));
+            params.add(ValueString.get(name));
+            params.add(ValueInt.get(20));
+            array.add(params);
+        }
+        return array;
+    }
+
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.excutor.dml;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Test;
+
+import com.wplatform.ddal.command.dml.Select;
+import com.wplatform.ddal.command.expression.Expression;
+import com.wplatform.ddal.dbobject.index.Cursor;
+import com.wplatform.ddal.engine.Constants;
+import com.wplatform.ddal.engine.Database;
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.result.LocalResult;
+import com.wplatform.ddal.result.Row;
+import com.wplatform.ddal.result.SearchRow;
+import com.wplatform.ddal.test.utils.LocalDatabase;
+import com.wplatform.ddal.test.utils.ShardedTable;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.value.Value;
+import com.wplatform.ddal.value.ValueLong;
+import com.wplatform.ddal.value.ValueNull;
+import com.wplatform.ddal.value.ValueString;
+
+/**
+ * Tests the merge of the partial aggregates of the table nodes once there are
+ * more groups than MAX_MEMORY_ROWS, and the groups that do not fit in memory
+ * are merged in the external map.
+ */
+public class PartialGroupSpillTestCase {
+
+    private static final int GROUPS = 30;
+
+    private Database database;
+
+    @After
+    public void tearDown() {
+        if (database != null) {
+            database.close();
+        }
+    }
+
+    @Test
+    public void testTempFile() {
+        testMerge(false);
+    }
+
+    @Test
+    public void testOffHeap() {
+        testMerge(true);
+    }
+
+    private void testMerge(boolean offHeap) {
+        database = LocalDatabase.open("SPILL_OFF_HEAP", String.valueOf(offHeap));
+        database.setMaxMemoryRows(10);
+        Session session = LocalDatabase.createSession(database);
+        database.getSchema(Constants.SCHEMA_MAIN).add(ShardedTable.create(database, "id % 4", 4));
+        Select select = (Select) session.prepare("SELECT NAME, COUNT(*), SUM(ID), MIN(ID), " +
+                "MAX(ID), AVG(ID) FROM CUSTOMER GROUP BY NAME");
+        assertNotNull(select.getPartialAggregates());
+        SelectExecutor executor = new SelectExecutor(select);
+        int[] partialIndexes = new int[5];
+        int[] types = executor.getPartialColumnTypes(partialIndexes);
+        // AVG is queried as SUM and COUNT
+        assertArrayEquals(new int[] { 1, 2, 3, 4, 5 }, partialIndexes);
+        assertEquals(7, types.length);
+
+        // the table nodes return the rows one node after the other, so the
+        // first groups are merged in memory and the others in the external
+        // map, each group id base has the ids base + node and base + node + 2
+        List<Value[]> rows = New.arrayList();
+        for (int node = 0; node < 3; node++) {
+            for (int g = 0; g < GROUPS; g++) {
+                long a = g * 10 + node, b = a + 2;
+                rows.add(row(types, name(g), 2L, a + b, a, b, a + b, 2L));
+            }
+        }
+        // a table node where the ids of all rows are NULL
+        for (int g = 0; g < GROUPS; g++) {
+            rows.add(row(types, name(g), 1L, null, null, null, null, 0L));
+        }
+
+        List<Expression> expressions = select.getExpressions();
+        LocalResult result = new LocalResult(session,
+                expressions.toArray(new Expression[expressions.size()]), 6);
+        executor.mergePartialGroups(new RowsCursor(rows), partialIndexes, 6, result);
+        result.done();
+        assertEquals(GROUPS, result.getRowCount());
+        Value[][] groups = new Value[GROUPS][];
+        while (result.next()) {
+            Value[] row = result.currentRow();
+            int g = Integer.parseInt(row[0].getString().substring(1));
+            assertNull(groups[g]);
+            groups[g] = row;
+        }
+        result.close();
+        for (int g = 0; g < GROUPS; g++) {
+            long base = g * 10;
+            Value[] row = groups[g];
+            assertEquals(7, row[1].getLong());
+            assertEquals(6 * base + 12, row[2].getLong());
+            assertEquals(base, row[3].getLong());
+            assertEquals(base + 4, row[4].getLong());
+            assertEquals(base + 2, row[5].getLong());
+        }
+    }
+
+    private static String name(int g) {
+        return g < 10 ? "n0" + g : "n" + g;
+    }
+
+    private static Value[] row(int[] types, String name, Long... partials) {
+        Value[] row = new Value[types.length];
+        row[0] = ValueString.get(name);
+        for (int i = 0; i < partials.length; i++) {
+            Long p = partials[i];
+            Value v = p == null ? ValueNull.INSTANCE : ValueLong.get(p);
+            row[i + 1] = v.convertTo(types[i + 1]);
+        }
+        return row;
+    }
+
+    /**
+     * A cursor over the rows of the table nodes.
+     */
+    private static class RowsCursor implements Cursor {
+
+        private final Iterator<Value[]> it;
+        private Row current;
+
+        RowsCursor(List<Value[]> rows) {
+            it = rows.iterator();
+        }
+
+        @Override
+        public Row get() {
+            return current;
+        }
+
+        @Override
+        public SearchRow getSearchRow() {
+            return current;
+        }
+
+        @Override
+        public boolean next() {
+            current = it.hasNext() ? new Row(it.next(), 0) : null;
+            return current != null;
+        }
+
+        @Override
+        public boolean previous() {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
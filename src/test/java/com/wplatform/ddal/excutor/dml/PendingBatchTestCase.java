@@ -0,0 +1,104 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.excutor.dml;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import com.wplatform.ddal.excutor.dml.PreparedRoutingExecutor.BatchKey;
+import com.wplatform.ddal.excutor.dml.PreparedRoutingExecutor.PendingBatch;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.value.Value;
+import com.wplatform.ddal.value.ValueInt;
+
+/**
+ * Tests the grouping of the routed statements of a batch by table node.
+ */
+public class PendingBatchTestCase {
+
+    private static final String SQL1 = "DELETE FROM T_0 WHERE ID = ?";
+    private static final String SQL2 = "DELETE FROM T_1 WHERE ID = ?";
+
+    @Test
+    public void testGrouping() {
+        Map<BatchKey, PendingBatch> batches = New.linkedHashMap();
+        PreparedRoutingExecutor.addPendingBatch(batches, "a", SQL1, params(0), 0);
+        PreparedRoutingExecutor.addPendingBatch(batches, "b", SQL1, params(0), 0);
+        PreparedRoutingExecutor.addPendingBatch(batches, "a", SQL1, params(1), 1);
+        PreparedRoutingExecutor.addPendingBatch(batches, "a", SQL2, params(2), 2);
+        PreparedRoutingExecutor.addPendingBatch(batches, "b", SQL1, params(2), 2);
+        // the routing of the third set of parameter values failed
+        for (PendingBatch batch : batches.values()) {
+            batch.removeRow(2);
+        }
+        PreparedRoutingExecutor.addPendingBatch(batches, "b", SQL1, params(3), 3);
+
+        assertEquals(3, batches.size());
+        Iterator<PendingBatch> it = batches.values().iterator();
+        PendingBatch a1 = it.next();
+        PendingBatch b1 = it.next();
+        PendingBatch a2 = it.next();
+        assertEquals(2, a1.array.size());
+        assertEquals(0, a1.rows.get(0));
+        assertEquals(1, a1.rows.get(1));
+        assertEquals(ValueInt.get(1), a1.array.get(1).get(0));
+        assertEquals(2, b1.array.size());
+        assertEquals(0, b1.rows.get(0));
+        assertEquals(3, b1.rows.get(1));
+        assertEquals(ValueInt.get(3), b1.array.get(1).get(0));
+        assertTrue(a2.array.isEmpty());
+        assertEquals(0, a2.rows.size());
+        assertEquals(batches.get(new BatchKey("b", SQL1)), b1);
+
+        int[] updateCounts = { 0, 0, Statement.EXECUTE_FAILED, 0 };
+        a1.addUpdateCounts(new Integer[] { 1, 1 }, updateCounts);
+        b1.addUpdateCounts(new Integer[] { 2, Statement.SUCCESS_NO_INFO }, updateCounts);
+        assertArrayEquals(new int[] { 3, 1, Statement.EXECUTE_FAILED,
+                Statement.SUCCESS_NO_INFO }, updateCounts);
+        b1.setFailed(null, updateCounts);
+        assertArrayEquals(new int[] { Statement.EXECUTE_FAILED, 1,
+                Statement.EXECUTE_FAILED, Statement.EXECUTE_FAILED }, updateCounts);
+    }
+
+    @Test
+    public void testPartialFailure() {
+        Map<BatchKey, PendingBatch> batches = New.linkedHashMap();
+        for (int i = 0; i < 4; i++) {
+            PreparedRoutingExecutor.addPendingBatch(batches, "a", SQL1, params(i), i);
+        }
+        PendingBatch batch = batches.get(new BatchKey("a", SQL1));
+        int[] updateCounts = new int[4];
+        // the first two statements were executed before the batch failed
+        batch.setFailed(new int[] { 1, Statement.SUCCESS_NO_INFO }, updateCounts);
+        assertArrayEquals(new int[] { 1, Statement.SUCCESS_NO_INFO,
+                Statement.EXECUTE_FAILED, Statement.EXECUTE_FAILED }, updateCounts);
+    }
+
+    private static List<Value> params(int id) {
+        List<Value> params = New.arrayList();
+        params.add(ValueInt.get(id));
+        return params;
+    }
+
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.excutor.dml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wplatform.ddal.command.dml.Insert;
+import com.wplatform.ddal.engine.Database;
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.excutor.JdbcWorker;
+import com.wplatform.ddal.message.DbException;
+import com.wplatform.ddal.message.ErrorCode;
+import com.wplatform.ddal.test.utils.LocalDatabase;
+import com.wplatform.ddal.test.utils.MockStatement;
+import com.wplatform.ddal.util.New;
+
+/**
+ * Tests the batch updates of an INSERT that keep running while the next rows
+ * are collected.
+ */
+public class PendingRowsTestCase {
+
+    private Database database;
+    private Session session;
+    private InsertExecutor executor;
+
+    @Before
+    public void setUp() {
+        database = LocalDatabase.open();
+        session = LocalDatabase.createSession(database);
+        executor = new InsertExecutor(new Insert(session));
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void testBackPressure() throws InterruptedException {
+        BlockingWorker a = new BlockingWorker(session, "s0", 1, false);
+        BlockingWorker b = new BlockingWorker(session, "s1", 2, false);
+        BlockingWorker c = new BlockingWorker(session, "s2", 4, false);
+        assertEquals(0, executor.submitWorkers(workers(a), 2));
+        assertEquals(0, executor.submitWorkers(workers(b), 2));
+        assertTrue(a.started.await(10, TimeUnit.SECONDS));
+        assertTrue(b.started.await(10, TimeUnit.SECONDS));
+
+        // two batch updates are running, the third one waits for the oldest
+        Submit submit = new Submit(workers(c), 2);
+        submit.start();
+        submit.join(200);
+        assertTrue(submit.isAlive());
+        assertEquals(1, c.started.getCount());
+        a.release.countDown();
+        submit.join(10000);
+        assertEquals(1, submit.affectRows);
+        assertTrue(c.started.await(10, TimeUnit.SECONDS));
+
+        b.release.countDown();
+        c.release.countDown();
+        assertEquals(6, executor.awaitPendingRows());
+    }
+
+    @Test
+    public void testSameShard() throws InterruptedException {
+        BlockingWorker a = new BlockingWorker(session, "s0", 1, false);
+        BlockingWorker b = new BlockingWorker(session, "s1", 2, false);
+        BlockingWorker c = new BlockingWorker(session, "s0", 4, false);
+        assertEquals(0, executor.submitWorkers(workers(a), 3));
+        // another shard, started while the first one is running
+        assertEquals(0, executor.submitWorkers(workers(b), 3));
+        assertTrue(a.started.await(10, TimeUnit.SECONDS));
+        assertTrue(b.started.await(10, TimeUnit.SECONDS));
+
+        // the same shard, there is room but the first one is awaited
+        Submit submit = new Submit(workers(c), 3);
+        submit.start();
+        submit.join(200);
+        assertTrue(submit.isAlive());
+        assertEquals(1, c.started.getCount());
+        a.release.countDown();
+        submit.join(10000);
+        // the second one is not awaited
+        assertEquals(1, submit.affectRows);
+        assertTrue(c.started.await(10, TimeUnit.SECONDS));
+
+        b.release.countDown();
+        c.release.countDown();
+        assertEquals(6, executor.awaitPendingRows());
+    }
+
+    @Test
+    public void testCancelAfterError() throws InterruptedException {
+        BlockingWorker a = new BlockingWorker(session, "s0", 1, true);
+        BlockingWorker b = new BlockingWorker(session, "s1", 2, false);
+        executor.submitWorkers(workers(a), 3);
+        executor.submitWorkers(workers(b), 3);
+        assertTrue(a.started.await(10, TimeUnit.SECONDS));
+        assertTrue(b.started.await(10, TimeUnit.SECONDS));
+        a.release.countDown();
+        try {
+            executor.awaitPendingRows();
+            fail();
+        } catch (DbException e) {
+            assertEquals(ErrorCode.ERROR_ACCESSING_DATABASE_TABLE_2, e.getErrorCode());
+        }
+        assertTrue(a.statement.isClosed());
+        assertFalse(a.statement.isCanceled());
+
+        // the INSERT cancels the batch updates that are not awaited
+        executor.cancelPendingRows();
+        assertTrue(b.isCanceled());
+        assertTrue(b.statement.isCanceled());
+        assertTrue(b.statement.isClosed());
+        b.release.countDown();
+        assertEquals(0, executor.awaitPendingRows());
+    }
+
+    private static List<JdbcWorker<Integer[]>> workers(JdbcWorker<Integer[]> worker) {
+        List<JdbcWorker<Integer[]>> workers = New.arrayList();
+        workers.add(worker);
+        return workers;
+    }
+
+    /**
+     * Submits the workers of a flush in another thread, as the submit may
+     * wait for earlier ones.
+     */
+    private class Submit extends Thread {
+
+        private final List<JdbcWorker<Integer[]>> workers;
+        private final int maxPending;
+        volatile int affectRows = -1;
+
+        Submit(List<JdbcWorker<Integer[]>> workers, int maxPending) {
+            this.workers = workers;
+            this.maxPending = maxPending;
+        }
+
+        @Override
+        public void run() {
+            affectRows = executor.submitWorkers(workers, maxPending);
+        }
+    }
+
+    /**
+     * A batch update worker that runs until it is released, and then
+     * returns the given update count or fails.
+     */
+    static class BlockingWorker extends JdbcWorker<Integer[]> {
+
+        final MockStatement statement = new MockStatement();
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        private final int updateCount;
+        private final boolean fail;
+
+        BlockingWorker(Session session, String shardName, int updateCount, boolean fail) {
+            super(session, shardName, "INSERT", null);
+            this.updateCount = updateCount;
+            this.fail = fail;
+        }
+
+        @Override
+        public Integer[] doWork() {
+            attach(statement.getStatement());
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                throw DbException.convert(e);
+            }
+            if (fail) {
+                throw DbException.get(ErrorCode.ERROR_ACCESSING_DATABASE_TABLE_2,
+                        sql, "node failed");
+            }
+            return new Integer[] { updateCount };
+        }
+    }
+
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.excutor.dml;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wplatform.ddal.command.dml.Update;
+import com.wplatform.ddal.dbobject.table.TableFilter;
+import com.wplatform.ddal.dbobject.table.TableMate;
+import com.wplatform.ddal.dispatch.InListRewriter;
+import com.wplatform.ddal.dispatch.rule.TableNode;
+import com.wplatform.ddal.engine.Constants;
+import com.wplatform.ddal.engine.Database;
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.test.utils.LocalDatabase;
+import com.wplatform.ddal.test.utils.ShardedTable;
+import com.wplatform.ddal.util.StatementBuilder;
+import com.wplatform.ddal.value.Value;
+
+/**
+ * Tests the UPDATE statements sent to the table nodes.
+ */
+public class UpdateExecutorTestCase {
+
+    private Database database;
+    private Session session;
+    private TableMate table;
+
+    @Before
+    public void setUp() {
+        database = LocalDatabase.open();
+        session = LocalDatabase.createSession(database);
+        table = ShardedTable.create(database, "id % 4", 4);
+        database.getSchema(Constants.SCHEMA_MAIN).add(table);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void testTranslate() {
+        Update update = (Update) session.prepare(
+                "UPDATE CUSTOMER SET NAME = 'a', ID = ID + 4 WHERE ID IN(1, 2, 5)");
+        UpdateExecutor executor = new UpdateExecutor(update);
+        TableNode node = table.getPartitionNode()[1];
+        StatementBuilder buff = new StatementBuilder();
+        List<Value> params = executor.doTranslate(node, null, buff);
+        assertEquals("UPDATE CUSTOMER_1 SET NAME = ?, ID = ID + ? WHERE ID IN(?, ?, ?)",
+                buff.toString());
+        assertEquals("['a', 4, 1, 2, 5]", params.toString());
+
+        // the table node only gets the IN list values routed to it
+        TableFilter filter = update.getTableFilter();
+        database.getRoutingHandler().doRoute(table, session, filter, update.getCondition());
+        InListRewriter rewriter = filter.getInListRewriter();
+        rewriter.apply(filter, node);
+        buff = new StatementBuilder();
+        params = executor.doTranslate(node, null, buff);
+        InListRewriter.reset(filter);
+        assertEquals("['a', 4, 1, 5]", params.toString());
+    }
+
+}
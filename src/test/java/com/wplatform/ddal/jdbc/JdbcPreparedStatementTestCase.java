@@ -0,0 +1,71 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.jdbc;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wplatform.ddal.engine.Database;
+import com.wplatform.ddal.test.utils.LocalDatabase;
+
+/**
+ * Tests the batch of a prepared statement without a shard.
+ */
+public class JdbcPreparedStatementTestCase {
+
+    private Database database;
+    private JdbcConnection conn;
+
+    @Before
+    public void setUp() {
+        database = LocalDatabase.open();
+        conn = new JdbcConnection(LocalDatabase.createSession(database), "sa", "local");
+    }
+
+    @After
+    public void tearDown() throws SQLException {
+        conn.close();
+        database.close();
+    }
+
+    @Test
+    public void testBatchKeepsParameterValues() throws SQLException {
+        PreparedStatement prep = conn.prepareStatement("SET MAX_MEMORY_ROWS ?");
+        prep.setInt(1, 1000);
+        prep.addBatch();
+        prep.setInt(1, 2000);
+        prep.addBatch();
+        // set after the last addBatch, not part of the batch
+        prep.setInt(1, 3000);
+        assertArrayEquals(new int[] { 0, 0 }, prep.executeBatch());
+        assertEquals(2000, database.getMaxMemoryRows());
+
+        prep.setInt(1, 4000);
+        prep.addBatch();
+        prep.setInt(1, 5000);
+        prep.executeBatch();
+        assertEquals(4000, database.getMaxMemoryRows());
+        prep.close();
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.result;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import com.wplatform.ddal.command.expression.Expression;
+import com.wplatform.ddal.command.expression.ValueExpression;
+import com.wplatform.ddal.value.Value;
+import com.wplatform.ddal.value.ValueInt;
+
+/**
+ * Tests the forward only result that reads its rows on demand.
+ */
+public class LazyResultTestCase {
+
+    @Test
+    public void testEmptyResult() {
+        CountingResult result = new CountingResult(0);
+        assertEquals(0, result.getRowCount());
+        assertFalse(result.next());
+        assertEquals(0, result.getRowCount());
+        assertTrue(result.isClosed());
+    }
+
+    @Test
+    public void testFetchSize() {
+        CountingResult result = new CountingResult(10);
+        result.setFetchSize(3);
+        assertEquals(Integer.MAX_VALUE, result.getRowCount());
+        assertEquals(3, result.fetched);
+        for (int i = 0; i < 3; i++) {
+            assertTrue(result.next());
+            assertEquals(i, result.currentRow()[0].getInt());
+        }
+        assertEquals(3, result.fetched);
+        assertTrue(result.next());
+        assertEquals(6, result.fetched);
+        int count = 4;
+        while (result.next()) {
+            count++;
+        }
+        assertEquals(10, count);
+        assertEquals(10, result.getRowCount());
+        assertTrue(result.isClosed());
+    }
+
+    /**
+     * A result with the given number of rows that counts the rows read from
+     * its source.
+     */
+    static class CountingResult extends LazyResult {
+
+        final int rowCount;
+        int fetched;
+
+        CountingResult(int rowCount) {
+            super(new Expression[] { ValueExpression.get(ValueInt.get(0)) }, 1);
+            this.rowCount = rowCount;
+        }
+
+        @Override
+        protected Value[] fetchNextRow() {
+            if (fetched >= rowCount) {
+                return null;
+            }
+            return new Value[] { ValueInt.get(fetched++) };
+        }
+
+        @Override
+        protected void closeSource() {
+            // nothing to do
+        }
+    }
+
+}
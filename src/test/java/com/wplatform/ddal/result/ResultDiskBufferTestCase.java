@@ -0,0 +1,169 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.result;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wplatform.ddal.command.expression.Expression;
+import com.wplatform.ddal.command.expression.ValueExpression;
+import com.wplatform.ddal.engine.Database;
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.test.utils.LocalDatabase;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.value.Value;
+import com.wplatform.ddal.value.ValueInt;
+import com.wplatform.ddal.value.ValueString;
+import com.wplatform.ddal.value.ValueStringIgnoreCase;
+
+/**
+ * Tests the results that are written to disk once they have more than
+ * MAX_MEMORY_ROWS rows.
+ */
+public class ResultDiskBufferTestCase {
+
+    private Database database;
+    private Session session;
+
+    @Before
+    public void setUp() {
+        database = LocalDatabase.open();
+        session = LocalDatabase.createSession(database);
+    }
+
+    @After
+    public void tearDown() {
+        database.close();
+    }
+
+    @Test
+    public void testTapeMerge() {
+        SortOrder sort = new SortOrder(database, new int[] { 0 }, new int[] { 0 }, null);
+        ResultDiskBuffer buffer = new ResultDiskBuffer(session, sort, 2);
+        Random random = new Random(1);
+        int count = 0;
+        try {
+            // every call writes one sorted tape
+            for (int tape = 0; tape < 7; tape++) {
+                ArrayList<Value[]> rows = New.arrayList();
+                for (int i = 0; i < 150 + tape; i++) {
+                    rows.add(row(random.nextInt(500), "t" + tape));
+                }
+                count = buffer.addRows(rows);
+            }
+            assertEquals(7 * 150 + 21, count);
+            buffer.done();
+            // the tapes can be merged more than once
+            for (int pass = 0; pass < 2; pass++) {
+                buffer.reset();
+                int last = Integer.MIN_VALUE;
+                for (int i = 0; i < count; i++) {
+                    int v = buffer.next()[0].getInt();
+                    assertTrue(v >= last);
+                    last = v;
+                }
+                assertNull(buffer.next());
+            }
+        } finally {
+            buffer.close();
+        }
+    }
+
+    @Test
+    public void testSortedResult() {
+        LocalResult result = createResult();
+        result.setSortOrder(new SortOrder(database, new int[] { 0, 1 },
+                new int[] { SortOrder.DESCENDING, 0 }, null));
+        Random random = new Random(2);
+        for (int i = 0; i < 1000; i++) {
+            result.addRow(row(random.nextInt(100), "r" + random.nextInt(10)));
+        }
+        result.done();
+        assertEquals(1000, result.getRowCount());
+        Value[] last = null;
+        int count = 0;
+        while (result.next()) {
+            Value[] row = result.currentRow();
+            if (last != null) {
+                int a = last[0].getInt(), b = row[0].getInt();
+                assertTrue(a > b || a == b && last[1].getString().compareTo(row[1].getString()) <= 0);
+            }
+            last = row;
+            count++;
+        }
+        assertEquals(1000, count);
+        result.close();
+    }
+
+    @Test
+    public void testDistinctResult() {
+        LocalResult result = createResult();
+        result.setDistinct();
+        for (int i = 0; i < 1000; i++) {
+            result.addRow(row(i % 97, "x"));
+        }
+        result.done();
+        assertEquals(97, result.getRowCount());
+        boolean[] found = new boolean[97];
+        while (result.next()) {
+            int v = result.currentRow()[0].getInt();
+            assertTrue(!found[v]);
+            found[v] = true;
+        }
+        result.close();
+
+        // case insensitive strings that are equal in memory stay equal
+        // once they are spilled
+        result = createResult();
+        result.setDistinct();
+        for (int i = 0; i < 1000; i++) {
+            String name = i % 2 == 0 ? "abc" : "ABC";
+            result.addRow(new Value[] { ValueInt.get(i % 97), ValueStringIgnoreCase.get(name) });
+        }
+        result.done();
+        assertEquals(97, result.getRowCount());
+        found = new boolean[97];
+        while (result.next()) {
+            Value[] row = result.currentRow();
+            int v = row[0].getInt();
+            assertTrue(!found[v]);
+            found[v] = true;
+            assertEquals("abc", row[1].getString().toLowerCase());
+        }
+        result.close();
+    }
+
+    private LocalResult createResult() {
+        Expression[] expressions = { ValueExpression.get(ValueInt.get(0)),
+                ValueExpression.get(ValueString.get("")) };
+        LocalResult result = new LocalResult(session, expressions, 2);
+        result.setMaxMemoryRows(10);
+        return result;
+    }
+
+    private static Value[] row(int id, String name) {
+        return new Value[] { ValueInt.get(id), ValueString.get(name) };
+    }
+
+}
@@ -0,0 +1,135 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.shards;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.wplatform.ddal.config.ShardConfig;
+import com.wplatform.ddal.engine.Database;
+import com.wplatform.ddal.message.Trace;
+import com.wplatform.ddal.test.utils.LocalDatabase;
+import com.wplatform.ddal.util.New;
+
+/**
+ * Tests the thread pools of the shards.
+ */
+public class JdbcExecutorTestCase {
+
+    private Database database;
+    private JdbcExecutor jdbcExecutor;
+
+    @Before
+    public void setUp() {
+        database = LocalDatabase.open();
+        Map<String, ShardConfig> shards = New.hashMap();
+        ShardConfig shard = new ShardConfig();
+        shard.setName("shard0");
+        shard.setMaxPoolSize(4);
+        shard.setQueueSize(8);
+        shards.put("shard0", shard);
+        jdbcExecutor = new JdbcExecutor(shards, 60000, database.getTrace(Trace.JDBC), false);
+    }
+
+    @After
+    public void tearDown() throws InterruptedException {
+        jdbcExecutor.shutdown();
+        jdbcExecutor.awaitTermination(1, TimeUnit.SECONDS);
+        database.close();
+    }
+
+    @Test
+    public void testPoolGrowsBeforeQueueing() throws InterruptedException {
+        Executor executor = jdbcExecutor.getExecutor("shard0");
+        final CountDownLatch started = new CountDownLatch(4);
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 4; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        JdbcExecutor.Statistics s = jdbcExecutor.getStatistics("shard0");
+        assertEquals("shard0", s.getShardName());
+        assertEquals(4, s.getPoolSize());
+        assertEquals(4, s.getActiveCount());
+        assertEquals(0, s.getQueuedCount());
+        assertEquals(8, s.getQueueSize());
+        release.countDown();
+    }
+
+    @Test
+    public void testVirtualThreadsAreBounded() throws InterruptedException {
+        Map<String, ShardConfig> shards = New.hashMap();
+        ShardConfig shard = new ShardConfig();
+        shard.setName("shard0");
+        shard.setMaxPoolSize(2);
+        shard.setQueueSize(16);
+        shards.put("shard0", shard);
+        JdbcExecutor virtual = new JdbcExecutor(shards, 60000, database.getTrace(Trace.JDBC), true);
+        try {
+            Executor executor = virtual.getExecutor("shard0");
+            final AtomicInteger running = new AtomicInteger();
+            final AtomicInteger maxRunning = new AtomicInteger();
+            final CountDownLatch done = new CountDownLatch(10);
+            for (int i = 0; i < 10; i++) {
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        int r = running.incrementAndGet();
+                        synchronized (maxRunning) {
+                            maxRunning.set(Math.max(maxRunning.get(), r));
+                        }
+                        try {
+                            Thread.sleep(20);
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+                        running.decrementAndGet();
+                        done.countDown();
+                    }
+                });
+            }
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+            assertTrue(maxRunning.get() <= 2);
+            JdbcExecutor.Statistics s = virtual.getStatistics("shard0");
+            assertEquals(2, s.getMaxPoolSize());
+            assertEquals(0, s.getRejectedCount());
+        } finally {
+            virtual.shutdown();
+            virtual.awaitTermination(1, TimeUnit.SECONDS);
+        }
+    }
+
+}
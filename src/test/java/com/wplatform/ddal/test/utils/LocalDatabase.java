@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.test.utils;
+
+import javax.sql.DataSource;
+
+import com.wplatform.ddal.config.Configuration;
+import com.wplatform.ddal.config.DataSourceProvider;
+import com.wplatform.ddal.engine.Database;
+import com.wplatform.ddal.engine.Session;
+
+/**
+ * A database without tables and shards, for the tests of classes that need
+ * a session but never connect to a data source.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public class LocalDatabase {
+
+    private LocalDatabase() {
+        // utility class
+    }
+
+    /**
+     * Open a database.
+     *
+     * @param settings the database settings as key value pairs
+     * @return the database
+     */
+    public static Database open(String... settings) {
+        Configuration configuration = new Configuration();
+        for (int i = 0; i < settings.length; i += 2) {
+            configuration.setProperty(settings[i], settings[i + 1]);
+        }
+        configuration.setDataSourceProvider(new DataSourceProvider() {
+            @Override
+            public DataSource lookup(String uid) {
+                return null;
+            }
+        });
+        return new Database(configuration);
+    }
+
+    /**
+     * Create a session of the system user.
+     *
+     * @param database the database
+     * @return the session
+     */
+    public static Session createSession(Database database) {
+        return database.createSession(database.getUser(Database.SYSTEM_USER_NAME));
+    }
+
+}
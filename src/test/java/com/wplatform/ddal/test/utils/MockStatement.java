@@ -0,0 +1,78 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.test.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Statement;
+
+/**
+ * A statement that records the calls of cancel and close, for the tests of
+ * the workers without a data source.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public class MockStatement implements InvocationHandler {
+
+    private volatile boolean canceled;
+    private volatile boolean closed;
+    private final Statement statement;
+
+    public MockStatement() {
+        statement = (Statement) Proxy.newProxyInstance(MockStatement.class.getClassLoader(),
+                new Class<?>[] { Statement.class }, this);
+    }
+
+    /**
+     * Get the statement.
+     *
+     * @return the statement
+     */
+    public Statement getStatement() {
+        return statement;
+    }
+
+    public boolean isCanceled() {
+        return canceled;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        String name = method.getName();
+        if ("cancel".equals(name)) {
+            canceled = true;
+        } else if ("close".equals(name)) {
+            closed = true;
+        } else if ("isClosed".equals(name)) {
+            return closed;
+        } else if ("hashCode".equals(name)) {
+            return System.identityHashCode(proxy);
+        } else if ("equals".equals(name)) {
+            return proxy == args[0];
+        } else if ("toString".equals(name)) {
+            return "MockStatement";
+        } else {
+            throw new UnsupportedOperationException(name);
+        }
+        return null;
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.test.utils;
+
+import com.wplatform.ddal.command.dml.Select;
+import com.wplatform.ddal.command.expression.Expression;
+import com.wplatform.ddal.command.expression.ExpressionVisitor;
+import com.wplatform.ddal.command.expression.ValueExpression;
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.result.LocalResult;
+import com.wplatform.ddal.result.ResultTarget;
+import com.wplatform.ddal.value.Value;
+import com.wplatform.ddal.value.ValueInt;
+
+/**
+ * A subquery without a table that returns the distinct numbers from 0 to the
+ * row count, for the tests of the IN(SELECT ...) conditions without a data
+ * source. The result is not cached.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public class RowsQuery extends Select {
+
+    private final int rowCount;
+    private int executions;
+
+    public RowsQuery(Session session, int rowCount) {
+        super(session);
+        this.rowCount = rowCount;
+        disableCache();
+    }
+
+    /**
+     * Get the number of times the subquery was executed.
+     *
+     * @return the number of executions
+     */
+    public int getExecutions() {
+        return executions;
+    }
+
+    @Override
+    protected LocalResult queryWithoutCache(int maxRows, ResultTarget target) {
+        executions++;
+        Expression[] expressions = { ValueExpression.get(ValueInt.get(0)) };
+        LocalResult result = new LocalResult(session, expressions, 1);
+        result.setDistinct();
+        for (int i = 0; i < rowCount; i++) {
+            result.addRow(new Value[] { ValueInt.get(i) });
+        }
+        result.done();
+        return result;
+    }
+
+    @Override
+    public boolean isEverything(ExpressionVisitor visitor) {
+        // no table and no column
+        return true;
+    }
+
+}
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.test.utils;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+
+import com.wplatform.ddal.engine.Session;
+import com.wplatform.ddal.excutor.JdbcWorker;
+import com.wplatform.ddal.message.DbException;
+import com.wplatform.ddal.message.ErrorCode;
+
+/**
+ * A worker that returns a fixed result set of a table node, for the tests of
+ * the cursors without a data source. The first column of the rows are the
+ * given values, the second column tells the table node of the row. The
+ * worker fails if there are no values.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public class RowsWorker extends JdbcWorker<ResultSet> {
+
+    protected final MockStatement statement = new MockStatement();
+    protected final Integer[] values;
+    protected volatile Thread thread;
+
+    public RowsWorker(Session session, String shardName, Integer... values) {
+        super(session, shardName, "SELECT", null);
+        this.values = values;
+    }
+
+    /**
+     * Get the statement attached to the worker.
+     *
+     * @return the statement
+     */
+    public MockStatement getStatement() {
+        return statement;
+    }
+
+    /**
+     * Get the thread that ran the query.
+     *
+     * @return the thread, or null if the query did not run
+     */
+    public Thread getThread() {
+        return thread;
+    }
+
+    @Override
+    public ResultSet doWork() {
+        thread = Thread.currentThread();
+        attach(statement.getStatement());
+        if (values == null) {
+            throw DbException.get(ErrorCode.ERROR_ACCESSING_DATABASE_TABLE_2,
+                    sql, "node failed");
+        }
+        ResultSet rs = resultSet(shardName, values);
+        attach(rs);
+        return rs;
+    }
+
+    /**
+     * Create a result set with two INT columns: the values, which may be
+     * null, and the hash code of the table node.
+     *
+     * @param node the name of the table node
+     * @param values the values of the first column
+     * @return the result set
+     */
+    public static ResultSet resultSet(final String node, final Integer[] values) {
+        InvocationHandler handler = new InvocationHandler() {
+
+            private int row = -1;
+            private boolean wasNull;
+
+            @Override
+            public Object invoke(Object proxy, Method method, Object[] args) {
+                String name = method.getName();
+                if ("next".equals(name)) {
+                    return ++row < values.length;
+                } else if ("getInt".equals(name)) {
+                    Integer v = ((Integer) args[0]) == 1 ? values[row] :
+                            Integer.valueOf(node.hashCode());
+                    wasNull = v == null;
+                    return wasNull ? 0 : v;
+                } else if ("wasNull".equals(name)) {
+                    return wasNull;
+                } else if ("isClosed".equals(name)) {
+                    return false;
+                }
+                return null;
+            }
+        };
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                new Class<?>[] { ResultSet.class }, handler);
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2014-2015 the original author or authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the “License”);
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an “AS IS” BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.wplatform.ddal.test.utils;
+
+import java.util.List;
+
+import com.wplatform.ddal.command.ddl.CreateTableData;
+import com.wplatform.ddal.config.Configuration;
+import com.wplatform.ddal.dbobject.table.Column;
+import com.wplatform.ddal.dbobject.table.TableMate;
+import com.wplatform.ddal.dispatch.rule.RuleColumn;
+import com.wplatform.ddal.dispatch.rule.RuleExpression;
+import com.wplatform.ddal.dispatch.rule.TableNode;
+import com.wplatform.ddal.dispatch.rule.TableRouter;
+import com.wplatform.ddal.engine.Constants;
+import com.wplatform.ddal.engine.Database;
+import com.wplatform.ddal.util.New;
+import com.wplatform.ddal.value.Value;
+
+/**
+ * The CUSTOMER(NAME, ID) table partitioned by a rule on the id column, for
+ * the routing tests on a {@link LocalDatabase}. The table node i is the
+ * table customer_i on the shard shardi.
+ *
+ * @author <a href="mailto:jorgie.mail@gmail.com">jorgie li</a>
+ */
+public class ShardedTable {
+
+    private ShardedTable() {
+        // utility class
+    }
+
+    /**
+     * Create the table. It is not added to the schema.
+     *
+     * @param database the database
+     * @param rule the rule expression on the id column
+     * @param nodes the number of table nodes
+     * @return the table
+     */
+    public static TableMate create(Database database, String rule, int nodes) {
+        CreateTableData data = new CreateTableData();
+        data.schema = database.getSchema(Constants.SCHEMA_MAIN);
+        data.tableName = "CUSTOMER";
+        data.columns.add(new Column("NAME", Value.STRING));
+        data.columns.add(new Column("ID", Value.LONG));
+        TableMate table = new TableMate(data);
+        TableRouter router = new TableRouter(new Configuration());
+        List<TableNode> partition = New.arrayList();
+        for (int i = 0; i < nodes; i++) {
+            partition.add(new TableNode("shard" + i, "customer_" + i));
+        }
+        router.setPartition(partition);
+        RuleExpression expression = new RuleExpression(router);
+        RuleColumn column = new RuleColumn();
+        column.setName("id");
+        List<RuleColumn> columns = New.arrayList();
+        columns.add(column);
+        expression.setRuleColumns(columns);
+        expression.setExpression(rule);
+        router.setRuleExpression(expression);
+        table.setTableRouter(router);
+        return table;
+    }
+
+}